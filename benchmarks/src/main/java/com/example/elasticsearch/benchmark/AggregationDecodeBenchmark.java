@@ -0,0 +1,79 @@
+package com.example.elasticsearch.benchmark;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.model.BucketColumns;
+import com.example.elasticsearch.util.BucketColumnsDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import jakarta.json.stream.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * terms 聚合解码：类型化 Aggregate 与 {@link BucketColumnsDecoder} 列式解码对比
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationDecodeBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int buckets;
+
+    private byte[] typedBody;
+
+    private byte[] plainBody;
+
+    private JsonpMapper mapper;
+
+    private JsonFactory jsonFactory;
+
+    private JsonpDeserializer<SearchResponse<JsonData>> deserializer;
+
+    @Setup
+    public void setup() {
+        typedBody = CannedResponses.termsAggregationResponse(buckets, true);
+        plainBody = CannedResponses.termsAggregationResponse(buckets, false);
+        mapper = new JacksonJsonpMapper();
+        jsonFactory = new JsonFactory();
+        deserializer = SearchResponse.createSearchResponseDeserializer(JsonData._DESERIALIZER);
+    }
+
+    @Benchmark
+    public Aggregate typed() {
+        JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(typedBody));
+        try {
+            return deserializer.deserialize(parser, mapper).aggregations().get("group_by_age");
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Benchmark
+    public BucketColumns columnar() throws IOException {
+        return BucketColumnsDecoder.decode(new ByteArrayInputStream(plainBody), jsonFactory, "group_by_age");
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.elasticsearch.benchmark;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.util.EsJsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建并序列化 bulk 请求体，写法与 DocTest.batchAddDocument 一致
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBodyBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int batchSize;
+
+    private List<User> users;
+
+    private JsonpMapper mapper;
+
+    @Setup
+    public void setup() {
+        users = CannedResponses.users(batchSize);
+        mapper = new JacksonJsonpMapper();
+    }
+
+    @Benchmark
+    public BulkRequest build() {
+        return bulkRequest();
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(batchSize * 128);
+        EsJsonUtils.writeNdJson(bulkRequest(), mapper, out);
+        return out.toByteArray();
+    }
+
+    private BulkRequest bulkRequest() {
+        List<BulkOperation> bulkOperations = new ArrayList<>(users.size());
+        users.forEach(u -> bulkOperations.add(BulkOperation.of(b -> b
+                .index(c -> c.id(u.getId()).document(u)))));
+        return BulkRequest.of(s -> s.index("users").operations(bulkOperations));
+    }
+}
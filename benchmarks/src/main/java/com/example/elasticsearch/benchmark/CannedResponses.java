@@ -0,0 +1,88 @@
+package com.example.elasticsearch.benchmark;
+
+import com.example.elasticsearch.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的固定响应，按固定种子生成，与集群返回的结构一致
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+final class CannedResponses {
+
+    private static final String[] NAMES = {"赵四", "阿旺", "刘菲", "冬梅", "甘雨", "心海", "liuyihu", "liuyife"};
+
+    private CannedResponses() {
+    }
+
+    /**
+     * users 索引的搜索响应
+     *
+     * @param hits 命中数
+     * @return byte[]
+     */
+    static byte[] searchResponse(int hits) {
+        StringBuilder json = new StringBuilder(128 + hits * 160);
+        json.append("{\"took\":3,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":3,\"successful\":3,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":").append(hits).append(",\"relation\":\"eq\"},")
+                .append("\"max_score\":1.0,\"hits\":[");
+        List<User> users = users(hits);
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"_index\":\"users\",\"_id\":\"").append(user.getId())
+                    .append("\",\"_score\":1.0,\"_source\":{\"id\":\"").append(user.getId())
+                    .append("\",\"name\":\"").append(user.getName())
+                    .append("\",\"age\":").append(user.getAge())
+                    .append(",\"sex\":\"").append(user.getSex()).append("\"}}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按 age 分组并计算平均 age 的 terms 聚合响应
+     *
+     * @param buckets   桶数
+     * @param typedKeys 是否带 typed_keys 前缀，类型化反序列化需要开启
+     * @return byte[]
+     */
+    static byte[] termsAggregationResponse(int buckets, boolean typedKeys) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(256 + buckets * 96);
+        json.append("{\"took\":12,\"timed_out\":false,")
+                .append("\"_shards\":{\"total\":3,\"successful\":3,\"skipped\":0,\"failed\":0},")
+                .append("\"hits\":{\"total\":{\"value\":10000,\"relation\":\"gte\"},\"max_score\":null,\"hits\":[]},")
+                .append("\"aggregations\":{\"").append(typedKeys ? "lterms#" : "").append("group_by_age\":{")
+                .append("\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":[");
+        for (int i = 0; i < buckets; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":").append(i)
+                    .append(",\"doc_count\":").append(1 + random.nextInt(10000))
+                    .append(",\"").append(typedKeys ? "avg#" : "").append("avg_age\":{\"value\":")
+                    .append(20 + random.nextDouble() * 40).append("}}");
+        }
+        json.append("]}}}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static List<User> users(int count) {
+        Random random = new Random(7);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User(String.valueOf(i), NAMES[random.nextInt(NAMES.length)] + i,
+                    18 + random.nextInt(50), random.nextBoolean() ? "男" : "女"));
+        }
+        return users;
+    }
+}
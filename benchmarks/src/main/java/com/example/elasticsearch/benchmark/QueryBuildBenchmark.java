@@ -0,0 +1,95 @@
+package com.example.elasticsearch.benchmark;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQueryField;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.util.EsJsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询构建与请求序列化，查询结构与 SearchTest.specifyFieldQuery1 一致
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuildBenchmark {
+
+    private JsonpMapper mapper;
+
+    private SearchRequest request;
+
+    @Setup
+    public void setup() {
+        mapper = new JacksonJsonpMapper();
+        request = searchRequest();
+    }
+
+    @Benchmark
+    public Query buildBoolQuery() {
+        return boolQuery();
+    }
+
+    @Benchmark
+    public SearchRequest buildSearchRequest() {
+        return searchRequest();
+    }
+
+    @Benchmark
+    public byte[] serializeSearchRequest() {
+        return EsJsonUtils.toBytes(request, mapper);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeSearchRequest() {
+        return EsJsonUtils.toBytes(searchRequest(), mapper);
+    }
+
+    private static Query boolQuery() {
+        BoolQuery.Builder boolQuery = QueryBuilders.bool();
+        boolQuery.must(TermQuery.of(t -> t.field("address.keyword").value("提瓦特"))._toQuery());
+        List<FieldValue> nameList = Arrays.asList(FieldValue.of("霄"), FieldValue.of("甘雨"), FieldValue.of("心海"));
+        boolQuery.must(TermsQuery.of(t -> t.field("name.keyword").terms(new TermsQueryField.Builder().value(nameList).build()))._toQuery());
+        boolQuery.must(RangeQuery.of(t -> t.field("signTime").gte(JsonData.of("2024-01-01 00:00:00")))._toQuery());
+        return boolQuery.build()._toQuery();
+    }
+
+    private static SearchRequest searchRequest() {
+        return SearchRequest.of(s -> s
+                .index("users")
+                .query(boolQuery())
+                .from(0)
+                .size(4)
+                .sort(sortOptionsBuilder -> sortOptionsBuilder
+                        .field(fieldSortBuilder -> fieldSortBuilder
+                                .field("signTime").order(SortOrder.Desc))));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.elasticsearch.benchmark;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.model.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.stream.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchResponse&lt;User&gt; 反序列化，对比 Jackson 树解析作为下限参考
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResponseDecodeBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int hits;
+
+    private byte[] body;
+
+    private JsonpMapper mapper;
+
+    private ObjectMapper objectMapper;
+
+    private JsonpDeserializer<SearchResponse<User>> deserializer;
+
+    @Setup
+    public void setup() {
+        body = CannedResponses.searchResponse(hits);
+        mapper = new JacksonJsonpMapper();
+        objectMapper = new ObjectMapper();
+        deserializer = SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(User.class));
+    }
+
+    @Benchmark
+    public SearchResponse<User> typed() {
+        JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(body));
+        try {
+            return deserializer.deserialize(parser, mapper);
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Benchmark
+    public JsonNode jacksonTree() throws IOException {
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.elasticsearch.benchmark;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.service.FanOutSearch;
+import com.example.elasticsearch.transport.AsyncBridgeTransport;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次扇出 concurrency 个阻塞查询的耗时，对比 esQueryExecutor 的默认线程池与虚拟线程，只在 java21 profile 下编译
+ * 查询发往进程内的 HTTP 服务，每个请求固定延迟 latencyMillis 后返回固定响应：
+ * threadPool 与 ExecutorConfig 的默认配置一致（core 8 / max 32 / queue 1000，队列不满时只有 8 个线程）；
+ * virtualThreadsPinned 直接使用同步的 RestClientTransport，等待响应时虚拟线程被钉在载体线程上，并发度退化为 CPU 核数；
+ * virtualThreads 经由 AsyncBridgeTransport 等待，与应用在 elasticsearch.executor.virtual-threads=true 下的配置一致。
+ * 加上 -jvmArgsAppend -Djdk.tracePinnedThreads=short 可以看到钉住发生的位置
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class VirtualThreadFanOutBenchmark {
+
+    @Param({"100", "1000"})
+    private int concurrency;
+
+    @Param({"20"})
+    private long latencyMillis;
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private RestClient restClient;
+
+    private ThreadPoolTaskExecutor pool;
+
+    private ExecutorService virtual;
+
+    private FanOutSearch pooled;
+
+    private FanOutSearch pinned;
+
+    private FanOutSearch bridged;
+
+    private List<SearchRequest> requests;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] body = CannedResponses.searchResponse(10);
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        restClient = RestClient.builder(new HttpHost("127.0.0.1", server.getAddress().getPort(), "http"))
+                .setHttpClientConfigCallback(builder -> builder.setMaxConnTotal(concurrency).setMaxConnPerRoute(concurrency))
+                .build();
+        ElasticsearchClient blocking = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+        ElasticsearchClient async = new ElasticsearchClient(new AsyncBridgeTransport(
+                new RestClientTransport(restClient, new JacksonJsonpMapper())));
+
+        pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(8);
+        pool.setMaxPoolSize(32);
+        pool.setQueueCapacity(1000);
+        pool.setThreadNamePrefix("es-query-");
+        pool.initialize();
+        virtual = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("es-query-", 0).factory());
+
+        pooled = new FanOutSearch(blocking, pool);
+        pinned = new FanOutSearch(blocking, virtual);
+        bridged = new FanOutSearch(async, virtual);
+
+        requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            requests.add(SearchRequest.of(s -> s.index("users").query(q -> q.matchAll(m -> m))));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        virtual.close();
+        restClient.close();
+        server.stop(0);
+        serverExecutor.close();
+    }
+
+    @Benchmark
+    public List<SearchResponse<User>> threadPool() throws IOException {
+        return pooled.search(requests, User.class);
+    }
+
+    @Benchmark
+    public List<SearchResponse<User>> virtualThreadsPinned() throws IOException {
+        return pinned.search(requests, User.class);
+    }
+
+    @Benchmark
+    public List<SearchResponse<User>> virtualThreads() throws IOException {
+        return bridged.search(requests, User.class);
+    }
+}
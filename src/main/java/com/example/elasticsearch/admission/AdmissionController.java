@@ -0,0 +1,423 @@
+package com.example.elasticsearch.admission;
+
+import com.example.elasticsearch.cluster.ClusterHealth;
+import com.example.elasticsearch.cluster.ClusterRegistry;
+import com.example.elasticsearch.config.AdmissionProperties;
+import com.example.elasticsearch.exception.AdmissionRejectedException;
+import com.example.elasticsearch.exception.AdmissionRejectedException.Reason;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 客户端准入控制
+ * 所有请求共用一个 RestClient 连接池，后台写入和维护任务的突发会占满连接，拖慢面向用户的查询。
+ * 请求按 {@link OperationClass} 分类后依次经过：熔断、令牌桶限流、类别并发上限（舱壁）、按优先级分配的在途名额，
+ * 令牌或名额不足时在 maxWait 内排队，超时后拒绝（{@link AdmissionRejectedException}），请求不会发往集群。
+ * 类别默认按 endpoint 推断，也可以用 {@link #scope(OperationClass)} 为当前线程指定。
+ * 熔断和在途名额反映的是一个集群、一个连接池的状态，多集群的成员集群各自使用 {@link #forCluster(String)} 创建的实例
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    private final AdmissionProperties properties;
+
+    private final String cluster;
+
+    private final boolean enabled;
+
+    private final Map<OperationClass, Lane> lanes = new EnumMap<>(OperationClass.class);
+
+    private final PriorityGate gate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadLocal<OperationClass> scoped = new ThreadLocal<>();
+
+    /**
+     * 异步请求的排队线程，只在名额或令牌不能立即获得时使用，等待时间受 maxWait 限制
+     */
+    private final ExecutorService waiters = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "es-admission-wait");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public AdmissionController(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, ClusterRegistry.DEFAULT);
+    }
+
+    private AdmissionController(AdmissionProperties properties, MeterRegistry meterRegistry, String cluster) {
+        this.properties = properties;
+        this.cluster = cluster;
+        this.enabled = properties.isEnabled();
+        this.meterRegistry = meterRegistry;
+        int topPriority = 0;
+        for (OperationClass operationClass : OperationClass.values()) {
+            AdmissionProperties.Lane config = properties.lane(operationClass);
+            if (config.getPriority() < 0 || config.getMaxConcurrent() < 1) {
+                throw new IllegalArgumentException("Invalid elasticsearch.admission." + operationClass.name().toLowerCase()
+                        + ": priority must be >= 0 and max-concurrent >= 1");
+            }
+            topPriority = Math.max(topPriority, config.getPriority());
+            Lane lane = new Lane(operationClass, config);
+            lanes.put(operationClass, lane);
+            Gauge.builder("es.admission.in_flight", lane, Lane::inFlight)
+                    .tag("cluster", cluster).tag("class", operationClass.name()).register(meterRegistry);
+        }
+        this.gate = new PriorityGate(properties.getMaxInFlight(), properties.getReserved(), topPriority);
+        if (enabled) {
+            log.info("准入控制，cluster:{}，maxInFlight:{}，reserved:{}", cluster, properties.getMaxInFlight(), properties.getReserved());
+        }
+    }
+
+    /**
+     * 为另一个集群创建配置相同、状态独立的准入控制，指标按 cluster 区分；调用方负责 {@link #close()}
+     *
+     * @param cluster 集群名称
+     * @return {@link AdmissionController}
+     */
+    public AdmissionController forCluster(String cluster) {
+        return new AdmissionController(properties, meterRegistry, cluster);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public void close() {
+        waiters.shutdownNow();
+    }
+
+    /**
+     * 为当前线程指定操作类别，覆盖按 endpoint 推断的结果，用于需要降级的后台任务
+     * <pre>
+     * try (AdmissionController.Scope ignored = admissionController.scope(OperationClass.MAINTENANCE)) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param operationClass 操作类别
+     * @return {@link Scope}
+     */
+    public Scope scope(OperationClass operationClass) {
+        OperationClass previous = scoped.get();
+        scoped.set(operationClass);
+        return () -> {
+            if (previous == null) {
+                scoped.remove();
+            } else {
+                scoped.set(previous);
+            }
+        };
+    }
+
+    /**
+     * 请求的操作类别，当前线程指定了类别时以指定的为准
+     *
+     * @param endpointId endpoint id
+     * @param request    请求
+     * @return {@link OperationClass}
+     */
+    public OperationClass classify(String endpointId, Object request) {
+        OperationClass operationClass = scoped.get();
+        return operationClass != null ? operationClass : OperationClass.of(endpointId, request);
+    }
+
+    /**
+     * 调用方已知的操作类别，当前线程指定了类别时以指定的为准
+     *
+     * @param operationClass 调用方给出的类别
+     * @return {@link OperationClass}
+     */
+    public OperationClass classify(OperationClass operationClass) {
+        OperationClass scopedClass = scoped.get();
+        return scopedClass != null ? scopedClass : operationClass;
+    }
+
+    /**
+     * 获取准入许可，请求结束后必须调用 {@link Permit#release(Throwable)}
+     *
+     * @param operationClass 操作类别
+     * @return {@link Permit}
+     * @throws AdmissionRejectedException 熔断、限流或排队超时
+     */
+    public Permit acquire(OperationClass operationClass) {
+        if (!enabled) {
+            return new Permit(null, false);
+        }
+        Lane lane = lanes.get(operationClass);
+        long start = System.nanoTime();
+        boolean trial = admitBreaker(lane);
+        long wait = reserveToken(lane, trial);
+        return hold(lane, trial, start, wait);
+    }
+
+    /**
+     * 异步获取准入许可，不阻塞调用线程：名额立即可用时直接完成，
+     * 需要等待令牌或名额时交给准入等待线程排队，被拒绝时返回失败的 future
+     *
+     * @param operationClass 操作类别
+     * @return {@link Permit} 的 future
+     */
+    public CompletableFuture<Permit> acquireAsync(OperationClass operationClass) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(new Permit(null, false));
+        }
+        Lane lane = lanes.get(operationClass);
+        long start = System.nanoTime();
+        CompletableFuture<Permit> result = new CompletableFuture<>();
+        boolean trial;
+        long wait;
+        try {
+            trial = admitBreaker(lane);
+            wait = reserveToken(lane, trial);
+        } catch (AdmissionRejectedException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        // 带超时的 tryAcquire 遵守公平性，不会插队到排队的请求前面
+        if (wait == 0 && tryAcquireNow(lane.bulkhead)) {
+            if (gate.tryAcquire(lane.priority)) {
+                lane.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                result.complete(new Permit(lane, trial));
+                return result;
+            }
+            lane.bulkhead.release();
+        }
+        try {
+            waiters.execute(() -> {
+                try {
+                    result.complete(hold(lane, trial, start, wait));
+                } catch (AdmissionRejectedException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cancel(lane, trial, false);
+            result.completeExceptionally(reject(lane, Reason.INTERRUPTED));
+        }
+        return result;
+    }
+
+    /**
+     * 在准入控制下执行底层 RestClient 请求，ResponseException 同样计入熔断统计
+     *
+     * @param operationClass 操作类别
+     * @param call           请求
+     * @return 结果
+     * @throws IOException ioexception
+     */
+    public <T> T call(OperationClass operationClass, Call<T> call) throws IOException {
+        Permit permit = acquire(operationClass);
+        try {
+            T result = call.execute();
+            permit.release(null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 类别是否处于熔断中
+     *
+     * @param operationClass 操作类别
+     * @return boolean
+     */
+    public boolean isOpen(OperationClass operationClass) {
+        return lanes.get(operationClass).breaker.isOpen();
+    }
+
+    /**
+     * 所有类别的在途请求数
+     *
+     * @return int
+     */
+    public int inFlight() {
+        return gate.inFlight();
+    }
+
+    private static boolean tryAcquireNow(Semaphore semaphore) {
+        try {
+            return semaphore.tryAcquire(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean admitBreaker(Lane lane) {
+        CircuitBreaker.Admit admit = lane.breaker.tryAcquire();
+        if (admit == CircuitBreaker.Admit.REJECTED) {
+            throw reject(lane, Reason.CIRCUIT_OPEN);
+        }
+        return admit == CircuitBreaker.Admit.TRIAL;
+    }
+
+    /**
+     * 预支令牌
+     *
+     * @return 需要等待的纳秒数
+     */
+    private long reserveToken(Lane lane, boolean trial) {
+        if (lane.bucket == null) {
+            return 0;
+        }
+        long wait = lane.bucket.reserve(lane.maxWaitNanos);
+        if (wait < 0) {
+            cancel(lane, trial, false);
+            throw reject(lane, Reason.RATE_LIMITED);
+        }
+        return wait;
+    }
+
+    /**
+     * 等待预支的令牌到期，再在剩余的 maxWait 内获取舱壁和在途名额
+     */
+    private Permit hold(Lane lane, boolean trial, long start, long tokenWait) {
+        boolean bulkheadHeld = false;
+        try {
+            if (tokenWait > 0) {
+                TimeUnit.NANOSECONDS.sleep(tokenWait);
+            }
+            long deadline = start + lane.maxWaitNanos;
+            bulkheadHeld = lane.bulkhead.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!bulkheadHeld || !gate.acquire(lane.priority, Math.max(0, deadline - System.nanoTime()))) {
+                throw reject(lane, Reason.BULKHEAD_FULL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(lane, trial, bulkheadHeld);
+            throw reject(lane, Reason.INTERRUPTED);
+        } catch (AdmissionRejectedException e) {
+            cancel(lane, trial, bulkheadHeld);
+            throw e;
+        }
+        lane.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Permit(lane, trial);
+    }
+
+    private static void cancel(Lane lane, boolean trial, boolean bulkheadHeld) {
+        if (bulkheadHeld) {
+            lane.bulkhead.release();
+        }
+        if (trial) {
+            lane.breaker.cancel();
+        }
+    }
+
+    private AdmissionRejectedException reject(Lane lane, Reason reason) {
+        meterRegistry.counter("es.admission.rejected", "cluster", cluster, "class", lane.operationClass.name(),
+                "reason", reason.name()).increment();
+        log.debug("请求被准入控制拒绝，class:{}，reason:{}", lane.operationClass, reason);
+        return new AdmissionRejectedException(lane.operationClass, reason);
+    }
+
+    /**
+     * 准入许可，请求结束时释放并记录结果
+     */
+    public final class Permit {
+
+        private final Lane lane;
+
+        private final boolean trial;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane, boolean trial) {
+            this.lane = lane;
+            this.trial = trial;
+        }
+
+        /**
+         * 释放许可，重复调用无效
+         *
+         * @param error 请求的异常，成功时为 null
+         */
+        public void release(Throwable error) {
+            if (lane == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+            gate.release();
+            lane.bulkhead.release();
+            lane.breaker.record(error != null && ClusterHealth.isClusterError(error), trial);
+        }
+    }
+
+    /**
+     * 当前线程的操作类别，关闭时恢复之前的类别
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * 底层请求
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+
+        T execute() throws IOException;
+    }
+
+    private final class Lane {
+
+        private final OperationClass operationClass;
+
+        private final int priority;
+
+        private final long maxWaitNanos;
+
+        private final int maxConcurrent;
+
+        private final TokenBucket bucket;
+
+        private final Semaphore bulkhead;
+
+        private final CircuitBreaker breaker;
+
+        private final Timer waitTimer;
+
+        private Lane(OperationClass operationClass, AdmissionProperties.Lane config) {
+            this.operationClass = operationClass;
+            this.priority = config.getPriority();
+            this.maxWaitNanos = config.getMaxWait().toNanos();
+            this.maxConcurrent = config.getMaxConcurrent();
+            this.bucket = config.getRate() > 0 ? new TokenBucket(config.getRate(), config.getBurst()) : null;
+            this.bulkhead = new Semaphore(maxConcurrent, true);
+            this.breaker = new CircuitBreaker(config.getBreakerWindow(), config.getBreakerFailureRate(),
+                    config.getBreakerOpen().toNanos());
+            this.waitTimer = meterRegistry.timer("es.admission.wait", "cluster", cluster, "class", operationClass.name());
+        }
+
+        private int inFlight() {
+            return maxConcurrent - bulkhead.availablePermits();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.elasticsearch.admission;
+
+/**
+ * 按最近 N 次请求的错误比例熔断
+ * 熔断期间拒绝所有请求，到期后进入半开状态只放行一个试探请求，试探成功则关闭熔断并清空窗口，失败则重新熔断
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+class CircuitBreaker {
+
+    private final boolean[] outcomes;
+
+    private final int threshold;
+
+    private final long openNanos;
+
+    private int next;
+
+    private int recorded;
+
+    private int failures;
+
+    private long openUntil;
+
+    private boolean open;
+
+    private boolean trialInFlight;
+
+    CircuitBreaker(int window, double failureRate, long openNanos) {
+        this.outcomes = new boolean[Math.max(1, window)];
+        this.threshold = Math.max(1, (int) Math.ceil(outcomes.length * failureRate));
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * 是否放行请求，半开状态下只放行一个试探请求
+     *
+     * @return {@link Admit}
+     */
+    synchronized Admit tryAcquire() {
+        if (!open) {
+            return Admit.CLOSED;
+        }
+        if (trialInFlight || System.nanoTime() < openUntil) {
+            return Admit.REJECTED;
+        }
+        trialInFlight = true;
+        return Admit.TRIAL;
+    }
+
+    /**
+     * 放行后请求未发出（例如排队超时），归还半开状态的试探名额
+     */
+    synchronized void cancel() {
+        trialInFlight = false;
+    }
+
+    /**
+     * 记录请求结果，熔断前已经发出的请求在熔断期间返回的结果不计入
+     *
+     * @param failed 是否集群错误
+     * @param trial  是否半开状态的试探请求
+     */
+    synchronized void record(boolean failed, boolean trial) {
+        if (open) {
+            if (!trial) {
+                return;
+            }
+            trialInFlight = false;
+            if (failed) {
+                openUntil = System.nanoTime() + openNanos;
+            } else {
+                open = false;
+                next = 0;
+                recorded = 0;
+                failures = 0;
+            }
+            return;
+        }
+        if (recorded == outcomes.length && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failed;
+        next = (next + 1) % outcomes.length;
+        recorded = Math.min(recorded + 1, outcomes.length);
+        if (failed && ++failures >= threshold) {
+            open = true;
+            openUntil = System.nanoTime() + openNanos;
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    enum Admit {
+
+        CLOSED,
+
+        TRIAL,
+
+        REJECTED
+    }
+}
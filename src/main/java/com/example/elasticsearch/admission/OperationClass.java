@@ -0,0 +1,114 @@
+package com.example.elasticsearch.admission;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 请求的操作类别，每个类别有独立的限流、并发隔离、优先级和熔断
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public enum OperationClass {
+
+    /**
+     * 面向用户的查询：search、get、mget、msearch、count 等
+     */
+    INTERACTIVE,
+
+    /**
+     * 分析类请求：带聚合的查询、scroll、point in time 扫描
+     */
+    ANALYTICS,
+
+    /**
+     * 写入：bulk 和单文档的 index、create、update、delete
+     */
+    INGEST,
+
+    /**
+     * 维护任务：by query、reindex、索引管理、任务管理、脚本
+     */
+    MAINTENANCE;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * 按 endpoint id（例如 es/search、es/indices.refresh）和请求内容分类
+     *
+     * @param endpointId endpoint id
+     * @param request    请求
+     * @return {@link OperationClass}
+     */
+    public static OperationClass of(String endpointId, Object request) {
+        String name = endpointId.startsWith("es/") ? endpointId.substring(3) : endpointId;
+        switch (name) {
+            case "search":
+                return request instanceof SearchRequest && isAnalytics((SearchRequest) request) ? ANALYTICS : INTERACTIVE;
+            case "scroll":
+            case "clear_scroll":
+            case "open_point_in_time":
+            case "close_point_in_time":
+                return ANALYTICS;
+            case "bulk":
+            case "index":
+            case "create":
+            case "update":
+            case "delete":
+                return INGEST;
+            case "update_by_query":
+            case "delete_by_query":
+            case "update_by_query_rethrottle":
+            case "delete_by_query_rethrottle":
+            case "reindex":
+            case "reindex_rethrottle":
+            case "put_script":
+            case "delete_script":
+                return MAINTENANCE;
+            default:
+                return name.indexOf('.') > 0 ? MAINTENANCE : INTERACTIVE;
+        }
+    }
+
+    /**
+     * 原始 JSON 查询体的类别，与 {@link #of(String, Object)} 对 SearchRequest 的判断一致：
+     * 顶层带 aggs / aggregations / pit 或 URL 参数带 scroll 时为 ANALYTICS，只读取顶层字段名
+     *
+     * @param body       查询体，可以为 null
+     * @param parameters URL 参数，可以为 null
+     * @return {@link OperationClass}
+     */
+    public static OperationClass ofSearchBody(byte[] body, Map<String, String> parameters) {
+        if (parameters != null && parameters.containsKey("scroll")) {
+            return ANALYTICS;
+        }
+        if (body == null) {
+            return INTERACTIVE;
+        }
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return INTERACTIVE;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if ("aggs".equals(field) || "aggregations".equals(field) || "pit".equals(field)) {
+                    return ANALYTICS;
+                }
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // 无法解析的查询体照常发送，由集群返回 400
+        }
+        return INTERACTIVE;
+    }
+
+    private static boolean isAnalytics(SearchRequest request) {
+        return !request.aggregations().isEmpty() || request.scroll() != null || request.pit() != null;
+    }
+}
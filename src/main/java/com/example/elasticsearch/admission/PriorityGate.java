@@ -0,0 +1,124 @@
+package com.example.elasticsearch.admission;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 所有类别共享的在途名额
+ * 有更高优先级的请求在等待时，低优先级请求不能取得名额；最后 reserved 个名额只留给最高优先级，
+ * 写入和维护任务再多也不会占满连接池
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+class PriorityGate {
+
+    private final int capacity;
+
+    private final int reserved;
+
+    private final int topPriority;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    /**
+     * 按优先级下标统计的等待数
+     */
+    private final int[] waiting;
+
+    private int inFlight;
+
+    PriorityGate(int capacity, int reserved, int topPriority) {
+        this.capacity = capacity;
+        this.reserved = Math.min(reserved, capacity - 1);
+        this.topPriority = topPriority;
+        this.waiting = new int[topPriority + 1];
+    }
+
+    /**
+     * 获取一个名额
+     *
+     * @param priority     优先级，0 到 topPriority
+     * @param maxWaitNanos 最长等待时间
+     * @return 是否获取成功
+     * @throws InterruptedException 等待时被中断
+     */
+    boolean acquire(int priority, long maxWaitNanos) throws InterruptedException {
+        long remaining = maxWaitNanos;
+        lock.lock();
+        try {
+            waiting[priority]++;
+            try {
+                while (!admissible(priority)) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                waiting[priority]--;
+                if (waiting[priority] == 0) {
+                    // 低优先级的等待者可能一直在让行
+                    released.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不等待，名额不足时立即返回
+     *
+     * @param priority 优先级，0 到 topPriority
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(int priority) {
+        lock.lock();
+        try {
+            if (!admissible(priority)) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean admissible(int priority) {
+        int limit = priority == topPriority ? capacity : capacity - reserved;
+        if (inFlight >= limit) {
+            return false;
+        }
+        for (int p = priority + 1; p <= topPriority; p++) {
+            if (waiting[p] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.elasticsearch.admission;
+
+/**
+ * 令牌桶限流，令牌不足时预支下一个令牌并返回需要等待的时间，保证排队的请求按到达顺序放行
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+class TokenBucket {
+
+    private final double nanosPerToken;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    TokenBucket(double rate, int burst) {
+        this.nanosPerToken = 1_000_000_000.0 / rate;
+        this.capacity = burst > 0 ? burst : Math.max(1, rate);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * 预支一个令牌
+     *
+     * @param maxWaitNanos 最长等待时间
+     * @return 需要等待的纳秒数，超过 maxWaitNanos 时返回 -1 且不预支
+     */
+    synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) / nanosPerToken);
+        refilledAt = now;
+        long wait = tokens >= 1 ? 0 : (long) ((1 - tokens) * nanosPerToken);
+        if (wait > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return wait;
+    }
+}
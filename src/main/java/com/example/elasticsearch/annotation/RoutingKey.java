@@ -0,0 +1,21 @@
+package com.example.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记文档模型中的路由键字段
+ * 写入 elasticsearch.routing.indices 中配置的索引时，该字段的值会作为 routing 自动带上，
+ * 同一个路由键的文档落在同一个分片，按路由键过滤的查询只需要访问一个分片
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RoutingKey {
+}
@@ -0,0 +1,116 @@
+package com.example.elasticsearch.cluster;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import org.elasticsearch.client.ResponseException;
+
+import java.io.IOException;
+
+/**
+ * 单个集群的健康状态
+ * 延迟和错误率都用 EWMA 平滑，最近的请求权重更高；连续失败达到阈值后暂时摘除，冷却期过后重新放行请求，
+ * 成功一次即恢复
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class ClusterHealth {
+
+    /**
+     * EWMA 平滑系数
+     */
+    private static final double ALPHA = 0.2;
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long cooldownMillis;
+
+    /**
+     * 延迟 EWMA，尚无样本时为 -1
+     */
+    private double latencyMillis = -1;
+
+    private double errorRate;
+
+    private int consecutiveFailures;
+
+    private long downUntil;
+
+    public ClusterHealth(String name, int failureThreshold, long cooldownMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * 异常是否说明集群本身不可用：连接失败、超时、5xx、429，请求本身的错误（4xx）不计入
+     *
+     * @param error 异常
+     * @return boolean
+     */
+    public static boolean isClusterError(Throwable error) {
+        if (error instanceof ResponseException) {
+            int status = ((ResponseException) error).getResponse().getStatusLine().getStatusCode();
+            return status >= 500 || status == 429;
+        }
+        if (error instanceof ElasticsearchException) {
+            int status = ((ElasticsearchException) error).status();
+            return status >= 500 || status == 429;
+        }
+        return error instanceof IOException;
+    }
+
+    synchronized void success(long nanos) {
+        double millis = nanos / 1_000_000.0;
+        latencyMillis = latencyMillis < 0 ? millis : latencyMillis + ALPHA * (millis - latencyMillis);
+        errorRate -= ALPHA * errorRate;
+        consecutiveFailures = 0;
+        downUntil = 0;
+    }
+
+    synchronized void failure() {
+        errorRate += ALPHA * (1 - errorRate);
+        if (++consecutiveFailures >= failureThreshold) {
+            downUntil = System.currentTimeMillis() + cooldownMillis;
+        }
+    }
+
+    /**
+     * 是否可以发送请求，摘除期间不可用
+     *
+     * @return boolean
+     */
+    public synchronized boolean available() {
+        return System.currentTimeMillis() >= downUntil;
+    }
+
+    /**
+     * 是否可用且延迟、错误率都在预算内
+     *
+     * @param latencyBudgetMillis 延迟预算
+     * @param errorBudget         错误预算
+     * @return boolean
+     */
+    public synchronized boolean withinBudget(long latencyBudgetMillis, double errorBudget) {
+        return available() && latencyMillis <= latencyBudgetMillis && errorRate <= errorBudget;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized double latencyMillis() {
+        return latencyMillis;
+    }
+
+    public synchronized double errorRate() {
+        return errorRate;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + "{latency=" + String.format("%.1f", latencyMillis) + "ms, errorRate=" + String.format("%.3f", errorRate)
+                + (available() ? "" : ", down") + "}";
+    }
+}
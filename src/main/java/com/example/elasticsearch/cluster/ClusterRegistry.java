@@ -0,0 +1,363 @@
+package com.example.elasticsearch.cluster;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.config.ClusterProperties;
+import com.example.elasticsearch.config.EsClientConfig;
+import com.example.elasticsearch.config.EsClientFactory;
+import com.example.elasticsearch.exception.AdmissionRejectedException;
+import com.example.elasticsearch.transport.HealthTrackingTransport;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * 多集群客户端注册中心
+ * 每个集群有独立的 RestClient 连接池，写请求发往主集群，读请求按优先顺序发往健康的集群
+ * （例如通过跨集群复制与主集群同步的本地域副本集群），延迟或错误率超出预算时读请求自动切换到下一个集群，
+ * 索引可以单独指定读写集群。副本集群的数据存在复制延迟，写后立即读的场景应使用 {@link #writer(String)}。
+ * 每个成员集群有独立的准入控制，一个集群的错误只会打开它自己的熔断。
+ * 未配置 elasticsearch.clusters.members 时只有一个 default 集群，即项目默认的 elasticsearchClient
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class ClusterRegistry implements ApplicationRunner, DisposableBean {
+
+    public static final String DEFAULT = "default";
+
+    private final ClusterProperties properties;
+
+    private final TaskScheduler scheduler;
+
+    private final Map<String, Member> members = new LinkedHashMap<>();
+
+    private final String primary;
+
+    public ClusterRegistry(ClusterProperties properties,
+                           @Qualifier("elasticsearchClient") ElasticsearchClient elasticsearchClient,
+                           RestClient restClient,
+                           EsClientFactory esClientFactory,
+                           MeterRegistry meterRegistry,
+                           @Qualifier("esScheduler") TaskScheduler scheduler) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        if (properties.getMembers().isEmpty()) {
+            members.put(DEFAULT, new Member(DEFAULT, restClient, elasticsearchClient, null, newHealth(DEFAULT), false));
+            primary = DEFAULT;
+        } else {
+            properties.getMembers().forEach((name, member) ->
+                    members.put(name, connect(name, member, esClientFactory)));
+            primary = StringUtils.hasLength(properties.getPrimary())
+                    ? properties.getPrimary()
+                    : members.keySet().iterator().next();
+            validate();
+            log.info("多集群配置，primary:{}，members:{}", primary, members.keySet());
+        }
+        members.values().forEach(member -> {
+            Gauge.builder("es.cluster.latency", member.health, ClusterHealth::latencyMillis)
+                    .tag("cluster", member.name).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("es.cluster.error_rate", member.health, ClusterHealth::errorRate)
+                    .tag("cluster", member.name).register(meterRegistry);
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (members.size() > 1) {
+            scheduler.scheduleWithFixedDelay(this::probe, properties.getProbeInterval());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (Member member : members.values()) {
+            if (member.owned) {
+                member.admission.close();
+                member.restClient.close();
+            }
+        }
+    }
+
+    /**
+     * 集群名称
+     *
+     * @return Set
+     */
+    public Set<String> clusters() {
+        return Collections.unmodifiableSet(members.keySet());
+    }
+
+    /**
+     * 指定集群的客户端
+     *
+     * @param cluster 集群名称
+     * @return {@link ElasticsearchClient}
+     */
+    public ElasticsearchClient client(String cluster) {
+        return member(cluster).client;
+    }
+
+    /**
+     * 指定集群的底层 RestClient，通过它发送的请求不计入健康统计
+     *
+     * @param cluster 集群名称
+     * @return {@link RestClient}
+     */
+    public RestClient restClient(String cluster) {
+        return member(cluster).restClient;
+    }
+
+    /**
+     * 集群的健康状态
+     *
+     * @param cluster 集群名称
+     * @return {@link ClusterHealth}
+     */
+    public ClusterHealth health(String cluster) {
+        return member(cluster).health;
+    }
+
+    /**
+     * 写集群的客户端
+     *
+     * @param index 索引
+     * @return {@link ElasticsearchClient}
+     */
+    public ElasticsearchClient writer(String index) {
+        return client(writeCluster(index));
+    }
+
+    /**
+     * 当前最适合读的集群的客户端
+     *
+     * @param index 索引
+     * @return {@link ElasticsearchClient}
+     */
+    public ElasticsearchClient reader(String index) {
+        return client(readOrder(index).get(0));
+    }
+
+    /**
+     * 在读集群上执行，集群不可用（连接失败、超时、5xx、429、熔断中）时依次切换到下一个集群，请求本身的错误直接抛出
+     *
+     * @param index 索引
+     * @param call  读请求
+     * @return 结果
+     * @throws IOException 所有集群都失败时抛出最后一个异常
+     */
+    public <T> T read(String index, ClusterCall<T> call) throws IOException {
+        List<String> order = readOrder(index);
+        Exception last = null;
+        for (String cluster : order) {
+            try {
+                return call.apply(client(cluster));
+            } catch (IOException | ElasticsearchException e) {
+                if (!ClusterHealth.isClusterError(e)) {
+                    throw e;
+                }
+                log.warn("读集群 {} 不可用，切换到下一个集群，index:{}，原因:{}", cluster, index, e.getMessage());
+                last = e;
+            } catch (AdmissionRejectedException e) {
+                if (e.getReason() != AdmissionRejectedException.Reason.CIRCUIT_OPEN) {
+                    throw e;
+                }
+                log.warn("读集群 {} 熔断中，切换到下一个集群，index:{}", cluster, index);
+                last = e;
+            }
+        }
+        if (last instanceof IOException) {
+            throw (IOException) last;
+        }
+        throw (RuntimeException) last;
+    }
+
+    /**
+     * 索引的写集群
+     *
+     * @param index 索引
+     * @return 集群名称
+     */
+    public String writeCluster(String index) {
+        ClusterProperties.IndexRoute route = index == null ? null : properties.getIndices().get(index);
+        return route != null && StringUtils.hasLength(route.getWrite()) ? route.getWrite() : primary;
+    }
+
+    /**
+     * 索引的读集群顺序：在预算内的集群在前，按配置顺序（未配置时按延迟）排列；超出预算的在后，按延迟排列；
+     * 摘除中的集群排在最后，所有集群都不可用时仍然会被尝试
+     *
+     * @param index 索引
+     * @return 集群名称
+     */
+    public List<String> readOrder(String index) {
+        ClusterProperties.IndexRoute route = index == null ? null : properties.getIndices().get(index);
+        List<String> preference = route != null && !route.getRead().isEmpty() ? route.getRead() : properties.getReadPreference();
+        List<String> candidates = new ArrayList<>(preference.isEmpty() ? members.keySet() : preference);
+        String write = writeCluster(index);
+        if (!candidates.contains(write)) {
+            candidates.add(write);
+        }
+        long latencyBudget = properties.getLatencyBudget().toMillis();
+        double errorBudget = properties.getErrorBudget();
+        List<String> healthy = new ArrayList<>();
+        List<String> degraded = new ArrayList<>();
+        List<String> down = new ArrayList<>();
+        for (String cluster : candidates) {
+            ClusterHealth health = health(cluster);
+            if (health.withinBudget(latencyBudget, errorBudget)) {
+                healthy.add(cluster);
+            } else if (health.available()) {
+                degraded.add(cluster);
+            } else {
+                down.add(cluster);
+            }
+        }
+        Comparator<String> byLatency = Comparator.comparingDouble(cluster -> health(cluster).latencyMillis());
+        if (preference.isEmpty()) {
+            healthy.sort(byLatency);
+        }
+        degraded.sort(byLatency);
+        List<String> order = new ArrayList<>(candidates.size());
+        order.addAll(healthy);
+        order.addAll(degraded);
+        order.addAll(down);
+        return order;
+    }
+
+    /**
+     * 探测所有集群，更新延迟，并让摘除或超出预算的集群有机会恢复
+     */
+    public void probe() {
+        for (Member member : members.values()) {
+            long start = System.nanoTime();
+            try {
+                member.restClient.performRequest(new Request("HEAD", "/"));
+                member.health.success(System.nanoTime() - start);
+            } catch (IOException e) {
+                member.health.failure();
+                log.warn("集群 {} 探测失败:{}", member.name, e.getMessage());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("集群状态:{}", members.values().stream().map(m -> m.health).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * 成员集群与默认集群使用同样的连接池配置和装饰链，健康统计紧贴 RestClientTransport，不含准入排队时间；
+     * 准入控制按集群独立，副本集群的故障不会让发往主集群的请求被熔断拒绝
+     */
+    private Member connect(String name, ClusterProperties.Member config, EsClientFactory esClientFactory) {
+        if (!StringUtils.hasLength(config.getHosts())) {
+            throw new IllegalArgumentException("elasticsearch.clusters.members." + name + ".hosts must not be empty");
+        }
+        RestClient restClient = esClientFactory.restClient(EsClientConfig.toHttpHost(config.getHosts(), config.getScheme()),
+                config.getUsername(), config.getPassword());
+        ClusterHealth health = newHealth(name);
+        AdmissionController admission = esClientFactory.admissionController(name);
+        ElasticsearchClient client = esClientFactory.elasticsearchClient(restClient,
+                transport -> new HealthTrackingTransport(transport, (nanos, error) -> record(health, nanos, error)), admission);
+        return new Member(name, restClient, client, admission, health, true);
+    }
+
+    private static void record(ClusterHealth health, long nanos, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause != null && ClusterHealth.isClusterError(cause)) {
+            health.failure();
+        } else {
+            health.success(nanos);
+        }
+    }
+
+    private ClusterHealth newHealth(String name) {
+        return new ClusterHealth(name, properties.getFailureThreshold(), properties.getCooldown().toMillis());
+    }
+
+    private void validate() {
+        List<String> referenced = new ArrayList<>(properties.getReadPreference());
+        referenced.add(primary);
+        properties.getIndices().values().forEach(route -> {
+            referenced.addAll(route.getRead());
+            if (StringUtils.hasLength(route.getWrite())) {
+                referenced.add(route.getWrite());
+            }
+        });
+        for (String cluster : referenced) {
+            if (!members.containsKey(cluster)) {
+                throw new IllegalArgumentException("Unknown elasticsearch cluster: " + cluster);
+            }
+        }
+    }
+
+    private Member member(String cluster) {
+        Member member = members.get(cluster);
+        if (member == null) {
+            throw new IllegalArgumentException("Unknown elasticsearch cluster: " + cluster);
+        }
+        return member;
+    }
+
+    /**
+     * 在指定集群上执行的请求
+     */
+    @FunctionalInterface
+    public interface ClusterCall<T> {
+
+        T apply(ElasticsearchClient client) throws IOException;
+    }
+
+    private static final class Member {
+
+        private final String name;
+
+        private final RestClient restClient;
+
+        private final ElasticsearchClient client;
+
+        /**
+         * 成员集群自己的准入控制，默认集群为 null（使用共用的 AdmissionController）
+         */
+        private final AdmissionController admission;
+
+        private final ClusterHealth health;
+
+        /**
+         * 连接池由注册中心创建，需要在销毁时关闭
+         */
+        private final boolean owned;
+
+        private Member(String name, RestClient restClient, ElasticsearchClient client, AdmissionController admission,
+                       ClusterHealth health, boolean owned) {
+            this.name = name;
+            this.restClient = restClient;
+            this.client = client;
+            this.admission = admission;
+            this.health = health;
+            this.owned = owned;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.elasticsearch.config;
+
+import com.example.elasticsearch.admission.OperationClass;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 准入控制配置，按操作类别配置限流、并发隔离、排队和熔断
+ * <pre>
+ * elasticsearch:
+ *   admission:
+ *     max-in-flight: 30
+ *     reserved: 6
+ *     ingest:
+ *       max-concurrent: 2
+ *       max-wait: 10s
+ *     maintenance:
+ *       rate: 1
+ * </pre>
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "elasticsearch.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 同时在途的请求总数，与 RestClient 连接池的 maxConnTotal（默认 30）一致
+     */
+    private int maxInFlight = 30;
+
+    /**
+     * 为最高优先级类别保留的在途名额，其他类别最多使用 maxInFlight - reserved
+     */
+    private int reserved = 6;
+
+    private Lane interactive = new Lane(3, 0, 24, Duration.ofMillis(500));
+
+    private Lane analytics = new Lane(2, 0, 4, Duration.ofSeconds(5));
+
+    private Lane ingest = new Lane(1, 0, 4, Duration.ofSeconds(30));
+
+    private Lane maintenance = new Lane(0, 2, 2, Duration.ofSeconds(30));
+
+    public Lane lane(OperationClass operationClass) {
+        switch (operationClass) {
+            case INTERACTIVE:
+                return interactive;
+            case ANALYTICS:
+                return analytics;
+            case INGEST:
+                return ingest;
+            default:
+                return maintenance;
+        }
+    }
+
+    @Data
+    public static class Lane {
+
+        /**
+         * 优先级，数值大的先获得在途名额
+         */
+        private int priority;
+
+        /**
+         * 每秒允许的请求数，0 表示不限
+         */
+        private double rate;
+
+        /**
+         * 令牌桶容量，允许的突发请求数，0 时取 max(1, rate)
+         */
+        private int burst;
+
+        /**
+         * 并发上限（舱壁）
+         */
+        private int maxConcurrent;
+
+        /**
+         * 排队等待令牌和名额的最长时间，超时后拒绝；0 表示不排队，立即拒绝
+         */
+        private Duration maxWait;
+
+        /**
+         * 熔断统计窗口，最近多少次请求
+         */
+        private int breakerWindow = 20;
+
+        /**
+         * 窗口内集群错误（连接失败、超时、5xx、429）的比例达到该值时熔断
+         */
+        private double breakerFailureRate = 0.5;
+
+        /**
+         * 熔断持续时间，之后放行一个试探请求，成功则恢复
+         */
+        private Duration breakerOpen = Duration.ofSeconds(10);
+
+        public Lane() {
+        }
+
+        public Lane(int priority, double rate, int maxConcurrent, Duration maxWait) {
+            this.priority = priority;
+            this.rate = rate;
+            this.maxConcurrent = maxConcurrent;
+            this.maxWait = maxWait;
+        }
+    }
+}
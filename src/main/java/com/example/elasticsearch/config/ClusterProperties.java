@@ -0,0 +1,108 @@
+package com.example.elasticsearch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多集群配置，未配置 members 时只使用 elasticsearch.hosts 对应的默认集群
+ * <pre>
+ * elasticsearch:
+ *   clusters:
+ *     primary: main
+ *     read-preference: local,main
+ *     members:
+ *       main:
+ *         hosts: 10.4.172.72:9200,10.7.136.73:9200
+ *       local:
+ *         hosts: 10.9.0.12:9200
+ *     indices:
+ *       products:
+ *         read: main
+ * </pre>
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "elasticsearch.clusters")
+public class ClusterProperties {
+
+    /**
+     * 写入集群，为空时取 members 中的第一个
+     */
+    private String primary;
+
+    /**
+     * 读集群的优先顺序，通常把本地域的副本集群放在前面；为空时按实测延迟选择
+     */
+    private List<String> readPreference = new ArrayList<>();
+
+    /**
+     * 延迟预算，读延迟的 EWMA 超出后该集群不再优先承接读请求
+     */
+    private Duration latencyBudget = Duration.ofMillis(200);
+
+    /**
+     * 错误预算，错误率的 EWMA 超出后该集群不再优先承接读请求
+     */
+    private double errorBudget = 0.05;
+
+    /**
+     * 连续失败多少次后暂时摘除
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 摘除后多久重新尝试
+     */
+    private Duration cooldown = Duration.ofSeconds(30);
+
+    /**
+     * 健康探测间隔
+     */
+    private Duration probeInterval = Duration.ofSeconds(5);
+
+    private Map<String, Member> members = new LinkedHashMap<>();
+
+    /**
+     * 按索引覆盖读写集群
+     */
+    private Map<String, IndexRoute> indices = new LinkedHashMap<>();
+
+    @Data
+    public static class Member {
+
+        /**
+         * 多个地址逗号隔开
+         */
+        private String hosts;
+
+        private String username;
+
+        private String password;
+
+        private String scheme = "http";
+    }
+
+    @Data
+    public static class IndexRoute {
+
+        /**
+         * 写入集群，为空时使用 primary
+         */
+        private String write;
+
+        /**
+         * 读集群的优先顺序，为空时使用 read-preference
+         */
+        private List<String> read = new ArrayList<>();
+    }
+}
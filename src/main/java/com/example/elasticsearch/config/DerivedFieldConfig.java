@@ -0,0 +1,39 @@
+package com.example.elasticsearch.config;
+
+import com.example.elasticsearch.dictionary.Dictionary;
+import com.example.elasticsearch.dictionary.DictionaryTranslator;
+import com.example.elasticsearch.model.DerivedField;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 派生字段声明，启动时由 DerivedFieldService 转换为 ingest pipeline
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Configuration
+public class DerivedFieldConfig {
+
+    private final DictionaryTranslator dictionaryTranslator;
+
+    public DerivedFieldConfig(DictionaryTranslator dictionaryTranslator) {
+        this.dictionaryTranslator = dictionaryTranslator;
+    }
+
+    /**
+     * 年龄段，替代 ScriptTest.convertDictionaryValues 中每次查询都要执行的 scriptFields
+     * 区间取自字典文件 es/dictionaries/age-band.json，与查询结果的字典翻译保持一致；
+     * pipeline 只在启动时生成，字典索引中对区间的覆盖不会进入 pipeline
+     *
+     * @return DerivedField
+     */
+    @Bean
+    public DerivedField userAgeFormat() {
+        Dictionary ageBand = dictionaryTranslator.dictionary("age-band");
+        if (ageBand == null) {
+            throw new IllegalStateException("缺少字典 age-band，无法生成派生字段 users.age_format");
+        }
+        return DerivedField.rangeBands("users", "age_format", "age", ageBand.bands(), ageBand.getMissingLabel());
+    }
+}
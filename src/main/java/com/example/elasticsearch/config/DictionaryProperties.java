@@ -0,0 +1,52 @@
+package com.example.elasticsearch.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 字典翻译配置，字典来自 classpath 中的 JSON 文件和（可选的）字典索引，bindings 声明各索引中哪些字段按哪个字典翻译
+ * <pre>
+ * elasticsearch:
+ *   dictionary:
+ *     index: dictionaries
+ *     refresh-interval: 10m
+ *     bindings:
+ *       users:
+ *         age: age-band
+ *         "[address.city]": city
+ * </pre>
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "elasticsearch.dictionary")
+public class DictionaryProperties {
+
+    /**
+     * 字典文件，文件名（不含扩展名）为默认的字典名称
+     */
+    private String location = "classpath*:es/dictionaries/*.json";
+
+    /**
+     * 字典索引，每个文档为一个编码（dictionary、code、label）或一个区间规则（dictionary、below、label，不含 below 表示其余情况），
+     * 与同名的文件字典合并，同一编码以索引为准；为空时只使用文件
+     */
+    private String index;
+
+    /**
+     * 后台刷新间隔
+     */
+    private Duration refreshInterval = Duration.ofMinutes(10);
+
+    /**
+     * 索引（或别名）-&gt; 字段 -&gt; 字典名称，嵌套字段用点号分隔
+     */
+    private Map<String, Map<String, String>> bindings = new LinkedHashMap<>();
+}
@@ -1,43 +0,0 @@
-package com.example.elasticsearch.config;
-
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.json.jackson.JacksonJsonpMapper;
-import co.elastic.clients.transport.ElasticsearchTransport;
-import co.elastic.clients.transport.rest_client.RestClientTransport;
-import org.apache.http.HttpHost;
-import org.elasticsearch.client.RestClient;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.stereotype.Component;
-
-/**
- * @version 1.0.0
- * @className: ElasticClient
- * @description: 配置获取ES客户端对象
- * @author: LiJunYi
- * @create: 2022/8/8 9:58
- */
-@Component
-public class ElasticClient {
-    @Value("${elasticsearch.host}")
-    private String host;
-    @Value("${elasticsearch.port}")
-    private Integer port;
-
-    @Value("${elasticsearch.http}")
-    private String http;
-
-    /**
-     * 获取elasticsearch客户端
-     *
-     * @return {@link ElasticsearchClient}
-     */
-    @Bean
-    public ElasticsearchClient getElasticsearchClient() {
-        RestClient restClient = RestClient.builder(
-                new HttpHost(host, port,http)).build();
-        ElasticsearchTransport transport = new RestClientTransport(
-                restClient, new JacksonJsonpMapper());
-        return new ElasticsearchClient(transport);
-    }
-}
@@ -1,14 +1,9 @@
 package com.example.elasticsearch.config;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.json.jackson.JacksonJsonpMapper;
-import co.elastic.clients.transport.ElasticsearchTransport;
-import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearch.transport.AsyncBridgeTransport;
+import com.example.elasticsearch.transport.DocumentWriteListener;
 import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -33,23 +28,39 @@ public class EsClientConfig {
 
 
     /**
-     * 多个IP逗号隔开
+     * 多个IP逗号隔开，未配置时使用 elasticsearch.host / port / http 指定的单个节点
      */
-    @Value("${elasticsearch.hosts}")
+    @Value("${elasticsearch.hosts:${elasticsearch.host:127.0.0.1}:${elasticsearch.port:9200}}")
     private String hosts;
-    @Value("${elasticsearch.username}")
+    @Value("${elasticsearch.http:http}")
+    private String scheme;
+    @Value("${elasticsearch.username:}")
     private String username;
-    @Value("${elasticsearch.password}")
+    @Value("${elasticsearch.password:}")
     private String password;
 
     /**
-     * 同步方式
+     * 底层 RestClient，同步客户端与原始 JSON 透传查询共用同一个连接池
+     *
+     * @return RestClient
+     */
+    @Bean(destroyMethod = "close")
+    public RestClient restClient(EsClientFactory esClientFactory) {
+        // Create the low-level client
+        return esClientFactory.restClient(toHttpHost(), username, password);
+    }
+
+    /**
+     * 同步方式，成功的写入会通知所有 {@link DocumentWriteListener}，配置了负载录制时请求会被录制，
+     * 配置了自定义路由的索引会自动补齐 routing，请求发出前经过准入控制；
+     * 虚拟线程模式下同步请求经由 {@link AsyncBridgeTransport} 发送，避免钉住载体线程。
+     * 装饰链由 {@link EsClientFactory} 构建，多集群的成员集群使用同样的构建方式
      *
      * @return ElasticsearchClient
      */
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
-        return new ElasticsearchClient(clientInit());
+    public ElasticsearchClient elasticsearchClient(RestClient restClient, EsClientFactory esClientFactory) {
+        return esClientFactory.elasticsearchClient(restClient);
     }
 
     /**
@@ -58,22 +69,10 @@ public class EsClientConfig {
      * @return ElasticsearchClient
      */
 //    @Bean
-//    public ElasticsearchAsyncClient elasticsearchAsyncClient() {
-//        return new ElasticsearchAsyncClient(clientInit());
+//    public ElasticsearchAsyncClient elasticsearchAsyncClient(RestClient restClient) {
+//        return new ElasticsearchAsyncClient(clientInit(restClient));
 //    }
 
-    private ElasticsearchTransport clientInit() {
-        final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-        // Create the low-level client
-        HttpHost[] httpHosts = toHttpHost();
-        RestClient restClient = RestClient.builder(httpHosts)
-                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider))
-                .build();
-        // Create the transport with a Jackson mapper
-        return new RestClientTransport(restClient, new JacksonJsonpMapper());
-    }
-
     /**
      * 解析配置的字符串hosts，转为HttpHost对象数组
      *
@@ -83,14 +82,24 @@ public class EsClientConfig {
         if (!StringUtils.hasLength(hosts)) {
             throw new RuntimeException("invalid elasticsearch configuration. elasticsearch.hosts不能为空！");
         }
+        return toHttpHost(hosts, scheme);
+    }
 
+    /**
+     * 解析逗号隔开的 host:port 列表，多集群配置也使用同样的格式
+     *
+     * @param hosts  多个IP逗号隔开
+     * @param scheme http / https
+     * @return HttpHost[]
+     */
+    public static HttpHost[] toHttpHost(String hosts, String scheme) {
         // 多个IP逗号隔开
         String[] hostArray = hosts.split(",");
         HttpHost[] httpHosts = new HttpHost[hostArray.length];
         HttpHost httpHost;
         for (int i = 0; i < hostArray.length; i++) {
-            String[] strings = hostArray[i].split(":");
-            httpHost = new HttpHost(strings[0], Integer.parseInt(strings[1]), "http");
+            String[] strings = hostArray[i].trim().split(":");
+            httpHost = new HttpHost(strings[0], Integer.parseInt(strings[1]), scheme);
             httpHosts[i] = httpHost;
         }
 
@@ -0,0 +1,159 @@
+package com.example.elasticsearch.config;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.loadtest.WorkloadRecorder;
+import com.example.elasticsearch.transport.AdmissionTransport;
+import com.example.elasticsearch.transport.AsyncBridgeTransport;
+import com.example.elasticsearch.transport.DocumentWriteListener;
+import com.example.elasticsearch.transport.RecordingTransport;
+import com.example.elasticsearch.transport.RoutingPolicy;
+import com.example.elasticsearch.transport.RoutingTransport;
+import com.example.elasticsearch.transport.WriteNotifyingTransport;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * RestClient 和 ElasticsearchClient 的统一构建方式，默认集群（{@link EsClientConfig}）和多集群的成员集群共用，
+ * 保证每个客户端都有相同的连接池大小、SO_KEEPALIVE 以及 transport 装饰链：
+ * RestClientTransport → AsyncBridge（虚拟线程）→ [集群自己的装饰，如健康统计] → 准入控制 → 负载录制 → 自定义路由 → 写入通知
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Component
+public class EsClientFactory {
+
+    private final RoutingPolicy routingPolicy;
+
+    private final AdmissionController admissionController;
+
+    private final ObjectProvider<DocumentWriteListener> writeListeners;
+
+    private final ObjectProvider<WorkloadRecorder> workloadRecorder;
+
+    /**
+     * 连接池大小，默认值与 RestClient 一致；虚拟线程模式下并发的阻塞调用数受连接池限制，需要相应调大
+     */
+    @Value("${elasticsearch.max-conn-total:30}")
+    private int maxConnTotal;
+
+    @Value("${elasticsearch.max-conn-per-route:10}")
+    private int maxConnPerRoute;
+
+    @Value("${elasticsearch.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    public EsClientFactory(RoutingPolicy routingPolicy, AdmissionController admissionController,
+                           ObjectProvider<DocumentWriteListener> writeListeners,
+                           ObjectProvider<WorkloadRecorder> workloadRecorder) {
+        this.routingPolicy = routingPolicy;
+        this.admissionController = admissionController;
+        this.writeListeners = writeListeners;
+        this.workloadRecorder = workloadRecorder;
+    }
+
+    /**
+     * 构建底层 RestClient
+     *
+     * @param hosts    节点
+     * @param username 用户名，为空时不认证
+     * @param password 密码
+     * @return RestClient
+     */
+    public RestClient restClient(HttpHost[] hosts, String username, String password) {
+        CredentialsProvider credentialsProvider = null;
+        if (StringUtils.hasLength(username)) {
+            credentialsProvider = new BasicCredentialsProvider();
+            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+        }
+        CredentialsProvider credentials = credentialsProvider;
+        return RestClient.builder(hosts)
+                .setHttpClientConfigCallback(httpClientBuilder -> {
+                    if (credentials != null) {
+                        httpClientBuilder.setDefaultCredentialsProvider(credentials);
+                    }
+                    return httpClientBuilder
+                            .setMaxConnTotal(maxConnTotal)
+                            .setMaxConnPerRoute(maxConnPerRoute)
+                            // 预热建立的连接在空闲期间不被中间设备断开
+                            .setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build());
+                })
+                .build();
+    }
+
+    /**
+     * 在 RestClient 之上构建带完整装饰链的客户端
+     *
+     * @param restClient RestClient
+     * @return ElasticsearchClient
+     */
+    public ElasticsearchClient elasticsearchClient(RestClient restClient) {
+        return elasticsearchClient(restClient, UnaryOperator.identity());
+    }
+
+    /**
+     * 在 RestClient 之上构建带完整装饰链的客户端
+     *
+     * @param restClient RestClient
+     * @param inner      紧贴 RestClientTransport 的装饰，只统计请求本身，不含准入排队等时间
+     * @return ElasticsearchClient
+     */
+    public ElasticsearchClient elasticsearchClient(RestClient restClient, UnaryOperator<ElasticsearchTransport> inner) {
+        return elasticsearchClient(restClient, inner, admissionController);
+    }
+
+    /**
+     * 成员集群的准入控制，熔断和在途名额不与默认集群共用
+     *
+     * @param cluster 集群名称
+     * @return {@link AdmissionController}
+     */
+    public AdmissionController admissionController(String cluster) {
+        return admissionController.forCluster(cluster);
+    }
+
+    /**
+     * 在 RestClient 之上构建带完整装饰链的客户端，使用指定的准入控制
+     *
+     * @param restClient RestClient
+     * @param inner      紧贴 RestClientTransport 的装饰，只统计请求本身，不含准入排队等时间
+     * @param admission  准入控制
+     * @return ElasticsearchClient
+     */
+    public ElasticsearchClient elasticsearchClient(RestClient restClient, UnaryOperator<ElasticsearchTransport> inner,
+                                                   AdmissionController admission) {
+        // Create the transport with a Jackson mapper
+        RestClientTransport restClientTransport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+        // 桥接直接调用底层 RestClient，必须紧贴 RestClientTransport
+        ElasticsearchTransport transport = inner.apply(virtualThreads
+                ? new AsyncBridgeTransport(restClientTransport) : restClientTransport);
+        if (admission.isEnabled()) {
+            transport = new AdmissionTransport(transport, admission);
+        }
+        WorkloadRecorder recorder = workloadRecorder.getIfAvailable();
+        if (recorder != null) {
+            transport = new RecordingTransport(transport, recorder);
+        }
+        if (!routingPolicy.isEmpty()) {
+            transport = new RoutingTransport(transport, routingPolicy);
+        }
+        return new ElasticsearchClient(new WriteNotifyingTransport(transport,
+                () -> writeListeners.orderedStream().collect(Collectors.toList())));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.elasticsearch.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.Executor;
+
+/**
+ * ES 查询线程池配置
+ * 用于分页预取、并发查询等需要在调用线程之外执行的阻塞请求，以及攒批、定时刷新等延迟任务。
+ * elasticsearch.executor.virtual-threads=true 时 esQueryExecutor 改为每个任务一个虚拟线程，
+ * 由 src/main/java21 中的 VirtualThreadExecutorConfig 提供，需要在 JDK 21 上构建（java21 profile）；
+ * 构建中没有该类时启动直接失败并给出原因，而不是在注入 esQueryExecutor 时报 NoSuchBeanDefinitionException
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Configuration
+public class ExecutorConfig {
+
+    static final String VIRTUAL_THREAD_CONFIG = "com.example.elasticsearch.config.VirtualThreadExecutorConfig";
+
+    @Value("${elasticsearch.executor.core-size:8}")
+    private int coreSize;
+
+    @Value("${elasticsearch.executor.max-size:32}")
+    private int maxSize;
+
+    @Value("${elasticsearch.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${elasticsearch.executor.scheduler-size:2}")
+    private int schedulerSize;
+
+    /**
+     * ES 查询线程池
+     *
+     * @return ThreadPoolTaskExecutor
+     */
+    @Bean
+    @ConditionalOnProperty(name = "elasticsearch.executor.virtual-threads", havingValue = "false", matchIfMissing = true)
+    public ThreadPoolTaskExecutor esQueryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("es-query-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * 开启了虚拟线程但当前构建不含 java21 的类（例如在 JDK 8 / 17 上以默认 profile 构建）
+     *
+     * @return 不返回，总是抛出异常
+     */
+    @Bean(name = "esQueryExecutor")
+    @ConditionalOnProperty(name = "elasticsearch.executor.virtual-threads", havingValue = "true")
+    @ConditionalOnMissingClass(VIRTUAL_THREAD_CONFIG)
+    public Executor virtualThreadsUnavailable() {
+        throw new IllegalStateException("elasticsearch.executor.virtual-threads=true 需要 java21 profile 编译的 "
+                + VIRTUAL_THREAD_CONFIG + "，当前构建中没有该类：请在 JDK 21 上以 mvn -Pjava21 package 构建，或关闭该配置");
+    }
+
+    /**
+     * ES 定时任务线程池，只负责触发，耗时的请求再交给 esQueryExecutor 执行
+     *
+     * @return ThreadPoolTaskScheduler
+     */
+    @Bean
+    public ThreadPoolTaskScheduler esScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulerSize);
+        scheduler.setThreadNamePrefix("es-scheduler-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.elasticsearch.config;
+
+import com.example.elasticsearch.loadtest.WorkloadRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * 负载录制配置，设置 elasticsearch.loadtest.record-file 后，经过 ElasticsearchClient 的请求会按抽样比例写入该文件
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Configuration
+public class LoadTestConfig {
+
+    /**
+     * 录制的 endpoint id，逗号分隔
+     */
+    @Value("${elasticsearch.loadtest.record-endpoints:es/search,es/msearch,es/count,es/mget,es/bulk}")
+    private String[] recordEndpoints;
+
+    @Value("${elasticsearch.loadtest.record-sample-rate:1.0}")
+    private double recordSampleRate;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "elasticsearch.loadtest", name = "record-file")
+    public WorkloadRecorder workloadRecorder(@Value("${elasticsearch.loadtest.record-file}") String recordFile) throws IOException {
+        return new WorkloadRecorder(Paths.get(recordFile), new LinkedHashSet<>(Arrays.asList(recordEndpoints)), recordSampleRate, new ObjectMapper());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.elasticsearch.controller;
+
+import com.example.elasticsearch.service.RawSearchService;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.elasticsearch.client.Response;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+/**
+ * 搜索接口
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    private final RawSearchService rawSearchService;
+
+    public SearchController(RawSearchService rawSearchService) {
+        this.rawSearchService = rawSearchService;
+    }
+
+    /**
+     * 原始 JSON 透传查询，ES 的响应字节经 filter_path 裁剪后直接写回，不做任何对象转换
+     * 例：POST /search/users/raw?filter_path=hits.hits._source
+     *
+     * @param index      索引，多个逗号隔开
+     * @param filterPath filter_path，不传则使用 elasticsearch.search.filter-path
+     * @param body       查询 DSL
+     * @return {@link ResponseEntity}<{@link StreamingResponseBody}>
+     * @throws IOException ioexception
+     */
+    @PostMapping("/{index}/raw")
+    public ResponseEntity<StreamingResponseBody> raw(@PathVariable String index,
+                                                     @RequestParam(value = "filter_path", required = false) String filterPath,
+                                                     @RequestBody(required = false) String body) throws IOException {
+        Response response = rawSearchService.search(index, body, filterPath);
+        HttpEntity entity = response.getEntity();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.getStatusLine().getStatusCode());
+        if (entity == null) {
+            return builder.build();
+        }
+        Header contentType = entity.getContentType();
+        builder.header(HttpHeaders.CONTENT_TYPE, contentType != null ? contentType.getValue() : MediaType.APPLICATION_JSON_VALUE);
+        if (entity.getContentLength() >= 0) {
+            builder.contentLength(entity.getContentLength());
+        }
+        return builder.body(entity::writeTo);
+    }
+}
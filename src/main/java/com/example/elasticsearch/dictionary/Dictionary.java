@@ -0,0 +1,266 @@
+package com.example.elasticsearch.dictionary;
+
+import com.example.elasticsearch.model.RangeBand;
+import com.example.elasticsearch.util.LongStringMap;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编码 -&gt; 标签字典，构建后不可变
+ * 整数编码存放在 {@link LongStringMap} 中，非数字编码存放在普通 HashMap 中；
+ * 区间规则按上界排序后二分查找，编码表未命中的数值再按区间取标签
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class Dictionary {
+
+    @Getter
+    private final String name;
+
+    private final LongStringMap codes;
+
+    private final Map<String, String> textCodes;
+
+    /**
+     * 区间上界（不含），升序；无上界的区间为 +Infinity
+     */
+    private final double[] upperBounds;
+
+    private final String[] bandLabels;
+
+    /**
+     * 值为 null 或空字符串时的标签
+     */
+    @Getter
+    private final String missingLabel;
+
+    /**
+     * 编码和区间都未命中时的标签，null 表示不翻译
+     */
+    @Getter
+    private final String defaultLabel;
+
+    private Dictionary(Builder builder) {
+        this.name = builder.name;
+        this.codes = new LongStringMap(builder.codes.size());
+        builder.codes.forEach(codes::put);
+        this.textCodes = new HashMap<>(builder.textCodes);
+        List<RangeBand> bands = new ArrayList<>(builder.bands);
+        bands.sort(Comparator.comparingDouble(band -> band.getUpperBound() == null ? Double.POSITIVE_INFINITY : band.getUpperBound()));
+        this.upperBounds = new double[bands.size()];
+        this.bandLabels = new String[bands.size()];
+        for (int i = 0; i < bands.size(); i++) {
+            Double upperBound = bands.get(i).getUpperBound();
+            upperBounds[i] = upperBound == null ? Double.POSITIVE_INFINITY : upperBound;
+            bandLabels[i] = bands.get(i).getLabel();
+        }
+        this.missingLabel = builder.missingLabel;
+        this.defaultLabel = builder.defaultLabel;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * 区间规则
+     *
+     * @return 按上界升序，无上界的区间 upperBound 为 null
+     */
+    public List<RangeBand> bands() {
+        List<RangeBand> bands = new ArrayList<>(upperBounds.length);
+        for (int i = 0; i < upperBounds.length; i++) {
+            bands.add(new RangeBand(upperBounds[i] == Double.POSITIVE_INFINITY ? null : upperBounds[i], bandLabels[i]));
+        }
+        return bands;
+    }
+
+    /**
+     * 翻译
+     *
+     * @param value 字段值，Number、String 或 Boolean
+     * @return 标签，未命中且没有 defaultLabel 时返回 null
+     */
+    public String translate(Object value) {
+        if (value == null || "".equals(value)) {
+            return missingLabel;
+        }
+        String label;
+        if (value instanceof Number) {
+            label = translate((Number) value);
+        } else {
+            String text = value.toString();
+            label = textCodes.get(text);
+            if (label == null) {
+                label = translateText(text);
+            }
+        }
+        return label != null ? label : defaultLabel;
+    }
+
+    /**
+     * 整数编码
+     *
+     * @param code 编码
+     * @return 标签，未命中时返回 null
+     */
+    public String translate(long code) {
+        String label = codes.get(code);
+        return label != null ? label : band(code);
+    }
+
+    /**
+     * 编码和区间规则的总数
+     *
+     * @return int
+     */
+    public int size() {
+        return codes.size() + textCodes.size() + upperBounds.length;
+    }
+
+    private String translate(Number number) {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return translate(number.longValue());
+        }
+        double value = number.doubleValue();
+        long integral = (long) value;
+        if (integral == value) {
+            return translate(integral);
+        }
+        return band(value);
+    }
+
+    private String translateText(String text) {
+        try {
+            return translate(Long.parseLong(text));
+        } catch (NumberFormatException ignored) {
+            // 不是整数编码，再尝试按小数匹配区间
+        }
+        if (upperBounds.length == 0) {
+            return null;
+        }
+        try {
+            return band(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String band(double value) {
+        if (upperBounds.length == 0 || Double.isNaN(value)) {
+            return null;
+        }
+        int index = Arrays.binarySearch(upperBounds, value);
+        // 上界不含，恰好等于上界时落入下一个区间；相同上界取第一个
+        if (index >= 0) {
+            while (index < upperBounds.length && upperBounds[index] == value) {
+                index++;
+            }
+        } else {
+            index = -index - 1;
+        }
+        return index < upperBounds.length ? bandLabels[index] : null;
+    }
+
+    /**
+     * 构建器
+     */
+    public static class Builder {
+
+        private final String name;
+
+        private final Map<Long, String> codes = new HashMap<>();
+
+        private final Map<String, String> textCodes = new HashMap<>();
+
+        private final List<RangeBand> bands = new ArrayList<>();
+
+        private String missingLabel;
+
+        private String defaultLabel;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 编码，整数形式的编码存入整数表
+         *
+         * @param code  编码
+         * @param label 标签
+         * @return this
+         */
+        public Builder entry(String code, String label) {
+            try {
+                return entry(Long.parseLong(code), label);
+            } catch (NumberFormatException e) {
+                textCodes.put(code, label);
+                return this;
+            }
+        }
+
+        public Builder entry(long code, String label) {
+            codes.put(code, label);
+            return this;
+        }
+
+        public Builder entries(Map<String, String> entries) {
+            entries.forEach(this::entry);
+            return this;
+        }
+
+        public Builder band(RangeBand band) {
+            bands.add(band);
+            return this;
+        }
+
+        public Builder bands(List<RangeBand> bands) {
+            this.bands.addAll(bands);
+            return this;
+        }
+
+        public Builder missingLabel(String missingLabel) {
+            this.missingLabel = missingLabel;
+            return this;
+        }
+
+        public Builder defaultLabel(String defaultLabel) {
+            this.defaultLabel = defaultLabel;
+            return this;
+        }
+
+        /**
+         * 合并另一份构建器的内容，同一编码以 other 为准；other 有区间规则时整体替换区间，
+         * 区间之间相互依赖，逐条追加会出现同一上界两个标签
+         *
+         * @param other 其他来源
+         * @return this
+         */
+        public Builder merge(Builder other) {
+            codes.putAll(other.codes);
+            textCodes.putAll(other.textCodes);
+            if (!other.bands.isEmpty()) {
+                bands.clear();
+                bands.addAll(other.bands);
+            }
+            if (other.missingLabel != null) {
+                missingLabel = other.missingLabel;
+            }
+            if (other.defaultLabel != null) {
+                defaultLabel = other.defaultLabel;
+            }
+            return this;
+        }
+
+        public Dictionary build() {
+            return new Dictionary(this);
+        }
+    }
+}
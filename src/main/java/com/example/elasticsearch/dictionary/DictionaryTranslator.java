@@ -0,0 +1,428 @@
+package com.example.elasticsearch.dictionary;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import com.example.elasticsearch.config.DictionaryProperties;
+import com.example.elasticsearch.model.RangeBand;
+import com.example.elasticsearch.model.TranslatedHit;
+import com.example.elasticsearch.service.IndexScanner;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字典翻译
+ * 替代查询时在数据节点上对每个命中执行的 scriptFields（见 ScriptTest.convertDictionaryValues）：
+ * 字典从 classpath 中的 JSON 文件和字典索引加载为不可变的 {@link Dictionary} 快照，后台定期刷新并整体替换；
+ * 查询结果反序列化后，按 {@link DictionaryProperties#getBindings()} 读取命中中的字段值并在客户端翻译为标签。
+ * 字典文件格式：
+ * <pre>
+ * {
+ *   "name": "age-band",
+ *   "missing": "--",
+ *   "default": "未知",
+ *   "entries": {"1": "男", "2": "女"},
+ *   "bands": [{"below": 20, "label": "青年"}, {"below": 40, "label": "中年"}, {"label": "**"}]
+ * }
+ * </pre>
+ * 字典索引通过 {@link IndexScanner} 以 doc values 读取，dictionary、code、label 需为 keyword（code 也可以是数值），below 为数值
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(2)
+public class DictionaryTranslator implements ApplicationRunner {
+
+    private static final List<String> INDEX_FIELDS = Arrays.asList("dictionary", "code", "below", "label");
+
+    private final DictionaryProperties properties;
+
+    private final IndexScanner indexScanner;
+
+    private final TaskScheduler scheduler;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * 类 -&gt; 属性名 -&gt; getter，读取 POJO 字段时不再每次内省
+     */
+    private final Map<Class<?>, Map<String, Method>> getters = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * 是否已成功从字典索引加载过，之后刷新失败时保留上一份快照
+     */
+    private volatile boolean indexLoaded;
+
+    public DictionaryTranslator(DictionaryProperties properties, IndexScanner indexScanner,
+                                @Qualifier("esScheduler") TaskScheduler scheduler) {
+        this.properties = properties;
+        this.indexScanner = indexScanner;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 启动时先加载文件字典，不依赖集群
+     *
+     * @throws IOException ioexception
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        publish(loadFiles());
+    }
+
+    /**
+     * 加载字典索引并定期刷新，集群不可用时只使用文件字典
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!StringUtils.hasText(properties.getIndex())) {
+            return;
+        }
+        refreshQuietly();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly,
+                Instant.now().plus(properties.getRefreshInterval()), properties.getRefreshInterval());
+    }
+
+    /**
+     * 重新加载文件和字典索引，成功后整体替换快照
+     *
+     * @throws IOException 读取文件或字典索引失败，此时保留上一份快照
+     */
+    public synchronized void refresh() throws IOException {
+        Map<String, Dictionary.Builder> builders = loadFiles();
+        String index = properties.getIndex();
+        if (StringUtils.hasText(index)) {
+            try {
+                loadIndex(index, builders);
+                indexLoaded = true;
+            } catch (IOException | RuntimeException e) {
+                if (!indexLoaded) {
+                    // 还没有索引中的内容可以保留，至少让文件字典生效
+                    publish(builders);
+                }
+                throw e;
+            }
+        }
+        publish(builders);
+    }
+
+    /**
+     * 获取字典
+     *
+     * @param name 字典名称
+     * @return 不存在时返回 null
+     */
+    public Dictionary dictionary(String name) {
+        return snapshot.dictionaries.get(name);
+    }
+
+    /**
+     * 已加载的字典名称
+     *
+     * @return 字典名称
+     */
+    public List<String> dictionaries() {
+        return new ArrayList<>(snapshot.dictionaries.keySet());
+    }
+
+    /**
+     * 翻译查询结果
+     *
+     * @param index    查询的索引（或别名），用于查找 bindings；未配置时按命中的 _index 查找
+     * @param response 查询结果
+     * @return 与命中顺序一致的翻译结果
+     */
+    public <T> List<TranslatedHit<T>> translate(String index, SearchResponse<T> response) {
+        return translate(index, response.hits().hits());
+    }
+
+    /**
+     * 翻译命中，字段值优先从 source 读取，source 中没有时读取 fields（docvalue_fields / fields）
+     *
+     * @param index 查询的索引（或别名）
+     * @param hits  命中
+     * @return 与命中顺序一致的翻译结果
+     */
+    public <T> List<TranslatedHit<T>> translate(String index, List<Hit<T>> hits) {
+        Snapshot current = snapshot;
+        List<TranslatedHit<T>> translated = new ArrayList<>(hits.size());
+        for (Hit<T> hit : hits) {
+            List<Binding> bindings = current.bindings(index, hit.index());
+            Map<String, String> labels = bindings.isEmpty() ? Collections.emptyMap() : new HashMap<>(bindings.size() * 2);
+            for (Binding binding : bindings) {
+                Object value = read(hit.source(), binding.path);
+                if (value == null) {
+                    value = first(hit.fields().get(binding.field));
+                }
+                String label = binding.dictionary.translate(value);
+                if (label != null) {
+                    labels.put(binding.field, label);
+                }
+            }
+            translated.add(new TranslatedHit<>(hit.index(), hit.id(), hit.source(), labels));
+        }
+        return translated;
+    }
+
+    /**
+     * 翻译单个文档
+     *
+     * @param index  索引（或别名）
+     * @param source 文档，POJO 或 Map
+     * @return 字段 -&gt; 标签
+     */
+    public Map<String, String> labels(String index, Object source) {
+        List<Binding> bindings = snapshot.bindings(index, null);
+        Map<String, String> labels = new HashMap<>(bindings.size() * 2);
+        for (Binding binding : bindings) {
+            String label = binding.dictionary.translate(read(source, binding.path));
+            if (label != null) {
+                labels.put(binding.field, label);
+            }
+        }
+        return labels;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            log.error("刷新字典失败，index:{}，继续使用上一份字典", properties.getIndex(), e);
+        }
+    }
+
+    private Map<String, Dictionary.Builder> loadFiles() throws IOException {
+        Map<String, Dictionary.Builder> builders = new LinkedHashMap<>();
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(properties.getLocation());
+        for (Resource resource : resources) {
+            DictionaryFile file;
+            try (InputStream in = resource.getInputStream()) {
+                file = objectMapper.readValue(in, DictionaryFile.class);
+            }
+            String name = StringUtils.hasText(file.getName()) ? file.getName()
+                    : StringUtils.stripFilenameExtension(String.valueOf(resource.getFilename()));
+            Dictionary.Builder builder = Dictionary.builder(name)
+                    .entries(file.getEntries())
+                    .missingLabel(file.getMissing())
+                    .defaultLabel(file.getDefaultLabel());
+            for (DictionaryFile.Band band : file.getBands()) {
+                builder.band(new RangeBand(band.getBelow(), band.getLabel()));
+            }
+            if (builders.containsKey(name)) {
+                log.warn("存在同名字典 {}，合并 {}", name, resource);
+                builders.get(name).merge(builder);
+            } else {
+                builders.put(name, builder);
+            }
+        }
+        return builders;
+    }
+
+    private void loadIndex(String index, Map<String, Dictionary.Builder> builders) throws IOException {
+        Map<String, Dictionary.Builder> fromIndex = new LinkedHashMap<>();
+        try {
+            indexScanner.scan(index, null, INDEX_FIELDS, 1, hit -> {
+                String name = first(hit.fields().get("dictionary"));
+                String label = first(hit.fields().get("label"));
+                if (name == null || label == null) {
+                    return;
+                }
+                String code = first(hit.fields().get("code"));
+                String below = first(hit.fields().get("below"));
+                synchronized (fromIndex) {
+                    Dictionary.Builder builder = fromIndex.computeIfAbsent(name, Dictionary::builder);
+                    if (code != null) {
+                        builder.entry(code, label);
+                    } else {
+                        builder.band(new RangeBand(below == null ? null : Double.valueOf(below), label));
+                    }
+                }
+            });
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                log.warn("字典索引 {} 不存在，只使用文件字典", index);
+                return;
+            }
+            throw e;
+        }
+        fromIndex.forEach((name, builder) -> builders.merge(name, builder, Dictionary.Builder::merge));
+    }
+
+    private void publish(Map<String, Dictionary.Builder> builders) {
+        Map<String, Dictionary> dictionaries = new HashMap<>(builders.size() * 2);
+        builders.forEach((name, builder) -> dictionaries.put(name, builder.build()));
+        Map<String, List<Binding>> bindings = new HashMap<>();
+        properties.getBindings().forEach((index, fields) -> fields.forEach((field, name) -> {
+            Dictionary dictionary = dictionaries.get(name);
+            if (dictionary == null) {
+                log.warn("字典 {} 不存在，跳过 {}.{}", name, index, field);
+                return;
+            }
+            bindings.computeIfAbsent(index, key -> new ArrayList<>()).add(new Binding(field, dictionary));
+        }));
+        snapshot = new Snapshot(dictionaries, bindings);
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        dictionaries.forEach((name, dictionary) -> sizes.put(name, dictionary.size()));
+        log.info("加载字典 {} 个，编码数:{}", dictionaries.size(), sizes);
+    }
+
+    private Object read(Object source, String[] path) {
+        Object current = source;
+        for (String segment : path) {
+            if (current == null) {
+                return null;
+            }
+            if (current instanceof Map) {
+                current = ((Map<?, ?>) current).get(segment);
+                continue;
+            }
+            Method getter = getters.computeIfAbsent(current.getClass(), DictionaryTranslator::introspect).get(segment);
+            if (getter == null) {
+                return null;
+            }
+            try {
+                current = getter.invoke(current);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to read " + segment + " from " + current.getClass().getName(), e);
+            }
+        }
+        return current;
+    }
+
+    private static Map<String, Method> introspect(Class<?> clazz) {
+        Map<String, Method> methods = new HashMap<>();
+        for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(clazz)) {
+            if (descriptor.getReadMethod() != null && !"class".equals(descriptor.getName())) {
+                methods.put(descriptor.getName(), descriptor.getReadMethod());
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * fields 中的值总是数组，取第一个
+     */
+    private static String first(JsonData data) {
+        if (data == null) {
+            return null;
+        }
+        JsonValue value = data.toJson();
+        if (value instanceof JsonArray) {
+            JsonArray array = (JsonArray) value;
+            if (array.isEmpty()) {
+                return null;
+            }
+            value = array.get(0);
+        }
+        if (value instanceof JsonString) {
+            return ((JsonString) value).getString();
+        }
+        if (value instanceof JsonNumber) {
+            return value.toString();
+        }
+        return value == JsonValue.NULL ? null : value.toString();
+    }
+
+    /**
+     * 字典快照，刷新时整体替换，翻译过程中不加锁
+     */
+    private static class Snapshot {
+
+        private final Map<String, Dictionary> dictionaries;
+
+        private final Map<String, List<Binding>> bindings;
+
+        private Snapshot(Map<String, Dictionary> dictionaries, Map<String, List<Binding>> bindings) {
+            this.dictionaries = dictionaries;
+            this.bindings = bindings;
+        }
+
+        private List<Binding> bindings(String index, String hitIndex) {
+            List<Binding> found = index == null ? null : bindings.get(index);
+            if (found == null && hitIndex != null) {
+                found = bindings.get(hitIndex);
+            }
+            return found == null ? Collections.emptyList() : found;
+        }
+    }
+
+    private static class Binding {
+
+        private final String field;
+
+        private final String[] path;
+
+        private final Dictionary dictionary;
+
+        private Binding(String field, Dictionary dictionary) {
+            this.field = field;
+            this.path = field.split("\\.");
+            this.dictionary = dictionary;
+        }
+    }
+
+    /**
+     * 字典文件
+     */
+    @Data
+    static class DictionaryFile {
+
+        private String name;
+
+        private String missing;
+
+        @JsonProperty("default")
+        private String defaultLabel;
+
+        private Map<String, String> entries = new LinkedHashMap<>();
+
+        private List<Band> bands = new ArrayList<>();
+
+        @Data
+        static class Band {
+
+            private Double below;
+
+            private String label;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.elasticsearch.exception;
+
+import com.example.elasticsearch.admission.OperationClass;
+import lombok.Getter;
+
+/**
+ * 请求未通过客户端准入控制，没有发往集群
+ * 调用方可以稍后重试，或者对非关键请求直接放弃
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final OperationClass operationClass;
+
+    private final Reason reason;
+
+    public AdmissionRejectedException(OperationClass operationClass, Reason reason) {
+        super("Request rejected by admission control [" + operationClass + "][" + reason + "]");
+        this.operationClass = operationClass;
+        this.reason = reason;
+    }
+
+    public enum Reason {
+
+        /**
+         * 令牌桶在等待时间内没有令牌
+         */
+        RATE_LIMITED,
+
+        /**
+         * 类别并发已满，或者在途总数已满
+         */
+        BULKHEAD_FULL,
+
+        /**
+         * 熔断中
+         */
+        CIRCUIT_OPEN,
+
+        /**
+         * 等待时线程被中断
+         */
+        INTERRUPTED
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.elasticsearch.exception;
+
+import lombok.Getter;
+
+/**
+ * 按路由键分片的索引上缺少 routing，或者显式传入的 routing 与文档的路由键不一致
+ * 这类请求发出去不会报错，但会读不到文档或在另一个分片上写出重复文档，因此在客户端直接拒绝
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class RoutingException extends RuntimeException {
+
+    private final String index;
+
+    /**
+     * 文档 id，查询时为空
+     */
+    private final String id;
+
+    public RoutingException(String index, String id, String message) {
+        super(message + " [" + index + "]" + (id == null ? "" : "[" + id + "]"));
+        this.index = index;
+        this.id = id;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.elasticsearch.exception;
+
+import com.example.elasticsearch.model.TaskProgress;
+import lombok.Getter;
+
+/**
+ * 异步任务失败，包含失败时的进度
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class TaskFailedException extends RuntimeException {
+
+    private final transient TaskProgress progress;
+
+    public TaskFailedException(String message, TaskProgress progress) {
+        super(message);
+        this.progress = progress;
+    }
+}
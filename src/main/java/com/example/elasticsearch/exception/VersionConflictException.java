@@ -0,0 +1,29 @@
+package com.example.elasticsearch.exception;
+
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 乐观并发控制重试次数用尽后仍然版本冲突
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class VersionConflictException extends RuntimeException {
+
+    private final String index;
+
+    /**
+     * 未能写入的文档 id
+     */
+    private final Collection<String> ids;
+
+    public VersionConflictException(String index, Collection<String> ids, int attempts) {
+        super("Version conflict on [" + index + "] " + ids + " after " + attempts + " attempts");
+        this.index = index;
+        this.ids = Collections.unmodifiableCollection(ids);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.elasticsearch.loadtest;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonData;
+import com.example.elasticsearch.model.Products;
+import com.example.elasticsearch.model.RecordedRequest;
+import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.util.EsJsonUtils;
+import com.example.elasticsearch.util.ZipfGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * 生成压测用的合成数据和查询负载
+ * 姓名、标签等取值按 Zipf 分布从词表中抽取，skew 越大热点越集中，同一个种子生成的数据完全相同；
+ * 合成查询使用相同的词表和分布，热点查询命中热点数据，用于在没有录制负载时回放
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class CorpusGenerator {
+
+    private static final String[] SEX = {"男", "女"};
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Value("${elasticsearch.loadtest.generate.batch-size:1000}")
+    private int batchSize;
+
+    public CorpusGenerator(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * 生成 {@link User}，id 为 0 ~ count-1
+     *
+     * @param index 索引
+     * @param count 文档数
+     * @param skew  姓名分布的 Zipf 指数
+     * @param seed  随机种子
+     * @return 写入失败的文档数
+     * @throws IOException ioexception
+     */
+    public long generateUsers(String index, int count, double skew, long seed) throws IOException {
+        ZipfGenerator names = new ZipfGenerator(vocabularySize(count), skew);
+        Random random = new Random(seed);
+        return generate(index, count, i -> new User(String.valueOf(i), "name-" + names.next(random),
+                18 + random.nextInt(53), SEX[random.nextInt(SEX.length)]));
+    }
+
+    /**
+     * 生成 {@link Products}，每个商品 1 ~ 3 个标签
+     *
+     * @param index 索引
+     * @param count 文档数
+     * @param skew  标签分布的 Zipf 指数
+     * @param seed  随机种子
+     * @return 写入失败的文档数
+     * @throws IOException ioexception
+     */
+    public long generateProducts(String index, int count, double skew, long seed) throws IOException {
+        ZipfGenerator tags = new ZipfGenerator(vocabularySize(count), skew);
+        Random random = new Random(seed);
+        return generate(index, count, i -> {
+            Products products = new Products();
+            products.setId(String.valueOf(i));
+            products.setCounter(random.nextInt(1000));
+            Set<String> values = new LinkedHashSet<>();
+            int size = 1 + random.nextInt(3);
+            while (values.size() < size) {
+                values.add("tag-" + tags.next(random));
+            }
+            products.setTags(new ArrayList<>(values));
+            return products;
+        });
+    }
+
+    /**
+     * 生成针对 {@link #generateUsers} 数据的查询负载：70% 按姓名 term 查询，20% 年龄范围查询，10% 按性别聚合
+     *
+     * @param index 索引
+     * @param count 请求数
+     * @param users 数据量，决定词表大小
+     * @param skew  查询姓名分布的 Zipf 指数
+     * @param seed  随机种子
+     * @return {@link List}<{@link RecordedRequest}>
+     */
+    public List<RecordedRequest> syntheticUserSearches(String index, int count, int users, double skew, long seed) {
+        ZipfGenerator names = new ZipfGenerator(vocabularySize(users), skew);
+        Random random = new Random(seed);
+        List<RecordedRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(10);
+            SearchRequest request;
+            if (kind < 7) {
+                String name = "name-" + names.next(random);
+                request = SearchRequest.of(s -> s.index(index)
+                        .query(q -> q.term(t -> t.field("name").value(name))));
+            } else if (kind < 9) {
+                int from = 18 + random.nextInt(45);
+                request = SearchRequest.of(s -> s.index(index)
+                        .query(q -> q.range(r -> r.field("age").gte(JsonData.of(from)).lt(JsonData.of(from + 5))))
+                        .size(20));
+            } else {
+                request = SearchRequest.of(s -> s.index(index)
+                        .size(0)
+                        .aggregations("sex", a -> a.terms(t -> t.field("sex"))));
+            }
+            RecordedRequest recorded = new RecordedRequest();
+            recorded.setEndpoint("es/search");
+            recorded.setMethod("POST");
+            recorded.setPath("/" + index + "/_search");
+            recorded.setParams(Collections.singletonMap("typed_keys", "true"));
+            recorded.setBody(EsJsonUtils.toJson(request, elasticsearchClient._transport().jsonpMapper()));
+            requests.add(recorded);
+        }
+        return requests;
+    }
+
+    private long generate(String index, int count, IntFunction<Object> document) throws IOException {
+        long failed = 0;
+        List<BulkOperation> operations = new ArrayList<>(batchSize);
+        for (int i = 0; i < count; i++) {
+            String id = String.valueOf(i);
+            Object doc = document.apply(i);
+            operations.add(BulkOperation.of(b -> b.index(o -> o.index(index).id(id).document(doc))));
+            if (operations.size() >= batchSize || i == count - 1) {
+                BulkResponse response = elasticsearchClient.bulk(b -> b.operations(operations));
+                if (response.errors()) {
+                    failed += response.items().stream().filter(item -> item.error() != null).count();
+                }
+                operations.clear();
+            }
+        }
+        log.info("生成数据 index:{}，count:{}，失败:{}", index, count, failed);
+        return failed;
+    }
+
+    /**
+     * 词表大小为数据量的 1/10，至少 10 个
+     */
+    private static int vocabularySize(int count) {
+        return Math.max(10, count / 10);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.elasticsearch.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 回放结果，按 endpoint 分别统计延迟分布，单位微秒
+ * responseTime 从计划发送时间开始计算，包含请求因目标变慢而推迟发送的排队时间，即协调遗漏（coordinated omission）修正后的延迟；
+ * serviceTime 从实际发送时间开始计算，只反映单个请求本身的耗时，两者差距越大说明目标越接近饱和。
+ * 超过未完成请求上限被丢弃（shed）的请求计为错误，responseTime 记为从计划时间到回放结束，serviceTime 不记录，
+ * 否则目标越慢丢弃越多，p99 反而越好看
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class LoadReport {
+
+    /**
+     * 汇总所有 endpoint 的统计名
+     */
+    public static final String ALL = "all";
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private volatile long elapsedNanos;
+
+    void record(String endpoint, long responseNanos, long serviceNanos, boolean error) {
+        for (Stats target : new Stats[]{stats(endpoint), stats(ALL)}) {
+            target.responseTime.recordValue(clamp(responseNanos));
+            target.serviceTime.recordValue(clamp(serviceNanos));
+            if (error) {
+                target.errors.increment();
+            }
+        }
+    }
+
+    void recordShed(String endpoint, long responseNanos) {
+        for (Stats target : new Stats[]{stats(endpoint), stats(ALL)}) {
+            target.responseTime.recordValue(clamp(responseNanos));
+            target.errors.increment();
+            target.shed.increment();
+        }
+    }
+
+    void elapsed(long nanos) {
+        this.elapsedNanos = nanos;
+    }
+
+    /**
+     * 修正后的延迟分布
+     */
+    public Histogram responseTime(String endpoint) {
+        return stats(endpoint).responseTime;
+    }
+
+    /**
+     * 未修正的延迟分布
+     */
+    public Histogram serviceTime(String endpoint) {
+        return stats(endpoint).serviceTime;
+    }
+
+    /**
+     * 计划发出的请求数，包含失败和被丢弃的请求
+     */
+    public long count(String endpoint) {
+        return stats(endpoint).responseTime.getTotalCount();
+    }
+
+    /**
+     * 失败的请求数，包含被丢弃的请求
+     */
+    public long errors(String endpoint) {
+        return stats(endpoint).errors.sum();
+    }
+
+    /**
+     * 超过未完成请求上限被丢弃的请求数
+     */
+    public long shed(String endpoint) {
+        return stats(endpoint).shed.sum();
+    }
+
+    /**
+     * 实际发出并完成的请求速率，不含被丢弃的请求
+     */
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : (count(ALL) - shed(ALL)) * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 文本格式的汇总，单位毫秒
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format("%-12s %8s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "shed", "p50", "p90", "p99", "p99.9", "max", "p99(svc)"));
+        for (Map.Entry<String, Stats> entry : new TreeMap<>(stats).entrySet()) {
+            Histogram response = entry.getValue().responseTime;
+            sb.append(String.format("%-12s %8d %6d %6d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), response.getTotalCount(), entry.getValue().errors.sum(), entry.getValue().shed.sum(),
+                    millis(response.getValueAtPercentile(50)), millis(response.getValueAtPercentile(90)),
+                    millis(response.getValueAtPercentile(99)), millis(response.getValueAtPercentile(99.9)),
+                    millis(response.getMaxValue()), millis(entry.getValue().serviceTime.getValueAtPercentile(99))));
+        }
+        sb.append(String.format("throughput: %.1f req/s", throughput()));
+        return sb.toString();
+    }
+
+    /**
+     * 每个 endpoint 输出两份 .hgrm 百分位分布，可以用 HdrHistogram 的 plotter 作图
+     *
+     * @param dir 输出目录
+     * @throws IOException ioexception
+     */
+    public void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            String name = entry.getKey().replace('/', '_');
+            write(entry.getValue().responseTime, dir.resolve(name + ".hgrm"));
+            write(entry.getValue().serviceTime, dir.resolve(name + "-service.hgrm"));
+        }
+        Files.write(dir.resolve("summary.txt"), summary().getBytes());
+    }
+
+    private static void write(Histogram histogram, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            // 以毫秒输出
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private Stats stats(String endpoint) {
+        return stats.computeIfAbsent(endpoint, e -> new Stats());
+    }
+
+    private static long clamp(long nanos) {
+        return Math.max(0, Math.min(HIGHEST_MICROS, nanos / 1000));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Stats {
+
+        final Histogram responseTime = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+        final LongAdder errors = new LongAdder();
+
+        final LongAdder shed = new LongAdder();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.elasticsearch.loadtest;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.elasticsearch.model.RecordedRequest;
+import com.example.elasticsearch.model.ReplayPlan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 压测入口，使用 loadtest profile 启动：按配置生成数据、加载录制的负载（未配置时生成合成查询）、回放并输出报告，结束后退出
+ * 配置见 application-loadtest.yml
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class LoadTestRunner implements ApplicationRunner {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final CorpusGenerator corpusGenerator;
+
+    private final WorkloadReplayer workloadReplayer;
+
+    private final ConfigurableApplicationContext context;
+
+    @Value("${elasticsearch.loadtest.index:users}")
+    private String index;
+
+    @Value("${elasticsearch.loadtest.generate.users:0}")
+    private int generateUsers;
+
+    @Value("${elasticsearch.loadtest.generate.products:0}")
+    private int generateProducts;
+
+    @Value("${elasticsearch.loadtest.generate.products-index:products}")
+    private String productsIndex;
+
+    @Value("${elasticsearch.loadtest.generate.skew:1.1}")
+    private double skew;
+
+    @Value("${elasticsearch.loadtest.seed:42}")
+    private long seed;
+
+    /**
+     * 录制的负载文件，为空时使用合成的 users 查询
+     */
+    @Value("${elasticsearch.loadtest.workload-file:}")
+    private String workloadFile;
+
+    @Value("${elasticsearch.loadtest.synthetic-requests:10000}")
+    private int syntheticRequests;
+
+    @Value("${elasticsearch.loadtest.arrival:POISSON}")
+    private ReplayPlan.Arrival arrival;
+
+    @Value("${elasticsearch.loadtest.rate:100}")
+    private double rate;
+
+    @Value("${elasticsearch.loadtest.speed:1}")
+    private double speed;
+
+    @Value("${elasticsearch.loadtest.warmup:10s}")
+    private Duration warmup;
+
+    @Value("${elasticsearch.loadtest.duration:60s}")
+    private Duration duration;
+
+    @Value("${elasticsearch.loadtest.max-outstanding:1000}")
+    private int maxOutstanding;
+
+    @Value("${elasticsearch.loadtest.report-dir:target/loadtest}")
+    private String reportDir;
+
+    @Value("${elasticsearch.loadtest.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    public LoadTestRunner(ElasticsearchClient elasticsearchClient, CorpusGenerator corpusGenerator,
+                          WorkloadReplayer workloadReplayer, ConfigurableApplicationContext context) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.corpusGenerator = corpusGenerator;
+        this.workloadReplayer = workloadReplayer;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (generateUsers > 0) {
+            corpusGenerator.generateUsers(index, generateUsers, skew, seed);
+            elasticsearchClient.indices().refresh(r -> r.index(index));
+        }
+        if (generateProducts > 0) {
+            corpusGenerator.generateProducts(productsIndex, generateProducts, skew, seed);
+            elasticsearchClient.indices().refresh(r -> r.index(productsIndex));
+        }
+        List<RecordedRequest> workload = StringUtils.hasText(workloadFile)
+                ? WorkloadRecorder.load(Paths.get(workloadFile), new ObjectMapper())
+                : corpusGenerator.syntheticUserSearches(index, syntheticRequests,
+                Math.max(generateUsers, 10), skew, seed);
+
+        ReplayPlan plan = new ReplayPlan();
+        plan.setArrival(arrival);
+        plan.setRatePerSecond(rate);
+        plan.setSpeed(speed);
+        plan.setWarmup(warmup);
+        plan.setDuration(duration);
+        plan.setMaxOutstanding(maxOutstanding);
+        plan.setSeed(seed);
+        LoadReport report = workloadReplayer.replay(workload, plan);
+        report.write(Paths.get(reportDir));
+        log.info("压测报告已写入 {}", reportDir);
+
+        if (exitOnFinish) {
+            // 在 runner 之外关闭上下文，线程池等非守护线程随之结束
+            new Thread(() -> System.exit(SpringApplication.exit(context)), "loadtest-exit").start();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.elasticsearch.loadtest;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.transport.Endpoint;
+import com.example.elasticsearch.model.RecordedRequest;
+import com.example.elasticsearch.util.EsJsonUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.stream.JsonGenerator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 把经过客户端的请求按 endpoint 抽样写入负载文件（每行一个 {@link RecordedRequest}），供 {@link WorkloadReplayer} 回放
+ * 只记录请求的形状，不记录响应
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+public class WorkloadRecorder implements Closeable {
+
+    /**
+     * 每写入多少条刷一次盘
+     */
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectMapper objectMapper;
+
+    private final Set<String> endpoints;
+
+    private final double sampleRate;
+
+    private final BufferedWriter writer;
+
+    /**
+     * 写文件在调用方线程上执行，用 ReentrantLock 而不是 synchronized，虚拟线程等待时不会钉住载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long startNanos = System.nanoTime();
+
+    private long recorded;
+
+    /**
+     * @param file         负载文件，已存在时追加
+     * @param endpoints    需要录制的 endpoint id，例如 es/search、es/bulk
+     * @param sampleRate   抽样比例 0~1
+     * @param objectMapper mapper
+     * @throws IOException ioexception
+     */
+    public WorkloadRecorder(Path file, Set<String> endpoints, double sampleRate, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.endpoints = endpoints;
+        this.sampleRate = sampleRate;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        log.info("开始录制请求到 {}，endpoints:{}，抽样比例:{}", file, endpoints, sampleRate);
+    }
+
+    /**
+     * 录制一次请求，序列化失败只记录日志
+     *
+     * @param request  请求
+     * @param endpoint endpoint
+     * @param mapper   客户端的 mapper
+     */
+    public <RequestT> void record(RequestT request, Endpoint<RequestT, ?, ?> endpoint, JsonpMapper mapper) {
+        if (!endpoints.contains(endpoint.id())
+                || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        RecordedRequest recordedRequest = new RecordedRequest();
+        recordedRequest.setOffsetMicros((System.nanoTime() - startNanos) / 1000);
+        recordedRequest.setEndpoint(endpoint.id());
+        recordedRequest.setMethod(endpoint.method(request));
+        recordedRequest.setPath(endpoint.requestUrl(request));
+        recordedRequest.setParams(new LinkedHashMap<>(endpoint.queryParameters(request)));
+        Object body = endpoint.body(request);
+        if (body != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            if (body instanceof NdJsonpSerializable) {
+                EsJsonUtils.writeNdJson((NdJsonpSerializable) body, mapper, out);
+            } else {
+                JsonGenerator generator = mapper.jsonProvider().createGenerator(out);
+                mapper.serialize(body, generator);
+                generator.close();
+            }
+            recordedRequest.setBody(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+        try {
+            String line = objectMapper.writeValueAsString(recordedRequest);
+            lock.lock();
+            try {
+                writer.write(line);
+                writer.newLine();
+                if (++recorded % FLUSH_EVERY == 0) {
+                    writer.flush();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            log.warn("录制请求失败:{}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            writer.close();
+            log.info("请求录制结束，共 {} 条", recorded);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取负载文件
+     *
+     * @param file         负载文件
+     * @param objectMapper mapper
+     * @return {@link List}<{@link RecordedRequest}>，按 offset 排序
+     * @throws IOException ioexception
+     */
+    public static List<RecordedRequest> load(Path file, ObjectMapper objectMapper) throws IOException {
+        List<RecordedRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    requests.add(objectMapper.readValue(line, RecordedRequest.class));
+                }
+            }
+        }
+        requests.sort((a, b) -> Long.compare(a.getOffsetMicros(), b.getOffsetMicros()));
+        return requests;
+    }
+}
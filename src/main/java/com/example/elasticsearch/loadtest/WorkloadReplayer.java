@@ -0,0 +1,208 @@
+package com.example.elasticsearch.loadtest;
+
+import com.example.elasticsearch.model.RecordedRequest;
+import com.example.elasticsearch.model.ReplayPlan;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环回放负载
+ * 请求按 {@link ReplayPlan} 计算出的计划时间通过 RestClient 异步发出，不等待前一个请求完成，
+ * 延迟从计划时间开始计算，目标变慢时排队的时间会体现在 p99 上，而不是像闭环压测那样被降低的发送速率掩盖。
+ * 注意 RestClient 连接池的并发上限（默认每个节点 10 个连接）也属于被测的客户端配置。
+ * 超过 maxOutstanding 被丢弃的请求在回放结束后按计划时间计入延迟分布和错误数
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class WorkloadReplayer {
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    private static final Set<String> NDJSON_ENDPOINTS = new HashSet<>(Arrays.asList("es/bulk", "es/msearch", "es/msearch_template"));
+
+    private final RestClient restClient;
+
+    public WorkloadReplayer(RestClient restClient) {
+        this.restClient = restClient;
+    }
+
+    /**
+     * 回放，阻塞直到计划时间结束且所有请求完成
+     *
+     * @param workload 负载，按顺序循环使用
+     * @param plan     回放计划
+     * @return {@link LoadReport}
+     * @throws InterruptedException 中断
+     */
+    public LoadReport replay(List<RecordedRequest> workload, ReplayPlan plan) throws InterruptedException {
+        if (workload.isEmpty()) {
+            throw new IllegalArgumentException("workload is empty");
+        }
+        byte[][] bodies = new byte[workload.size()][];
+        for (int i = 0; i < bodies.length; i++) {
+            String body = workload.get(i).getBody();
+            bodies[i] = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        }
+        Schedule schedule = new Schedule(workload, plan);
+        LoadReport report = new LoadReport();
+        AtomicInteger outstanding = new AtomicInteger();
+        // 被丢弃请求的计划时间和对应的 workload 下标，只在发送线程上写入
+        long[] shedIntended = new long[16];
+        int[] shedIndex = new int[16];
+        int shed = 0;
+        long start = System.nanoTime();
+        long measureFrom = start + plan.getWarmup().toNanos();
+        long end = measureFrom + plan.getDuration().toNanos();
+        log.info("开始回放 {} 条请求，arrival:{}，rate:{}/s，speed:{}，warmup:{}，duration:{}", workload.size(),
+                plan.getArrival(), plan.getRatePerSecond(), plan.getSpeed(), plan.getWarmup(), plan.getDuration());
+        for (long k = 0; ; k++) {
+            long intended = start + schedule.offsetNanos(k);
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            int index = (int) (k % workload.size());
+            RecordedRequest recorded = workload.get(index);
+            boolean measured = intended >= measureFrom;
+            if (outstanding.get() >= plan.getMaxOutstanding()) {
+                if (measured) {
+                    if (shed == shedIntended.length) {
+                        shedIntended = Arrays.copyOf(shedIntended, shed << 1);
+                        shedIndex = Arrays.copyOf(shedIndex, shed << 1);
+                    }
+                    shedIntended[shed] = intended;
+                    shedIndex[shed++] = index;
+                }
+                continue;
+            }
+            outstanding.incrementAndGet();
+            long sent = System.nanoTime();
+            restClient.performRequestAsync(request(recorded, bodies[index]), new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    done(false);
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    done(true);
+                }
+
+                private void done(boolean error) {
+                    long now = System.nanoTime();
+                    if (measured) {
+                        report.record(recorded.getEndpoint(), now - intended, now - sent, error);
+                    }
+                    if (outstanding.decrementAndGet() == 0) {
+                        synchronized (outstanding) {
+                            outstanding.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        synchronized (outstanding) {
+            while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+                outstanding.wait(100);
+            }
+        }
+        if (outstanding.get() > 0) {
+            log.warn("回放结束时仍有 {} 个请求未完成", outstanding.get());
+        }
+        long finished = System.nanoTime();
+        for (int i = 0; i < shed; i++) {
+            report.recordShed(workload.get(shedIndex[i]).getEndpoint(), finished - shedIntended[i]);
+        }
+        if (shed > 0) {
+            log.warn("{} 个请求超过未完成上限 {} 被丢弃，已按错误计入延迟分布", shed, plan.getMaxOutstanding());
+        }
+        report.elapsed(finished - measureFrom);
+        log.info("回放结束\n{}", report.summary());
+        return report;
+    }
+
+    private static Request request(RecordedRequest recorded, byte[] body) {
+        Request request = new Request(recorded.getMethod(), recorded.getPath());
+        if (recorded.getParams() != null) {
+            recorded.getParams().forEach(request::addParameter);
+        }
+        if (body != null) {
+            request.setEntity(new ByteArrayEntity(body,
+                    NDJSON_ENDPOINTS.contains(recorded.getEndpoint()) ? NDJSON : ContentType.APPLICATION_JSON));
+        }
+        return request;
+    }
+
+    /**
+     * 第 k 个请求相对开始时间的计划发送时间
+     */
+    private static final class Schedule {
+
+        private final ReplayPlan plan;
+
+        private final long[] recordedOffsets;
+
+        private final long recordedSpan;
+
+        private final Random random;
+
+        private long poissonOffset;
+
+        Schedule(List<RecordedRequest> workload, ReplayPlan plan) {
+            this.plan = plan;
+            this.random = new Random(plan.getSeed());
+            long first = workload.get(0).getOffsetMicros();
+            recordedOffsets = new long[workload.size()];
+            for (int i = 0; i < recordedOffsets.length; i++) {
+                recordedOffsets[i] = TimeUnit.MICROSECONDS.toNanos(workload.get(i).getOffsetMicros() - first);
+            }
+            long last = recordedOffsets[recordedOffsets.length - 1];
+            // 循环回放时两轮之间留一个平均间隔
+            recordedSpan = Math.max(TimeUnit.MILLISECONDS.toNanos(1),
+                    last + (recordedOffsets.length > 1 ? last / (recordedOffsets.length - 1) : 0));
+        }
+
+        long offsetNanos(long k) {
+            switch (plan.getArrival()) {
+                case RECORDED: {
+                    long loop = k / recordedOffsets.length;
+                    long offset = loop * recordedSpan + recordedOffsets[(int) (k % recordedOffsets.length)];
+                    return (long) (offset / plan.getSpeed());
+                }
+                case FIXED:
+                    return (long) (k * 1e9 / plan.getRatePerSecond());
+                default:
+                    if (k > 0) {
+                        poissonOffset += (long) (-Math.log(1 - random.nextDouble()) * 1e9 / plan.getRatePerSecond());
+                    }
+                    return poissonOffset;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.elasticsearch.model;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 列式存储的桶聚合结果
+ * 每个桶不再对应一个对象，而是按列存放在基本类型数组中，第 i 个桶的数据位于各数组的下标 i
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class BucketColumns {
+
+    /**
+     * key 的类型
+     */
+    public enum KeyType {
+        /**
+         * 整数 key，例如 long 字段的 terms、date_histogram（毫秒时间戳）
+         */
+        LONG,
+        /**
+         * 浮点 key，例如 histogram、double 字段的 terms
+         */
+        DOUBLE,
+        /**
+         * 字符串 key，使用字典编码
+         */
+        STRING
+    }
+
+    /**
+     * 桶数量
+     */
+    private final int size;
+
+    private final KeyType keyType;
+
+    /**
+     * keyType 为 LONG 时有值
+     */
+    private final long[] longKeys;
+
+    /**
+     * keyType 为 DOUBLE 时有值
+     */
+    private final double[] doubleKeys;
+
+    /**
+     * keyType 为 STRING 时有值，字典
+     */
+    private final String[] dictionary;
+
+    /**
+     * keyType 为 STRING 时有值，每个桶 key 在字典中的下标
+     */
+    private final int[] keyCodes;
+
+    private final long[] docCounts;
+
+    /**
+     * 子聚合（单值指标取 value，多值指标取 name.field），缺失的值为 NaN
+     */
+    private final Map<String, double[]> metrics;
+
+    public BucketColumns(int size, KeyType keyType, long[] longKeys, double[] doubleKeys,
+                         String[] dictionary, int[] keyCodes, long[] docCounts, Map<String, double[]> metrics) {
+        this.size = size;
+        this.keyType = keyType;
+        this.longKeys = longKeys;
+        this.doubleKeys = doubleKeys;
+        this.dictionary = dictionary;
+        this.keyCodes = keyCodes;
+        this.docCounts = docCounts;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 第 i 个桶的字符串 key
+     *
+     * @param i 下标
+     * @return String
+     */
+    public String stringKey(int i) {
+        switch (keyType) {
+            case STRING:
+                return dictionary[keyCodes[i]];
+            case LONG:
+                return String.valueOf(longKeys[i]);
+            default:
+                return String.valueOf(doubleKeys[i]);
+        }
+    }
+
+    /**
+     * 获取子聚合列
+     *
+     * @param name 子聚合名称
+     * @return double[]，不存在时为 null
+     */
+    public double[] metric(String name) {
+        return metrics.get(name);
+    }
+}
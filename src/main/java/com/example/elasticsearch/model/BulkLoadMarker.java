@@ -0,0 +1,34 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 批量导入标记，记录导入前的索引设置，用于进程异常退出后恢复
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class BulkLoadMarker {
+
+    private String index;
+
+    /**
+     * 持有会话的进程，host 与 pid
+     */
+    private String owner;
+
+    private long startedAt;
+
+    /**
+     * 会话存活时定期刷新，超时未刷新的标记视为遗留
+     */
+    private long heartbeatAt;
+
+    /**
+     * 导入前的设置，值为 null 表示原本未显式设置，恢复时重置为默认值
+     */
+    private Map<String, String> settings;
+}
@@ -0,0 +1,24 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+/**
+ * 去重写入结果
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class DedupResult {
+
+    private int submitted;
+
+    /**
+     * 内容未变化而跳过的文档数
+     */
+    private int skipped;
+
+    private int written;
+
+    private int failed;
+}
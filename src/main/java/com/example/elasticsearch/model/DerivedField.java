@@ -0,0 +1,102 @@
+package com.example.elasticsearch.model;
+
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 派生字段声明
+ * 原本在查询时通过 scriptFields / 脚本排序计算的字段，改为在写入时由 ingest pipeline 计算并以 doc values 存储
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+public class DerivedField {
+
+    /**
+     * 所属索引（或别名）
+     */
+    private final String index;
+
+    /**
+     * 派生字段名称
+     */
+    private final String name;
+
+    /**
+     * 派生字段的 mapping
+     */
+    private final Property property;
+
+    /**
+     * ingest 上下文中执行的 painless 脚本，通过 ctx 读写文档
+     */
+    private final String script;
+
+    private DerivedField(String index, String name, Property property, String script) {
+        this.index = index;
+        this.name = name;
+        this.property = property;
+        this.script = script;
+    }
+
+    /**
+     * 自定义脚本计算的派生字段
+     *
+     * @param index    索引
+     * @param name     字段名称
+     * @param property mapping
+     * @param script   painless 脚本，例如 ctx.total = ctx.price * ctx.count
+     * @return {@link DerivedField}
+     */
+    public static DerivedField script(String index, String name, Property property, String script) {
+        return new DerivedField(index, name, property, script);
+    }
+
+    /**
+     * 按数值区间映射为标签的派生字段，生成 keyword 类型
+     *
+     * @param index        索引
+     * @param name         字段名称
+     * @param sourceField  数值字段（顶层字段）
+     * @param bands        区间规则，按上界升序
+     * @param missingLabel 源字段不存在时的标签
+     * @return {@link DerivedField}
+     */
+    public static DerivedField rangeBands(String index, String name, String sourceField,
+                                          List<RangeBand> bands, String missingLabel) {
+        StringBuilder script = new StringBuilder()
+                .append("def v = ctx['").append(escape(sourceField)).append("'];\n")
+                .append("String label = null;\n")
+                .append("if (v == null || v == '') {\n")
+                .append("  label = '").append(escape(missingLabel)).append("';\n")
+                .append("} else {\n")
+                .append("  double n = v instanceof Number ? ((Number) v).doubleValue() : Double.parseDouble(v.toString());\n");
+        boolean hasOtherwise = false;
+        for (int i = 0; i < bands.size() && !hasOtherwise; i++) {
+            RangeBand band = bands.get(i);
+            if (band.getUpperBound() == null) {
+                script.append(i == 0 ? "  {\n" : "  } else {\n");
+                hasOtherwise = true;
+            } else {
+                script.append(i == 0 ? "  if (" : "  } else if (")
+                        .append("n < ").append(band.getUpperBound()).append(") {\n");
+            }
+            script.append("    label = '").append(escape(band.getLabel())).append("';\n");
+        }
+        if (!hasOtherwise) {
+            script.append(bands.isEmpty() ? "  {\n" : "  } else {\n")
+                    .append("    label = '").append(escape(missingLabel)).append("';\n");
+        }
+        script.append("  }\n")
+                .append("}\n")
+                .append("ctx['").append(escape(name)).append("'] = label;");
+        return new DerivedField(index, name, Property.of(p -> p.keyword(k -> k)), script.toString());
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("'", "\\'");
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.elasticsearch.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 投影查询结果，只包含调用方实际读取的部分
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class ProjectedPage<T> {
+
+    /**
+     * 命中总数
+     */
+    private long total;
+
+    /**
+     * 总数关系，eq 或 gte
+     */
+    private String totalRelation;
+
+    /**
+     * 文档 ID，与 records 一一对应
+     */
+    private List<String> ids;
+
+    /**
+     * 按投影类反序列化后的 _source
+     */
+    private List<T> records;
+
+    /**
+     * 指定返回的聚合结果，key 为聚合名称
+     */
+    private Map<String, JsonNode> aggregations;
+}
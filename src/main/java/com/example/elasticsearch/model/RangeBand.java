@@ -0,0 +1,32 @@
+package com.example.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 区间规则，数值小于 upperBound 时取 label，多个区间按 upperBound 升序排列，
+ * 最后一个区间的 upperBound 为 null 表示其余情况
+ * 例：年龄 &lt;20 青年，&lt;40 中年，其余 **
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+@AllArgsConstructor
+public class RangeBand {
+
+    /**
+     * 上界（不含），null 表示无上界
+     */
+    private final Double upperBound;
+
+    private final String label;
+
+    public static RangeBand below(double upperBound, String label) {
+        return new RangeBand(upperBound, label);
+    }
+
+    public static RangeBand otherwise(String label) {
+        return new RangeBand(null, label);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 录制的一次请求，负载文件中每行一个
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class RecordedRequest {
+
+    /**
+     * 相对录制开始的时间，按原始节奏回放时使用
+     */
+    private long offsetMicros;
+
+    /**
+     * 客户端 endpoint id，例如 es/search、es/bulk
+     */
+    private String endpoint;
+
+    private String method;
+
+    private String path;
+
+    private Map<String, String> params;
+
+    /**
+     * 请求体，bulk / msearch 为 NDJSON，没有请求体时为 null
+     */
+    private String body;
+}
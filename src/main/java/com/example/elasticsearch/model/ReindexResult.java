@@ -0,0 +1,59 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 一次零停机 reindex 的结果，旧索引保留用于回滚
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class ReindexResult {
+
+    private String readAlias;
+
+    private String writeAlias;
+
+    /**
+     * 迁移前别名指向的索引
+     */
+    private String previousIndex;
+
+    /**
+     * 新建的版本化索引
+     */
+    private String currentIndex;
+
+    /**
+     * 全量复制进度
+     */
+    private TaskProgress copy;
+
+    /**
+     * 切换写别名前，追平复制期间写入的进度
+     */
+    private TaskProgress catchUp;
+
+    /**
+     * 切换写别名后，补齐旧索引上新增文档的进度
+     */
+    private TaskProgress finalCatchUp;
+
+    /**
+     * 追平范围使用的时间戳字段
+     */
+    private String timestampField;
+
+    /**
+     * 复制限流，回滚时沿用
+     */
+    private Float requestsPerSecond;
+
+    /**
+     * 写别名切换到新索引的时间，回滚时从这里开始同步
+     */
+    private Instant writeSwappedAt;
+}
@@ -0,0 +1,65 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 负载回放计划
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class ReplayPlan {
+
+    private Arrival arrival = Arrival.POISSON;
+
+    /**
+     * FIXED / POISSON 的目标请求速率
+     */
+    private double ratePerSecond = 100;
+
+    /**
+     * RECORDED 的回放倍速，2 表示两倍速
+     */
+    private double speed = 1;
+
+    /**
+     * 预热时长，期间的请求不计入报告
+     */
+    private Duration warmup = Duration.ZERO;
+
+    /**
+     * 统计时长，负载不足时循环回放
+     */
+    private Duration duration = Duration.ofSeconds(60);
+
+    /**
+     * 未完成请求的上限，超过后新的请求直接丢弃，计为 shed 和错误并按计划时间计入延迟分布，防止目标过载时客户端内存无限增长
+     */
+    private int maxOutstanding = 1000;
+
+    private long seed = 42;
+
+    /**
+     * 到达方式，三种都是开环的：请求按计划时间发出，不等待前一个请求完成
+     */
+    public enum Arrival {
+
+        /**
+         * 按录制时的时间间隔
+         */
+        RECORDED,
+
+        /**
+         * 固定间隔
+         */
+        FIXED,
+
+        /**
+         * 泊松过程，间隔服从指数分布，更接近大量独立用户的到达
+         */
+        POISSON
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.elasticsearch.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * update_by_query / delete_by_query / reindex 任务进度
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+public class TaskProgress {
+
+    private String taskId;
+
+    private String action;
+
+    private boolean completed;
+
+    private long total;
+
+    private long created;
+
+    private long updated;
+
+    private long deleted;
+
+    private long batches;
+
+    private long versionConflicts;
+
+    private long noops;
+
+    /**
+     * 因限流累计等待的毫秒数
+     */
+    private long throttledMillis;
+
+    /**
+     * 当前限流值，-1 表示不限流
+     */
+    private float requestsPerSecond;
+
+    /**
+     * 文档级失败原因
+     */
+    private List<String> failures;
+
+    /**
+     * 任务级错误原因
+     */
+    private String error;
+
+    /**
+     * 已处理的文档数
+     *
+     * @return long
+     */
+    public long processed() {
+        return created + updated + deleted + versionConflicts + noops;
+    }
+
+    /**
+     * 完成比例，total 未知时为 0
+     *
+     * @return double
+     */
+    public double fractionDone() {
+        return total <= 0 ? 0 : Math.min(1.0, (double) processed() / total);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.elasticsearch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 字典翻译后的命中，source 保持原值，翻译结果放在 labels 中
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Getter
+@AllArgsConstructor
+public class TranslatedHit<T> {
+
+    private final String index;
+
+    private final String id;
+
+    private final T source;
+
+    /**
+     * 字段 -&gt; 标签，未命中且字典没有默认标签的字段不出现
+     */
+    private final Map<String, String> labels;
+
+    public String label(String field) {
+        return labels.get(field);
+    }
+}
@@ -1,5 +1,11 @@
 package com.example.elasticsearch.model;
 
+import com.example.elasticsearch.annotation.RoutingKey;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
 /**
  * @version 1.0.0
  * @className: User
@@ -24,6 +30,13 @@ public class User
     @JsonProperty("sex")
     private String sex;
 
+    /**
+     * 用户组，users 索引按用户组路由
+     */
+    @RoutingKey
+    @JsonProperty("groupId")
+    private String groupId;
+
     public User()
     {
 
@@ -43,6 +56,7 @@ public class User
                 ", name='" + name + '\'' +
                 ", age=" + age +
                 ", sex='" + sex + '\'' +
+                ", groupId='" + groupId + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,19 @@
+package com.example.elasticsearch.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+/**
+ * 用户列表投影，只包含列表页需要的字段
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserBrief {
+
+    private String id;
+
+    private String name;
+}
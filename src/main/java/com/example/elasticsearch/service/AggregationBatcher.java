@@ -0,0 +1,228 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpMapper;
+import com.example.elasticsearch.util.EsJsonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 聚合请求合并
+ * 在一个很短的时间窗口内，把同一索引、同一查询条件下的多个聚合请求合并为一次 size(0) 搜索，
+ * 聚合名称加前缀避免冲突，结果再按名称分发回各自的调用方。
+ * 仪表盘一次刷新的 8~12 个聚合只需要在每个分片上执行一次查询阶段
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class AggregationBatcher {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final JsonpMapper jsonpMapper;
+
+    private final Executor executor;
+
+    private final TaskScheduler scheduler;
+
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 合并窗口，0 表示不合并
+     */
+    @Value("${elasticsearch.aggregation.merge-window-ms:5}")
+    private long mergeWindowMs;
+
+    /**
+     * 单次搜索最多携带的聚合数，达到后立即发送
+     */
+    @Value("${elasticsearch.aggregation.max-per-search:50}")
+    private int maxPerSearch;
+
+    public AggregationBatcher(ElasticsearchClient elasticsearchClient,
+                              @Qualifier("esQueryExecutor") Executor executor,
+                              @Qualifier("esScheduler") TaskScheduler scheduler) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.executor = executor;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 提交一个聚合请求
+     *
+     * @param index       索引
+     * @param query       查询条件，可为 null；序列化后完全相同的条件才会被合并
+     * @param name        聚合名称
+     * @param aggregation 聚合定义
+     * @return 该聚合的结果
+     */
+    public CompletableFuture<Aggregate> submit(String index, Query query, String name, Aggregation aggregation) {
+        String key = index + '|' + (query == null ? "" : EsJsonUtils.toJson(query, jsonpMapper));
+        Entry entry = new Entry(name, aggregation);
+        Batch batch;
+        int size;
+        while (true) {
+            batch = pending.computeIfAbsent(key, k -> new Batch(key, index, query));
+            size = batch.add(entry);
+            if (size > 0) {
+                break;
+            }
+            // 该批次已经发出，换一个新的批次
+            pending.remove(key, batch);
+        }
+        if (size >= maxPerSearch || mergeWindowMs <= 0) {
+            flush(batch);
+        } else if (size == 1) {
+            Batch first = batch;
+            scheduler.schedule(() -> flush(first), Instant.now().plus(Duration.ofMillis(mergeWindowMs)));
+        }
+        return entry.future;
+    }
+
+    private void flush(Batch batch) {
+        if (!batch.sealed.compareAndSet(false, true)) {
+            return;
+        }
+        pending.remove(batch.key, batch);
+        try {
+            executor.execute(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            // 批次已经移出 pending，不失败掉调用方会一直等待
+            log.warn("查询线程池已满，合并的 {} 个聚合请求被拒绝，index:{}", batch.entries().size(), batch.index);
+            for (Entry entry : batch.entries()) {
+                entry.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void execute(Batch batch) {
+        List<Entry> entries = batch.entries();
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>(entries.size() * 2);
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            entry.alias = "m" + i + "_" + entry.name;
+            aggregations.put(entry.alias, entry.aggregation);
+        }
+        try {
+            SearchResponse<Void> response = search(batch, aggregations);
+            log.debug("合并 {} 个聚合请求，index:{}", entries.size(), batch.index);
+            for (Entry entry : entries) {
+                entry.future.complete(response.aggregations().get(entry.alias));
+            }
+        } catch (ElasticsearchException e) {
+            if (entries.size() > 1 && e.status() >= 400 && e.status() < 500) {
+                // 4xx 多半是其中某个聚合写错了，逐个重试，只让有问题的那个失败
+                log.warn("合并的 {} 个聚合请求返回 {}，逐个重试，index:{}", entries.size(), e.status(), batch.index);
+                entries.forEach(entry -> executeAlone(batch, entry));
+            } else {
+                fail(entries, e);
+            }
+        } catch (Exception e) {
+            fail(entries, e);
+        }
+    }
+
+    private void executeAlone(Batch batch, Entry entry) {
+        try {
+            SearchResponse<Void> response = search(batch, Collections.singletonMap(entry.alias, entry.aggregation));
+            entry.future.complete(response.aggregations().get(entry.alias));
+        } catch (Exception e) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    private SearchResponse<Void> search(Batch batch, Map<String, Aggregation> aggregations) throws IOException {
+        return elasticsearchClient.search(s -> {
+            s.index(batch.index)
+                    .size(0)
+                    .aggregations(aggregations);
+            if (batch.query != null) {
+                s.query(batch.query);
+            }
+            return s;
+        }, Void.class);
+    }
+
+    private static void fail(List<Entry> entries, Exception e) {
+        for (Entry entry : entries) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String name;
+
+        private final Aggregation aggregation;
+
+        private final CompletableFuture<Aggregate> future = new CompletableFuture<>();
+
+        private String alias;
+
+        private Entry(String name, Aggregation aggregation) {
+            this.name = name;
+            this.aggregation = aggregation;
+        }
+    }
+
+    private static final class Batch {
+
+        private final String key;
+
+        private final String index;
+
+        private final Query query;
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        private final AtomicBoolean sealed = new AtomicBoolean();
+
+        private Batch(String key, String index, Query query) {
+            this.key = key;
+            this.index = index;
+            this.query = query;
+        }
+
+        /**
+         * 加入批次
+         *
+         * @return 加入后的数量，批次已发出时返回 0
+         */
+        synchronized int add(Entry entry) {
+            if (sealed.get()) {
+                return 0;
+            }
+            entries.add(entry);
+            return entries.size();
+        }
+
+        synchronized List<Entry> entries() {
+            return new ArrayList<>(entries);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.cluster.HealthResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.model.BulkLoadMarker;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量导入模式
+ * 导入期间把索引切换为 refresh_interval=-1、number_of_replicas=0、translog 异步刷盘，
+ * 结束后恢复原设置、强制 refresh 并等待副本恢复为 green。
+ * 修改设置前先在 bulk_load_markers 索引中写入标记记录原设置，会话存活期间定期刷新心跳；
+ * 进程异常退出后，启动时以及之后定期把心跳超时的标记对应的索引恢复为原设置，
+ * 进程在心跳超时前就重启时也不会一直停留在导入设置上
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(0)
+public class BulkLoadService implements ApplicationRunner {
+
+    private static final String MARKER_INDEX = "bulk_load_markers";
+
+    private static final List<String> KEYS = Arrays.asList(
+            "index.refresh_interval", "index.number_of_replicas", "index.translog.durability");
+
+    private static final Map<String, String> LOAD_SETTINGS = new LinkedHashMap<>();
+
+    static {
+        LOAD_SETTINGS.put("index.refresh_interval", "-1");
+        LOAD_SETTINGS.put("index.number_of_replicas", "0");
+        LOAD_SETTINGS.put("index.translog.durability", "async");
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final RestClient restClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final TaskScheduler scheduler;
+
+    private final Executor executor;
+
+    /**
+     * 同一时间只运行一次恢复
+     */
+    private final AtomicBoolean recovering = new AtomicBoolean();
+
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${elasticsearch.bulk-load.heartbeat-ms:60000}")
+    private long heartbeatMs;
+
+    /**
+     * 定期检查遗留标记的间隔
+     */
+    @Value("${elasticsearch.bulk-load.recover-interval-ms:60000}")
+    private long recoverIntervalMs;
+
+    /**
+     * 等待 green 的超时时间，单节点集群上副本无法分配，超时后只记录警告
+     */
+    @Value("${elasticsearch.bulk-load.green-timeout:60s}")
+    private String greenTimeout;
+
+    public BulkLoadService(ElasticsearchClient elasticsearchClient, RestClient restClient,
+                           @Qualifier("esScheduler") TaskScheduler scheduler,
+                           @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.restClient = restClient;
+        JsonpMapper jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    /**
+     * 启动时恢复遗留的导入标记，之后定期检查；定时线程只负责触发，恢复在查询线程池中执行
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        recoverQuietly();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                executor.execute(this::recoverQuietly);
+            } catch (RejectedExecutionException e) {
+                log.warn("查询线程池已满，跳过本次批量导入标记检查");
+            }
+        }, Instant.now().plusMillis(recoverIntervalMs), Duration.ofMillis(recoverIntervalMs));
+    }
+
+    /**
+     * 开始批量导入
+     *
+     * @param index 索引
+     * @return {@link BulkLoadSession}
+     * @throws IOException ioexception
+     */
+    public BulkLoadSession open(String index) throws IOException {
+        ensureMarkerIndex();
+        BulkLoadMarker marker = new BulkLoadMarker();
+        marker.setIndex(index);
+        marker.setOwner(owner);
+        marker.setStartedAt(System.currentTimeMillis());
+        marker.setHeartbeatAt(marker.getStartedAt());
+        marker.setSettings(currentSettings(index));
+        try {
+            // create 保证同一索引同时只有一个会话，也避免覆盖上一次遗留的原设置
+            elasticsearchClient.create(c -> c
+                    .index(MARKER_INDEX)
+                    .id(index)
+                    .document(marker)
+                    .refresh(Refresh.True));
+        } catch (ResponseException e) {
+            // 409 不在客户端的 ignore 列表中，以 ResponseException 抛出
+            if (e.getResponse().getStatusLine().getStatusCode() == 409) {
+                throw new IllegalStateException("Bulk load of [" + index + "] already in progress or not recovered yet", e);
+            }
+            throw e;
+        }
+        try {
+            putSettings(index, LOAD_SETTINGS);
+        } catch (IOException | RuntimeException e) {
+            // 设置可能已部分生效，恢复原设置并删除标记，否则之后的 open 都会因标记已存在而失败
+            try {
+                restore(marker);
+            } catch (IOException | RuntimeException restoreFailure) {
+                log.error("恢复索引 {} 设置失败，保留导入标记等待下次恢复", index, restoreFailure);
+                e.addSuppressed(restoreFailure);
+            }
+            throw e;
+        }
+        log.info("批量导入开始，index:{}，原设置:{}", index, marker.getSettings());
+        ScheduledFuture<?> heartbeat = scheduler.scheduleAtFixedRate(() -> heartbeat(index), Duration.ofMillis(heartbeatMs));
+        return new BulkLoadSession(index, this, heartbeat);
+    }
+
+    /**
+     * 恢复心跳超时的导入标记
+     *
+     * @throws IOException ioexception
+     */
+    public void recover() throws IOException {
+        if (!elasticsearchClient.indices().exists(e -> e.index(MARKER_INDEX)).value()) {
+            return;
+        }
+        long staleBefore = System.currentTimeMillis() - heartbeatMs * 3;
+        SearchResponse<BulkLoadMarker> response = elasticsearchClient.search(s -> s
+                .index(MARKER_INDEX)
+                .query(q -> q.range(r -> r.field("heartbeatAt").lt(JsonData.of(staleBefore))))
+                .size(1000), BulkLoadMarker.class);
+        for (Hit<BulkLoadMarker> hit : response.hits().hits()) {
+            BulkLoadMarker marker = hit.source();
+            if (marker == null) {
+                continue;
+            }
+            log.warn("发现遗留的批量导入标记，index:{}，owner:{}，恢复原设置", marker.getIndex(), marker.getOwner());
+            try {
+                restore(marker);
+            } catch (IOException | ElasticsearchException e) {
+                log.error("恢复索引 {} 设置失败", marker.getIndex(), e);
+            }
+        }
+    }
+
+    private void recoverQuietly() {
+        if (!recovering.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            recover();
+        } catch (IOException | ElasticsearchException e) {
+            log.error("恢复批量导入标记失败", e);
+        } finally {
+            recovering.set(false);
+        }
+    }
+
+    void finish(String index) throws IOException {
+        BulkLoadMarker marker = elasticsearchClient.get(g -> g.index(MARKER_INDEX).id(index), BulkLoadMarker.class).source();
+        if (marker == null) {
+            log.warn("批量导入标记不存在，index:{}", index);
+            return;
+        }
+        restore(marker);
+    }
+
+    private void restore(BulkLoadMarker marker) throws IOException {
+        String index = marker.getIndex();
+        if (elasticsearchClient.indices().exists(e -> e.index(index)).value()) {
+            putSettings(index, marker.getSettings());
+            elasticsearchClient.indices().refresh(r -> r.index(index));
+            HealthResponse health = elasticsearchClient.cluster().health(h -> h
+                    .index(index)
+                    .waitForStatus(HealthStatus.Green)
+                    .timeout(t -> t.time(greenTimeout)));
+            if (health.timedOut()) {
+                log.warn("索引 {} 在 {} 内未恢复为 green，当前状态:{}", index, greenTimeout, health.status());
+            }
+        }
+        // 设置恢复成功后才删除标记，失败时保留标记等待下次恢复
+        elasticsearchClient.delete(d -> d.index(MARKER_INDEX).id(index).refresh(Refresh.True));
+        log.info("批量导入结束，index:{}，已恢复设置:{}", index, marker.getSettings());
+    }
+
+    private void heartbeat(String index) {
+        try {
+            Map<String, Object> doc = new LinkedHashMap<>(2);
+            doc.put("heartbeatAt", System.currentTimeMillis());
+            elasticsearchClient.update(u -> u.index(MARKER_INDEX).id(index).doc(doc), BulkLoadMarker.class);
+        } catch (IOException | ElasticsearchException e) {
+            log.warn("刷新批量导入心跳失败，index:{}:{}", index, e.getMessage());
+        }
+    }
+
+    private Map<String, String> currentSettings(String index) throws IOException {
+        Request request = new Request("GET", "/" + index + "/_settings/" + String.join(",", KEYS));
+        request.addParameter("flat_settings", "true");
+        Response response = restClient.performRequest(request);
+        JsonNode root;
+        try (InputStream in = response.getEntity().getContent()) {
+            root = objectMapper.readTree(in);
+        }
+        // 别名解析后的实际索引名
+        JsonNode settings = root.elements().hasNext() ? root.elements().next().path("settings") : objectMapper.createObjectNode();
+        Map<String, String> original = new LinkedHashMap<>();
+        for (String key : KEYS) {
+            original.put(key, settings.hasNonNull(key) ? settings.get(key).asText() : null);
+        }
+        return original;
+    }
+
+    private void putSettings(String index, Map<String, String> settings) throws IOException {
+        Request request = new Request("PUT", "/" + index + "/_settings");
+        request.setEntity(new ByteArrayEntity(objectMapper.writeValueAsBytes(settings), ContentType.APPLICATION_JSON));
+        restClient.performRequest(request);
+    }
+
+    private void ensureMarkerIndex() throws IOException {
+        if (elasticsearchClient.indices().exists(e -> e.index(MARKER_INDEX)).value()) {
+            return;
+        }
+        try {
+            elasticsearchClient.indices().create(c -> c
+                    .index(MARKER_INDEX)
+                    .settings(s -> s.numberOfShards("1").autoExpandReplicas("0-1"))
+                    .mappings(m -> m
+                            .properties("index", p -> p.keyword(k -> k))
+                            .properties("owner", p -> p.keyword(k -> k))
+                            .properties("startedAt", p -> p.long_(l -> l))
+                            .properties("heartbeatAt", p -> p.long_(l -> l))
+                            // 设置名包含点号，不建立索引
+                            .properties("settings", p -> p.object(o -> o.enabled(false)))));
+        } catch (ElasticsearchException e) {
+            // 其它实例同时创建
+            if (!"resource_already_exists_exception".equals(e.error().type())) {
+                throw e;
+            }
+        }
+    }
+}
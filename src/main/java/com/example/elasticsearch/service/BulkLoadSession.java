@@ -0,0 +1,51 @@
+package com.example.elasticsearch.service;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * 批量导入会话，关闭时恢复索引设置
+ * <pre>
+ * try (BulkLoadSession session = bulkLoadService.open("users")) {
+ *     elasticsearchClient.bulk(...);
+ * }
+ * </pre>
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class BulkLoadSession implements AutoCloseable {
+
+    private final String index;
+
+    private final BulkLoadService service;
+
+    private final ScheduledFuture<?> heartbeat;
+
+    private boolean closed;
+
+    BulkLoadSession(String index, BulkLoadService service, ScheduledFuture<?> heartbeat) {
+        this.index = index;
+        this.service = service;
+        this.heartbeat = heartbeat;
+    }
+
+    public String index() {
+        return index;
+    }
+
+    /**
+     * 恢复导入前的设置，刷新索引并等待副本分配完成
+     *
+     * @throws IOException ioexception
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        heartbeat.cancel(false);
+        service.finish(index);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.elasticsearch.service;
+
+import com.example.elasticsearch.model.TaskProgress;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 已提交到集群的异步任务句柄
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class ByQueryTask {
+
+    /**
+     * 任务类型，value 为对应的 REST 路径，用于 rethrottle
+     */
+    public enum Kind {
+        /**
+         * update_by_query
+         */
+        UPDATE_BY_QUERY("_update_by_query"),
+        /**
+         * delete_by_query
+         */
+        DELETE_BY_QUERY("_delete_by_query"),
+        /**
+         * reindex
+         */
+        REINDEX("_reindex");
+
+        private final String path;
+
+        Kind(String path) {
+            this.path = path;
+        }
+
+        public String path() {
+            return path;
+        }
+    }
+
+    private final String taskId;
+
+    private final Kind kind;
+
+    private final ByQueryTaskManager manager;
+
+    private final CompletableFuture<TaskProgress> future = new CompletableFuture<>();
+
+    private volatile TaskProgress progress;
+
+    ByQueryTask(String taskId, Kind kind, ByQueryTaskManager manager) {
+        this.taskId = taskId;
+        this.kind = kind;
+        this.manager = manager;
+        TaskProgress initial = new TaskProgress();
+        initial.setTaskId(taskId);
+        this.progress = initial;
+    }
+
+    public String taskId() {
+        return taskId;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * 最近一次轮询得到的进度
+     *
+     * @return {@link TaskProgress}
+     */
+    public TaskProgress progress() {
+        return progress;
+    }
+
+    /**
+     * 任务结束时完成；任务出错、存在文档级失败或被取消时以 TaskFailedException 结束
+     *
+     * @return {@link CompletableFuture}<{@link TaskProgress}>
+     */
+    public CompletableFuture<TaskProgress> future() {
+        return future;
+    }
+
+    /**
+     * 取消任务
+     *
+     * @throws IOException ioexception
+     */
+    public void cancel() throws IOException {
+        manager.cancel(this);
+    }
+
+    /**
+     * 调整限流
+     *
+     * @param requestsPerSecond 每秒请求数，null 或小于等于 0 表示不限流
+     * @throws IOException ioexception
+     */
+    public void rethrottle(Float requestsPerSecond) throws IOException {
+        manager.rethrottle(this, requestsPerSecond);
+    }
+
+    void update(TaskProgress progress) {
+        this.progress = progress;
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
+import co.elastic.clients.elasticsearch.core.ReindexRequest;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.elasticsearch.exception.TaskFailedException;
+import com.example.elasticsearch.model.TaskProgress;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * update_by_query / delete_by_query / reindex 异步任务管理
+ * 以 wait_for_completion=false、slices=auto 提交，按退避间隔轮询 tasks API，
+ * 进度通过 {@link ByQueryTask#progress()}、CompletableFuture 和 es.task.* 指标对外暴露，支持取消与动态调整限流。
+ * 提交后不再占用调用线程和 HTTP 连接，适合运行数小时的大批量迁移
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class ByQueryTaskManager {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final RestClient restClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TaskScheduler scheduler;
+
+    private final Executor executor;
+
+    private final Map<String, ByQueryTask> running = new ConcurrentHashMap<>();
+
+    private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    /**
+     * 每个任务只有一条轮询链，这里保存下一次尚未执行的轮询
+     */
+    private final Map<String, ScheduledFuture<?>> nextPolls = new ConcurrentHashMap<>();
+
+    /**
+     * 请求尽快轮询但轮询正在执行的任务，下一次轮询不再退避
+     */
+    private final Set<String> wakeups = ConcurrentHashMap.newKeySet();
+
+    @Value("${elasticsearch.task.poll-initial-ms:500}")
+    private long pollInitialMs;
+
+    @Value("${elasticsearch.task.poll-max-ms:30000}")
+    private long pollMaxMs;
+
+    @Value("${elasticsearch.task.poll-multiplier:1.5}")
+    private double pollMultiplier;
+
+    /**
+     * 连续轮询失败达到该次数后放弃跟踪（集群中的任务不受影响）
+     */
+    @Value("${elasticsearch.task.max-poll-failures:20}")
+    private int maxPollFailures;
+
+    public ByQueryTaskManager(ElasticsearchClient elasticsearchClient, RestClient restClient,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("esScheduler") TaskScheduler scheduler,
+                              @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.restClient = restClient;
+        JsonpMapper jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+        this.meterRegistry = meterRegistry;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    /**
+     * 异步提交 update_by_query
+     *
+     * @param fn                请求构建
+     * @param requestsPerSecond 限流，null 表示不限流
+     * @return {@link ByQueryTask}
+     * @throws IOException ioexception
+     */
+    public ByQueryTask submitUpdateByQuery(Function<UpdateByQueryRequest.Builder, ObjectBuilder<UpdateByQueryRequest>> fn,
+                                           Float requestsPerSecond) throws IOException {
+        UpdateByQueryRequest.Builder builder = new UpdateByQueryRequest.Builder();
+        fn.apply(builder);
+        builder.waitForCompletion(false)
+                .slices(s -> s.computed(SlicesCalculation.Auto));
+        if (requestsPerSecond != null) {
+            builder.requestsPerSecond(requestsPerSecond);
+        }
+        String taskId = elasticsearchClient.updateByQuery(builder.build()).task();
+        return track(taskId, ByQueryTask.Kind.UPDATE_BY_QUERY);
+    }
+
+    /**
+     * 异步提交 delete_by_query
+     *
+     * @param fn                请求构建
+     * @param requestsPerSecond 限流，null 表示不限流
+     * @return {@link ByQueryTask}
+     * @throws IOException ioexception
+     */
+    public ByQueryTask submitDeleteByQuery(Function<DeleteByQueryRequest.Builder, ObjectBuilder<DeleteByQueryRequest>> fn,
+                                           Float requestsPerSecond) throws IOException {
+        DeleteByQueryRequest.Builder builder = new DeleteByQueryRequest.Builder();
+        fn.apply(builder);
+        builder.waitForCompletion(false)
+                .slices(s -> s.computed(SlicesCalculation.Auto));
+        if (requestsPerSecond != null) {
+            builder.requestsPerSecond(requestsPerSecond);
+        }
+        String taskId = elasticsearchClient.deleteByQuery(builder.build()).task();
+        return track(taskId, ByQueryTask.Kind.DELETE_BY_QUERY);
+    }
+
+    /**
+     * 异步提交 reindex
+     *
+     * @param fn                请求构建
+     * @param requestsPerSecond 限流，null 表示不限流
+     * @return {@link ByQueryTask}
+     * @throws IOException ioexception
+     */
+    public ByQueryTask submitReindex(Function<ReindexRequest.Builder, ObjectBuilder<ReindexRequest>> fn,
+                                     Float requestsPerSecond) throws IOException {
+        ReindexRequest.Builder builder = new ReindexRequest.Builder();
+        fn.apply(builder);
+        builder.waitForCompletion(false)
+                .slices(s -> s.computed(SlicesCalculation.Auto));
+        if (requestsPerSecond != null) {
+            builder.requestsPerSecond(requestsPerSecond);
+        }
+        String taskId = elasticsearchClient.reindex(builder.build()).task();
+        return track(taskId, ByQueryTask.Kind.REINDEX);
+    }
+
+    /**
+     * 跟踪一个已提交的任务，例如应用重启后继续跟踪之前提交的任务
+     *
+     * @param taskId 任务 id，格式为 node:id
+     * @param kind   任务类型
+     * @return {@link ByQueryTask}
+     */
+    public ByQueryTask track(String taskId, ByQueryTask.Kind kind) {
+        if (taskId == null) {
+            throw new IllegalStateException("Task id missing, the request was probably executed synchronously");
+        }
+        ByQueryTask existing = running.get(taskId);
+        if (existing != null) {
+            return existing;
+        }
+        ByQueryTask task = new ByQueryTask(taskId, kind, this);
+        running.put(taskId, task);
+        registerMeters(task);
+        log.info("跟踪异步任务 {}，type:{}", taskId, kind);
+        schedulePoll(task, pollInitialMs, 0);
+        return task;
+    }
+
+    /**
+     * 正在跟踪的任务
+     *
+     * @return {@link Collection}<{@link ByQueryTask}>
+     */
+    public Collection<ByQueryTask> running() {
+        return Collections.unmodifiableCollection(running.values());
+    }
+
+    void cancel(ByQueryTask task) throws IOException {
+        elasticsearchClient.tasks().cancel(c -> c.taskId(task.taskId()));
+        log.info("已取消异步任务 {}", task.taskId());
+        // 唤醒已有的轮询链尽快结束 future，不另起一条
+        wake(task);
+    }
+
+    void rethrottle(ByQueryTask task, Float requestsPerSecond) throws IOException {
+        float value = requestsPerSecond == null || requestsPerSecond <= 0 ? -1 : requestsPerSecond;
+        Request request = new Request("POST", "/" + task.kind().path() + "/" + task.taskId() + "/_rethrottle");
+        request.addParameter("requests_per_second", String.valueOf(value));
+        restClient.performRequest(request);
+        log.info("异步任务 {} 限流调整为 {}", task.taskId(), value);
+    }
+
+    private void schedulePoll(ByQueryTask task, long delayMs, int failures) {
+        synchronized (task) {
+            long delay = wakeups.remove(task.taskId()) ? 0 : delayMs;
+            nextPolls.put(task.taskId(), scheduler.schedule(() -> executor.execute(() -> poll(task, delay, failures)),
+                    Instant.now().plusMillis(delay)));
+        }
+    }
+
+    private void wake(ByQueryTask task) {
+        synchronized (task) {
+            ScheduledFuture<?> next = nextPolls.get(task.taskId());
+            if (next != null && next.cancel(false)) {
+                schedulePoll(task, 0, 0);
+            } else {
+                // 轮询正在执行，由它安排的下一次轮询立即执行
+                wakeups.add(task.taskId());
+            }
+        }
+    }
+
+    private void poll(ByQueryTask task, long delayMs, int failures) {
+        if (task.future().isDone()) {
+            return;
+        }
+        long nextDelay = Math.min(pollMaxMs, Math.max(pollInitialMs, (long) (delayMs * pollMultiplier)));
+        JsonNode root;
+        try {
+            Response response = restClient.performRequest(new Request("GET", "/_tasks/" + task.taskId()));
+            try (InputStream in = response.getEntity().getContent()) {
+                root = objectMapper.readTree(in);
+            }
+        } catch (IOException e) {
+            if (failures + 1 >= maxPollFailures) {
+                log.error("轮询异步任务 {} 连续失败 {} 次，停止跟踪", task.taskId(), failures + 1, e);
+                finish(task, new TaskFailedException("Lost track of task " + task.taskId(), task.progress()));
+            } else {
+                log.warn("轮询异步任务 {} 失败:{}", task.taskId(), e.getMessage());
+                schedulePoll(task, nextDelay, failures + 1);
+            }
+            return;
+        }
+        boolean completed = root.path("completed").asBoolean(false);
+        // 完成后以 response 为准，运行中取 task.status
+        JsonNode status = completed && root.has("response") ? root.get("response") : root.path("task").path("status");
+        TaskProgress progress = progress(task.taskId(), root, status, completed);
+        task.update(progress);
+        if (!completed) {
+            schedulePoll(task, nextDelay, 0);
+            return;
+        }
+        if (progress.getError() != null) {
+            finish(task, new TaskFailedException("Task " + task.taskId() + " failed: " + progress.getError(), progress));
+        } else if (!progress.getFailures().isEmpty()) {
+            finish(task, new TaskFailedException("Task " + task.taskId() + " finished with "
+                    + progress.getFailures().size() + " failures, first: " + progress.getFailures().get(0), progress));
+        } else {
+            log.info("异步任务 {} 完成，total:{}，updated:{}，created:{}，deleted:{}，versionConflicts:{}",
+                    task.taskId(), progress.getTotal(), progress.getUpdated(), progress.getCreated(),
+                    progress.getDeleted(), progress.getVersionConflicts());
+            finish(task, null);
+        }
+    }
+
+    private TaskProgress progress(String taskId, JsonNode root, JsonNode status, boolean completed) {
+        TaskProgress progress = new TaskProgress();
+        progress.setTaskId(taskId);
+        progress.setAction(root.path("task").path("action").asText(null));
+        progress.setCompleted(completed);
+        progress.setTotal(status.path("total").asLong());
+        progress.setCreated(status.path("created").asLong());
+        progress.setUpdated(status.path("updated").asLong());
+        progress.setDeleted(status.path("deleted").asLong());
+        progress.setBatches(status.path("batches").asLong());
+        progress.setVersionConflicts(status.path("version_conflicts").asLong());
+        progress.setNoops(status.path("noops").asLong());
+        progress.setThrottledMillis(status.path("throttled_millis").asLong());
+        progress.setRequestsPerSecond((float) status.path("requests_per_second").asDouble(-1));
+        List<String> failures = new ArrayList<>();
+        for (JsonNode failure : status.path("failures")) {
+            failures.add(failure.isTextual() ? failure.asText() : failure.toString());
+        }
+        progress.setFailures(failures);
+        if (root.hasNonNull("error")) {
+            JsonNode error = root.get("error");
+            progress.setError(error.path("type").asText() + ": " + error.path("reason").asText());
+        } else if (status.hasNonNull("canceled")) {
+            progress.setError("canceled: " + status.get("canceled").asText());
+        }
+        return progress;
+    }
+
+    private void finish(ByQueryTask task, TaskFailedException failure) {
+        if (running.remove(task.taskId()) == null) {
+            return;
+        }
+        nextPolls.remove(task.taskId());
+        wakeups.remove(task.taskId());
+        List<Meter> taskMeters = meters.remove(task.taskId());
+        if (taskMeters != null) {
+            taskMeters.forEach(meterRegistry::remove);
+        }
+        meterRegistry.counter("es.task.finished", "type", task.kind().name(),
+                "outcome", failure == null ? "success" : "failure").increment();
+        if (failure == null) {
+            task.future().complete(task.progress());
+        } else {
+            task.future().completeExceptionally(failure);
+        }
+    }
+
+    private void registerMeters(ByQueryTask task) {
+        Tags tags = Tags.of("task", task.taskId(), "type", task.kind().name());
+        List<Meter> taskMeters = new ArrayList<>();
+        taskMeters.add(gauge("es.task.total", tags, task, p -> p.getTotal()));
+        taskMeters.add(gauge("es.task.created", tags, task, p -> p.getCreated()));
+        taskMeters.add(gauge("es.task.updated", tags, task, p -> p.getUpdated()));
+        taskMeters.add(gauge("es.task.deleted", tags, task, p -> p.getDeleted()));
+        taskMeters.add(gauge("es.task.version_conflicts", tags, task, p -> p.getVersionConflicts()));
+        taskMeters.add(gauge("es.task.throttled_ms", tags, task, p -> p.getThrottledMillis()));
+        taskMeters.add(gauge("es.task.fraction_done", tags, task, TaskProgress::fractionDone));
+        meters.put(task.taskId(), taskMeters);
+    }
+
+    private Gauge gauge(String name, Tags tags, ByQueryTask task, ToDoubleFunction<TaskProgress> value) {
+        return Gauge.builder(name, task, t -> value.applyAsDouble(t.progress()))
+                .tags(tags)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于 composite 聚合的分组查询
+ * 用 after_key 逐页拉取全部分组，不受 terms 聚合 size 的限制，也不会在协调节点上一次性构建海量桶，
+ * 适合对高基数字段做完整的 group by
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Service
+public class CompositeAggregationService {
+
+    private static final String AGGREGATION_NAME = "groupBy";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final Executor executor;
+
+    public CompositeAggregationService(ElasticsearchClient elasticsearchClient,
+                                       @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.executor = executor;
+    }
+
+    /**
+     * 分组查询，返回的迭代器用完后需要 close
+     *
+     * @param index           索引
+     * @param query           查询条件，可为 null
+     * @param sources         分组字段，按插入顺序作为 composite 的 sources
+     * @param subAggregations 每个分组下的指标，可为空
+     * @param pageSize        每页桶数
+     * @return {@link CompositeBucketIterator}
+     */
+    public CompositeBucketIterator iterator(String index, Query query,
+                                            LinkedHashMap<String, CompositeAggregationSource> sources,
+                                            Map<String, Aggregation> subAggregations, int pageSize) {
+        if (sources == null || sources.isEmpty()) {
+            throw new IllegalArgumentException("composite aggregation requires at least one source");
+        }
+        List<Map<String, CompositeAggregationSource>> sourceList = new ArrayList<>(sources.size());
+        sources.forEach((name, source) -> sourceList.add(Collections.singletonMap(name, source)));
+        Map<String, Aggregation> subs = subAggregations == null ? Collections.emptyMap() : subAggregations;
+        return new CompositeBucketIterator(afterKey -> fetch(index, query, sourceList, subs, pageSize, afterKey),
+                executor, pageSize);
+    }
+
+    /**
+     * 分组查询，以 Stream 形式返回，需要在 try-with-resources 中使用以便提前结束时释放预取的页
+     *
+     * @param index           索引
+     * @param query           查询条件，可为 null
+     * @param sources         分组字段
+     * @param subAggregations 每个分组下的指标，可为空
+     * @param pageSize        每页桶数
+     * @return {@link Stream}<{@link CompositeBucket}>
+     */
+    public Stream<CompositeBucket> stream(String index, Query query,
+                                          LinkedHashMap<String, CompositeAggregationSource> sources,
+                                          Map<String, Aggregation> subAggregations, int pageSize) {
+        CompositeBucketIterator iterator = iterator(index, query, sources, subAggregations, pageSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private CompositeAggregate fetch(String index, Query query,
+                                     List<Map<String, CompositeAggregationSource>> sources,
+                                     Map<String, Aggregation> subAggregations, int pageSize,
+                                     Map<String, FieldValue> afterKey) throws IOException {
+        SearchResponse<Void> response = elasticsearchClient.search(s -> {
+            s.index(index)
+                    .size(0)
+                    .aggregations(AGGREGATION_NAME, a -> {
+                        Aggregation.Builder.ContainerBuilder container = a.composite(c -> {
+                            c.sources(sources).size(pageSize);
+                            if (afterKey != null) {
+                                c.after(afterKey);
+                            }
+                            return c;
+                        });
+                        if (!subAggregations.isEmpty()) {
+                            container.aggregations(subAggregations);
+                        }
+                        return container;
+                    });
+            if (query != null) {
+                s.query(query);
+            }
+            return s;
+        }, Void.class);
+        return response.aggregations().get(AGGREGATION_NAME).composite();
+    }
+}
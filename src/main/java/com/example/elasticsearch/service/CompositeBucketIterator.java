@@ -0,0 +1,129 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * composite 聚合桶迭代器
+ * 拿到一页桶后立即在线程池中请求下一页，调用方消费当前页的同时下一页已经在路上，
+ * 内存中最多同时保留两页数据
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class CompositeBucketIterator implements Iterator<CompositeBucket>, AutoCloseable {
+
+    /**
+     * 按 after_key 拉取一页
+     */
+    @FunctionalInterface
+    interface PageFetcher {
+        /**
+         * 拉取一页
+         *
+         * @param afterKey 上一页的 after_key，第一页为 null
+         * @return {@link CompositeAggregate}
+         * @throws IOException ioexception
+         */
+        CompositeAggregate fetch(Map<String, FieldValue> afterKey) throws IOException;
+    }
+
+    private final PageFetcher fetcher;
+
+    private final Executor executor;
+
+    private final int pageSize;
+
+    private Iterator<CompositeBucket> current = Collections.emptyIterator();
+
+    private CompletableFuture<CompositeAggregate> next;
+
+    private long pages;
+
+    CompositeBucketIterator(PageFetcher fetcher, Executor executor, int pageSize) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.next = fetchAsync(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (next == null) {
+                return false;
+            }
+            CompositeAggregate page = join(next);
+            pages++;
+            List<CompositeBucket> buckets = page.buckets().array();
+            Map<String, FieldValue> afterKey = page.afterKey();
+            // 不足一页说明已经是最后一页，不再多发一次请求
+            boolean last = buckets.size() < pageSize || afterKey == null || afterKey.isEmpty();
+            next = last ? null : fetchAsync(afterKey);
+            current = buckets.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public CompositeBucket next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * 已拉取的页数
+     *
+     * @return long
+     */
+    public long pages() {
+        return pages;
+    }
+
+    /**
+     * 提前结束遍历时丢弃预取中的下一页
+     */
+    @Override
+    public void close() {
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        current = Collections.emptyIterator();
+    }
+
+    private CompletableFuture<CompositeAggregate> fetchAsync(Map<String, FieldValue> afterKey) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetcher.fetch(afterKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static CompositeAggregate join(CompletableFuture<CompositeAggregate> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.elasticsearch.service;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.model.DedupResult;
+import com.example.elasticsearch.transport.RoutingPolicy;
+import com.example.elasticsearch.util.CanonicalJson;
+import com.example.elasticsearch.util.OffHeapLongMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 基于内容哈希的写入去重
+ * 对文档的规范化 JSON（字段排序）计算 64 位哈希，随文档写入 hash 字段（默认 _hash，keyword，不建索引只保留 doc values），
+ * 客户端在堆外维护 id 哈希 -&gt; 内容哈希的映射，内容未变化的文档直接跳过，不再产生写入、refresh 和段合并。
+ * 映射在第一次写入某个索引时从 hash 字段的 doc values 重建，也可调用 {@link #rebuild(String)} 手动重建。
+ * 只有经过本类的写入才会更新映射，其它途径修改或删除文档后需要调用 {@link #forget(String, String)} 或重建
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class ContentHashDeduplicator {
+
+    private static final long UNKNOWN = 0;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final IndexScanner indexScanner;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final RoutingPolicy routingPolicy;
+
+    private final Map<String, OffHeapLongMap> hashes = new ConcurrentHashMap<>();
+
+    @Value("${elasticsearch.dedup.hash-field:_hash}")
+    private String hashField;
+
+    @Value("${elasticsearch.dedup.expected-docs:100000}")
+    private int expectedDocs;
+
+    @Value("${elasticsearch.dedup.scan-slices:4}")
+    private int scanSlices;
+
+    public ContentHashDeduplicator(ElasticsearchClient elasticsearchClient, IndexScanner indexScanner,
+                                   MeterRegistry meterRegistry, RoutingPolicy routingPolicy) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexScanner = indexScanner;
+        JsonpMapper jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+        this.meterRegistry = meterRegistry;
+        this.routingPolicy = routingPolicy;
+    }
+
+    /**
+     * 写入文档，内容未变化的跳过
+     *
+     * @param index 索引
+     * @param docs  文档
+     * @param idOf  文档 id
+     * @return {@link DedupResult}
+     * @throws IOException ioexception
+     */
+    public <T> DedupResult write(String index, Collection<T> docs, Function<T, String> idOf) throws IOException {
+        OffHeapLongMap known = load(index);
+        DedupResult result = new DedupResult();
+        result.setSubmitted(docs.size());
+        // 同一批次中重复的 id 以最后一个为准
+        Map<String, Long> changed = new LinkedHashMap<>();
+        Map<String, ObjectNode> documents = new LinkedHashMap<>();
+        // 路由键从原始文档（@RoutingKey 字段）取，ObjectNode 中的字段名可能与之不同
+        Map<String, String> routings = new HashMap<>();
+        for (T doc : docs) {
+            String id = idOf.apply(doc);
+            ObjectNode node = objectMapper.valueToTree(doc);
+            long hash = contentHash(node);
+            if (known.get(idKey(id), UNKNOWN) == hash) {
+                changed.remove(id);
+                documents.remove(id);
+                routings.remove(id);
+                continue;
+            }
+            node.put(hashField, Long.toHexString(hash));
+            changed.put(id, hash);
+            documents.put(id, node);
+            routings.put(id, routingPolicy.key(index, doc));
+        }
+        result.setSkipped(docs.size() - changed.size());
+        if (!changed.isEmpty()) {
+            List<BulkOperation> operations = new ArrayList<>(documents.size());
+            documents.forEach((id, node) -> operations.add(BulkOperation.of(b -> b
+                    .index(i -> i.index(index).id(id).routing(routings.get(id)).document(node)))));
+            BulkResponse response = elasticsearchClient.bulk(b -> b.operations(operations));
+            for (BulkResponseItem item : response.items()) {
+                if (item.error() == null) {
+                    known.put(idKey(item.id()), changed.get(item.id()));
+                    result.setWritten(result.getWritten() + 1);
+                } else {
+                    log.warn("写入文档 {}/{} 失败:{}", index, item.id(), item.error().reason());
+                    result.setFailed(result.getFailed() + 1);
+                }
+            }
+        }
+        meterRegistry.counter("es.dedup.skipped", "index", index).increment(result.getSkipped());
+        meterRegistry.counter("es.dedup.written", "index", index).increment(result.getWritten());
+        return result;
+    }
+
+    /**
+     * 文档在其它途径被修改或删除后，清除其内容哈希，下次写入时不会被跳过
+     *
+     * @param index 索引
+     * @param id    文档 id
+     */
+    public void forget(String index, String id) {
+        OffHeapLongMap known = hashes.get(index);
+        if (known != null) {
+            known.put(idKey(id), UNKNOWN);
+        }
+    }
+
+    /**
+     * 从索引的 hash 字段重建映射
+     *
+     * @param index 索引
+     * @throws IOException ioexception
+     */
+    public void rebuild(String index) throws IOException {
+        hashes.put(index, scan(index));
+    }
+
+    private OffHeapLongMap load(String index) {
+        return hashes.computeIfAbsent(index, k -> {
+            try {
+                return scan(k);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private OffHeapLongMap scan(String index) throws IOException {
+        OffHeapLongMap map = new OffHeapLongMap(expectedDocs);
+        if (!elasticsearchClient.indices().exists(e -> e.index(index)).value()) {
+            return map;
+        }
+        elasticsearchClient.indices().putMapping(m -> m
+                .index(index)
+                .properties(hashField, p -> p.keyword(k -> k.index(false).docValues(true))));
+        indexScanner.scan(index, null, Collections.singletonList(hashField), scanSlices, hit -> {
+            JsonData value = hit.fields().get(hashField);
+            if (value != null) {
+                map.put(idKey(hit.id()), Long.parseUnsignedLong(value.toJson().asJsonArray().getString(0), 16));
+            }
+        });
+        log.info("内容哈希已加载，index:{}，文档数:{}，堆外内存:{} 字节", index, map.size(), map.memoryBytes());
+        return map;
+    }
+
+    private long contentHash(ObjectNode node) {
+        long hash = CanonicalJson.hash(node, hashField, objectMapper);
+        return hash == UNKNOWN ? 1 : hash;
+    }
+
+    private static long idKey(String id) {
+        return MurmurHash.hash64(id);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.elasticsearch.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.ingest.GetPipelineResponse;
+import co.elastic.clients.elasticsearch.ingest.Pipeline;
+import co.elastic.clients.elasticsearch.ingest.Processor;
+import com.example.elasticsearch.model.DerivedField;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 派生字段管理
+ * 把 {@link DerivedField} 声明转换为 ingest pipeline（&lt;index&gt;-derived），同步 mapping，
+ * 并设置为索引的 default_pipeline，派生值在写入时计算一次并以 doc values 存储，查询时不再执行脚本。
+ * pipeline 的 version 取声明内容的哈希，声明变化时重新生成 pipeline 并通过 update_by_query 回填存量文档。
+ * 注意 _update 局部更新不会经过 default_pipeline，修改源字段后需要整体写入或调用 backfill
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(1)
+public class DerivedFieldService implements ApplicationRunner {
+
+    private static final String PIPELINE_SUFFIX = "-derived";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ByQueryTaskManager taskManager;
+
+    /**
+     * 索引 -> 派生字段
+     */
+    private final Map<String, List<DerivedField>> fieldsByIndex = new LinkedHashMap<>();
+
+    @Value("${elasticsearch.derived-fields.enabled:true}")
+    private boolean enabled;
+
+    public DerivedFieldService(ElasticsearchClient elasticsearchClient, ByQueryTaskManager taskManager,
+                               List<DerivedField> derivedFields) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.taskManager = taskManager;
+        for (DerivedField field : derivedFields) {
+            fieldsByIndex.computeIfAbsent(field.getIndex(), k -> new ArrayList<>()).add(field);
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        for (String index : fieldsByIndex.keySet()) {
+            try {
+                sync(index);
+            } catch (IOException | ElasticsearchException e) {
+                log.error("同步派生字段失败，index:{}", index, e);
+            }
+        }
+    }
+
+    /**
+     * 同步指定索引的派生字段：mapping、pipeline、default_pipeline，声明变化时回填
+     *
+     * @param index 索引
+     * @return 回填任务，无需回填时为 null
+     * @throws IOException ioexception
+     */
+    public ByQueryTask sync(String index) throws IOException {
+        List<DerivedField> fields = fieldsByIndex.get(index);
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        if (!elasticsearchClient.indices().exists(e -> e.index(index)).value()) {
+            log.warn("索引 {} 不存在，跳过派生字段同步", index);
+            return null;
+        }
+        String pipelineId = pipelineId(index);
+        long version = version(fields);
+        Long current = currentVersion(pipelineId);
+
+        Map<String, Property> properties = new LinkedHashMap<>();
+        fields.forEach(field -> properties.put(field.getName(), field.getProperty()));
+        elasticsearchClient.indices().putMapping(m -> m.index(index).properties(properties));
+
+        if (current != null && current == version) {
+            return null;
+        }
+        List<Processor> processors = new ArrayList<>(fields.size());
+        for (DerivedField field : fields) {
+            processors.add(Processor.of(p -> p
+                    .script(s -> s
+                            .inline(inline -> inline
+                                    .lang("painless")
+                                    .source(field.getScript())))));
+        }
+        elasticsearchClient.ingest().putPipeline(p -> p
+                .id(pipelineId)
+                .description("derived fields of " + index + ", managed by DerivedFieldService")
+                .version(version)
+                .processors(processors));
+        elasticsearchClient.indices().putSettings(s -> s
+                .index(index)
+                .settings(settings -> settings.defaultPipeline(pipelineId)));
+        log.info("派生字段 pipeline 已更新，index:{}，pipeline:{}，version:{} -> {}", index, pipelineId, current, version);
+        // 新建时只需要补齐缺失字段的文档，声明变化时已有的值也已过期，需要全部重算
+        return backfill(index, current == null ? missingAny(fields) : Query.of(q -> q.matchAll(m -> m)));
+    }
+
+    /**
+     * 使用派生字段 pipeline 回填存量文档，异步执行
+     *
+     * @param index 索引
+     * @param query 需要回填的文档
+     * @return 回填任务
+     * @throws IOException ioexception
+     */
+    public ByQueryTask backfill(String index, Query query) throws IOException {
+        ByQueryTask task = taskManager.submitUpdateByQuery(u -> u
+                .index(index)
+                .query(query)
+                .pipeline(pipelineId(index))
+                .conflicts(Conflicts.Proceed), null);
+        log.info("派生字段回填已提交，index:{}，task:{}", index, task.taskId());
+        return task;
+    }
+
+    /**
+     * 派生字段 pipeline id
+     *
+     * @param index 索引
+     * @return String
+     */
+    public static String pipelineId(String index) {
+        return index + PIPELINE_SUFFIX;
+    }
+
+    private Long currentVersion(String pipelineId) throws IOException {
+        try {
+            GetPipelineResponse response = elasticsearchClient.ingest().getPipeline(g -> g.id(pipelineId));
+            Pipeline pipeline = response.get(pipelineId);
+            return pipeline == null ? null : pipeline.version();
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static Query missingAny(List<DerivedField> fields) {
+        return Query.of(q -> q
+                .bool(b -> {
+                    fields.forEach(field -> b.should(s -> s
+                            .bool(inner -> inner
+                                    .mustNot(m -> m.exists(e -> e.field(field.getName()))))));
+                    return b.minimumShouldMatch("1");
+                }));
+    }
+
+    private static int version(List<DerivedField> fields) {
+        StringBuilder content = new StringBuilder();
+        for (DerivedField field : fields) {
+            content.append(field.getName()).append('\n').append(field.getScript()).append('\n');
+        }
+        // ES 按 int 解析 pipeline 的 version，取哈希的前 28 位，保证为非负的 int
+        return Integer.parseInt(DigestUtil.sha256Hex(content.toString()).substring(0, 7), 16);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 并发执行多个阻塞请求并等待全部完成
+ * 每个请求在 esQueryExecutor 上占用一个线程，启用虚拟线程（elasticsearch.executor.virtual-threads）后只占用虚拟线程，
+ * 一次扇出上千个请求也不需要同样多的平台线程。同一集群上结构相同的查询优先用 msearch 合并为一个请求
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Service
+public class FanOutSearch {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final Executor executor;
+
+    public FanOutSearch(ElasticsearchClient elasticsearchClient, @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.executor = executor;
+    }
+
+    /**
+     * 并发执行多个查询
+     *
+     * @param requests 查询
+     * @param clazz    文档类型
+     * @return 与 requests 顺序一致的结果
+     * @throws IOException 任一查询失败时抛出
+     */
+    public <T> List<SearchResponse<T>> search(List<SearchRequest> requests, Class<T> clazz) throws IOException {
+        List<Call<SearchResponse<T>>> calls = requests.stream()
+                .<Call<SearchResponse<T>>>map(request -> client -> client.search(request, clazz))
+                .collect(Collectors.toList());
+        return invokeAll(calls, null);
+    }
+
+    /**
+     * 并发执行多个请求，任一请求失败时立即返回，不再等待其余请求
+     *
+     * @param calls   请求
+     * @param timeout 整体超时时间，null 表示一直等待
+     * @return 与 calls 顺序一致的结果
+     * @throws IOException 任一请求失败或超时
+     */
+    public <R> List<R> invokeAll(List<Call<R>> calls, Duration timeout) throws IOException {
+        List<CompletableFuture<R>> futures = new ArrayList<>(calls.size());
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        for (Call<R> call : calls) {
+            CompletableFuture<R> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.apply(elasticsearchClient);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+            future.whenComplete((result, error) -> {
+                if (error != null) {
+                    failed.completeExceptionally(error);
+                }
+            });
+            futures.add(future);
+        }
+        CompletableFuture<Object> done = CompletableFuture.anyOf(
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])), failed);
+        try {
+            if (timeout == null) {
+                done.get();
+            } else {
+                done.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(false));
+            throw new IOException("Interrupted while waiting for " + calls.size() + " calls", e);
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw new IOException("Fan-out of " + calls.size() + " calls timed out after " + timeout, e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(false));
+            throw unwrap(e.getCause());
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private static IOException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * 在 ElasticsearchClient 上执行的请求
+     */
+    @FunctionalInterface
+    public interface Call<R> {
+
+        R apply(ElasticsearchClient client) throws IOException;
+    }
+}
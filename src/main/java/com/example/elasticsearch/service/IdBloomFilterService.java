@@ -0,0 +1,344 @@
+package com.example.elasticsearch.service;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import com.example.elasticsearch.transport.DocumentWriteListener;
+import com.example.elasticsearch.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文档 id 布隆过滤器
+ * 为配置的索引在启动时通过 {@link IndexScanner} 扫描全部 _id 构建 {@link ScalableBloomFilter}，
+ * 之后由 {@link DocumentWriteListener} 跟随项目中的写入增量维护；删除无法从布隆过滤器中移除，定期重建以回收。
+ * 过滤器判定不存在时 exists/get 直接返回，不再访问集群；过滤器尚未构建完成或索引未配置时照常查询。
+ * 重建期间的写入会同时进入新旧两个过滤器，切换时不会漏掉；同一索引同时只有一个重建，
+ * 定时的重建和别名检查由定时线程触发、在查询线程池中执行，遇到正在进行的重建时跳过本次。
+ * 配置的可以是别名：写入通知带的是实际索引名，构建时把别名解析为实际索引，通知按实际索引映射回配置的名称；
+ * 定期检查别名指向，发生变化（如重建索引后切换别名）时先停用过滤器再重建，检查间隔内写入新索引的 id 可能漏掉
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(3)
+public class IdBloomFilterService implements DocumentWriteListener, ApplicationRunner {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final IndexScanner indexScanner;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TaskScheduler scheduler;
+
+    private final Executor executor;
+
+    private final Map<String, ScalableBloomFilter> filters = new ConcurrentHashMap<>();
+
+    private final Map<String, ScalableBloomFilter> building = new ConcurrentHashMap<>();
+
+    private final Set<String> indices = new LinkedHashSet<>();
+
+    /**
+     * 配置的索引或别名 -&gt; 最近一次构建时解析到的实际索引
+     */
+    private final Map<String, Set<String>> concreteIndices = new ConcurrentHashMap<>();
+
+    /**
+     * 每个索引一把重建锁，重叠的重建会互相覆盖 building 中的过滤器，先完成的一方之后的写入会被另一方漏掉
+     */
+    private final Map<String, ReentrantLock> rebuildLocks = new ConcurrentHashMap<>();
+
+    @Value("${elasticsearch.bloom.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 单个索引的内存预算，超出后过滤器饱和，所有查询都照常访问集群
+     */
+    @Value("${elasticsearch.bloom.max-bytes:64MB}")
+    private DataSize maxBytes;
+
+    @Value("${elasticsearch.bloom.rebuild-interval:6h}")
+    private Duration rebuildInterval;
+
+    @Value("${elasticsearch.bloom.scan-slices:4}")
+    private int scanSlices;
+
+    @Value("${elasticsearch.bloom.alias-check-interval:1m}")
+    private Duration aliasCheckInterval;
+
+    public IdBloomFilterService(ElasticsearchClient elasticsearchClient, IndexScanner indexScanner,
+                                MeterRegistry meterRegistry,
+                                @Qualifier("esScheduler") TaskScheduler scheduler,
+                                @Qualifier("esQueryExecutor") Executor executor,
+                                @Value("${elasticsearch.bloom.indices:}") String[] indices) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexScanner = indexScanner;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        for (String index : indices) {
+            if (!index.trim().isEmpty()) {
+                this.indices.add(index.trim());
+            }
+        }
+    }
+
+    /**
+     * 后台构建过滤器并定期重建，不阻塞启动
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String index : indices) {
+            registerMeters(index);
+            submit(() -> rebuildQuietly(index));
+            scheduler.scheduleWithFixedDelay(() -> submit(() -> rebuildQuietly(index)),
+                    Instant.now().plus(rebuildInterval), rebuildInterval);
+            scheduler.scheduleWithFixedDelay(() -> submit(() -> checkAliasQuietly(index)),
+                    Instant.now().plus(aliasCheckInterval), aliasCheckInterval);
+        }
+    }
+
+    @Override
+    public void onIndexed(String index, String id) {
+        for (String configured : indices) {
+            if (configured.equals(index) || concreteIndices.getOrDefault(configured, Collections.emptySet()).contains(index)) {
+                add(configured, hash(id));
+            }
+        }
+    }
+
+    private void add(String index, long hash) {
+        ScalableBloomFilter filter = filters.get(index);
+        if (filter != null) {
+            filter.add(hash);
+        }
+        ScalableBloomFilter next = building.get(index);
+        if (next != null) {
+            next.add(hash);
+        }
+    }
+
+    /**
+     * 文档是否可能存在，false 表示一定不存在
+     *
+     * @param index 索引
+     * @param id    文档 id
+     * @return boolean
+     */
+    public boolean mightExist(String index, String id) {
+        ScalableBloomFilter filter = filters.get(index);
+        if (filter == null || filter.mightContain(hash(id))) {
+            return true;
+        }
+        meterRegistry.counter("es.bloom.short_circuit", "index", index).increment();
+        return false;
+    }
+
+    /**
+     * 判断文档是否存在，过滤器判定不存在时不访问集群
+     *
+     * @param index 索引
+     * @param id    文档 id
+     * @return boolean
+     * @throws IOException ioexception
+     */
+    public boolean exists(String index, String id) throws IOException {
+        return exists(index, id, null);
+    }
+
+    /**
+     * 判断文档是否存在，按路由键分片的索引需要传 routing
+     *
+     * @param index   索引
+     * @param id      文档 id
+     * @param routing 路由，为 null 时不指定
+     * @return boolean
+     * @throws IOException ioexception
+     */
+    public boolean exists(String index, String id, String routing) throws IOException {
+        if (!mightExist(index, id)) {
+            return false;
+        }
+        boolean exists = elasticsearchClient.exists(e -> e.index(index).id(id).routing(routing)).value();
+        if (!exists && filters.containsKey(index)) {
+            meterRegistry.counter("es.bloom.false_positive", "index", index).increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 获取文档，过滤器判定不存在时直接返回 found=false 的响应
+     *
+     * @param index 索引
+     * @param id    文档 id
+     * @param type  文档类型
+     * @return {@link GetResponse}<{@link T}>
+     * @throws IOException ioexception
+     */
+    public <T> GetResponse<T> get(String index, String id, Class<T> type) throws IOException {
+        return get(index, id, null, type);
+    }
+
+    /**
+     * 获取文档，按路由键分片的索引需要传 routing
+     *
+     * @param index   索引
+     * @param id      文档 id
+     * @param routing 路由，为 null 时不指定
+     * @param type    文档类型
+     * @return {@link GetResponse}<{@link T}>
+     * @throws IOException ioexception
+     */
+    public <T> GetResponse<T> get(String index, String id, String routing, Class<T> type) throws IOException {
+        if (!mightExist(index, id)) {
+            return GetResponse.of(g -> g.index(index).id(id).found(false));
+        }
+        GetResponse<T> response = elasticsearchClient.get(g -> g.index(index).id(id).routing(routing), type);
+        if (!response.found() && filters.containsKey(index)) {
+            meterRegistry.counter("es.bloom.false_positive", "index", index).increment();
+        }
+        return response;
+    }
+
+    /**
+     * 从索引重建过滤器，同一索引正在重建时等待其完成后再重建
+     *
+     * @param index 索引或别名
+     * @throws IOException ioexception
+     */
+    public void rebuild(String index) throws IOException {
+        ReentrantLock lock = rebuildLock(index);
+        lock.lock();
+        try {
+            rebuildLocked(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rebuildLocked(String index) throws IOException {
+        if (!elasticsearchClient.indices().exists(e -> e.index(index)).value()) {
+            log.warn("索引 {} 不存在，跳过布隆过滤器构建", index);
+            return;
+        }
+        // 先登记实际索引，之后写入这些索引的通知才能映射到 index
+        concreteIndices.put(index, resolve(index));
+        long count = elasticsearchClient.count(c -> c.index(index)).count();
+        long start = System.currentTimeMillis();
+        ScalableBloomFilter next = new ScalableBloomFilter(Math.max(1024, count + count / 5), fpp, maxBytes.toBytes());
+        building.put(index, next);
+        try {
+            // 先登记新过滤器再 refresh：此前确认的写入对扫描可见，此后的写入由 onIndexed 补入
+            elasticsearchClient.indices().refresh(r -> r.index(index));
+            indexScanner.scan(index, null, Collections.emptyList(), scanSlices, hit -> next.add(hash(hit.id())));
+            filters.put(index, next);
+        } finally {
+            building.remove(index, next);
+        }
+        log.info("布隆过滤器已构建，index:{}，文档数:{}，内存:{} 字节，预估误判率:{}，耗时:{}ms", index, next.count(),
+                next.memoryBytes(), String.format("%.4f", next.expectedFpp()), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 别名指向变化时停用过滤器并重建，停用期间 exists/get 照常查询集群
+     */
+    private void checkAliasQuietly(String index) {
+        ReentrantLock lock = rebuildLock(index);
+        // 正在重建时跳过，重建会重新解析别名，仍有变化时下次检查再处理
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            Set<String> known = concreteIndices.get(index);
+            if (known == null) {
+                return;
+            }
+            Set<String> current = resolve(index);
+            if (!current.equals(known)) {
+                log.info("别名 {} 的指向由 {} 变为 {}，重建布隆过滤器", index, known, current);
+                filters.remove(index);
+                rebuildLocked(index);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("检查别名 {} 失败:{}", index, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Set<String> resolve(String index) throws IOException {
+        return Collections.unmodifiableSet(new HashSet<>(
+                elasticsearchClient.indices().getAlias(a -> a.index(index)).result().keySet()));
+    }
+
+    private void rebuildQuietly(String index) {
+        ReentrantLock lock = rebuildLock(index);
+        if (!lock.tryLock()) {
+            log.debug("布隆过滤器正在重建，跳过本次，index:{}", index);
+            return;
+        }
+        try {
+            rebuildLocked(index);
+        } catch (IOException | RuntimeException e) {
+            log.error("构建布隆过滤器失败，index:{}", index, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock rebuildLock(String index) {
+        return rebuildLocks.computeIfAbsent(index, key -> new ReentrantLock());
+    }
+
+    /**
+     * 定时线程只负责触发，扫描在查询线程池中执行，不占用合并窗口和任务轮询使用的定时线程
+     */
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("查询线程池已满，跳过本次布隆过滤器维护");
+        }
+    }
+
+    private void registerMeters(String index) {
+        Gauge.builder("es.bloom.memory.bytes", filters, f -> f.containsKey(index) ? f.get(index).memoryBytes() : 0)
+                .tag("index", index).register(meterRegistry);
+        Gauge.builder("es.bloom.count", filters, f -> f.containsKey(index) ? f.get(index).count() : 0)
+                .tag("index", index).register(meterRegistry);
+        Gauge.builder("es.bloom.expected_fpp", filters, f -> f.containsKey(index) ? f.get(index).expectedFpp() : 1)
+                .tag("index", index).register(meterRegistry);
+        Gauge.builder("es.bloom.saturated", filters, f -> f.containsKey(index) && f.get(index).isSaturated() ? 1 : 0)
+                .tag("index", index).register(meterRegistry);
+    }
+
+    private static long hash(String id) {
+        return MurmurHash.hash64(id);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldAndFormat;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 全量扫描索引
+ * 基于 point in time + search_after 按 _shard_doc 排序分页，多个 slice 在 esQueryExecutor 上并行扫描，
+ * 不读取 _source，只返回 _id 和指定的 doc values 字段，用于从索引重建客户端的内存结构
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class IndexScanner {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final Executor executor;
+
+    @Value("${elasticsearch.scan.page-size:5000}")
+    private int pageSize;
+
+    @Value("${elasticsearch.scan.keep-alive:2m}")
+    private String keepAlive;
+
+    public IndexScanner(ElasticsearchClient elasticsearchClient, @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.executor = executor;
+    }
+
+    /**
+     * 扫描索引，consumer 会被多个 slice 并发调用，需要线程安全
+     *
+     * @param index    索引
+     * @param query    查询条件，null 表示全部
+     * @param fields   需要返回的 doc values 字段
+     * @param slices   并行度
+     * @param consumer 命中处理
+     * @return 扫描的文档数
+     * @throws IOException ioexception
+     */
+    public long scan(String index, Query query, List<String> fields, int slices,
+                     Consumer<Hit<Void>> consumer) throws IOException {
+        String pitId = elasticsearchClient.openPointInTime(p -> p.index(index).keepAlive(t -> t.time(keepAlive))).id();
+        AtomicLong total = new AtomicLong();
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(slices);
+            for (int slice = 0; slice < slices; slice++) {
+                int id = slice;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        total.addAndGet(scanSlice(pitId, query, fields, id, slices, consumer));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } finally {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        }
+        log.info("扫描索引 {} 完成，文档数:{}，slices:{}", index, total.get(), slices);
+        return total.get();
+    }
+
+    private long scanSlice(String pitId, Query query, List<String> fields, int slice, int slices,
+                           Consumer<Hit<Void>> consumer) throws IOException {
+        List<FieldAndFormat> docValueFields = fields.stream()
+                .map(field -> FieldAndFormat.of(f -> f.field(field)))
+                .collect(Collectors.toList());
+        List<FieldValue> after = null;
+        long count = 0;
+        while (true) {
+            List<FieldValue> searchAfter = after;
+            SearchResponse<Void> response = elasticsearchClient.search(s -> {
+                s.pit(p -> p.id(pitId).keepAlive(t -> t.time(keepAlive)))
+                        .size(pageSize)
+                        .source(src -> src.fetch(false))
+                        .docvalueFields(docValueFields)
+                        .trackTotalHits(t -> t.enabled(false))
+                        .sort(o -> o.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+                if (slices > 1) {
+                    s.slice(sl -> sl.id(String.valueOf(slice)).max(slices));
+                }
+                if (query != null) {
+                    s.query(query);
+                }
+                if (searchAfter != null) {
+                    s.searchAfter(searchAfter);
+                }
+                return s;
+            }, Void.class);
+            List<Hit<Void>> hits = response.hits().hits();
+            hits.forEach(consumer);
+            count += hits.size();
+            if (hits.size() < pageSize) {
+                return count;
+            }
+            after = hits.get(hits.size() - 1).sort();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetOperation;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import com.example.elasticsearch.exception.VersionConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 基于 _seq_no / _primary_term 的读-改-写
+ * 读取文档时一并取得 _seq_no、_primary_term，在 Java 中执行修改逻辑，再以 if_seq_no / if_primary_term 条件写回，
+ * 发生 409 冲突时重新读取并重试，重试间隔为带随机抖动的指数退避。
+ * 修改逻辑可能被执行多次，必须是无副作用的；返回 null 表示无需修改。
+ * 文档不存在时修改函数收到 null，返回非 null 时以 create 方式写入。
+ * 按路由键分片的索引（elasticsearch.routing.indices）读取时必须传 routing
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class OptimisticUpdateService {
+
+    private static final int CONFLICT = 409;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Value("${elasticsearch.occ.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${elasticsearch.occ.backoff-initial-ms:20}")
+    private long backoffInitialMs;
+
+    @Value("${elasticsearch.occ.backoff-max-ms:1000}")
+    private long backoffMaxMs;
+
+    public OptimisticUpdateService(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * 读-改-写单个文档
+     *
+     * @param index  索引
+     * @param id     文档 id
+     * @param type   文档类型
+     * @param modify 修改逻辑
+     * @return 写入的文档，未修改时为 null
+     * @throws IOException ioexception
+     */
+    public <T> T modify(String index, String id, Class<T> type, UnaryOperator<T> modify) throws IOException {
+        return modify(index, id, null, type, modify);
+    }
+
+    /**
+     * 读-改-写单个文档，读取和写回都使用指定的 routing
+     *
+     * @param index   索引
+     * @param id      文档 id
+     * @param routing 路由，为 null 时不指定
+     * @param type    文档类型
+     * @param modify  修改逻辑
+     * @return 写入的文档，未修改时为 null
+     * @throws IOException ioexception
+     */
+    public <T> T modify(String index, String id, String routing, Class<T> type, UnaryOperator<T> modify) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            GetResponse<T> current = elasticsearchClient.get(g -> g.index(index).id(id).routing(routing), type);
+            T updated = modify.apply(current.found() ? current.source() : null);
+            if (updated == null) {
+                return null;
+            }
+            try {
+                if (current.found()) {
+                    elasticsearchClient.index(i -> i
+                            .index(index)
+                            .id(id)
+                            .routing(routing)
+                            .document(updated)
+                            .ifSeqNo(current.seqNo())
+                            .ifPrimaryTerm(current.primaryTerm()));
+                } else {
+                    elasticsearchClient.create(c -> c
+                            .index(index)
+                            .id(id)
+                            .routing(routing)
+                            .document(updated));
+                }
+                return updated;
+            } catch (ResponseException e) {
+                // 409 不在客户端的 ignore 列表中，以 ResponseException 抛出而不是 ElasticsearchException
+                if (e.getResponse().getStatusLine().getStatusCode() != CONFLICT) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    throw new VersionConflictException(index, Collections.singletonList(id), attempt);
+                }
+                log.debug("文档 {}/{} 版本冲突，第 {} 次重试", index, id, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 批量读-改-写，使用 mget 读取、bulk 写回，冲突的文档单独重试
+     * 非冲突的写入失败会直接抛出，此时其它文档可能已经写入
+     *
+     * @param index  索引
+     * @param ids    文档 id
+     * @param type   文档类型
+     * @param modify 修改逻辑
+     * @return 写入的文档，key 为文档 id
+     * @throws IOException ioexception
+     */
+    public <T> Map<String, T> modifyAll(String index, Collection<String> ids, Class<T> type,
+                                        UnaryOperator<T> modify) throws IOException {
+        return modifyAll(index, ids, null, type, modify);
+    }
+
+    /**
+     * 批量读-改-写，每个文档的读取和写回使用各自的 routing
+     *
+     * @param index     索引
+     * @param ids       文档 id
+     * @param routingOf 文档 id -&gt; 路由，为 null 时不指定
+     * @param type      文档类型
+     * @param modify    修改逻辑
+     * @return 写入的文档，key 为文档 id
+     * @throws IOException ioexception
+     */
+    public <T> Map<String, T> modifyAll(String index, Collection<String> ids, Function<String, String> routingOf,
+                                        Class<T> type, UnaryOperator<T> modify) throws IOException {
+        Function<String, String> routing = routingOf != null ? routingOf : id -> null;
+        Map<String, T> written = new LinkedHashMap<>(ids.size() * 2);
+        Set<String> remaining = new LinkedHashSet<>(ids);
+        for (int attempt = 1; !remaining.isEmpty(); attempt++) {
+            List<String> batch = new ArrayList<>(remaining);
+            MgetResponse<T> response = elasticsearchClient.mget(m -> routingOf == null
+                    ? m.index(index).ids(batch)
+                    : m.index(index).docs(batch.stream()
+                            .map(id -> MultiGetOperation.of(d -> d.id(id).routing(routing.apply(id))))
+                            .collect(Collectors.toList())), type);
+            List<BulkOperation> operations = new ArrayList<>(batch.size());
+            Map<String, T> pending = new LinkedHashMap<>(batch.size() * 2);
+            for (MultiGetResponseItem<T> item : response.docs()) {
+                if (item.isFailure()) {
+                    throw new ElasticsearchException("mget", ErrorResponse.of(e -> e
+                            .error(item.failure().error())
+                            .status(500)));
+                }
+                GetResult<T> current = item.result();
+                T updated = modify.apply(current.found() ? current.source() : null);
+                if (updated == null) {
+                    remaining.remove(current.id());
+                    continue;
+                }
+                pending.put(current.id(), updated);
+                operations.add(current.found()
+                        ? BulkOperation.of(b -> b.index(i -> i
+                                .index(index)
+                                .id(current.id())
+                                .routing(routing.apply(current.id()))
+                                .document(updated)
+                                .ifSeqNo(current.seqNo())
+                                .ifPrimaryTerm(current.primaryTerm())))
+                        : BulkOperation.of(b -> b.create(c -> c
+                                .index(index)
+                                .id(current.id())
+                                .routing(routing.apply(current.id()))
+                                .document(updated))));
+            }
+            if (operations.isEmpty()) {
+                break;
+            }
+            BulkResponse bulk = elasticsearchClient.bulk(b -> b.operations(operations));
+            for (BulkResponseItem item : bulk.items()) {
+                if (item.error() == null) {
+                    remaining.remove(item.id());
+                    written.put(item.id(), pending.get(item.id()));
+                } else if (item.status() != CONFLICT) {
+                    throw new ElasticsearchException("bulk", ErrorResponse.of(e -> e
+                            .error(item.error())
+                            .status(item.status())));
+                }
+            }
+            if (remaining.isEmpty()) {
+                break;
+            }
+            if (attempt >= maxAttempts) {
+                throw new VersionConflictException(index, remaining, attempt);
+            }
+            log.debug("批量更新 {} 个文档版本冲突，第 {} 次重试", remaining.size(), attempt);
+            backoff(attempt);
+        }
+        return written;
+    }
+
+    /**
+     * full jitter 退避：在 [0, min(max, initial * 2^(attempt-1))] 内随机等待，避免冲突方同时重试
+     */
+    private void backoff(int attempt) throws InterruptedIOException {
+        long cap = Math.min(backoffMaxMs, backoffInitialMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.elasticsearch.model.ProjectedPage;
+import com.example.elasticsearch.util.SourceProjection;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 投影查询
+ * 根据目标类自动生成 _source includes，并通过 filter_path 只取回 hits.total、hits._source 以及指定的聚合，
+ * 列表类接口不再需要手写 source filter，响应体和解析开销都随之减少
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Service
+public class ProjectionSearchService {
+
+    private final RawSearchService rawSearchService;
+
+    private final ObjectMapper objectMapper;
+
+    public ProjectionSearchService(RawSearchService rawSearchService, ElasticsearchClient elasticsearchClient) {
+        this.rawSearchService = rawSearchService;
+        JsonpMapper jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+    }
+
+    /**
+     * 投影查询
+     *
+     * @param fn           查询构建，与 elasticsearchClient.search 的写法一致，其中的 source 设置会被覆盖
+     * @param projection   投影类
+     * @param aggregations 需要返回的聚合名称
+     * @return {@link ProjectedPage}<{@link T}>
+     * @throws IOException ioexception
+     */
+    public <T> ProjectedPage<T> search(Function<SearchRequest.Builder, ObjectBuilder<SearchRequest>> fn,
+                                       Class<T> projection, String... aggregations) throws IOException {
+        List<String> includes = SourceProjection.includes(projection, objectMapper);
+        SearchRequest.Builder builder = new SearchRequest.Builder();
+        fn.apply(builder);
+        SearchRequest request = builder
+                .source(source -> source.filter(filter -> filter.includes(includes)))
+                .build();
+        Response response = rawSearchService.search(request, filterPath(aggregations));
+        if (response.getStatusLine().getStatusCode() >= 300) {
+            throw new ResponseException(response);
+        }
+        try (InputStream in = response.getEntity().getContent();
+             JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            return read(parser, projection);
+        }
+    }
+
+    /**
+     * 生成 filter_path，只保留调用方会读取的部分
+     *
+     * @param aggregations 聚合名称
+     * @return String
+     */
+    static String filterPath(String... aggregations) {
+        StringBuilder filterPath = new StringBuilder("hits.total,hits.hits._id,hits.hits._source");
+        for (String aggregation : aggregations) {
+            filterPath.append(",aggregations.").append(aggregation);
+        }
+        return filterPath.toString();
+    }
+
+    /**
+     * 流式解析裁剪后的响应，_source 直接反序列化为投影类，不经过中间的树结构
+     */
+    private <T> ProjectedPage<T> read(JsonParser parser, Class<T> projection) throws IOException {
+        ProjectedPage<T> page = new ProjectedPage<>();
+        List<String> ids = new ArrayList<>();
+        List<T> records = new ArrayList<>();
+        Map<String, JsonNode> aggregations = Collections.emptyMap();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected search response, expected an object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("hits".equals(name)) {
+                readHits(parser, projection, page, ids, records);
+            } else if ("aggregations".equals(name)) {
+                aggregations = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String aggregation = parser.getCurrentName();
+                    parser.nextToken();
+                    aggregations.put(aggregation, objectMapper.readTree(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        page.setIds(ids);
+        page.setRecords(records);
+        page.setAggregations(aggregations);
+        return page;
+    }
+
+    private <T> void readHits(JsonParser parser, Class<T> projection, ProjectedPage<T> page,
+                              List<String> ids, List<T> records) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("total".equals(name) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("value".equals(field)) {
+                        page.setTotal(parser.getLongValue());
+                    } else if ("relation".equals(field)) {
+                        page.setTotalRelation(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else if ("hits".equals(name) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    String id = null;
+                    T record = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("_id".equals(field)) {
+                            id = parser.getText();
+                        } else if ("_source".equals(field)) {
+                            record = objectMapper.readValue(parser, projection);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    ids.add(id);
+                    records.add(record);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
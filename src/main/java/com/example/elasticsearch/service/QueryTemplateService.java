@@ -0,0 +1,150 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.util.QueryTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.stream.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 查询模板缓存
+ * 高频查询的结构只在首次使用时构建、编译为 {@link QueryTemplate}，之后按名称复用，
+ * 每次请求只绑定参数字节并通过 RestClient 发送，响应仍然解析为 SearchResponse，调用方的用法与 elasticsearchClient.search 一致
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class QueryTemplateService {
+
+    private final RestClient restClient;
+
+    private final JsonpMapper jsonpMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final AdmissionController admissionController;
+
+    /**
+     * 模板名称 -> 已编译的模板
+     */
+    private final Map<String, QueryTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 文档类型 -> 响应解析器
+     */
+    private final Map<Class<?>, JsonpDeserializer<?>> deserializers = new ConcurrentHashMap<>();
+
+    public QueryTemplateService(RestClient restClient, ElasticsearchClient elasticsearchClient, AdmissionController admissionController) {
+        this.restClient = restClient;
+        this.admissionController = admissionController;
+        this.jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+    }
+
+    /**
+     * 注册（或替换）查询模板
+     *
+     * @param name 模板名称
+     * @param fn   带占位符的查询构建
+     * @return {@link QueryTemplate}
+     */
+    public QueryTemplate register(String name, Function<SearchRequest.Builder, ObjectBuilder<SearchRequest>> fn) {
+        QueryTemplate template = QueryTemplate.compile(SearchRequest.of(fn), jsonpMapper);
+        templates.put(name, template);
+        log.info("注册查询模板，name:{}，path:{}，params:{}", name, template.path(), template.names());
+        return template;
+    }
+
+    /**
+     * 获取已注册的模板
+     *
+     * @param name 模板名称
+     * @return {@link QueryTemplate}
+     */
+    public QueryTemplate template(String name) {
+        QueryTemplate template = templates.get(name);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown query template: " + name);
+        }
+        return template;
+    }
+
+    /**
+     * 使用已注册的模板查询
+     *
+     * @param name   模板名称
+     * @param params 参数
+     * @param clazz  文档类型
+     * @return {@link SearchResponse}<{@link T}>
+     * @throws IOException ioexception
+     */
+    public <T> SearchResponse<T> search(String name, Map<String, ?> params, Class<T> clazz) throws IOException {
+        return search(template(name), params, clazz);
+    }
+
+    /**
+     * 使用模板查询，模板不存在时用 fn 构建并缓存，之后 fn 不再执行
+     *
+     * @param name   模板名称
+     * @param fn     带占位符的查询构建
+     * @param params 参数
+     * @param clazz  文档类型
+     * @return {@link SearchResponse}<{@link T}>
+     * @throws IOException ioexception
+     */
+    public <T> SearchResponse<T> search(String name, Function<SearchRequest.Builder, ObjectBuilder<SearchRequest>> fn,
+                                        Map<String, ?> params, Class<T> clazz) throws IOException {
+        QueryTemplate template = templates.get(name);
+        if (template == null) {
+            template = templates.computeIfAbsent(name, key -> QueryTemplate.compile(SearchRequest.of(fn), jsonpMapper));
+        }
+        return search(template, params, clazz);
+    }
+
+    /**
+     * 使用模板查询
+     * 非 2xx 响应抛出 ResponseException
+     *
+     * @param template 模板
+     * @param params   参数
+     * @param clazz    文档类型
+     * @return {@link SearchResponse}<{@link T}>
+     * @throws IOException ioexception
+     */
+    @SuppressWarnings("unchecked")
+    public <T> SearchResponse<T> search(QueryTemplate template, Map<String, ?> params, Class<T> clazz) throws IOException {
+        Request request = new Request("POST", template.path());
+        template.parameters().forEach(request::addParameter);
+        request.setEntity(new ByteArrayEntity(template.bind(params, objectMapper), ContentType.APPLICATION_JSON));
+        Response response = admissionController.call(admissionController.classify(template.operationClass()), () -> restClient.performRequest(request));
+        JsonpDeserializer<SearchResponse<T>> deserializer = (JsonpDeserializer<SearchResponse<T>>) deserializers.computeIfAbsent(clazz,
+                key -> SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(key)));
+        try (InputStream in = response.getEntity().getContent();
+             JsonParser parser = jsonpMapper.jsonProvider().createParser(in)) {
+            return deserializer.deserialize(parser, jsonpMapper);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonpMapper;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.admission.OperationClass;
+import com.example.elasticsearch.util.EsJsonUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 原始 JSON 透传查询
+ * 查询 DSL 直接通过客户端底层的 RestClient 发送，响应只经过 filter_path 裁剪，
+ * 不反序列化为 User / Hit 等对象，适用于网关这类只负责把 ES 结果转发给前端的场景
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class RawSearchService {
+
+    private final RestClient restClient;
+
+    private final JsonpMapper jsonpMapper;
+
+    private final AdmissionController admissionController;
+
+    /**
+     * 默认的 filter_path，只保留前端需要的部分
+     */
+    @Value("${elasticsearch.search.filter-path:took,hits.total,hits.hits._id,hits.hits._source,aggregations}")
+    private String defaultFilterPath;
+
+    public RawSearchService(RestClient restClient, ElasticsearchClient elasticsearchClient, AdmissionController admissionController) {
+        this.restClient = restClient;
+        this.jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * 使用 JSON 查询体进行搜索
+     * 非 2xx 的响应不会抛出异常，而是原样返回，由调用方根据状态码处理
+     *
+     * @param index      索引，多个逗号隔开
+     * @param body       查询 DSL，为空时不带请求体
+     * @param filterPath filter_path，为空时使用默认值
+     * @return {@link Response}
+     * @throws IOException ioexception
+     */
+    public Response search(String index, String body, String filterPath) throws IOException {
+        byte[] bytes = StringUtils.hasLength(body) ? body.getBytes(StandardCharsets.UTF_8) : null;
+        return search(index, bytes, filterPath, null);
+    }
+
+    /**
+     * 使用类型化的 SearchRequest 构建查询体，但响应依旧以原始字节返回
+     * 请求中的 URL 参数（routing、preference、search_type、request_cache 等）一并发送
+     *
+     * @param request    查询请求，索引取自 request.index()
+     * @param filterPath filter_path，为空时使用 request 中的设置，都没有时使用默认值
+     * @return {@link Response}
+     * @throws IOException ioexception
+     */
+    public Response search(SearchRequest request, String filterPath) throws IOException {
+        return search(request, filterPath, null);
+    }
+
+    /**
+     * 使用类型化的 SearchRequest 构建查询体，并指定准入类别
+     *
+     * @param request        查询请求，索引取自 request.index()
+     * @param filterPath     filter_path，为空时使用 request 中的设置，都没有时使用默认值
+     * @param operationClass 准入类别，为 null 时按请求结构判断（带聚合、scroll、pit 的为 ANALYTICS）
+     * @return {@link Response}
+     * @throws IOException ioexception
+     */
+    public Response search(SearchRequest request, String filterPath, OperationClass operationClass) throws IOException {
+        Map<String, String> parameters = queryParameters(request);
+        String requestFilterPath = parameters.remove("filter_path");
+        return search(String.join(",", request.index()), EsJsonUtils.toBytes(request, jsonpMapper),
+                StringUtils.hasLength(filterPath) ? filterPath : requestFilterPath, parameters,
+                operationClass != null ? operationClass : OperationClass.of("es/search", request));
+    }
+
+    /**
+     * 发送查询，可附加额外的 URL 参数（如 typed_keys、routing）
+     *
+     * @param index      索引，多个逗号隔开
+     * @param body       查询体
+     * @param filterPath filter_path，为空时使用默认值
+     * @param parameters 额外的 URL 参数
+     * @return {@link Response}
+     * @throws IOException ioexception
+     */
+    public Response search(String index, byte[] body, String filterPath, Map<String, String> parameters) throws IOException {
+        return search(index, body, filterPath, parameters, null);
+    }
+
+    /**
+     * 发送查询，并指定准入类别
+     *
+     * @param index          索引，多个逗号隔开
+     * @param body           查询体
+     * @param filterPath     filter_path，为空时使用默认值
+     * @param parameters     额外的 URL 参数
+     * @param operationClass 准入类别，为 null 时按查询体判断（顶层带聚合、pit 或参数带 scroll 的为 ANALYTICS）
+     * @return {@link Response}
+     * @throws IOException ioexception
+     */
+    public Response search(String index, byte[] body, String filterPath, Map<String, String> parameters,
+                           OperationClass operationClass) throws IOException {
+        OperationClass admitted = admissionController.classify(
+                operationClass != null ? operationClass : OperationClass.ofSearchBody(body, parameters));
+        Request request = new Request("POST", searchEndpoint(index));
+        request.addParameter("filter_path", StringUtils.hasLength(filterPath) ? filterPath : defaultFilterPath);
+        if (parameters != null) {
+            parameters.forEach(request::addParameter);
+        }
+        if (body != null) {
+            request.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        }
+        try {
+            return admissionController.call(admitted, () -> restClient.performRequest(request));
+        } catch (ResponseException e) {
+            log.warn("透传查询失败，index:{}，status:{}", index, e.getResponse().getStatusLine().getStatusCode());
+            return e.getResponse();
+        }
+    }
+
+    /**
+     * 查询并把响应字节直接写入输出流
+     *
+     * @param index      索引，多个逗号隔开
+     * @param body       查询 DSL
+     * @param filterPath filter_path，为空时使用默认值
+     * @param out        输出流
+     * @return ES 响应的 HTTP 状态码
+     * @throws IOException ioexception
+     */
+    public int streamSearch(String index, String body, String filterPath, OutputStream out) throws IOException {
+        Response response = search(index, body, filterPath);
+        if (response.getEntity() != null) {
+            response.getEntity().writeTo(out);
+        }
+        return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * 类型化请求的 URL 参数，去掉 typed_keys：透传的响应按聚合名称读取，不需要类型前缀
+     *
+     * @param request 查询请求
+     * @return 可修改的参数表
+     */
+    static Map<String, String> queryParameters(SearchRequest request) {
+        Map<String, String> parameters = new LinkedHashMap<>(SearchRequest._ENDPOINT.queryParameters(request));
+        parameters.remove("typed_keys");
+        return parameters;
+    }
+
+    private static String searchEndpoint(String index) {
+        return StringUtils.hasLength(index) ? "/" + index + "/_search" : "/_search";
+    }
+}
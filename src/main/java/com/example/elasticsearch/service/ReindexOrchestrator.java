@@ -0,0 +1,280 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.OpType;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.elasticsearch.indices.get_alias.IndexAliases;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.elasticsearch.model.ReindexResult;
+import com.example.elasticsearch.model.TaskProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 零停机 reindex
+ * 1. 按新的 mapping 定义创建版本化索引 &lt;alias&gt;_v&lt;yyyyMMddHHmmss&gt;
+ * 2. 以 slices=auto、限流的 _reindex 把旧索引复制过去，version_type=external 保留源文档版本号
+ * 3. 切换写别名前追平一次：只复制时间戳字段晚于全量复制开始时间的文档。此时新索引只有来自旧索引的文档，
+ *    两边的版本号出自同一个计数器，external 版本可以比较，旧索引上更新过的文档会覆盖新索引中的旧副本
+ * 4. 切换写别名后再追平一次切换前的写入：新索引已开始直接写入，版本号不再可比，
+ *    这一次以 op_type=create 只补新索引中不存在的文档，已存在的文档一律不覆盖
+ * 5. 原子切换读别名
+ * 所有复制都使用调用方的限流，追平只复制时间戳字段晚于上一次复制开始时间（减去 catch-up-skew）的文档，
+ * 因此文档需要带有写入时更新的时间戳字段。
+ * 第 3 步开始后到切换写别名之间对已有文档的更新不会同步，需要在这段时间内暂停更新或事后核对；
+ * 复制期间在旧索引上的删除同样不会同步到新索引。
+ * 旧索引保留，可通过 {@link #rollback(ReindexResult)} 回滚，确认无误后再调用 {@link #dropPrevious(ReindexResult)}
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class ReindexOrchestrator {
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ByQueryTaskManager taskManager;
+
+    private final Executor executor;
+
+    /**
+     * 追平范围向前多取的时间，覆盖应用与集群之间的时钟偏差和 refresh 间隔
+     */
+    @Value("${elasticsearch.reindex.catch-up-skew:30s}")
+    private Duration catchUpSkew;
+
+    public ReindexOrchestrator(ElasticsearchClient elasticsearchClient, ByQueryTaskManager taskManager,
+                               @Qualifier("esQueryExecutor") Executor executor) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.taskManager = taskManager;
+        this.executor = executor;
+    }
+
+    /**
+     * 迁移读写共用的别名
+     *
+     * @param alias             别名
+     * @param definition        新索引的 settings、mappings，索引名由编排器生成
+     * @param requestsPerSecond 复制限流，null 表示不限流
+     * @param timestampField    文档的更新时间字段（date 类型），追平阶段按它限定范围
+     * @return 迁移结果
+     * @throws IOException ioexception
+     */
+    public CompletableFuture<ReindexResult> migrate(String alias,
+                                                    Function<CreateIndexRequest.Builder, ObjectBuilder<CreateIndexRequest>> definition,
+                                                    Float requestsPerSecond, String timestampField) throws IOException {
+        return migrate(alias, alias, definition, requestsPerSecond, timestampField);
+    }
+
+    /**
+     * 迁移读别名和写别名
+     *
+     * @param readAlias         读别名
+     * @param writeAlias        写别名，可以与读别名相同
+     * @param definition        新索引的 settings、mappings，索引名由编排器生成
+     * @param requestsPerSecond 复制限流，null 表示不限流
+     * @param timestampField    文档的更新时间字段（date 类型），追平阶段按它限定范围
+     * @return 迁移结果
+     * @throws IOException ioexception
+     */
+    public CompletableFuture<ReindexResult> migrate(String readAlias, String writeAlias,
+                                                    Function<CreateIndexRequest.Builder, ObjectBuilder<CreateIndexRequest>> definition,
+                                                    Float requestsPerSecond, String timestampField) throws IOException {
+        if (timestampField == null || timestampField.isEmpty()) {
+            throw new IllegalArgumentException("A timestamp field is required to bound the catch-up passes");
+        }
+        String previous = resolve(readAlias);
+        if (!readAlias.equals(writeAlias) && !previous.equals(resolve(writeAlias))) {
+            throw new IllegalStateException("Aliases [" + readAlias + "] and [" + writeAlias + "] point to different indices");
+        }
+        String current = readAlias.toLowerCase(Locale.ROOT) + "_v" + LocalDateTime.now().format(VERSION_FORMAT);
+        CreateIndexRequest.Builder builder = new CreateIndexRequest.Builder();
+        definition.apply(builder);
+        elasticsearchClient.indices().create(builder.index(current).build());
+        log.info("reindex 开始，{} -> {}，readAlias:{}，writeAlias:{}", previous, current, readAlias, writeAlias);
+
+        ReindexResult result = new ReindexResult();
+        result.setReadAlias(readAlias);
+        result.setWriteAlias(writeAlias);
+        result.setPreviousIndex(previous);
+        result.setCurrentIndex(current);
+        result.setTimestampField(timestampField);
+        result.setRequestsPerSecond(requestsPerSecond);
+        boolean shared = readAlias.equals(writeAlias);
+        Instant copyStart = Instant.now();
+        AtomicReference<Instant> catchUpStart = new AtomicReference<>();
+
+        return copy(previous, current, null, requestsPerSecond, false)
+                .thenCompose(copy -> {
+                    result.setCopy(copy);
+                    catchUpStart.set(Instant.now());
+                    // 新索引尚未直接写入，版本号可比，external 版本保证只用旧索引上更新的版本覆盖
+                    return copy(previous, current, since(timestampField, copyStart), requestsPerSecond, false);
+                })
+                .thenCompose(catchUp -> {
+                    result.setCatchUp(catchUp);
+                    // 读写共用别名时同时切换读写
+                    swap(writeAlias, previous, current, true);
+                    result.setWriteSwappedAt(Instant.now());
+                    // 新索引已直接写入，只补缺失的文档
+                    return copy(previous, current, since(timestampField, catchUpStart.get()), requestsPerSecond, true);
+                })
+                .thenApplyAsync(finalPass -> {
+                    result.setFinalCatchUp(finalPass);
+                    if (!shared) {
+                        swap(readAlias, previous, current, false);
+                    }
+                    log.info("reindex 完成，{} -> {}，copied:{}，caught up:{}，filled:{}", previous, current,
+                            result.getCopy().getCreated(), result.getCatchUp().getCreated() + result.getCatchUp().getUpdated(),
+                            finalPass.getCreated());
+                    return result;
+                }, executor);
+    }
+
+    /**
+     * 回滚：把切换写别名之后新索引上的写入同步回旧索引，再把别名切回旧索引
+     * 旧索引在切换后不再有写入，新索引上的版本可以直接覆盖；切回写别名后旧索引恢复写入，之后只补缺失的文档，
+     * 同步开始后到切回之间对已有文档的更新不会同步
+     *
+     * @param result 迁移结果
+     * @return 回滚完成
+     */
+    public CompletableFuture<Void> rollback(ReindexResult result) {
+        String previous = result.getPreviousIndex();
+        String current = result.getCurrentIndex();
+        boolean shared = result.getReadAlias().equals(result.getWriteAlias());
+        Query written = since(result.getTimestampField(), result.getWriteSwappedAt());
+        Instant syncStart = Instant.now();
+        return copyBack(current, previous, written, result.getRequestsPerSecond())
+                .thenCompose(progress -> {
+                    swap(result.getWriteAlias(), current, previous, true);
+                    if (!shared) {
+                        swap(result.getReadAlias(), current, previous, false);
+                    }
+                    // 补上同步开始后到切换之间写入新索引的文档
+                    return copy(current, previous, since(result.getTimestampField(), syncStart),
+                            result.getRequestsPerSecond(), true);
+                })
+                .thenAccept(progress -> log.info("reindex 已回滚，{} -> {}", current, previous));
+    }
+
+    /**
+     * 删除迁移前的旧索引，删除后无法回滚
+     *
+     * @param result 迁移结果
+     * @throws IOException ioexception
+     */
+    public void dropPrevious(ReindexResult result) throws IOException {
+        elasticsearchClient.indices().delete(d -> d.index(result.getPreviousIndex()));
+        log.info("已删除旧索引 {}", result.getPreviousIndex());
+    }
+
+    /**
+     * 复制文档
+     *
+     * @param createOnly true 时以 op_type=create 只写入目标中不存在的文档；否则以 version_type=external 只写入更高的版本
+     */
+    private CompletableFuture<TaskProgress> copy(String source, String dest, Query query, Float requestsPerSecond,
+                                                 boolean createOnly) {
+        try {
+            return taskManager.submitReindex(r -> r
+                    .source(s -> {
+                        s.index(source);
+                        if (query != null) {
+                            s.query(query);
+                        }
+                        return s;
+                    })
+                    .dest(d -> createOnly
+                            ? d.index(dest).opType(OpType.Create)
+                            : d.index(dest).versionType(VersionType.External))
+                    // 目标上已有该文档（create）或相同、更新的版本（external）时计为冲突并跳过
+                    .conflicts(Conflicts.Proceed), requestsPerSecond).future();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 回滚时把新索引上的写入覆盖回旧索引，两边版本号不可比，直接覆盖
+     */
+    private CompletableFuture<TaskProgress> copyBack(String source, String dest, Query query, Float requestsPerSecond) {
+        try {
+            return taskManager.submitReindex(r -> r
+                    .source(s -> s.index(source).query(query))
+                    .dest(d -> d.index(dest))
+                    .conflicts(Conflicts.Proceed), requestsPerSecond).future();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 时间戳字段不早于 from - catchUpSkew 的文档
+     */
+    private Query since(String timestampField, Instant from) {
+        long millis = from.minus(catchUpSkew).toEpochMilli();
+        return Query.of(q -> q.range(r -> r
+                .field(timestampField)
+                .gte(JsonData.of(millis))
+                .format("epoch_millis")));
+    }
+
+    /**
+     * 在一次 _aliases 请求中把别名从 from 移到 to，请求是原子的
+     */
+    private void swap(String alias, String from, String to, boolean writeIndex) {
+        List<Action> actions = new ArrayList<>(2);
+        actions.add(Action.of(a -> a.remove(r -> r.index(from).alias(alias))));
+        actions.add(Action.of(a -> a.add(add -> add.index(to).alias(alias).isWriteIndex(writeIndex ? true : null))));
+        try {
+            elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("别名 {} 已切换，{} -> {}", alias, from, to);
+    }
+
+    private String resolve(String alias) throws IOException {
+        Map<String, IndexAliases> indices;
+        try {
+            indices = elasticsearchClient.indices().getAlias(a -> a.name(alias)).result();
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                throw new IllegalStateException("Alias [" + alias + "] does not exist; "
+                        + "indices without an alias cannot be migrated without downtime", e);
+            }
+            throw e;
+        }
+        if (indices.size() != 1) {
+            throw new IllegalStateException("Alias [" + alias + "] points to " + indices.keySet() + ", expected exactly one index");
+        }
+        return indices.keySet().iterator().next();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.elasticsearch.service;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.json.JsonData;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 存储脚本 / 搜索模板注册中心
+ * 启动时从 classpath 加载 es/scripts 下的脚本（.painless）和模板（.mustache），
+ * 以「文件名-内容哈希」作为 id 注册为存储脚本，内容不变时 id 不变、不会重复注册，
+ * 调用方只传 id 和参数，避免内联脚本反复编译触发 script.max_compilations_rate 熔断。
+ * 旧版本的脚本不会被删除，滚动发布期间老实例仍然可以使用
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ScriptRegistry implements ApplicationRunner {
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    /**
+     * 脚本名称 -> 脚本定义
+     */
+    private final Map<String, ScriptDefinition> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * 已确认在集群中存在的 id
+     */
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    @Value("${elasticsearch.scripts.location:classpath*:es/scripts/*.*}")
+    private String location;
+
+    public ScriptRegistry(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (ScriptDefinition definition : definitions.values()) {
+            try {
+                register(definition);
+            } catch (IOException | ElasticsearchException e) {
+                // ES 暂不可用时不阻止启动，首次调用时再注册
+                log.error("注册存储脚本失败，name:{}，id:{}", definition.getName(), definition.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * 获取脚本的版本化 id，未注册时先注册
+     *
+     * @param name 脚本名称（不含扩展名的文件名）
+     * @return 存储脚本 id
+     * @throws IOException ioexception
+     */
+    public String id(String name) throws IOException {
+        ScriptDefinition definition = definitions.get(name);
+        if (definition == null) {
+            throw new IllegalArgumentException("Unknown stored script: " + name);
+        }
+        if (!registered.contains(definition.getId())) {
+            register(definition);
+        }
+        return definition.getId();
+    }
+
+    /**
+     * 构建存储脚本引用
+     *
+     * @param name   脚本名称
+     * @param params 脚本参数
+     * @return {@link Script}
+     * @throws IOException ioexception
+     */
+    public Script script(String name, Map<String, JsonData> params) throws IOException {
+        String id = id(name);
+        return Script.of(s -> s
+                .stored(stored -> stored
+                        .id(id)
+                        .params(params == null ? Collections.emptyMap() : params)));
+    }
+
+    /**
+     * 已加载的脚本定义
+     *
+     * @return 脚本名称 -> 脚本定义
+     */
+    public Map<String, ScriptDefinition> definitions() {
+        return Collections.unmodifiableMap(definitions);
+    }
+
+    /**
+     * 加载 classpath 中的脚本定义
+     *
+     * @throws IOException ioexception
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location);
+        for (Resource resource : resources) {
+            String filename = resource.getFilename();
+            String extension = StringUtils.getFilenameExtension(filename);
+            if (filename == null || extension == null) {
+                continue;
+            }
+            String lang = lang(extension);
+            if (lang == null) {
+                log.warn("忽略未知类型的脚本文件:{}", filename);
+                continue;
+            }
+            String source;
+            try (InputStream in = resource.getInputStream()) {
+                source = StreamUtils.copyToString(in, StandardCharsets.UTF_8).trim();
+            }
+            String name = StringUtils.stripFilenameExtension(filename);
+            String id = name + "-" + DigestUtil.sha256Hex(lang + "\n" + source).substring(0, 12);
+            ScriptDefinition previous = definitions.put(name, new ScriptDefinition(name, id, lang, source));
+            if (previous != null && !previous.getId().equals(id)) {
+                log.warn("存在同名脚本 {}，后加载的 {} 生效", name, resource);
+            }
+        }
+        log.info("加载存储脚本 {} 个:{}", definitions.size(), definitions.keySet());
+    }
+
+    private void register(ScriptDefinition definition) throws IOException {
+        if (exists(definition.getId())) {
+            registered.add(definition.getId());
+            return;
+        }
+        elasticsearchClient.putScript(r -> r
+                .id(definition.getId())
+                .script(s -> s
+                        .lang(definition.getLang())
+                        .source(definition.getSource())));
+        registered.add(definition.getId());
+        log.info("注册存储脚本 name:{}，id:{}", definition.getName(), definition.getId());
+    }
+
+    private boolean exists(String id) throws IOException {
+        try {
+            return elasticsearchClient.getScript(g -> g.id(id)).found();
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static String lang(String extension) {
+        switch (extension) {
+            case "painless":
+                return "painless";
+            case "mustache":
+                return "mustache";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 脚本定义
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ScriptDefinition {
+
+        private final String name;
+
+        private final String id;
+
+        private final String lang;
+
+        private final String source;
+    }
+}
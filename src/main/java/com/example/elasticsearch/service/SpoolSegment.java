@@ -0,0 +1,166 @@
+package com.example.elasticsearch.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 写入缓冲的一个段文件，预分配固定大小并以内存映射方式追加写入。
+ * 记录格式：int 长度 + int CRC32 + 负载，长度为 0 表示段内数据结束；
+ * 打开已有段时顺序校验，遇到长度或 CRC 不合法的记录即视为崩溃时未写完，从该位置继续写入
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+final class SpoolSegment {
+
+    static final int HEADER = 8;
+
+    private static final String SUFFIX = ".log";
+
+    private final long base;
+
+    private final Path path;
+
+    private final MappedByteBuffer buffer;
+
+    private final int capacity;
+
+    /**
+     * 已写入的末尾位置，写线程更新，读线程只读取该位置之前的数据
+     */
+    private volatile int writePosition;
+
+    private SpoolSegment(long base, Path path, MappedByteBuffer buffer, int capacity) {
+        this.base = base;
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    static SpoolSegment create(Path directory, long base, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(base));
+        return new SpoolSegment(base, path, map(path, capacity), capacity);
+    }
+
+    static SpoolSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        int capacity = (int) Files.size(path);
+        SpoolSegment segment = new SpoolSegment(base, path, map(path, capacity), capacity);
+        segment.recover();
+        return segment;
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(SUFFIX) && name.length() == 20 + SUFFIX.length();
+    }
+
+    long base() {
+        return base;
+    }
+
+    /**
+     * 段内已写入数据之后的逻辑偏移
+     */
+    long end() {
+        return base + writePosition;
+    }
+
+    boolean isEmpty() {
+        return writePosition == 0;
+    }
+
+    /**
+     * 追加一条记录，空间不足时返回 -1，调用方需要切换到新段
+     *
+     * @param payload 负载
+     * @return 记录的逻辑偏移
+     */
+    long append(byte[] payload) {
+        int position = writePosition;
+        if ((long) position + HEADER + payload.length > capacity) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + HEADER);
+        target.put(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        writePosition = position + HEADER + payload.length;
+        return base + position;
+    }
+
+    /**
+     * 读取逻辑偏移处的记录，没有数据时返回 null
+     *
+     * @param offset 逻辑偏移
+     * @return 负载
+     */
+    byte[] read(long offset) {
+        int position = (int) (offset - base);
+        if (position >= writePosition) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        byte[] payload = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + HEADER);
+        source.get(payload);
+        return payload;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        // Java 8 无法主动解除映射，Linux 下删除已映射的文件不受影响，映射在 GC 时释放
+        Files.deleteIfExists(path);
+    }
+
+    private void recover() {
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + HEADER <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || (long) position + HEADER + length > capacity) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(position + HEADER);
+            source.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER + length;
+        }
+        if (position + 4 <= capacity) {
+            // 清除未写完的记录头，避免之后的写入与残留数据拼接出合法记录
+            buffer.putInt(position, 0);
+        }
+        writePosition = position;
+    }
+
+    private static String fileName(long base) {
+        return String.format("%020d", base) + SUFFIX;
+    }
+
+    private static MappedByteBuffer map(Path path, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+}
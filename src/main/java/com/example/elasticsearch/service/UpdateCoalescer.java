@@ -0,0 +1,358 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.json.JsonData;
+import com.example.elasticsearch.exception.RoutingException;
+import com.example.elasticsearch.transport.RoutingPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 局部更新合并
+ * 在一个很短的时间窗口内缓存同一 (index, id) 的局部更新：partial doc 按顶层字段后写覆盖，数值增量累加，
+ * 窗口结束后每个文档只发送一个带 retry_on_conflict 的 bulk update。
+ * 只有 partial doc 时直接使用 doc 更新，存在增量时使用存储脚本 coalesced-update（先写 doc 再累加增量）。
+ * 同一文档的多次更新只会产生一次写入和一次版本号递增，热点文档的版本冲突随之减少。
+ * 按路由键分片的索引需要传 routing（partial doc 中含路由字段时可省略），缺少时在提交时直接拒绝，不影响同批次的其它文档
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class UpdateCoalescer {
+
+    private static final String SCRIPT_NAME = "coalesced-update";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ScriptRegistry scriptRegistry;
+
+    private final Executor executor;
+
+    private final TaskScheduler scheduler;
+
+    private final RoutingPolicy routingPolicy;
+
+    private final Map<DocKey, Pending> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * 合并窗口，0 表示不合并
+     */
+    @Value("${elasticsearch.update.coalesce-window-ms:20}")
+    private long windowMs;
+
+    /**
+     * 缓存的文档数达到该值时立即发送
+     */
+    @Value("${elasticsearch.update.max-pending:1000}")
+    private int maxPending;
+
+    /**
+     * 单次 bulk 最多携带的文档数
+     */
+    @Value("${elasticsearch.update.max-bulk-actions:500}")
+    private int maxBulkActions;
+
+    @Value("${elasticsearch.update.retry-on-conflict:3}")
+    private int retryOnConflict;
+
+    public UpdateCoalescer(ElasticsearchClient elasticsearchClient, ScriptRegistry scriptRegistry,
+                           @Qualifier("esQueryExecutor") Executor executor,
+                           @Qualifier("esScheduler") TaskScheduler scheduler, RoutingPolicy routingPolicy) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.scriptRegistry = scriptRegistry;
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.routingPolicy = routingPolicy;
+    }
+
+    /**
+     * 提交局部更新，同一字段后提交的值覆盖先提交的值，并丢弃该字段此前缓存的增量
+     *
+     * @param index 索引
+     * @param id    文档 id
+     * @param doc   局部文档
+     * @return 该文档合并后的 bulk 结果
+     */
+    public CompletableFuture<BulkResponseItem> update(String index, String id, Map<String, Object> doc) {
+        return update(index, id, routingPolicy.key(index, doc), doc);
+    }
+
+    /**
+     * 提交局部更新，使用指定的 routing
+     *
+     * @param index   索引
+     * @param id      文档 id
+     * @param routing 路由，为 null 时不指定
+     * @param doc     局部文档
+     * @return 该文档合并后的 bulk 结果
+     */
+    public CompletableFuture<BulkResponseItem> update(String index, String id, String routing, Map<String, Object> doc) {
+        DocKey key = key(index, id, routing);
+        while (true) {
+            Pending p = pending.computeIfAbsent(key, k -> new Pending());
+            if (p.merge(doc)) {
+                return added(key, p);
+            }
+            pending.remove(key, p);
+        }
+    }
+
+    /**
+     * 提交数值增量，同一字段的增量累加
+     *
+     * @param index 索引
+     * @param id    文档 id
+     * @param field 字段
+     * @param delta 增量
+     * @return 该文档合并后的 bulk 结果
+     */
+    public CompletableFuture<BulkResponseItem> increment(String index, String id, String field, Number delta) {
+        return increment(index, id, null, field, delta);
+    }
+
+    /**
+     * 提交数值增量，使用指定的 routing
+     *
+     * @param index   索引
+     * @param id      文档 id
+     * @param routing 路由，为 null 时不指定
+     * @param field   字段
+     * @param delta   增量
+     * @return 该文档合并后的 bulk 结果
+     */
+    public CompletableFuture<BulkResponseItem> increment(String index, String id, String routing, String field, Number delta) {
+        DocKey key = key(index, id, routing);
+        while (true) {
+            Pending p = pending.computeIfAbsent(key, k -> new Pending());
+            if (p.increment(field, delta)) {
+                return added(key, p);
+            }
+            pending.remove(key, p);
+        }
+    }
+
+    /**
+     * 立即发送所有缓存的更新
+     */
+    public void flush() {
+        flushScheduled.set(false);
+        for (List<Map.Entry<DocKey, Pending>> batch : drain()) {
+            try {
+                executor.execute(() -> execute(batch));
+            } catch (RejectedExecutionException e) {
+                // 批次已经移出 pending，只能失败掉，异常也不能抛给触发 flush 的无关调用方
+                log.warn("查询线程池已满，合并更新被拒绝，文档数:{}", batch.size());
+                batch.forEach(entry -> entry.getValue().future.completeExceptionally(e));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        // 停机前同步发送剩余的更新
+        drain().forEach(this::execute);
+    }
+
+    private List<List<Map.Entry<DocKey, Pending>>> drain() {
+        List<List<Map.Entry<DocKey, Pending>>> batches = new ArrayList<>();
+        List<Map.Entry<DocKey, Pending>> batch = new ArrayList<>();
+        for (DocKey key : pending.keySet()) {
+            Pending p = pending.remove(key);
+            if (p == null || !p.seal()) {
+                continue;
+            }
+            batch.add(new AbstractMap.SimpleEntry<>(key, p));
+            if (batch.size() >= maxBulkActions) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * 缺少 routing 的更新进入批次后会让整个 bulk 被 RoutingTransport 拒绝，提交时先检查
+     */
+    private DocKey key(String index, String id, String routing) {
+        if (routing == null && routingPolicy.field(index) != null) {
+            throw new RoutingException(index, id, "Missing routing");
+        }
+        return new DocKey(index, id, routing);
+    }
+
+    private CompletableFuture<BulkResponseItem> added(DocKey key, Pending p) {
+        if (windowMs <= 0 || pending.size() >= maxPending) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, Instant.now().plus(Duration.ofMillis(windowMs)));
+        }
+        return p.future;
+    }
+
+    private void execute(List<Map.Entry<DocKey, Pending>> batch) {
+        List<BulkOperation> operations = new ArrayList<>(batch.size());
+        try {
+            for (Map.Entry<DocKey, Pending> entry : batch) {
+                operations.add(operation(entry.getKey(), entry.getValue()));
+            }
+            BulkResponse response = elasticsearchClient.bulk(b -> b.operations(operations));
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < batch.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                CompletableFuture<BulkResponseItem> future = batch.get(i).getValue().future;
+                if (item.error() == null) {
+                    future.complete(item);
+                } else {
+                    future.completeExceptionally(new ElasticsearchException("bulk",
+                            ErrorResponse.of(e -> e.error(item.error()).status(item.status()))));
+                }
+            }
+            if (response.errors()) {
+                log.warn("合并更新部分失败，文档数:{}", batch.size());
+            }
+        } catch (Exception e) {
+            log.error("合并更新失败，文档数:{}", batch.size(), e);
+            batch.forEach(entry -> entry.getValue().future.completeExceptionally(e));
+        }
+    }
+
+    private BulkOperation operation(DocKey key, Pending p) throws Exception {
+        if (p.increments.isEmpty()) {
+            return BulkOperation.of(b -> b
+                    .update(u -> u
+                            .index(key.index)
+                            .id(key.id)
+                            .routing(key.routing)
+                            .retryOnConflict(retryOnConflict)
+                            .action(a -> a.doc(p.doc))));
+        }
+        Map<String, JsonData> params = new HashMap<>(4);
+        params.put("doc", JsonData.of(p.doc));
+        params.put("inc", JsonData.of(p.increments));
+        Script script = scriptRegistry.script(SCRIPT_NAME, params);
+        return BulkOperation.of(b -> b
+                .update(u -> u
+                        .index(key.index)
+                        .id(key.id)
+                        .routing(key.routing)
+                        .retryOnConflict(retryOnConflict)
+                        .action(a -> a.script(script))));
+    }
+
+    private static final class DocKey {
+
+        private final String index;
+
+        private final String id;
+
+        private final String routing;
+
+        private DocKey(String index, String id, String routing) {
+            this.index = index;
+            this.id = id;
+            this.routing = routing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DocKey)) {
+                return false;
+            }
+            DocKey other = (DocKey) o;
+            return index.equals(other.index) && id.equals(other.id) && Objects.equals(routing, other.routing);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * index.hashCode() + id.hashCode()) + Objects.hashCode(routing);
+        }
+    }
+
+    /**
+     * 单个文档缓存的更新，发送前 seal，之后的更新进入新的 Pending
+     */
+    private static final class Pending {
+
+        private final Map<String, Object> doc = new LinkedHashMap<>();
+
+        private final Map<String, Number> increments = new LinkedHashMap<>();
+
+        private final CompletableFuture<BulkResponseItem> future = new CompletableFuture<>();
+
+        private boolean sealed;
+
+        synchronized boolean merge(Map<String, Object> partial) {
+            if (sealed) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : partial.entrySet()) {
+                doc.put(entry.getKey(), entry.getValue());
+                // 字段被直接赋值，之前的增量失效
+                increments.remove(entry.getKey());
+            }
+            return true;
+        }
+
+        synchronized boolean increment(String field, Number delta) {
+            if (sealed) {
+                return false;
+            }
+            increments.merge(field, delta, Pending::add);
+            return true;
+        }
+
+        synchronized boolean seal() {
+            if (sealed) {
+                return false;
+            }
+            sealed = true;
+            return true;
+        }
+
+        private static Number add(Number a, Number b) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return a.longValue() + b.longValue();
+            }
+            return a.doubleValue() + b.doubleValue();
+        }
+
+        private static boolean isIntegral(Number n) {
+            return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import com.example.elasticsearch.cluster.ClusterRegistry;
+import com.example.elasticsearch.config.EsClientConfig;
+import com.example.elasticsearch.model.Products;
+import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.util.EsJsonUtils;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动预热
+ * 新实例的前几千个请求要建立连接、填充 JacksonJsonpMapper 的序列化器缓存、加载 DSL 类并等待 JIT 编译，
+ * 比稳定后慢 5~10 倍。预热在存储脚本注册之后、实例就绪之前执行：
+ * 向 elasticsearch.hosts 中的每个节点预先建立连接，反复序列化 / 反序列化 User、Products、SearchResponse 和 bulk 请求，
+ * 确认存储脚本已注册，最后对配置的索引发送 count / search 探针请求。
+ * 预热期间 readiness 为 REFUSING_TRAFFIC，所有 ApplicationRunner 结束后 Spring Boot 才会发布 ACCEPTING_TRAFFIC；
+ * 超出时间预算时跳过剩余步骤，ES 不可用时只记录日志，不阻止启动
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final String SAMPLE_SEARCH_RESPONSE = "es/warmup/search-response.json";
+
+    private final RestClient restClient;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    private final ScriptRegistry scriptRegistry;
+
+    private final ObjectProvider<ClusterRegistry> clusterRegistry;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${elasticsearch.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${elasticsearch.warmup.budget-ms:30000}")
+    private long budgetMs;
+
+    /**
+     * 每个节点预先建立的连接数，不超过 elasticsearch.max-conn-per-route
+     */
+    @Value("${elasticsearch.warmup.connections-per-host:4}")
+    private int connectionsPerHost;
+
+    @Value("${elasticsearch.warmup.codec-iterations:5000}")
+    private int codecIterations;
+
+    /**
+     * 探针请求的索引，不存在的索引跳过
+     */
+    @Value("${elasticsearch.warmup.indices:users}")
+    private String[] indices;
+
+    @Value("${elasticsearch.hosts:}")
+    private String hosts;
+
+    public WarmupRunner(RestClient restClient, @Qualifier("elasticsearchClient") ElasticsearchClient elasticsearchClient,
+                        ScriptRegistry scriptRegistry, ObjectProvider<ClusterRegistry> clusterRegistry,
+                        ApplicationEventPublisher eventPublisher) {
+        this.restClient = restClient;
+        this.elasticsearchClient = elasticsearchClient;
+        this.scriptRegistry = scriptRegistry;
+        this.clusterRegistry = clusterRegistry;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        warmUp();
+    }
+
+    /**
+     * 执行预热
+     *
+     * @return 是否在时间预算内完成全部步骤且没有失败
+     */
+    public boolean warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        boolean complete = step("connections", deadline, this::openConnections);
+        complete &= step("codecs", deadline, this::warmCodecs);
+        complete &= step("scripts", deadline, this::registerScripts);
+        complete &= step("canaries", deadline, this::runCanaries);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (complete) {
+            log.info("预热完成，耗时 {} ms", elapsed);
+        } else {
+            log.warn("预热未全部完成，耗时 {} ms，预算 {} ms", elapsed, budgetMs);
+        }
+        return complete;
+    }
+
+    private boolean step(String name, long deadline, Step step) {
+        if (System.nanoTime() >= deadline) {
+            log.warn("预热超出时间预算，跳过 {}", name);
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            boolean done = step.run(deadline);
+            log.info("预热 {} {}，耗时 {} ms", name, done ? "完成" : "未完成", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return done;
+        } catch (IOException | ElasticsearchException e) {
+            log.warn("预热 {} 失败:{}", name, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 并发发送 HEAD /，RestClient 按轮询把请求分到各个节点，连接池为每个节点建立 connectionsPerHost 个连接，
+     * 之后这些连接保持在池中（EsClientConfig 开启了 SO_KEEPALIVE）
+     */
+    private boolean openConnections(long deadline) throws InterruptedException {
+        HttpHost[] configured = StringUtils.hasLength(hosts) ? EsClientConfig.toHttpHost(hosts, "http") : new HttpHost[0];
+        int total = Math.max(1, configured.length) * connectionsPerHost;
+        CountDownLatch latch = new CountDownLatch(total);
+        Map<String, AtomicInteger> opened = new ConcurrentHashMap<>();
+        for (int i = 0; i < total; i++) {
+            restClient.performRequestAsync(new Request("HEAD", "/"), new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    opened.computeIfAbsent(response.getHost().toHostString(), key -> new AtomicInteger()).incrementAndGet();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    log.debug("预热连接失败:{}", exception.getMessage());
+                    latch.countDown();
+                }
+            });
+        }
+        boolean finished = latch.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        log.info("预热连接，节点 -> 成功请求数:{}", new TreeMap<>(opened));
+        boolean allHosts = Arrays.stream(configured).allMatch(host -> opened.containsKey(host.toHostString()));
+        if (!allHosts) {
+            log.warn("部分节点未连通，configured:{}", hosts);
+        }
+        ClusterRegistry registry = clusterRegistry.getIfAvailable();
+        if (registry != null && registry.clusters().size() > 1) {
+            // 顺便为每个集群建立连接并得到第一个延迟样本
+            registry.probe();
+        }
+        return finished && allHosts && !opened.isEmpty();
+    }
+
+    /**
+     * 反复编解码样例数据，填充序列化器缓存，让热点方法在接流量前完成 JIT 编译
+     */
+    private boolean warmCodecs(long deadline) throws IOException {
+        JsonpMapper mapper = elasticsearchClient._transport().jsonpMapper();
+        byte[] searchResponse;
+        try (InputStream in = new ClassPathResource(SAMPLE_SEARCH_RESPONSE).getInputStream()) {
+            searchResponse = StreamUtils.copyToByteArray(in);
+        }
+        JsonpDeserializer<SearchResponse<User>> deserializer =
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(User.class));
+        User user = new User("1", "赵四", 21, "男");
+        user.setGroupId("g1");
+        Products products = new Products();
+        products.setId("1");
+        products.setCounter(1);
+        products.setTags(Arrays.asList("a", "b"));
+        SearchRequest search = SearchRequest.of(s -> s
+                .index("users")
+                .size(10)
+                .query(q -> q.bool(b -> b
+                        .filter(f -> f.term(t -> t.field("sex").value("男")))
+                        .must(m -> m.match(t -> t.field("name").query("赵四")))))
+                .aggregations("sex", a -> a
+                        .terms(t -> t.field("sex"))
+                        .aggregations("age", sub -> sub.avg(avg -> avg.field("age")))));
+        BulkRequest bulk = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("users").id("1").document(user)))
+                .operations(o -> o.update(u -> u.index("products").id("1").action(a -> a.doc(products)))));
+        int iterations = 0;
+        while (iterations < codecIterations) {
+            if ((iterations & 63) == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            EsJsonUtils.toBytes(search, mapper);
+            EsJsonUtils.writeNdJson(bulk, mapper, new ByteArrayOutputStream(256));
+            roundTrip(user, User.class, mapper);
+            roundTrip(products, Products.class, mapper);
+            try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(searchResponse))) {
+                deserializer.deserialize(parser, mapper);
+            }
+            iterations++;
+        }
+        log.info("预热编解码 {} 次", iterations);
+        return iterations == codecIterations;
+    }
+
+    private static <T> void roundTrip(T value, Class<T> clazz, JsonpMapper mapper) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(out)) {
+            mapper.serialize(value, generator);
+        }
+        try (JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(out.toByteArray()))) {
+            mapper.deserialize(parser, clazz);
+        }
+    }
+
+    /**
+     * ScriptRegistry 启动时已尝试注册，这里确认全部存在，注册失败的在接流量前再试一次
+     */
+    private boolean registerScripts(long deadline) throws IOException {
+        for (String name : scriptRegistry.definitions().keySet()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            scriptRegistry.id(name);
+        }
+        return true;
+    }
+
+    /**
+     * 对每个索引发送 count 和一次小的 search，加载对应的请求 / 响应类并预热查询路径
+     */
+    private boolean runCanaries(long deadline) throws IOException {
+        elasticsearchClient.info();
+        for (String index : indices) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            if (!elasticsearchClient.indices().exists(e -> e.index(index)).value()) {
+                log.info("预热探针跳过不存在的索引 {}", index);
+                continue;
+            }
+            elasticsearchClient.count(c -> c.index(index));
+            elasticsearchClient.search(s -> s.index(index).size(1), User.class);
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface Step {
+
+        boolean run(long deadline) throws IOException, InterruptedException;
+    }
+}
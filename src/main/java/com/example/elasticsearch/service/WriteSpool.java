@@ -0,0 +1,540 @@
+package com.example.elasticsearch.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperationBase;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.admission.OperationClass;
+import com.example.elasticsearch.exception.AdmissionRejectedException;
+import com.example.elasticsearch.transport.DocumentWriteListener;
+import com.example.elasticsearch.util.EsJsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 磁盘写入缓冲（write-ahead spool）
+ * 批量写入先序列化为 _bulk 请求体追加到内存映射的段文件，再由后台线程按顺序发送到集群，
+ * 成功后推进 checkpoint，段内记录全部确认后删除段文件。
+ * 集群不可用、整体返回 429/5xx 时按退避间隔重试同一条记录，保证顺序；
+ * 条目级的 429/5xx 只重发失败的操作，同样按退避间隔，其它条目级错误（如 mapping 冲突）记录日志后丢弃。
+ * 退避期间新的追加不会唤醒发送线程，否则集群过载时会按写入速率重发。
+ * 进程重启后从 checkpoint 继续发送，因此同一操作可能被重复发送，写入操作需要带 id 才能保证幂等
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+public class WriteSpool {
+
+    /**
+     * 刷盘策略
+     */
+    public enum Durability {
+        /**
+         * 只写入页缓存，进程崩溃不丢数据，操作系统崩溃或断电可能丢失
+         */
+        NONE,
+        /**
+         * 按 flush-interval-ms 周期刷盘
+         */
+        BATCH,
+        /**
+         * 每次追加后刷盘再返回
+         */
+        SYNC
+    }
+
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final RestClient restClient;
+
+    private final JsonpMapper jsonpMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectProvider<DocumentWriteListener> writeListeners;
+
+    private final AdmissionController admissionController;
+
+    private final ConcurrentSkipListMap<Long, SpoolSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object signal = new Object();
+
+    /**
+     * 追加、滚动和 force 都是文件 IO，用 ReentrantLock 而不是 synchronized，虚拟线程在这里等待时不会钉住载体线程
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    @Value("${elasticsearch.spool.directory:data/es-spool}")
+    private String directory;
+
+    @Value("${elasticsearch.spool.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${elasticsearch.spool.durability:BATCH}")
+    private Durability durability;
+
+    @Value("${elasticsearch.spool.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${elasticsearch.spool.retry-max-ms:30000}")
+    private long retryMaxMs;
+
+    private Path path;
+
+    private volatile SpoolSegment active;
+
+    private volatile long ackedOffset;
+
+    private volatile boolean running;
+
+    private Thread drainer;
+
+    private Counter dropped;
+
+    public WriteSpool(ElasticsearchClient elasticsearchClient, RestClient restClient, MeterRegistry meterRegistry,
+                      ObjectProvider<DocumentWriteListener> writeListeners, AdmissionController admissionController) {
+        this.restClient = restClient;
+        this.jsonpMapper = elasticsearchClient._transport().jsonpMapper();
+        this.objectMapper = jsonpMapper instanceof JacksonJsonpMapper
+                ? ((JacksonJsonpMapper) jsonpMapper).objectMapper()
+                : new ObjectMapper();
+        this.meterRegistry = meterRegistry;
+        this.writeListeners = writeListeners;
+        this.admissionController = admissionController;
+    }
+
+    /**
+     * 目录中有遗留的段文件时立即打开并开始重放，否则在第一次追加时再创建目录
+     *
+     * @throws IOException ioexception
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        // 段文件整体内存映射，单个 MappedByteBuffer 的容量上限是 Integer.MAX_VALUE
+        if (segmentSize.toBytes() <= SpoolSegment.HEADER || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("elasticsearch.spool.segment-size 必须大于 " + SpoolSegment.HEADER
+                    + " 字节且小于 2GB，当前为 " + segmentSize);
+        }
+        path = Paths.get(directory);
+        if (Files.isDirectory(path)) {
+            open();
+        }
+    }
+
+    /**
+     * 追加一批操作，返回后即可认为已被接收，之后由后台线程发送
+     * 记录发送到 /_bulk，每个操作必须自带 index，否则整条记录会被集群以 400 拒绝
+     *
+     * @param operations 批量操作
+     * @return 记录的逻辑偏移，可用于 {@link #ackedOffset()} 判断是否已发送
+     * @throws IOException ioexception
+     * @throws IllegalArgumentException 有操作没有指定 index
+     */
+    public long append(List<BulkOperation> operations) throws IOException {
+        for (BulkOperation operation : operations) {
+            if (((BulkOperationBase) operation._get()).index() == null) {
+                throw new IllegalArgumentException("写入缓冲的操作必须指定 index，operation:" + operation._kind());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * operations.size());
+        for (BulkOperation operation : operations) {
+            EsJsonUtils.writeNdJson(operation, jsonpMapper, out);
+        }
+        byte[] payload = out.toByteArray();
+        long offset;
+        appendLock.lock();
+        try {
+            if (!running) {
+                open();
+            }
+            offset = active.append(payload);
+            if (offset < 0) {
+                roll(payload.length);
+                offset = active.append(payload);
+            }
+            if (durability == Durability.SYNC) {
+                active.force();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        // 绕过了 ElasticsearchClient，在接收时通知；提前通知只会让布隆过滤器等结构多出尚未写入的 id
+        notifyListeners(operations);
+        return offset;
+    }
+
+    /**
+     * 已确认发送的逻辑偏移，小于该值的记录都已写入集群
+     *
+     * @return long
+     */
+    public long ackedOffset() {
+        return ackedOffset;
+    }
+
+    /**
+     * 等待当前已追加的记录全部发送
+     *
+     * @param timeout 超时时间
+     * @return 是否全部发送
+     * @throws InterruptedException interruptedexception
+     */
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        SpoolSegment current = active;
+        long target = current == null ? 0 : current.end();
+        while (ackedOffset < target) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(remaining, 50));
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        drainer.join(retryMaxMs);
+        segments.values().forEach(SpoolSegment::force);
+    }
+
+    private void open() throws IOException {
+        appendLock.lock();
+        try {
+            openLocked();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void openLocked() throws IOException {
+        if (running) {
+            return;
+        }
+        Files.createDirectories(path);
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (SpoolSegment.isSegment(file)) {
+                    SpoolSegment segment = SpoolSegment.open(file);
+                    segments.put(segment.base(), segment);
+                }
+            }
+        }
+        ackedOffset = readCheckpoint();
+        if (segments.isEmpty()) {
+            segments.put(ackedOffset, SpoolSegment.create(path, ackedOffset, (int) segmentSize.toBytes()));
+        }
+        active = segments.lastEntry().getValue();
+        if (ackedOffset < segments.firstKey()) {
+            ackedOffset = segments.firstKey();
+        } else if (ackedOffset > active.end()) {
+            // 最后一个段的末尾记录在崩溃时损坏，已确认的位置以段内有效数据为准
+            log.warn("写入缓冲 checkpoint {} 超出数据末尾 {}", ackedOffset, active.end());
+            ackedOffset = active.end();
+        }
+        long backlog = active.end() - ackedOffset;
+        if (backlog > 0) {
+            log.warn("写入缓冲存在未发送的数据 {} 字节，开始重放", backlog);
+        }
+        Gauge.builder("es.spool.backlog.bytes", this, spool -> spool.active.end() - spool.ackedOffset)
+                .register(meterRegistry);
+        dropped = meterRegistry.counter("es.spool.dropped");
+        running = true;
+        drainer = new Thread(this::drain, "es-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    private void roll(int payloadLength) throws IOException {
+        if (durability != Durability.NONE) {
+            active.force();
+        }
+        long capacity = Math.max(segmentSize.toBytes(), SpoolSegment.HEADER + (long) payloadLength);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("写入缓冲的单条记录过大:" + payloadLength + " 字节");
+        }
+        SpoolSegment next = SpoolSegment.create(path, active.end(), (int) capacity);
+        segments.put(next.base(), next);
+        active = next;
+    }
+
+    private void drain() {
+        long lastFlush = System.currentTimeMillis();
+        long backoff = 0;
+        while (running || (backoff == 0 && ackedOffset < active.end())) {
+            if (durability == Durability.BATCH && System.currentTimeMillis() - lastFlush >= flushIntervalMs) {
+                active.force();
+                lastFlush = System.currentTimeMillis();
+            }
+            // 先读取 active 再读取记录：看到切换后的新段时，旧段的写入一定已经可见
+            SpoolSegment current = active;
+            Map.Entry<Long, SpoolSegment> entry = segments.floorEntry(ackedOffset);
+            byte[] payload = entry == null ? null : entry.getValue().read(ackedOffset);
+            if (payload == null && entry != null && entry.getValue() != current) {
+                // 当前段已读完，进入下一段
+                Long next = segments.higherKey(entry.getKey());
+                acknowledge(next);
+                continue;
+            }
+            if (payload == null) {
+                await(flushIntervalMs);
+                continue;
+            }
+            if (send(payload)) {
+                backoff = 0;
+                acknowledge(ackedOffset + SpoolSegment.HEADER + payload.length);
+            } else {
+                backoff = nextBackoff(backoff);
+                backoff(backoff);
+            }
+        }
+    }
+
+    /**
+     * 发送一条记录，整条记录无需再重试时返回 true
+     */
+    private boolean send(byte[] payload) {
+        List<byte[]> pending = null;
+        byte[] body = payload;
+        long backoff = 0;
+        while (true) {
+            JsonNode result;
+            try {
+                Request request = new Request("POST", "/_bulk");
+                request.addParameter("filter_path", "errors,items.*.status,items.*.error");
+                request.setEntity(new ByteArrayEntity(body, ContentType.create("application/x-ndjson", StandardCharsets.UTF_8)));
+                Response response = admissionController.call(OperationClass.INGEST, () -> restClient.performRequest(request));
+                try (InputStream in = response.getEntity().getContent()) {
+                    result = objectMapper.readTree(in);
+                }
+            } catch (AdmissionRejectedException e) {
+                log.debug("写入缓冲发送被准入控制拒绝，稍后重试");
+                return false;
+            } catch (ResponseException e) {
+                int status = e.getResponse().getStatusLine().getStatusCode();
+                if (retryable(status)) {
+                    log.warn("写入缓冲发送失败，status:{}，稍后重试", status);
+                    return false;
+                }
+                log.error("写入缓冲记录被拒绝，status:{}，丢弃 offset {}", status, ackedOffset, e);
+                dropped.increment();
+                return true;
+            } catch (IOException e) {
+                log.warn("写入缓冲发送失败:{}，稍后重试", e.getMessage());
+                return false;
+            }
+            if (!result.path("errors").asBoolean(false)) {
+                return true;
+            }
+            if (pending == null) {
+                pending = operations(payload);
+            }
+            List<byte[]> retry = new ArrayList<>();
+            JsonNode items = result.path("items");
+            for (int i = 0; i < items.size(); i++) {
+                JsonNode item = items.get(i).elements().next();
+                int status = item.path("status").asInt();
+                if (status < 300) {
+                    continue;
+                }
+                if (retryable(status)) {
+                    retry.add(pending.get(i));
+                } else {
+                    log.error("写入缓冲条目被拒绝，status:{}，error:{}", status, item.path("error"));
+                    dropped.increment();
+                }
+            }
+            if (retry.isEmpty()) {
+                return true;
+            }
+            // 只重发失败的条目
+            pending = retry;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+            retry.forEach(bytes -> out.write(bytes, 0, bytes.length));
+            body = out.toByteArray();
+            backoff = nextBackoff(backoff);
+            backoff(backoff);
+            if (!running) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 将 NDJSON 请求体拆分为操作，delete 只有一行，其它操作为操作行加文档行
+     */
+    private List<byte[]> operations(byte[] payload) {
+        List<byte[]> operations = new ArrayList<>();
+        int start = 0;
+        int position = 0;
+        int lines = 0;
+        int expected = 0;
+        while (position < payload.length) {
+            if (payload[position++] != '\n') {
+                continue;
+            }
+            if (lines == 0) {
+                String action = new String(payload, start, Math.min(16, position - start), StandardCharsets.UTF_8);
+                expected = action.startsWith("{\"delete\"") ? 1 : 2;
+            }
+            if (++lines == expected) {
+                byte[] operation = new byte[position - start];
+                System.arraycopy(payload, start, operation, 0, operation.length);
+                operations.add(operation);
+                start = position;
+                lines = 0;
+            }
+        }
+        return operations;
+    }
+
+    private void notifyListeners(List<BulkOperation> operations) {
+        writeListeners.orderedStream().forEach(listener -> {
+            for (BulkOperation operation : operations) {
+                if (operation.isIndex() && operation.index().id() != null) {
+                    listener.onIndexed(operation.index().index(), operation.index().id());
+                } else if (operation.isCreate() && operation.create().id() != null) {
+                    listener.onIndexed(operation.create().index(), operation.create().id());
+                }
+            }
+        });
+    }
+
+    private static boolean retryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private void acknowledge(long offset) {
+        ackedOffset = offset;
+        try {
+            writeCheckpoint(offset);
+            // 删除已全部确认的段
+            Long current = segments.floorKey(offset);
+            while (current != null && segments.firstKey() < current) {
+                SpoolSegment segment = segments.pollFirstEntry().getValue();
+                segment.delete();
+            }
+        } catch (IOException e) {
+            log.warn("写入缓冲 checkpoint 失败:{}", e.getMessage());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = path.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 16) {
+            return 0;
+        }
+        long offset = buffer.getLong();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, 8);
+        return crc.getValue() == buffer.getLong() ? offset : 0;
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(offset);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, 8);
+        buffer.putLong(crc.getValue());
+        Path tmp = path.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.flip();
+            channel.write(buffer);
+            if (durability == Durability.SYNC) {
+                channel.force(false);
+            }
+        }
+        Files.move(tmp, path.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long nextBackoff(long backoff) {
+        return backoff == 0 ? 100 : Math.min(retryMaxMs, backoff * 2);
+    }
+
+    /**
+     * 退避等待到期，期间忽略 append 的唤醒，只有 close 能提前结束
+     */
+    private void backoff(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (signal) {
+            long remaining;
+            while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    signal.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void await(long millis) {
+        synchronized (signal) {
+            try {
+                signal.wait(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
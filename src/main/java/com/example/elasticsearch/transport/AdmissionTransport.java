@@ -0,0 +1,69 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.admission.OperationClass;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 请求发出前经过准入控制，按 endpoint 分类，响应返回后释放许可
+ * 异步请求不在调用线程上等待，名额不足时由 {@link AdmissionController#acquireAsync(OperationClass)} 排队，被拒绝时返回失败的 future
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class AdmissionTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    private final AdmissionController admissionController;
+
+    public AdmissionTransport(ElasticsearchTransport delegate, AdmissionController admissionController) {
+        this.delegate = delegate;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        OperationClass operationClass = admissionController.classify(endpoint.id(), request);
+        return admissionController.call(operationClass, () -> delegate.performRequest(request, endpoint, options));
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        OperationClass operationClass = admissionController.classify(endpoint.id(), request);
+        return admissionController.acquireAsync(operationClass).thenCompose(permit -> {
+            CompletableFuture<ResponseT> future;
+            try {
+                future = delegate.performRequestAsync(request, endpoint, options);
+            } catch (RuntimeException e) {
+                permit.release(e);
+                throw e;
+            }
+            return future.whenComplete((response, error) -> permit.release(error));
+        });
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
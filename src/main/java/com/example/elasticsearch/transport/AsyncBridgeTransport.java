@@ -0,0 +1,129 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 同步请求改为底层 RestClient.performRequestAsync 后等待 future，用于在虚拟线程上调用 ElasticsearchClient
+ * RestClient 的同步 performRequest 在 httpcore 的 BasicFuture.get() 中等待响应，该方法是 synchronized + wait()，
+ * 在 JDK 21 上会把虚拟线程钉在载体线程上，并发的阻塞调用数被限制为载体线程数；CompletableFuture.get() 通过 LockSupport.park 等待，
+ * 不会钉住载体线程。
+ * 不能直接使用 RestClientTransport.performRequestAsync：它在 IO reactor 线程（每核一个）上的回调里解析响应 JSON，
+ * 大响应会拖慢所有连接的网络 IO。这里 IO 线程只负责完成 future，请求体的序列化和响应的解析都在调用方线程上执行，
+ * 与同步 performRequest 完全一致。RestClientTransport 在 8.7 中没有公开这两个步骤，通过反射调用，升级客户端版本时需要确认方法仍然存在。
+ * 必须直接包装 RestClientTransport，放在装饰链的最内层；异步请求仍交给 RestClientTransport
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class AsyncBridgeTransport implements ElasticsearchTransport {
+
+    private final RestClientTransport delegate;
+
+    private final Method prepareRequest;
+
+    private final Method decodeResponse;
+
+    public AsyncBridgeTransport(RestClientTransport delegate) {
+        this.delegate = delegate;
+        try {
+            this.prepareRequest = RestClientTransport.class.getDeclaredMethod("prepareLowLevelRequest",
+                    Object.class, Endpoint.class, TransportOptions.class);
+            this.decodeResponse = RestClientTransport.class.getDeclaredMethod("getHighLevelResponse",
+                    Response.class, Endpoint.class);
+            prepareRequest.setAccessible(true);
+            decodeResponse.setAccessible(true);
+        } catch (NoSuchMethodException | RuntimeException e) {
+            throw new IllegalStateException("当前 elasticsearch-java 版本的 RestClientTransport 不支持虚拟线程桥接，"
+                    + "请关闭 elasticsearch.executor.virtual-threads", e);
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        Request lowLevelRequest = invoke(prepareRequest, request, endpoint, options);
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Cancellable cancellable = delegate.restClient().performRequestAsync(lowLevelRequest, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+        });
+        Response response;
+        try {
+            response = future.get();
+        } catch (InterruptedException e) {
+            cancellable.cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + endpoint.id(), e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause() == null ? e : e.getCause());
+        }
+        return invoke(decodeResponse, response, endpoint);
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        return delegate.performRequestAsync(request, endpoint, options);
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T invoke(Method method, Object... args) throws IOException {
+        try {
+            return (T) method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IOException rethrow(Throwable cause) throws IOException {
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IOException(cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.elasticsearch.transport;
+
+/**
+ * 文档写入通知，由 {@link WriteNotifyingTransport} 和绕过 ElasticsearchClient 的写入路径（如 WriteSpool）调用。
+ * 回调在写入线程上同步执行，实现需要足够轻量且线程安全
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public interface DocumentWriteListener {
+
+    /**
+     * 文档被创建或整体写入
+     *
+     * @param index 实际写入的索引，请求使用别名时为别名解析后的索引
+     * @param id    文档 id
+     */
+    void onIndexed(String index, String id);
+}
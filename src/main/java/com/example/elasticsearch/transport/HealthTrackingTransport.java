@@ -0,0 +1,70 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.example.elasticsearch.cluster.ClusterHealth;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * 记录每个请求的耗时和结果，供多集群选择读集群
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class HealthTrackingTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    /**
+     * 请求完成时回调，参数为耗时（纳秒）和异常（成功时为 null）
+     */
+    private final BiConsumer<Long, Throwable> listener;
+
+    public HealthTrackingTransport(ElasticsearchTransport delegate, BiConsumer<Long, Throwable> listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ResponseT response = delegate.performRequest(request, endpoint, options);
+            listener.accept(System.nanoTime() - start, null);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            listener.accept(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        long start = System.nanoTime();
+        return delegate.performRequestAsync(request, endpoint, options).whenComplete((response, error) ->
+                listener.accept(System.nanoTime() - start, error));
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.example.elasticsearch.loadtest.WorkloadRecorder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 在请求发出前把请求交给 {@link WorkloadRecorder} 录制，用于采集真实的查询和写入负载
+ * 直接使用 RestClient 的原始 JSON 请求不经过 transport，不会被录制
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+public class RecordingTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    private final WorkloadRecorder recorder;
+
+    public RecordingTransport(ElasticsearchTransport delegate, WorkloadRecorder recorder) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        record(request, endpoint);
+        return delegate.performRequest(request, endpoint, options);
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        record(request, endpoint);
+        return delegate.performRequestAsync(request, endpoint, options);
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private <RequestT> void record(RequestT request, Endpoint<RequestT, ?, ?> endpoint) {
+        try {
+            recorder.record(request, endpoint, delegate.jsonpMapper());
+        } catch (RuntimeException e) {
+            // 录制失败不影响请求
+            log.warn("录制请求 {} 失败:{}", endpoint.id(), e.getMessage());
+        }
+    }
+}
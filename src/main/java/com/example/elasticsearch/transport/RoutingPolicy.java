@@ -0,0 +1,212 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import com.example.elasticsearch.annotation.RoutingKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自定义路由规则
+ * elasticsearch.routing.indices 配置按路由键分片的索引及其路由字段（index:field），
+ * 写入时从文档中取路由键（模型类上标注 {@link RoutingKey} 的字段，Map / JsonNode 文档按字段名取值），
+ * 查询时从 term / terms 过滤条件中推断路由。索引名按原样匹配，别名和通配符不会被识别
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class RoutingPolicy {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 索引 -> 路由字段
+     */
+    private final Map<String, String> fields = new HashMap<>();
+
+    /**
+     * 模型类 -> 标注了 RoutingKey 的字段
+     */
+    private final Map<Class<?>, Optional<Field>> keyFields = new ConcurrentHashMap<>();
+
+    @Value("${elasticsearch.routing.indices:}")
+    private String[] indices;
+
+    public RoutingPolicy(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String entry : indices) {
+            String[] pair = entry.trim().split(":");
+            if (pair.length != 2 || pair[0].isEmpty() || pair[1].isEmpty()) {
+                throw new IllegalArgumentException("Invalid elasticsearch.routing.indices entry, expected index:field: " + entry);
+            }
+            fields.put(pair[0], pair[1]);
+        }
+        if (!fields.isEmpty()) {
+            log.info("自定义路由索引:{}", fields);
+        }
+    }
+
+    /**
+     * 是否没有配置任何路由索引
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    /**
+     * 索引的路由字段
+     *
+     * @param index 索引
+     * @return 路由字段，索引未配置路由时为 null
+     */
+    public String field(String index) {
+        return index == null ? null : fields.get(index);
+    }
+
+    /**
+     * 从文档中取路由键
+     *
+     * @param index    索引
+     * @param document 文档
+     * @return 路由键，取不到时为 null
+     */
+    public String key(String index, Object document) {
+        String field = field(index);
+        if (field == null || document == null) {
+            return null;
+        }
+        Object value;
+        if (document instanceof Map) {
+            value = ((Map<?, ?>) document).get(field);
+        } else if (document instanceof JsonNode) {
+            JsonNode node = ((JsonNode) document).get(field);
+            value = node == null || node.isNull() ? null : node.asText();
+        } else {
+            value = keyField(document.getClass()).map(f -> read(f, document)).orElse(null);
+        }
+        return value == null ? null : String.valueOf(value);
+    }
+
+    /**
+     * 从查询中推断路由，只识别一定会生效的条件：顶层或 bool 的 filter / must 中对路由字段的 term / terms，
+     * 以及 constant_score 的 filter
+     *
+     * @param index 索引，多个时路由字段必须一致
+     * @param query 查询
+     * @return 路由值，推断不出时为 null
+     */
+    public List<String> infer(Collection<String> index, Query query) {
+        if (query == null || index.isEmpty()) {
+            return null;
+        }
+        String field = null;
+        for (String name : index) {
+            String f = field(name);
+            if (f == null || (field != null && !field.equals(f))) {
+                return null;
+            }
+            field = f;
+        }
+        return pinned(query, field);
+    }
+
+    /**
+     * 记录一次路由错误：按路由查询时返回了路由不一致的文档，说明该文档写入时的 routing 与路由键不一致
+     *
+     * @param index    索引
+     * @param id       文档 id
+     * @param expected 查询使用的路由
+     * @param actual   文档的路由
+     */
+    void misrouted(String index, String id, Collection<String> expected, String actual) {
+        log.warn("文档路由不一致，index:{}，id:{}，查询路由:{}，文档路由:{}", index, id, expected, actual);
+        meterRegistry.counter("es.routing.misrouted", "index", index).increment();
+    }
+
+    private static List<String> pinned(Query query, String field) {
+        if (query.isTerm()) {
+            return matches(query.term().field(), field)
+                    ? Collections.singletonList(toRouting(query.term().value()))
+                    : null;
+        }
+        if (query.isTerms()) {
+            TermsQuery terms = query.terms();
+            if (!matches(terms.field(), field) || !terms.terms().isValue() || terms.terms().value().isEmpty()) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(terms.terms().value().size());
+            terms.terms().value().forEach(value -> values.add(toRouting(value)));
+            return values;
+        }
+        if (query.isConstantScore()) {
+            return pinned(query.constantScore().filter(), field);
+        }
+        if (query.isBool()) {
+            BoolQuery bool = query.bool();
+            for (List<Query> clauses : Arrays.asList(bool.filter(), bool.must())) {
+                for (Query clause : clauses) {
+                    List<String> values = pinned(clause, field);
+                    if (values != null) {
+                        return values;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String queried, String field) {
+        return queried.equals(field) || queried.equals(field + ".keyword");
+    }
+
+    private static String toRouting(FieldValue value) {
+        return value.isString() ? value.stringValue() : String.valueOf(value._get());
+    }
+
+    private Optional<Field> keyField(Class<?> type) {
+        return keyFields.computeIfAbsent(type, key -> {
+            for (Class<?> c = key; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(RoutingKey.class)) {
+                        field.setAccessible(true);
+                        return Optional.of(field);
+                    }
+                }
+            }
+            return Optional.empty();
+        });
+    }
+
+    private static Object read(Field field, Object document) {
+        try {
+            return field.get(document);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read routing key " + field, e);
+        }
+    }
+}
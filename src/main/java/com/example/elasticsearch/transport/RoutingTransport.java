@@ -0,0 +1,387 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.CountRequest;
+import co.elastic.clients.elasticsearch.core.CreateRequest;
+import co.elastic.clients.elasticsearch.core.DeleteRequest;
+import co.elastic.clients.elasticsearch.core.ExistsRequest;
+import co.elastic.clients.elasticsearch.core.GetRequest;
+import co.elastic.clients.elasticsearch.core.GetSourceRequest;
+import co.elastic.clients.elasticsearch.core.IndexRequest;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.UpdateRequest;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import co.elastic.clients.elasticsearch.core.bulk.IndexOperation;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetOperation;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import com.example.elasticsearch.exception.RoutingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按 {@link RoutingPolicy} 自动补齐 routing 的 transport
+ * <ul>
+ *     <li>index / create / bulk 的 index、create：从文档取路由键作为 routing，显式 routing 与路由键不一致时拒绝</li>
+ *     <li>get / exists / get_source / update / delete、mget 的每个条目以及 bulk 的 update、delete：请求中拿不到文档，
+ *     必须显式传 routing（条目级或请求级），缺少时拒绝</li>
+ *     <li>search / count：未指定 routing 时从 term / terms 过滤条件推断，命中的文档路由与查询路由不一致时记录路由错误</li>
+ * </ul>
+ * 通过 RestClient 直接发送的请求（透传查询、查询模板、WriteSpool 等）不经过这里
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class RoutingTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    private final RoutingPolicy policy;
+
+    public RoutingTransport(ElasticsearchTransport delegate, RoutingPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        RequestT routedRequest = routeBulk(request);
+        Endpoint<RequestT, ResponseT, ErrorT> routed = route(routedRequest, endpoint);
+        ResponseT response = delegate.performRequest(routedRequest, routed, options);
+        verify(routedRequest, routed, response);
+        return response;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        RequestT routedRequest;
+        Endpoint<RequestT, ResponseT, ErrorT> routed;
+        try {
+            routedRequest = routeBulk(request);
+            routed = route(routedRequest, endpoint);
+        } catch (RoutingException e) {
+            CompletableFuture<ResponseT> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return delegate.performRequestAsync(routedRequest, routed, options).whenComplete((response, error) -> {
+            if (error == null) {
+                verify(routedRequest, routed, response);
+            }
+        });
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private <RequestT, ResponseT, ErrorT> Endpoint<RequestT, ResponseT, ErrorT> route(RequestT request,
+                                                                                      Endpoint<RequestT, ResponseT, ErrorT> endpoint) {
+        if (request instanceof IndexRequest) {
+            IndexRequest<?> index = (IndexRequest<?>) request;
+            String key = writeRouting(index.index(), index.id(), index.routing(), index.document());
+            return index.routing() == null && key != null ? routed(endpoint, key) : endpoint;
+        }
+        if (request instanceof CreateRequest) {
+            CreateRequest<?> create = (CreateRequest<?>) request;
+            String key = writeRouting(create.index(), create.id(), create.routing(), create.document());
+            return create.routing() == null && key != null ? routed(endpoint, key) : endpoint;
+        }
+        if (request instanceof GetRequest) {
+            GetRequest get = (GetRequest) request;
+            requireRouting(get.index(), get.id(), get.routing());
+        } else if (request instanceof ExistsRequest) {
+            ExistsRequest exists = (ExistsRequest) request;
+            requireRouting(exists.index(), exists.id(), exists.routing());
+        } else if (request instanceof GetSourceRequest) {
+            GetSourceRequest source = (GetSourceRequest) request;
+            requireRouting(source.index(), source.id(), source.routing());
+        } else if (request instanceof UpdateRequest) {
+            UpdateRequest<?, ?> update = (UpdateRequest<?, ?>) request;
+            requireRouting(update.index(), update.id(), update.routing());
+        } else if (request instanceof DeleteRequest) {
+            DeleteRequest delete = (DeleteRequest) request;
+            requireRouting(delete.index(), delete.id(), delete.routing());
+        } else if (request instanceof MgetRequest) {
+            MgetRequest mget = (MgetRequest) request;
+            for (MultiGetOperation doc : mget.docs()) {
+                requireRouting(doc.index() != null ? doc.index() : mget.index(), doc.id(),
+                        doc.routing() != null ? doc.routing() : mget.routing());
+            }
+            for (String id : mget.ids()) {
+                requireRouting(mget.index(), id, mget.routing());
+            }
+        } else if (request instanceof SearchRequest) {
+            SearchRequest search = (SearchRequest) request;
+            if (search.routing() == null) {
+                List<String> routing = policy.infer(search.index(), search.query());
+                return routing == null ? endpoint : routed(endpoint, String.join(",", routing));
+            }
+        } else if (request instanceof CountRequest) {
+            CountRequest count = (CountRequest) request;
+            if (count.routing() == null) {
+                List<String> routing = policy.infer(count.index(), count.query());
+                return routing == null ? endpoint : routed(endpoint, String.join(",", routing));
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * 逐个检查 bulk 中的操作，index / create 缺少 routing 时补齐
+     * routing 写在请求体的 action 行里，而 RestClientTransport 总是序列化 request 本身，因此需要重建 BulkRequest
+     *
+     * @return 补齐 routing 后的请求，无需修改或不是 bulk 时为原请求
+     */
+    @SuppressWarnings("unchecked")
+    private <RequestT> RequestT routeBulk(RequestT original) {
+        if (!(original instanceof BulkRequest)) {
+            return original;
+        }
+        BulkRequest request = (BulkRequest) original;
+        List<BulkOperation> operations = request.operations();
+        List<BulkOperation> routed = null;
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation operation = operations.get(i);
+            BulkOperation replaced = operation;
+            if (operation.isIndex()) {
+                IndexOperation<?> index = operation.index();
+                String routing = index.routing() != null ? index.routing() : request.routing();
+                String key = writeRouting(indexOf(index.index(), request), index.id(), routing, index.document());
+                if (routing == null && key != null) {
+                    replaced = BulkOperation.of(b -> b.index(withRouting(index, key)));
+                }
+            } else if (operation.isCreate()) {
+                CreateOperation<?> create = operation.create();
+                String routing = create.routing() != null ? create.routing() : request.routing();
+                String key = writeRouting(indexOf(create.index(), request), create.id(), routing, create.document());
+                if (routing == null && key != null) {
+                    replaced = BulkOperation.of(b -> b.create(withRouting(create, key)));
+                }
+            } else if (operation.isUpdate()) {
+                requireRouting(indexOf(operation.update().index(), request), operation.update().id(),
+                        operation.update().routing() != null ? operation.update().routing() : request.routing());
+            } else if (operation.isDelete()) {
+                requireRouting(indexOf(operation.delete().index(), request), operation.delete().id(),
+                        operation.delete().routing() != null ? operation.delete().routing() : request.routing());
+            }
+            if (replaced != operation && routed == null) {
+                routed = new ArrayList<>(operations.subList(0, i));
+            }
+            if (routed != null) {
+                routed.add(replaced);
+            }
+        }
+        if (routed == null) {
+            return original;
+        }
+        List<BulkOperation> routedOperations = routed;
+        return (RequestT) BulkRequest.of(b -> {
+            b.index(request.index())
+                    .pipeline(request.pipeline())
+                    .refresh(request.refresh())
+                    .requireAlias(request.requireAlias())
+                    .routing(request.routing())
+                    .source(request.source())
+                    .timeout(request.timeout())
+                    .waitForActiveShards(request.waitForActiveShards())
+                    .operations(routedOperations);
+            if (!request.sourceExcludes().isEmpty()) {
+                b.sourceExcludes(request.sourceExcludes());
+            }
+            if (!request.sourceIncludes().isEmpty()) {
+                b.sourceIncludes(request.sourceIncludes());
+            }
+            return b;
+        });
+    }
+
+    /**
+     * 写入时使用的 routing
+     *
+     * @return 显式 routing 或文档的路由键，索引未配置路由时为显式 routing
+     */
+    private String writeRouting(String index, String id, String routing, Object document) {
+        if (policy.field(index) == null) {
+            return routing;
+        }
+        String key = policy.key(index, document);
+        if (key == null) {
+            if (routing == null) {
+                throw new RoutingException(index, id, "Missing routing key " + policy.field(index));
+            }
+            return routing;
+        }
+        if (routing != null && !routing.equals(key)) {
+            throw new RoutingException(index, id, "Routing [" + routing + "] does not match routing key [" + key + "]");
+        }
+        return key;
+    }
+
+    private void requireRouting(String index, String id, String routing) {
+        if (routing == null && policy.field(index) != null) {
+            throw new RoutingException(index, id, "Missing routing");
+        }
+    }
+
+    private void verify(Object request, Endpoint<?, ?, ?> endpoint, Object response) {
+        if (!(request instanceof SearchRequest) || !(response instanceof SearchResponse)) {
+            return;
+        }
+        String routing = ((SearchRequest) request).routing();
+        if (routing == null && endpoint instanceof RoutedEndpoint) {
+            routing = ((RoutedEndpoint<?, ?, ?>) endpoint).routing;
+        }
+        if (routing == null) {
+            return;
+        }
+        Set<String> expected = new HashSet<>(Arrays.asList(routing.split(",")));
+        for (Hit<?> hit : ((SearchResponse<?>) response).hits().hits()) {
+            if (policy.field(hit.index()) != null && !expected.contains(hit.routing())) {
+                policy.misrouted(hit.index(), hit.id(), expected, hit.routing());
+            }
+        }
+    }
+
+    private static <RequestT, ResponseT, ErrorT> Endpoint<RequestT, ResponseT, ErrorT> routed(Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                             String routing) {
+        if (!(endpoint instanceof JsonEndpoint)) {
+            return endpoint;
+        }
+        return new RoutedEndpoint<>((JsonEndpoint<RequestT, ResponseT, ErrorT>) endpoint, routing);
+    }
+
+    private static String indexOf(String index, BulkRequest request) {
+        return index != null ? index : request.index();
+    }
+
+    private static <T> IndexOperation<T> withRouting(IndexOperation<T> operation, String routing) {
+        return IndexOperation.of(b -> {
+            b.index(operation.index())
+                    .id(operation.id())
+                    .routing(routing)
+                    .ifPrimaryTerm(operation.ifPrimaryTerm())
+                    .ifSeqNo(operation.ifSeqNo())
+                    .version(operation.version())
+                    .versionType(operation.versionType())
+                    .pipeline(operation.pipeline())
+                    .requireAlias(operation.requireAlias())
+                    .document(operation.document());
+            if (!operation.dynamicTemplates().isEmpty()) {
+                b.dynamicTemplates(operation.dynamicTemplates());
+            }
+            return b;
+        });
+    }
+
+    private static <T> CreateOperation<T> withRouting(CreateOperation<T> operation, String routing) {
+        return CreateOperation.of(b -> {
+            b.index(operation.index())
+                    .id(operation.id())
+                    .routing(routing)
+                    .ifPrimaryTerm(operation.ifPrimaryTerm())
+                    .ifSeqNo(operation.ifSeqNo())
+                    .version(operation.version())
+                    .versionType(operation.versionType())
+                    .pipeline(operation.pipeline())
+                    .requireAlias(operation.requireAlias())
+                    .document(operation.document());
+            if (!operation.dynamicTemplates().isEmpty()) {
+                b.dynamicTemplates(operation.dynamicTemplates());
+            }
+            return b;
+        });
+    }
+
+    /**
+     * 追加 routing 参数的 endpoint，其余行为与原 endpoint 一致
+     */
+    private static final class RoutedEndpoint<RequestT, ResponseT, ErrorT> implements JsonEndpoint<RequestT, ResponseT, ErrorT> {
+
+        private final JsonEndpoint<RequestT, ResponseT, ErrorT> delegate;
+
+        private final String routing;
+
+        private RoutedEndpoint(JsonEndpoint<RequestT, ResponseT, ErrorT> delegate, String routing) {
+            this.delegate = delegate;
+            this.routing = routing;
+        }
+
+        @Override
+        public String id() {
+            return delegate.id();
+        }
+
+        @Override
+        public String method(RequestT request) {
+            return delegate.method(request);
+        }
+
+        @Override
+        public String requestUrl(RequestT request) {
+            return delegate.requestUrl(request);
+        }
+
+        @Override
+        public Map<String, String> queryParameters(RequestT request) {
+            Map<String, String> parameters = new HashMap<>(delegate.queryParameters(request));
+            parameters.put("routing", routing);
+            return parameters;
+        }
+
+        @Override
+        public Map<String, String> headers(RequestT request) {
+            return delegate.headers(request);
+        }
+
+        @Override
+        public Object body(RequestT request) {
+            return delegate.body(request);
+        }
+
+        @Override
+        public boolean isError(int statusCode) {
+            return delegate.isError(statusCode);
+        }
+
+        @Override
+        public JsonpDeserializer<ErrorT> errorDeserializer(int statusCode) {
+            return delegate.errorDeserializer(statusCode);
+        }
+
+        @Override
+        public JsonpDeserializer<ResponseT> responseDeserializer() {
+            return delegate.responseDeserializer();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.elasticsearch.transport;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.CreateResponse;
+import co.elastic.clients.elasticsearch.core.IndexResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 在 transport 层观察 index / create / bulk 的响应，把成功写入的文档通知给 {@link DocumentWriteListener}，
+ * 项目中所有经过 ElasticsearchClient 的写入都会被覆盖，包括自动生成 id 的写入
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+public class WriteNotifyingTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    /**
+     * 监听器通常依赖 ElasticsearchClient，延迟获取避免循环依赖
+     */
+    private final Supplier<List<DocumentWriteListener>> listeners;
+
+    public WriteNotifyingTransport(ElasticsearchTransport delegate, Supplier<List<DocumentWriteListener>> listeners) {
+        this.delegate = delegate;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                  TransportOptions options) throws IOException {
+        ResponseT response = delegate.performRequest(request, endpoint, options);
+        notify(response);
+        return response;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request,
+                                                                                          Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                          TransportOptions options) {
+        return delegate.performRequestAsync(request, endpoint, options).whenComplete((response, error) -> {
+            if (error == null) {
+                notify(response);
+            }
+        });
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private void notify(Object response) {
+        if (!(response instanceof IndexResponse || response instanceof CreateResponse || response instanceof BulkResponse)) {
+            return;
+        }
+        List<DocumentWriteListener> targets = listeners.get();
+        if (targets.isEmpty()) {
+            return;
+        }
+        try {
+            if (response instanceof IndexResponse) {
+                IndexResponse index = (IndexResponse) response;
+                targets.forEach(listener -> listener.onIndexed(index.index(), index.id()));
+            } else if (response instanceof CreateResponse) {
+                CreateResponse create = (CreateResponse) response;
+                targets.forEach(listener -> listener.onIndexed(create.index(), create.id()));
+            } else {
+                for (BulkResponseItem item : ((BulkResponse) response).items()) {
+                    if (item.error() == null && item.id() != null
+                            && (item.operationType() == OperationType.Index || item.operationType() == OperationType.Create)) {
+                        targets.forEach(listener -> listener.onIndexed(item.index(), item.id()));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // 通知失败不影响写入结果
+            log.warn("写入通知失败:{}", e.getMessage(), e);
+        }
+    }
+}
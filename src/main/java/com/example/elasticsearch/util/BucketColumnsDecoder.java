@@ -0,0 +1,247 @@
+package com.example.elasticsearch.util;
+
+import com.example.elasticsearch.model.BucketColumns;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 把 terms / histogram / date_histogram 的桶流式解码为 {@link BucketColumns}
+ * 解析过程中不创建桶对象，key、doc_count 和子聚合的数值直接写入基本类型数组
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public final class BucketColumnsDecoder {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private BucketColumnsDecoder() {
+    }
+
+    /**
+     * 从搜索响应中解码指定聚合
+     *
+     * @param in          搜索响应（未开启 typed_keys）
+     * @param factory     JsonFactory
+     * @param aggregation 聚合名称
+     * @return {@link BucketColumns}，响应中不存在该聚合时返回空结果
+     * @throws IOException ioexception
+     */
+    public static BucketColumns decode(InputStream in, JsonFactory factory, String aggregation) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected search response, expected an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (!"aggregations".equals(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String aggregationName = parser.getCurrentName();
+                    parser.nextToken();
+                    if (aggregation.equals(aggregationName)) {
+                        return readAggregation(parser);
+                    }
+                    parser.skipChildren();
+                }
+            }
+            return new Columns().build();
+        }
+    }
+
+    /**
+     * 解码聚合对象，parser 需位于聚合的 START_OBJECT
+     *
+     * @param parser parser
+     * @return {@link BucketColumns}
+     * @throws IOException ioexception
+     */
+    public static BucketColumns readAggregation(JsonParser parser) throws IOException {
+        Columns columns = new Columns();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!"buckets".equals(name)) {
+                parser.skipChildren();
+            } else if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readBucket(parser, columns);
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                // keyed: true 时桶以对象形式返回，桶内依然带有 key
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    readBucket(parser, columns);
+                }
+            }
+        }
+        return columns.build();
+    }
+
+    private static void readBucket(JsonParser parser, Columns columns) throws IOException {
+        int row = columns.size;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("key".equals(name)) {
+                columns.key(row, parser, token);
+            } else if ("doc_count".equals(name)) {
+                columns.docCount(row, parser.getLongValue());
+            } else if (token == JsonToken.START_OBJECT) {
+                readSubAggregation(parser, name, row, columns);
+            } else {
+                // key_as_string、doc_count_error_upper_bound 等
+                parser.skipChildren();
+            }
+        }
+        columns.size++;
+    }
+
+    private static void readSubAggregation(JsonParser parser, String aggregation, int row, Columns columns) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            String column = "value".equals(field) ? aggregation : aggregation + "." + field;
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                columns.metric(column, row, parser.getDoubleValue());
+            } else if (token == JsonToken.VALUE_NULL) {
+                columns.metric(column, row, Double.NaN);
+            } else {
+                // 嵌套的桶聚合、value_as_string 等不展开
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * 解码过程中的列缓冲区，容量按 2 倍增长
+     */
+    private static final class Columns {
+
+        private int size;
+
+        private BucketColumns.KeyType keyType;
+
+        private long[] longKeys = new long[INITIAL_CAPACITY];
+
+        private double[] doubleKeys;
+
+        private int[] keyCodes;
+
+        private Map<String, Integer> dictionaryIndex;
+
+        private String[] dictionary;
+
+        private long[] docCounts = new long[INITIAL_CAPACITY];
+
+        private final Map<String, double[]> metrics = new LinkedHashMap<>();
+
+        void key(int row, JsonParser parser, JsonToken token) throws IOException {
+            boolean string = token == JsonToken.VALUE_STRING;
+            if (keyType != null && string != (keyType == BucketColumns.KeyType.STRING)) {
+                throw new IOException("Mixed bucket key types in one aggregation: " + keyType + " and " + token);
+            }
+            if (string) {
+                if (keyType == null) {
+                    keyType = BucketColumns.KeyType.STRING;
+                    keyCodes = new int[longKeys.length];
+                    dictionaryIndex = new HashMap<>();
+                    dictionary = new String[INITIAL_CAPACITY];
+                    longKeys = null;
+                }
+                String key = parser.getText();
+                Integer code = dictionaryIndex.get(key);
+                if (code == null) {
+                    code = dictionaryIndex.size();
+                    if (code == dictionary.length) {
+                        dictionary = Arrays.copyOf(dictionary, code << 1);
+                    }
+                    dictionary[code] = key;
+                    dictionaryIndex.put(key, code);
+                }
+                keyCodes = ensure(keyCodes, row);
+                keyCodes[row] = code;
+            } else if (token == JsonToken.VALUE_NUMBER_INT && keyType != BucketColumns.KeyType.DOUBLE) {
+                keyType = BucketColumns.KeyType.LONG;
+                longKeys = ensure(longKeys, row);
+                longKeys[row] = parser.getLongValue();
+            } else if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                if (keyType != BucketColumns.KeyType.DOUBLE) {
+                    // 已有整数 key 时整体提升为浮点
+                    doubleKeys = new double[longKeys.length];
+                    for (int i = 0; i < row; i++) {
+                        doubleKeys[i] = longKeys[i];
+                    }
+                    longKeys = null;
+                    keyType = BucketColumns.KeyType.DOUBLE;
+                }
+                doubleKeys = ensure(doubleKeys, row);
+                doubleKeys[row] = parser.getDoubleValue();
+            } else {
+                throw new IOException("Unsupported bucket key " + token + ", only terms/histogram/date_histogram are supported");
+            }
+        }
+
+        void docCount(int row, long docCount) {
+            docCounts = ensure(docCounts, row);
+            docCounts[row] = docCount;
+        }
+
+        void metric(String name, int row, double value) {
+            double[] column = metrics.get(name);
+            if (column == null) {
+                column = new double[Math.max(docCounts.length, row + 1)];
+                Arrays.fill(column, Double.NaN);
+                metrics.put(name, column);
+            } else if (row >= column.length) {
+                int length = column.length;
+                column = Arrays.copyOf(column, Math.max(length << 1, row + 1));
+                Arrays.fill(column, length, column.length, Double.NaN);
+                metrics.put(name, column);
+            }
+            column[row] = value;
+        }
+
+        BucketColumns build() {
+            Map<String, double[]> trimmed = new LinkedHashMap<>(metrics.size() * 2);
+            for (Map.Entry<String, double[]> entry : metrics.entrySet()) {
+                double[] column = entry.getValue();
+                double[] copy = Arrays.copyOf(column, size);
+                if (column.length < size) {
+                    Arrays.fill(copy, column.length, size, Double.NaN);
+                }
+                trimmed.put(entry.getKey(), copy);
+            }
+            BucketColumns.KeyType type = keyType == null ? BucketColumns.KeyType.LONG : keyType;
+            return new BucketColumns(size, type,
+                    type == BucketColumns.KeyType.LONG ? Arrays.copyOf(longKeys, size) : null,
+                    type == BucketColumns.KeyType.DOUBLE ? Arrays.copyOf(doubleKeys, size) : null,
+                    type == BucketColumns.KeyType.STRING ? Arrays.copyOf(dictionary, dictionaryIndex.size()) : null,
+                    type == BucketColumns.KeyType.STRING ? Arrays.copyOf(keyCodes, size) : null,
+                    Arrays.copyOf(docCounts, size), trimmed);
+        }
+
+        private static long[] ensure(long[] array, int row) {
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(array.length << 1, row + 1));
+        }
+
+        private static double[] ensure(double[] array, int row) {
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(array.length << 1, row + 1));
+        }
+
+        private static int[] ensure(int[] array, int row) {
+            return row < array.length ? array : Arrays.copyOf(array, Math.max(array.length << 1, row + 1));
+        }
+    }
+}
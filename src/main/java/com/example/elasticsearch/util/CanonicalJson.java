@@ -0,0 +1,83 @@
+package com.example.elasticsearch.util;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 规范化 JSON：对象的字段按名称排序、去掉空白，同一内容无论字段顺序如何都得到相同的字节，用于计算内容哈希
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public final class CanonicalJson {
+
+    private CanonicalJson() {
+    }
+
+    /**
+     * 规范化 JSON 字节
+     *
+     * @param node    文档
+     * @param exclude 忽略的顶层字段，例如存储哈希本身的字段
+     * @param mapper  mapper
+     * @return byte[]
+     */
+    public static byte[] toBytes(JsonNode node, String exclude, ObjectMapper mapper) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            write(node, exclude, generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 规范化 JSON 的 64 位 MurmurHash
+     *
+     * @param node    文档
+     * @param exclude 忽略的顶层字段
+     * @param mapper  mapper
+     * @return long
+     */
+    public static long hash(JsonNode node, String exclude, ObjectMapper mapper) {
+        return MurmurHash.hash64(toBytes(node, exclude, mapper));
+    }
+
+    private static void write(JsonNode node, String exclude, JsonGenerator generator) throws IOException {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>(node.size());
+            for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+                String name = it.next();
+                if (!name.equals(exclude)) {
+                    names.add(name);
+                }
+            }
+            Collections.sort(names);
+            generator.writeStartObject();
+            for (String name : names) {
+                generator.writeFieldName(name);
+                write(node.get(name), null, generator);
+            }
+            generator.writeEndObject();
+        } else if (node.isArray()) {
+            generator.writeStartArray();
+            for (JsonNode element : node) {
+                write(element, null, generator);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeTree(node);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.elasticsearch.util;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.NdJsonpSerializable;
+import jakarta.json.stream.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ES 请求体序列化工具，直接复用客户端的 JsonpMapper，输出与 ElasticsearchClient 发送的内容一致
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public final class EsJsonUtils {
+
+    private EsJsonUtils() {
+    }
+
+    /**
+     * 将 DSL 对象（SearchRequest、Query、Aggregation 等）序列化为 JSON 字节
+     *
+     * @param value  DSL 对象
+     * @param mapper 客户端使用的 mapper
+     * @return byte[]
+     */
+    public static byte[] toBytes(JsonpSerializable value, JsonpMapper mapper) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        write(value, mapper, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * 将 DSL 对象序列化为 JSON 字符串
+     *
+     * @param value  DSL 对象
+     * @param mapper 客户端使用的 mapper
+     * @return String
+     */
+    public static String toJson(JsonpSerializable value, JsonpMapper mapper) {
+        return new String(toBytes(value, mapper), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将 DSL 对象序列化写入输出流，写完后会关闭该输出流
+     *
+     * @param value  DSL 对象
+     * @param mapper 客户端使用的 mapper
+     * @param out    输出流
+     */
+    public static void write(JsonpSerializable value, JsonpMapper mapper, OutputStream out) {
+        JsonGenerator generator = mapper.jsonProvider().createGenerator(out);
+        value.serialize(generator, mapper);
+        generator.close();
+    }
+
+    /**
+     * 将 BulkOperation、BulkRequest 等 NDJSON 请求体序列化追加到 out，每个 JSON 占一行，与 _bulk 请求体格式一致
+     *
+     * @param value  NDJSON 对象
+     * @param mapper 客户端使用的 mapper
+     * @param out    输出，不会被关闭
+     */
+    public static void writeNdJson(NdJsonpSerializable value, JsonpMapper mapper, ByteArrayOutputStream out) {
+        Iterator<?> values = value._serializables();
+        while (values.hasNext()) {
+            Object item = values.next();
+            if (item == null) {
+                // 8.7 的 UpdateOperation 总是同时返回 action 和 binaryAction，未设置的一个为 null，与传输层一样跳过
+                continue;
+            }
+            if (item instanceof NdJsonpSerializable && item != value) {
+                writeNdJson((NdJsonpSerializable) item, mapper, out);
+            } else {
+                JsonGenerator generator = mapper.jsonProvider().createGenerator(out);
+                mapper.serialize(item, generator);
+                generator.close();
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.elasticsearch.util;
+
+/**
+ * long -&gt; String 哈希表，开放寻址、线性探测，键存放在 long[] 中，查询不装箱。
+ * 写入不是线程安全的，适合一次性构建后发布、此后只读的场景（例如字典快照）；发布后可被多个线程无锁读取
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class LongStringMap {
+
+    private static final double MAX_LOAD = 0.6;
+
+    /**
+     * values 中的 null 表示空槽，键 0 单独存放
+     */
+    private long[] keys;
+
+    private String[] values;
+
+    private int mask;
+
+    private int size;
+
+    private String zeroValue;
+
+    public LongStringMap(int expectedSize) {
+        int slots = Integer.highestOneBit(Math.max(8, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        keys = new long[slots];
+        values = new String[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * 查询
+     *
+     * @param key 键
+     * @return 不存在时返回 null
+     */
+    public String get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        for (int slot = index(key, mask); ; slot = (slot + 1) & mask) {
+            String value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * 写入或覆盖
+     *
+     * @param key   键
+     * @param value 值，不能为 null
+     */
+    public void put(long key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        if (key == 0) {
+            if (zeroValue == null) {
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        if (insert(keys, values, mask, key, value)) {
+            size++;
+            if (size > (mask + 1) * MAX_LOAD) {
+                grow();
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int slots = (mask + 1) << 1;
+        long[] newKeys = new long[slots];
+        String[] newValues = new String[slots];
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != null) {
+                insert(newKeys, newValues, slots - 1, keys[slot], values[slot]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        mask = slots - 1;
+    }
+
+    private static boolean insert(long[] keys, String[] values, int mask, long key, String value) {
+        for (int slot = index(key, mask); ; slot = (slot + 1) & mask) {
+            if (values[slot] == null) {
+                keys[slot] = key;
+                values[slot] = value;
+                return true;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        // murmur3 fmix64，连续的字典编码也能均匀分布
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.elasticsearch.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外 long -&gt; long 哈希表，开放寻址、线性探测，每个条目固定 16 字节，不产生 GC 压力。
+ * 键 0 保留为空槽，调用方传入 0 时会被映射为 1；不支持删除
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class OffHeapLongMap {
+
+    private static final int SLOT = 16;
+
+    private static final double MAX_LOAD = 0.7;
+
+    /**
+     * 单个 ByteBuffer 最多 2GB
+     */
+    private static final int MAX_SLOTS = Integer.MAX_VALUE / SLOT;
+
+    private ByteBuffer table;
+
+    private int mask;
+
+    private int size;
+
+    public OffHeapLongMap(int expectedSize) {
+        int slots = Integer.highestOneBit(Math.max(16, (int) Math.min(MAX_SLOTS, expectedSize / MAX_LOAD)) - 1) << 1;
+        // 向上取整到 2 的幂后可能超过 MAX_SLOTS（2^27 个槽正好 2GB，会溢出），取不超过 MAX_SLOTS 的最大 2 的幂
+        allocate(Math.min(slots, Integer.highestOneBit(MAX_SLOTS)));
+    }
+
+    /**
+     * 查询
+     *
+     * @param key          键
+     * @param defaultValue 不存在时的返回值
+     * @return long
+     */
+    public synchronized long get(long key, long defaultValue) {
+        key = key == 0 ? 1 : key;
+        for (int slot = index(key); ; slot = (slot + 1) & mask) {
+            long current = table.getLong(slot * SLOT);
+            if (current == key) {
+                return table.getLong(slot * SLOT + 8);
+            }
+            if (current == 0) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * 写入或覆盖
+     *
+     * @param key   键
+     * @param value 值
+     */
+    public synchronized void put(long key, long value) {
+        key = key == 0 ? 1 : key;
+        if (insert(table, mask, key, value)) {
+            size++;
+            if (size > (mask + 1) * MAX_LOAD) {
+                grow();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 堆外占用的字节数
+     *
+     * @return long
+     */
+    public synchronized long memoryBytes() {
+        return (long) table.capacity();
+    }
+
+    private void grow() {
+        int slots = (mask + 1) << 1;
+        if (slots > MAX_SLOTS) {
+            throw new IllegalStateException("OffHeapLongMap is full: " + size + " entries");
+        }
+        ByteBuffer old = table;
+        int oldSlots = mask + 1;
+        allocate(slots);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long key = old.getLong(slot * SLOT);
+            if (key != 0) {
+                insert(table, mask, key, old.getLong(slot * SLOT + 8));
+            }
+        }
+    }
+
+    private void allocate(int slots) {
+        table = ByteBuffer.allocateDirect(slots * SLOT);
+        mask = slots - 1;
+    }
+
+    private int index(long key) {
+        return index(key, mask);
+    }
+
+    private static int index(long key, int mask) {
+        // 键本身已是哈希值，再混合一次高低位，避免只用低位导致聚集
+        long h = key ^ (key >>> 32);
+        return (int) (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return 是否新增了条目
+     */
+    private static boolean insert(ByteBuffer table, int mask, long key, long value) {
+        for (int slot = index(key, mask); ; slot = (slot + 1) & mask) {
+            long current = table.getLong(slot * SLOT);
+            if (current == 0 || current == key) {
+                table.putLong(slot * SLOT, key);
+                table.putLong(slot * SLOT + 8, value);
+                return current == 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.elasticsearch.util;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQueryField;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import com.example.elasticsearch.admission.OperationClass;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预序列化的查询模板
+ * 查询结构用 builder 写一次，需要变化的值用 {@link #value(String)}、{@link #values(String)}、{@link #json(String)} 占位，
+ * 编译时整个请求只序列化一次并按占位符切成字节片段，之后每次请求只把参数值写进片段之间，
+ * 不再重建 Query 树，也不再重复序列化不变的部分
+ * <p>
+ * 占位符在 JSON 中的形式为 "__p:名称__"，作为数组的唯一元素时（["__p:名称__"]）是列表槽位，
+ * 绑定集合时展开为多个元素；作为普通值时绑定集合会写成数组，因此占位符也可以放在字段名等任意字符串位置
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public final class QueryTemplate {
+
+    private static final String PREFIX = "__p:";
+
+    private static final String SUFFIX = "__";
+
+    private static final byte[] OPEN = ("\"" + PREFIX).getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CLOSE = (SUFFIX + "\"").getBytes(StandardCharsets.UTF_8);
+
+    private final String path;
+
+    private final Map<String, String> parameters;
+
+    /**
+     * 占位符之间的固定字节，比 slots 多一个
+     */
+    private final byte[][] literals;
+
+    private final Slot[] slots;
+
+    private final Set<String> names;
+
+    private final int skeletonLength;
+
+    private final OperationClass operationClass;
+
+    private QueryTemplate(String path, Map<String, String> parameters, List<byte[]> literals, List<Slot> slots,
+                          OperationClass operationClass) {
+        this.path = path;
+        this.operationClass = operationClass;
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.literals = literals.toArray(new byte[0][]);
+        this.slots = slots.toArray(new Slot[0]);
+        Set<String> names = new LinkedHashSet<>();
+        int length = 0;
+        for (Slot slot : slots) {
+            names.add(slot.name);
+        }
+        for (byte[] literal : literals) {
+            length += literal.length;
+        }
+        this.names = Collections.unmodifiableSet(names);
+        this.skeletonLength = length;
+    }
+
+    /**
+     * 占位符字符串
+     *
+     * @param name 参数名称
+     * @return String
+     */
+    public static String param(String name) {
+        if (name == null || name.isEmpty() || name.contains("\"") || name.contains("\\") || name.endsWith("_")) {
+            throw new IllegalArgumentException("Illegal template parameter name: " + name);
+        }
+        return PREFIX + name + SUFFIX;
+    }
+
+    /**
+     * term、match 等查询值的占位符
+     *
+     * @param name 参数名称
+     * @return {@link FieldValue}
+     */
+    public static FieldValue value(String name) {
+        return FieldValue.of(param(name));
+    }
+
+    /**
+     * terms 查询的列表占位符，绑定集合时展开为多个值
+     *
+     * @param name 参数名称
+     * @return {@link TermsQueryField}
+     */
+    public static TermsQueryField values(String name) {
+        return TermsQueryField.of(t -> t.value(Collections.singletonList(value(name))));
+    }
+
+    /**
+     * range 等以 JsonData 为值的占位符，绑定数字时写成数字
+     *
+     * @param name 参数名称
+     * @return {@link JsonData}
+     */
+    public static JsonData json(String name) {
+        return JsonData.of(param(name));
+    }
+
+    /**
+     * 编译查询模板，请求只在这里序列化一次
+     *
+     * @param request 带占位符的查询请求
+     * @param mapper  客户端使用的 mapper
+     * @return {@link QueryTemplate}
+     */
+    public static QueryTemplate compile(SearchRequest request, JsonpMapper mapper) {
+        String path = SearchRequest._ENDPOINT.requestUrl(request);
+        Map<String, String> parameters = new LinkedHashMap<>(SearchRequest._ENDPOINT.queryParameters(request));
+        byte[] body = EsJsonUtils.toBytes(request, mapper);
+
+        List<byte[]> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = indexOf(body, OPEN, start)) >= 0) {
+            int close = indexOf(body, CLOSE, open + OPEN.length);
+            if (close < 0) {
+                break;
+            }
+            String name = new String(body, open + OPEN.length, close - open - OPEN.length, StandardCharsets.UTF_8);
+            int end = close + CLOSE.length;
+            boolean list = open > 0 && body[open - 1] == '[' && end < body.length && body[end] == ']';
+            literals.add(copy(body, start, open));
+            slots.add(new Slot(name, list));
+            start = end;
+        }
+        literals.add(copy(body, start, body.length));
+        return new QueryTemplate(path, parameters, literals, slots, OperationClass.of("es/search", request));
+    }
+
+    /**
+     * 绑定参数，生成请求体
+     *
+     * @param params 参数名称 -> 参数值，值按 mapper 序列化，字符串会被正确转义
+     * @param mapper 序列化参数值使用的 mapper
+     * @return byte[]
+     */
+    public byte[] bind(Map<String, ?> params, ObjectMapper mapper) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(skeletonLength + slots.length * 16);
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                out.write(literals[i]);
+                Slot slot = slots[i];
+                if (!params.containsKey(slot.name)) {
+                    throw new IllegalArgumentException("Missing template parameter: " + slot.name);
+                }
+                Object value = params.get(slot.name);
+                if (slot.list && isMultiValued(value)) {
+                    writeElements(value, mapper, out);
+                } else {
+                    mapper.writeValue(out, value);
+                }
+            }
+            out.write(literals[slots.length]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 查询路径，如 /users/_search
+     *
+     * @return String
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * 编译时请求携带的 URL 参数（typed_keys、routing 等）
+     *
+     * @return 参数名称 -> 参数值
+     */
+    public Map<String, String> parameters() {
+        return parameters;
+    }
+
+    /**
+     * 编译时按请求结构（是否带聚合、scroll、pit）确定的准入类别，绑定参数不会改变它
+     *
+     * @return {@link OperationClass}
+     */
+    public OperationClass operationClass() {
+        return operationClass;
+    }
+
+    /**
+     * 模板中的参数名称
+     *
+     * @return Set
+     */
+    public Set<String> names() {
+        return names;
+    }
+
+    private static boolean isMultiValued(Object value) {
+        return value instanceof Collection || (value != null && value.getClass().isArray() && !(value instanceof byte[]));
+    }
+
+    private static void writeElements(Object value, ObjectMapper mapper, ByteArrayOutputStream out) throws IOException {
+        Iterator<?> it;
+        if (value instanceof Collection) {
+            it = ((Collection<?>) value).iterator();
+        } else {
+            int length = Array.getLength(value);
+            List<Object> elements = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                elements.add(Array.get(value, i));
+            }
+            it = elements.iterator();
+        }
+        boolean first = true;
+        while (it.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            mapper.writeValue(out, it.next());
+            first = false;
+        }
+    }
+
+    private static int indexOf(byte[] source, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] copy(byte[] source, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        System.arraycopy(source, from, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static final class Slot {
+
+        private final String name;
+
+        /**
+         * 是否为数组中唯一的元素
+         */
+        private final boolean list;
+
+        private Slot(String name, boolean list) {
+            this.name = name;
+            this.list = list;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.elasticsearch.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 可扩容的布隆过滤器（Scalable Bloom Filter）
+ * 当前层写满后追加一层容量翻倍、误判率减半的新层，总误判率收敛于设定值；
+ * 继续扩容会超出内存预算时停止扩容并进入饱和状态，此后 {@link #mightContain(long)} 始终返回 true，只会退化不会误报不存在。
+ * 输入为 64 位哈希，各层用 Kirsch-Mitzenmacher 双哈希派生 k 个位置；写入无锁，可并发读写
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class ScalableBloomFilter {
+
+    private static final double TIGHTENING = 0.5;
+
+    private static final int GROWTH = 2;
+
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private final double firstFpp;
+
+    private final long maxBytes;
+
+    private volatile Stage[] stages;
+
+    private volatile boolean saturated;
+
+    /**
+     * @param initialCapacity 第一层容量
+     * @param fpp             目标误判率
+     * @param maxBytes        内存预算
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, long maxBytes) {
+        // 各层误判率为 p0, p0*r, p0*r^2 ...，总和不超过 p0 / (1 - r) = fpp
+        this.firstFpp = fpp * (1 - TIGHTENING);
+        this.maxBytes = maxBytes;
+        long capacity = Math.max(64, initialCapacity);
+        if (Stage.bytesFor(capacity, firstFpp) > maxBytes) {
+            // 预算不足以容纳初始容量时按预算缩小第一层
+            capacity = Math.max(64, (long) (maxBytes * 8 * LN2_SQUARED / -Math.log(firstFpp)));
+        }
+        this.stages = new Stage[]{new Stage(capacity, firstFpp)};
+    }
+
+    public void add(long hash) {
+        Stage[] current = stages;
+        Stage last = current[current.length - 1];
+        if (last.count.get() >= last.capacity && !saturated) {
+            last = grow(current);
+        }
+        last.add(hash);
+    }
+
+    public boolean mightContain(long hash) {
+        if (saturated) {
+            return true;
+        }
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否因内存预算停止扩容
+     *
+     * @return boolean
+     */
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    /**
+     * 已写入的元素数（含重复写入）
+     *
+     * @return long
+     */
+    public long count() {
+        long count = 0;
+        for (Stage stage : stages) {
+            count += stage.count.get();
+        }
+        return count;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 按各层实际填充量估算的误判率
+     *
+     * @return double
+     */
+    public double expectedFpp() {
+        if (saturated) {
+            return 1;
+        }
+        double miss = 1;
+        for (Stage stage : stages) {
+            miss *= 1 - stage.expectedFpp();
+        }
+        return 1 - miss;
+    }
+
+    private synchronized Stage grow(Stage[] seen) {
+        Stage[] current = stages;
+        if (current != seen || saturated) {
+            return current[current.length - 1];
+        }
+        Stage last = current[current.length - 1];
+        long capacity = last.capacity * GROWTH;
+        double fpp = firstFpp * Math.pow(TIGHTENING, current.length);
+        if (memoryBytes() + Stage.bytesFor(capacity, fpp) > maxBytes) {
+            saturated = true;
+            return last;
+        }
+        Stage next = new Stage(capacity, fpp);
+        Stage[] grown = new Stage[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        stages = grown;
+        return next;
+    }
+
+    private static final class Stage {
+
+        private final long capacity;
+
+        private final long numBits;
+
+        private final int numHashes;
+
+        private final AtomicLongArray bits;
+
+        private final AtomicLong count = new AtomicLong();
+
+        private Stage(long capacity, double fpp) {
+            this.capacity = capacity;
+            long words = words(capacity, fpp);
+            if (words > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Bloom filter stage too large: " + capacity);
+            }
+            this.bits = new AtomicLongArray((int) words);
+            this.numBits = (long) bits.length() * 64;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+        }
+
+        void add(long hash) {
+            long h1 = hash;
+            long h2 = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                do {
+                    value = bits.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, value, value | mask));
+            }
+            count.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            long h1 = hash;
+            long h2 = Long.rotateLeft(hash, 32) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long bytes() {
+            return (long) bits.length() * 8;
+        }
+
+        static long bytesFor(long capacity, double fpp) {
+            return words(capacity, fpp) * 8;
+        }
+
+        private static long words(long capacity, double fpp) {
+            return Math.max(1, (long) Math.ceil(-capacity * Math.log(fpp) / LN2_SQUARED / 64));
+        }
+
+        double expectedFpp() {
+            return Math.pow(1 - Math.exp(-(double) numHashes * count.get() / numBits), numHashes);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.elasticsearch.util;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 根据目标类推导 _source includes
+ * 字段名与 Jackson 反序列化时使用的名称一致（@JsonProperty、@JsonIgnore 均生效），
+ * 嵌套的自定义对象展开为 a.b 形式，结果按类缓存
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public final class SourceProjection {
+
+    /**
+     * 嵌套对象最多展开的层数，超过后直接取整个对象
+     */
+    private static final int MAX_DEPTH = 3;
+
+    private static final Map<Class<?>, List<String>> CACHE = new ConcurrentHashMap<>();
+
+    private SourceProjection() {
+    }
+
+    /**
+     * 获取目标类对应的 _source includes
+     *
+     * @param type   目标类
+     * @param mapper 反序列化使用的 ObjectMapper
+     * @return 字段路径，不可修改
+     */
+    public static List<String> includes(Class<?> type, ObjectMapper mapper) {
+        return CACHE.computeIfAbsent(type, t -> {
+            List<String> fields = new ArrayList<>();
+            collect(mapper, mapper.constructType(t), "", 0, fields);
+            return Collections.unmodifiableList(fields);
+        });
+    }
+
+    private static void collect(ObjectMapper mapper, JavaType type, String prefix, int depth, List<String> fields) {
+        BeanDescription description = mapper.getDeserializationConfig().introspect(type);
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (!property.hasSetter() && !property.hasField() && !property.hasConstructorParameter()) {
+                continue;
+            }
+            String path = prefix + property.getName();
+            JavaType propertyType = property.getPrimaryType();
+            if (depth < MAX_DEPTH && isBean(propertyType)) {
+                collect(mapper, propertyType, path + ".", depth + 1, fields);
+            } else {
+                fields.add(path);
+            }
+        }
+    }
+
+    private static boolean isBean(JavaType type) {
+        if (type == null || type.isPrimitive() || type.isEnumType() || type.isContainerType()) {
+            return false;
+        }
+        String name = type.getRawClass().getName();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("com.fasterxml.");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.elasticsearch.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf 分布的排名生成器，排名 k（从 0 开始）的概率与 1/(k+1)^exponent 成正比
+ * exponent 为 0 时退化为均匀分布，越大越集中在头部；预计算累积分布后二分查找，适合 n 在百万以内
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class ZipfGenerator {
+
+    private final double[] cdf;
+
+    public ZipfGenerator(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+    }
+
+    /**
+     * 下一个排名
+     *
+     * @param random 随机数
+     * @return [0, n)
+     */
+    public int next(Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    public int size() {
+        return cdf.length;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.elasticsearch.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程执行器，只在 java21 profile 下编译
+ * 每个任务一个虚拟线程，阻塞在 ES 请求上时只占用虚拟线程，数千个并发请求不需要数千个平台线程。
+ * 并发度由连接池（elasticsearch.max-conn-total）和准入控制限制，而不是线程数
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Configuration
+@ConditionalOnProperty(name = "elasticsearch.executor.virtual-threads", havingValue = "true")
+public class VirtualThreadExecutorConfig {
+
+    /**
+     * 替换 {@link ExecutorConfig} 中的线程池，关闭时等待已提交的任务结束
+     *
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService esQueryExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("es-query-", 0).factory());
+    }
+}
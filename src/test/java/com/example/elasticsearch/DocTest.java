@@ -6,13 +6,22 @@ import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
 import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.transport.endpoints.BooleanResponse;
 import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.model.DedupResult;
+import com.example.elasticsearch.service.BulkLoadService;
+import com.example.elasticsearch.service.BulkLoadSession;
+import com.example.elasticsearch.service.ContentHashDeduplicator;
+import com.example.elasticsearch.service.IdBloomFilterService;
+import com.example.elasticsearch.service.OptimisticUpdateService;
+import com.example.elasticsearch.service.WriteSpool;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +40,21 @@ public class DocTest
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private OptimisticUpdateService optimisticUpdateService;
+
+    @Autowired
+    private BulkLoadService bulkLoadService;
+
+    @Autowired
+    private WriteSpool writeSpool;
+
+    @Autowired
+    private ContentHashDeduplicator contentHashDeduplicator;
+
+    @Autowired
+    private IdBloomFilterService idBloomFilterService;
+
     /**
      * 添加一个文档
      * https://www.elastic.co/guide/en/elasticsearch/client/java-api-client/8.3/indexing.html#indexing
@@ -88,6 +112,33 @@ public class DocTest
         log.info(String.valueOf(response.result()));
     }
 
+    /**
+     * 读-改-写更新文档，以 if_seq_no / if_primary_term 防止并发修改丢失
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void modifyDocumentOptimistically () throws IOException
+    {
+        User user = optimisticUpdateService.modify("users", "1", User.class, current -> {
+            if (current == null) {
+                return null;
+            }
+            current.setAge(current.getAge() + 1);
+            return current;
+        });
+        log.info("modified:{}", user);
+        // 批量：mget 读取，bulk 写回，冲突的文档重新读取后重试
+        Map<String, User> users = optimisticUpdateService.modifyAll("users", Arrays.asList("1", "2", "3"), User.class, current -> {
+            if (current == null || current.getAge() == null) {
+                return null;
+            }
+            current.setAge(current.getAge() + 1);
+            return current;
+        });
+        log.info("modified:{}", users.keySet());
+    }
+
     /**
      * 批量添加文档
      *
@@ -136,6 +187,60 @@ public class DocTest
         }
     }
 
+    /**
+     * 批量导入模式：导入期间关闭 refresh、副本，结束后恢复原设置
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void bulkLoadDocuments () throws IOException
+    {
+        List<BulkOperation> bulkOperations = new ArrayList<>();
+        for (int i = 100; i < 1100; i++) {
+            User user = new User(String.valueOf(i), "用户" + i, 18 + i % 40, i % 2 == 0 ? "男" : "女");
+            bulkOperations.add(BulkOperation.of(b -> b.index(c -> c.id(user.getId()).document(user))));
+        }
+        try (BulkLoadSession session = bulkLoadService.open("users")) {
+            for (int from = 0; from < bulkOperations.size(); from += 200) {
+                List<BulkOperation> chunk = bulkOperations.subList(from, Math.min(from + 200, bulkOperations.size()));
+                BulkResponse response = elasticsearchClient.bulk(s -> s.index(session.index()).operations(chunk));
+                log.info("took:{}，errors:{}", response.took(), response.errors());
+            }
+        }
+    }
+
+    /**
+     * 经磁盘写入缓冲批量写入，集群不可用时数据保留在本地，恢复后按顺序重放
+     *
+     * @throws Exception exception
+     */
+    @Test
+    void spoolDocuments () throws Exception
+    {
+        List<BulkOperation> bulkOperations = new ArrayList<>();
+        bulkOperations.add(BulkOperation.of(b -> b.index(c -> c.index("users").id("5").document(new User("5","李雷",30,"男")))));
+        bulkOperations.add(BulkOperation.of(b -> b.delete(c -> c.index("users").id("6"))));
+        long offset = writeSpool.append(bulkOperations);
+        boolean drained = writeSpool.awaitDrained(Duration.ofSeconds(10));
+        log.info("offset:{}，acked:{}，drained:{}", offset, writeSpool.ackedOffset(), drained);
+    }
+
+    /**
+     * 内容哈希去重写入，重复发送的相同快照不会再次写入
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void writeUnchangedDocumentsOnce () throws IOException
+    {
+        List<User> users = new ArrayList<>();
+        users.add(new User("1","赵四",20,"男"));
+        users.add(new User("2","阿旺",25,"男"));
+        DedupResult first = contentHashDeduplicator.write("users", users, User::getId);
+        DedupResult second = contentHashDeduplicator.write("users", users, User::getId);
+        log.info("first:{}，second:{}", first, second);
+    }
+
     /**
      * 获取文档
      * https://www.elastic.co/guide/en/elasticsearch/client/java-api-client/8.3/reading.html#reading
@@ -169,6 +274,21 @@ public class DocTest
         log.info("判断Document是否存在:{}",booleanResponse.value());
     }
 
+    /**
+     * 通过 id 布隆过滤器判断文档是否存在，一定不存在的 id 不访问集群
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void getDocumentWithBloomFilter () throws IOException
+    {
+        idBloomFilterService.rebuild("users");
+        log.info("1 是否存在:{}", idBloomFilterService.exists("users", "1"));
+        log.info("not-exists 可能存在:{}", idBloomFilterService.mightExist("users", "not-exists"));
+        GetResponse<User> getResponse = idBloomFilterService.get("users", "not-exists", User.class);
+        log.info("found:{}", getResponse.found());
+    }
+
     /**
      * 删除文档
      *
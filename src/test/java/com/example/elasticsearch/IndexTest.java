@@ -9,6 +9,8 @@ import co.elastic.clients.elasticsearch.indices.CreateIndexResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexResponse;
 import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
 import co.elastic.clients.elasticsearch.indices.IndexState;
+import com.example.elasticsearch.model.ReindexResult;
+import com.example.elasticsearch.service.ReindexOrchestrator;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +34,9 @@ public class IndexTest
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private ReindexOrchestrator reindexOrchestrator;
+
     /**
      * 创建索引
      *
@@ -111,6 +116,27 @@ public class IndexTest
         log.info("创建索引状态:{}", response.acknowledged());
     }
 
+    /**
+     * 创建按用户组路由的索引，_routing.required 使不带 routing 的写入和读取直接失败，
+     * 配合 elasticsearch.routing.indices=users:groupId 使用
+     */
+    @Test
+    public void createRoutedIndex() throws IOException {
+        CreateIndexResponse response = elasticsearchClient
+                .indices()
+                .create(c -> c
+                        .index("users")
+                        .settings(sBuilder -> sBuilder
+                                .index(iBuilder -> iBuilder
+                                        .numberOfShards("3")
+                                        .numberOfReplicas("1")))
+                        .mappings(mBuilder -> mBuilder
+                                .routing(r -> r.required(true))
+                                .properties("groupId", p -> p.keyword(k -> k)))
+                );
+        log.info("创建索引状态:{}", response.acknowledged());
+    }
+
     /**
      * 获取索引
      */
@@ -138,4 +164,26 @@ public class IndexTest
         DeleteIndexResponse deleteIndexResponse = elasticsearchClient.indices().delete(s -> s.index("kit"));
         log.info("删除索引操作结果：{}",deleteIndexResponse.acknowledged());
     }
+
+    /**
+     * 修改 IK 分词器后零停机迁移 User 别名下的索引
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void migrateUserIndex() throws IOException {
+        Map<String, Property> documentMap = new HashMap<>();
+        documentMap.put("userName",Property.of(p -> p
+                .text(TextProperty.of(textProperty ->
+                        textProperty.index(true).analyzer("ik_max_word").searchAnalyzer("ik_smart")))));
+        documentMap.put("age", Property.of(property ->
+                property.integer(IntegerNumberProperty.of(integerNumberProperty
+                        -> integerNumberProperty.index(true)))));
+        documentMap.put("updatedAt", Property.of(property -> property.date(d -> d)));
+        // 追平阶段按 updatedAt 限定范围，写入 User 时需要维护该字段
+        ReindexResult result = reindexOrchestrator.migrate("User",
+                c -> c.mappings(mappings -> mappings.properties(documentMap)), 1000f, "updatedAt").join();
+        log.info("迁移结果:{}", result);
+        // 确认无误后删除旧索引；如需回滚：reindexOrchestrator.rollback(result).join()
+    }
 }
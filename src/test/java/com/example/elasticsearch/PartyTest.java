@@ -3,12 +3,21 @@ package com.example.elasticsearch;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import com.example.elasticsearch.model.BucketColumns;
+import com.example.elasticsearch.service.AggregationBatcher;
+import com.example.elasticsearch.service.ColumnarAggregationService;
+import com.example.elasticsearch.service.CompositeAggregationService;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * @version 1.0.0
@@ -24,6 +33,15 @@ public class PartyTest
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private ColumnarAggregationService columnarAggregationService;
+
+    @Autowired
+    private CompositeAggregationService compositeAggregationService;
+
+    @Autowired
+    private AggregationBatcher aggregationBatcher;
+
     /**
      * 获取最大年龄用户测试
      */
@@ -88,4 +106,78 @@ public class PartyTest
                 .sterms();
         log.info("stringTermsAggregate:{}",stringTermsAggregate.buckets());
     }
+
+    /**
+     * 年龄分组测试（列式解码），子聚合 avgAge 作为额外的列返回
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void groupByAgeColumnsTest() throws IOException {
+        BucketColumns columns = columnarAggregationService.columns("users", null, "groupName",
+                Aggregation.of(a -> a
+                        .terms(TermsAggregation.of(s -> s
+                                .field("age")
+                                .size(1000)))
+                        .aggregations("avgAge", sub -> sub
+                                .avg(AverageAggregation.of(s -> s
+                                        .field("age"))))
+                )
+        );
+        log.info("keys:{}", Arrays.toString(columns.getLongKeys()));
+        log.info("docCounts:{}", Arrays.toString(columns.getDocCounts()));
+        log.info("avgAge:{}", Arrays.toString(columns.metric("avgAge")));
+    }
+
+    /**
+     * 性别分组测试（列式解码），字符串 key 使用字典编码
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void groupBySexColumnsTest() throws IOException {
+        BucketColumns columns = columnarAggregationService.columns("users", null, "groupSex",
+                Aggregation.of(a -> a
+                        .terms(TermsAggregation.of(s -> s
+                                .field("sex.keyword")))
+                )
+        );
+        for (int i = 0; i < columns.getSize(); i++) {
+            log.info("{}:{}", columns.stringKey(i), columns.getDocCounts()[i]);
+        }
+    }
+
+    /**
+     * 年龄 + 性别分组测试（composite 聚合分页拉取全部分组）
+     */
+    @Test
+    void groupByAgeAndSexCompositeTest() {
+        LinkedHashMap<String, CompositeAggregationSource> sources = new LinkedHashMap<>();
+        sources.put("age", CompositeAggregationSource.of(s -> s
+                .terms(t -> t.field("age"))));
+        sources.put("sex", CompositeAggregationSource.of(s -> s
+                .terms(t -> t.field("sex.keyword"))));
+        try (Stream<CompositeBucket> buckets = compositeAggregationService.stream("users", null, sources,
+                Collections.singletonMap("maxAge", Aggregation.of(a -> a.max(m -> m.field("age")))), 2)) {
+            buckets.forEach(bucket -> log.info("age:{}, sex:{}, docCount:{}, maxAge:{}",
+                    bucket.key().get("age")._get(), bucket.key().get("sex")._get(),
+                    bucket.docCount(), bucket.aggregations().get("maxAge").max().value()));
+        }
+    }
+
+    /**
+     * 合并聚合测试，三个聚合在同一个窗口内提交，只发送一次搜索
+     */
+    @Test
+    void mergedAggregationsTest() {
+        CompletableFuture<Aggregate> maxAge = aggregationBatcher.submit("users", null, "maxAge",
+                Aggregation.of(a -> a.max(MaxAggregation.of(s -> s.field("age")))));
+        CompletableFuture<Aggregate> groupAge = aggregationBatcher.submit("users", null, "groupName",
+                Aggregation.of(a -> a.terms(TermsAggregation.of(s -> s.field("age")))));
+        CompletableFuture<Aggregate> groupSex = aggregationBatcher.submit("users", null, "groupSex",
+                Aggregation.of(a -> a.terms(TermsAggregation.of(s -> s.field("sex.keyword")))));
+        log.info("maxAge.value:{}", maxAge.join().max().value());
+        log.info("groupName:{}", groupAge.join().lterms().buckets());
+        log.info("groupSex:{}", groupSex.join().sterms().buckets());
+    }
 }
@@ -2,18 +2,28 @@ package com.example.elasticsearch;
 
 import cn.hutool.json.JSONUtil;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Script;
 import co.elastic.clients.elasticsearch._types.ScriptLanguage;
 import co.elastic.clients.elasticsearch._types.ScriptSortType;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch.core.IndexResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.TotalHits;
 import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
+import com.example.elasticsearch.dictionary.DictionaryTranslator;
 import com.example.elasticsearch.model.Products;
 import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.model.TaskProgress;
+import com.example.elasticsearch.model.TranslatedHit;
+import com.example.elasticsearch.service.ByQueryTask;
+import com.example.elasticsearch.service.ByQueryTaskManager;
+import com.example.elasticsearch.service.DerivedFieldService;
+import com.example.elasticsearch.service.ScriptRegistry;
+import com.example.elasticsearch.service.UpdateCoalescer;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.util.Maps;
 import org.junit.jupiter.api.Test;
@@ -21,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Script的简单使用
@@ -37,6 +48,21 @@ public class ScriptTest {
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private ScriptRegistry scriptRegistry;
+
+    @Autowired
+    private DerivedFieldService derivedFieldService;
+
+    @Autowired
+    private ByQueryTaskManager taskManager;
+
+    @Autowired
+    private DictionaryTranslator dictionaryTranslator;
+
+    @Autowired
+    private UpdateCoalescer updateCoalescer;
+
     /**
      * 添加示例商品索引
      *
@@ -246,4 +272,158 @@ public class ScriptTest {
         }
         log.info(JSONUtil.toJsonStr(userList));
     }
+
+    /**
+     * 存储脚本修改商品 counter 属性，脚本在启动时注册，这里只传 id 和参数
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void updateProductsCounterByStoredScript() throws IOException {
+        Map<String, JsonData> map = Maps.newHashMap("newCounter", JsonData.of(666));
+        Script script = scriptRegistry.script("products-counter-add", map);
+        elasticsearchClient.updateByQuery(d -> d
+                .index("products")
+                .query(q -> q
+                        .term(t -> t
+                                .field("counter")
+                                .value(1)
+                        ))
+                .script(script)
+        );
+    }
+
+    /**
+     * 异步 update_by_query，轮询任务进度直至完成
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void updateProductsCounterAsync() throws IOException {
+        Map<String, JsonData> map = Maps.newHashMap("newCounter", JsonData.of(1));
+        Script script = scriptRegistry.script("products-counter-add", map);
+        ByQueryTask task = taskManager.submitUpdateByQuery(u -> u
+                .index("products")
+                .query(q -> q.matchAll(m -> m))
+                .script(script), 500f);
+        // 限流过低时可以在运行中调整
+        task.rethrottle(null);
+        TaskProgress progress = task.future().join();
+        log.info("task:{}，updated:{}/{}，batches:{}", task.taskId(), progress.getUpdated(), progress.getTotal(), progress.getBatches());
+    }
+
+    /**
+     * 同一商品的多次计数更新合并为一次 bulk update
+     */
+    @Test
+    void coalesceProductsCounterUpdates() {
+        List<CompletableFuture<BulkResponseItem>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(updateCoalescer.increment("products", "5", "counter", 1));
+        }
+        futures.add(updateCoalescer.update("products", "5", Maps.newHashMap("tags", Arrays.asList("red", "blue"))));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        BulkResponseItem item = futures.get(0).join();
+        log.info("result:{}，version:{}", item.result(), item.version());
+    }
+
+    /**
+     * 存储脚本删除商品 tag
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void removeProductTagsByStoredScript() throws IOException {
+        Map<String, JsonData> map = Maps.newHashMap("deleteTag", JsonData.of("blue"));
+        Script script = scriptRegistry.script("products-tags-remove", map);
+        elasticsearchClient.updateByQuery(d -> d
+                .index("products")
+                .query(q -> q
+                        .term(t -> t
+                                .field("tags")
+                                .value("blue")
+                        ))
+                .script(script)
+        );
+    }
+
+    /**
+     * 转换字典值（派生字段），age_format 在写入时由 users-derived pipeline 计算，查询时直接读取 doc values
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void convertDictionaryValuesByDerivedField() throws IOException {
+        // 同步 pipeline 与 mapping，首次执行时会提交回填任务
+        ByQueryTask task = derivedFieldService.sync("users");
+        if (task != null) {
+            log.info("backfill result:{}", task.future().join());
+        }
+        SearchResponse<User> response = elasticsearchClient.search(s -> s
+                        .index("users")
+                        .query(query -> query.matchAll(matchAll -> matchAll))
+                        .docvalueFields(f -> f.field("age_format"))
+                        .size(100),
+                User.class
+        );
+        for (Hit<User> hit: response.hits().hits()) {
+            User user = hit.source();
+            assert user != null;
+            log.info("user {}: age_format:{}", user.getName(), hit.fields().get("age_format"));
+        }
+    }
+
+    /**
+     * 转换字典值（客户端字典翻译），按 elasticsearch.dictionary.bindings 在查询结果反序列化后翻译，数据节点不执行脚本
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void convertDictionaryValuesByTranslator() throws IOException {
+        SearchResponse<User> response = elasticsearchClient.search(s -> s
+                        .index("users")
+                        .query(query -> query.matchAll(matchAll -> matchAll))
+                        .size(100),
+                User.class
+        );
+        for (TranslatedHit<User> hit : dictionaryTranslator.translate("users", response)) {
+            log.info("user {}: age_format:{}", hit.getSource().getName(), hit.label("age"));
+        }
+    }
+
+    /**
+     * 搜索全部订单并排序（无脚本）
+     * 指定的 counter 通过 should + constant_score 加分，按 _score 排在最前，其余按 counter 排序，
+     * 不再为每个文档加载 _source 执行排序脚本
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void searchAllToOrderWithoutScript() throws IOException {
+        int searchText = 667;
+        SearchResponse<Products> response = elasticsearchClient.search(s -> s
+                        .index("products")
+                        .query(q -> q
+                                .bool(b -> b
+                                        .must(m -> m.matchAll(matchAll -> matchAll))
+                                        .should(sh -> sh
+                                                .constantScore(c -> c
+                                                        .filter(f -> f
+                                                                .term(t -> t
+                                                                        .field("counter")
+                                                                        .value(searchText)))))
+                                ))
+                        .size(100)
+                        .sort(sort -> sort.score(score -> score.order(SortOrder.Desc)))
+                        .sort(sort -> sort.field(filed ->
+                                filed.field("counter").order(SortOrder.Asc))
+                        ),
+                Products.class
+        );
+        for (Hit<Products> hit: response.hits().hits()) {
+            Products products = hit.source();
+            assert products != null;
+            log.info("Found id " + products.getId() + ", counter " + products.getCounter());
+        }
+    }
 }
@@ -14,14 +14,23 @@ import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.TotalHits;
 import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
 import co.elastic.clients.json.JsonData;
+import com.example.elasticsearch.model.ProjectedPage;
 import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.model.UserBrief;
+import com.example.elasticsearch.service.ProjectionSearchService;
+import com.example.elasticsearch.service.QueryTemplateService;
+import com.example.elasticsearch.service.RawSearchService;
+import com.example.elasticsearch.service.ScriptRegistry;
+import com.example.elasticsearch.util.QueryTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.junit.platform.commons.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -41,6 +50,18 @@ public class SearchTest
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private RawSearchService rawSearchService;
+
+    @Autowired
+    private ProjectionSearchService projectionSearchService;
+
+    @Autowired
+    private ScriptRegistry scriptRegistry;
+
+    @Autowired
+    private QueryTemplateService queryTemplateService;
+
     /**
      * 批量添加文档
      *
@@ -504,4 +525,98 @@ public class SearchTest
         log.info(JSONUtil.toJsonStr(signRecordList));
     }
 
+    /**
+     * 原始 JSON 透传查询，响应不反序列化为 User
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void rawSearch() throws IOException {
+        String body = "{\"query\":{\"match\":{\"name\":\"liuyihu\"}}}";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int status = rawSearchService.streamSearch("users", body, "hits.total,hits.hits._source", out);
+        log.info("status:{}, body:{}", status, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 投影查询，_source includes 由 UserBrief 的字段自动生成，等价于 filterFieldSearch 中手写的 includes("name","id")
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void projectionSearch() throws IOException {
+        ProjectedPage<UserBrief> page = projectionSearchService.search(s -> s
+                        .index("users")
+                        .query(q -> q
+                                .matchAll(m -> m)
+                        )
+                        .sort(f -> f
+                                .field(o -> o
+                                        .field("age")
+                                        .order(SortOrder.Desc)
+                                )
+                        )
+                        .aggregations("groupSex", a -> a
+                                .terms(t -> t
+                                        .field("sex.keyword"))),
+                UserBrief.class, "groupSex"
+        );
+        log.info("total:{}, records:{}", page.getTotal(), JSONUtil.toJsonStr(page.getRecords()));
+        log.info("groupSex:{}", page.getAggregations().get("groupSex"));
+    }
+
+    /**
+     * 模板化搜索（注册中心），模板在启动时按内容哈希注册，调用时不再 putScript
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void templatedSearchByRegistry() throws IOException {
+        String templateId = scriptRegistry.id("user-match-query");
+        SearchTemplateResponse<User> response = elasticsearchClient.searchTemplate(r -> r
+                        .index("users")
+                        .id(templateId)
+                        .params("field", JsonData.of("name"))
+                        .params("value", JsonData.of("liuyifei")),
+                User.class
+        );
+        for (Hit<User> hit: response.hits().hits()) {
+            User user = hit.source();
+            assert user != null;
+            log.info("Found userId " + user.getId() + ", name " + user.getName());
+        }
+    }
+
+    /**
+     * 查询模板缓存，查询结构只在第一次调用时构建并序列化，之后每次只绑定参数
+     *
+     * @throws IOException ioexception
+     */
+    @Test
+    void queryTemplateSearch() throws IOException {
+        for (List<String> names : Arrays.asList(Arrays.asList("liuyifei", "liuyihu"), Collections.singletonList("hutao"))) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("names", names);
+            params.put("minAge", 18);
+            SearchResponse<User> response = queryTemplateService.search("users-by-names", s -> s
+                            .index("users")
+                            .query(q -> q
+                                    .bool(b -> b
+                                            .filter(f -> f
+                                                    .terms(t -> t
+                                                            .field("name.keyword")
+                                                            .terms(QueryTemplate.values("names"))))
+                                            .filter(f -> f
+                                                    .range(r -> r
+                                                            .field("age")
+                                                            .gte(QueryTemplate.json("minAge"))))
+                                    )
+                            )
+                            .size(10),
+                    params, User.class);
+            log.info("names:{}, total:{}", names, response.hits().total() == null ? null : response.hits().total().value());
+        }
+        log.info("template path:{}, params:{}", queryTemplateService.template("users-by-names").path(),
+                queryTemplateService.template("users-by-names").names());
+    }
 }
@@ -0,0 +1,69 @@
+package com.example.elasticsearch.standin;
+
+/**
+ * 替身服务支持的接口分类，用于按接口注入故障和统计请求数
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public enum Endpoint {
+
+    /**
+     * 匹配所有接口，只用于故障注入
+     */
+    ANY,
+
+    /**
+     * GET / 集群信息
+     */
+    INFO,
+
+    /**
+     * 索引的创建、删除、是否存在、mapping、settings、alias、refresh
+     */
+    INDEX_ADMIN,
+
+    /**
+     * 单文档的 index、create、get、update、delete
+     */
+    DOC,
+
+    BULK,
+
+    SEARCH,
+
+    MSEARCH,
+
+    MGET,
+
+    COUNT,
+
+    UPDATE_BY_QUERY,
+
+    DELETE_BY_QUERY,
+
+    /**
+     * point in time 的打开和关闭
+     */
+    PIT,
+
+    /**
+     * 任务查询、取消、rethrottle
+     */
+    TASKS,
+
+    /**
+     * stored script
+     */
+    SCRIPTS,
+
+    /**
+     * _ingest/pipeline
+     */
+    INGEST,
+
+    /**
+     * _cluster/health
+     */
+    CLUSTER
+}
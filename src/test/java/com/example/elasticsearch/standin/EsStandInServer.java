@@ -0,0 +1,981 @@
+package com.example.elasticsearch.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内的 es 替身服务，基于 JDK HttpServer，只在测试中使用
+ * 实现了项目客户端用到的 REST 接口子集（文档读写、_bulk、_search、_msearch、_mget、_count、
+ * _update_by_query、_delete_by_query、_pit、_tasks、_scripts、_ingest/pipeline、_cluster/health），
+ * 可以通过 {@link FaultPlan} 注入延迟分布、429、503、断开连接和长尾响应，用于在没有集群的环境下
+ * 确定性地复现背压、重试和故障转移。
+ * 多个实例共用一个 {@link StandInStore} 即为多节点集群，单个节点 {@link FaultPlan#down(boolean)} 后
+ * RestClient 会把请求转到其它节点
+ *
+ * <pre>
+ * try (EsStandInServer server = EsStandInServer.start()) {
+ *     server.faults().latency(Endpoint.SEARCH, Latency.logNormal(20, 0.8)).reject(Endpoint.BULK, 0.1);
+ *     RestClient restClient = RestClient.builder(server.httpHost()).build();
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+public class EsStandInServer implements AutoCloseable {
+
+    private static final AtomicInteger NODES = new AtomicInteger();
+
+    static {
+        // 响应头和响应体分两次写出，不关闭 Nagle 时与客户端的延迟 ACK 叠加，每个请求固定多出约 40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final StandInStore store;
+
+    private final FaultPlan faults;
+
+    private final ObjectMapper mapper;
+
+    private final String nodeName;
+
+    private final Map<Endpoint, AtomicLong> requests = new ConcurrentHashMap<>();
+
+    private EsStandInServer(StandInStore store, long seed) throws IOException {
+        this.store = store;
+        this.faults = new FaultPlan(seed);
+        this.mapper = store.mapper();
+        this.nodeName = "standin-" + NODES.incrementAndGet();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 注入的延迟在处理线程上 sleep，线程数不能限制并发
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, nodeName + "-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("es 替身服务 {} 已启动，端口:{}", nodeName, port());
+    }
+
+    /**
+     * 启动一个独立的节点
+     */
+    public static EsStandInServer start() throws IOException {
+        return start(new StandInStore(), 42L);
+    }
+
+    /**
+     * 启动一个节点
+     *
+     * @param store 数据，多个节点共用即为同一个集群
+     * @param seed  故障注入的随机种子
+     * @return {@link EsStandInServer}
+     * @throws IOException ioexception
+     */
+    public static EsStandInServer start(StandInStore store, long seed) throws IOException {
+        return new EsStandInServer(store, seed);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * elasticsearch.hosts 格式的地址
+     */
+    public String hosts() {
+        return "127.0.0.1:" + port();
+    }
+
+    public HttpHost httpHost() {
+        return new HttpHost("127.0.0.1", port(), "http");
+    }
+
+    public FaultPlan faults() {
+        return faults;
+    }
+
+    public StandInStore store() {
+        return store;
+    }
+
+    /**
+     * 该节点收到的请求数，包含被注入故障的请求
+     */
+    public long requests(Endpoint endpoint) {
+        if (endpoint == Endpoint.ANY) {
+            return requests.values().stream().mapToLong(AtomicLong::get).sum();
+        }
+        AtomicLong count = requests.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    public void resetCounters() {
+        requests.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        log.info("es 替身服务 {} 已停止", nodeName);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Call call = new Call(exchange);
+        Route route = route(call);
+        requests.computeIfAbsent(route.endpoint, e -> new AtomicLong()).incrementAndGet();
+        FaultPlan.Fault fault = faults.decide(route.endpoint);
+        try {
+            if (fault.delayMillis > 0) {
+                Thread.sleep(fault.delayMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        if (fault.status == FaultPlan.DISCONNECT) {
+            // 未发送响应头时 close 会直接关闭连接
+            exchange.close();
+            return;
+        }
+        Reply reply;
+        if (fault.status != 0) {
+            reply = injected(fault.status);
+        } else {
+            try {
+                reply = route.handler.handle(call);
+            } catch (StandInException e) {
+                reply = error(e.status(), e.type(), e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                log.warn("es 替身服务处理 {} {} 失败", call.method, call.path, e);
+                reply = error(e instanceof IOException ? 400 : 500,
+                        e instanceof IOException ? "parse_exception" : "exception", String.valueOf(e.getMessage()));
+            }
+        }
+        send(exchange, call, reply);
+    }
+
+    private void send(HttpExchange exchange, Call call, Reply reply) throws IOException {
+        exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if ("HEAD".equals(call.method) || reply.body == null) {
+            exchange.sendResponseHeaders(reply.status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = mapper.writeValueAsBytes(reply.body);
+        exchange.sendResponseHeaders(reply.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // ---------------------------------------------------------------- 路由
+
+    private Route route(Call call) {
+        List<String> p = call.segments;
+        int n = p.size();
+        if (n == 0) {
+            return new Route(Endpoint.INFO, c -> new Reply(200, info()));
+        }
+        String first = p.get(0);
+        String last = p.get(n - 1);
+        if ("_bulk".equals(last) && n <= 2) {
+            return new Route(Endpoint.BULK, c -> bulk(c, n == 2 ? first : null));
+        }
+        if ("_search".equals(last) && n <= 2) {
+            return new Route(Endpoint.SEARCH, c -> new Reply(200, search(c.json(), n == 2 ? first : null, c.params)));
+        }
+        if ("_msearch".equals(last) && n <= 2) {
+            return new Route(Endpoint.MSEARCH, c -> msearch(c, n == 2 ? first : null));
+        }
+        if ("_mget".equals(last) && n <= 2) {
+            return new Route(Endpoint.MGET, c -> mget(c, n == 2 ? first : null));
+        }
+        if ("_count".equals(last) && n <= 2) {
+            return new Route(Endpoint.COUNT, c -> count(c, n == 2 ? first : "_all"));
+        }
+        if ("_pit".equals(last) && n <= 2) {
+            return new Route(Endpoint.PIT, c -> pit(c, n == 2 ? first : null));
+        }
+        if ("_tasks".equals(first)) {
+            return new Route(Endpoint.TASKS, c -> tasks(c));
+        }
+        if (n == 3 && "_rethrottle".equals(last)) {
+            return new Route(Endpoint.TASKS, c -> rethrottle(c, p.get(1)));
+        }
+        if ("_scripts".equals(first) && n == 2) {
+            return new Route(Endpoint.SCRIPTS, c -> scripts(c, p.get(1)));
+        }
+        if ("_ingest".equals(first) && n == 3 && "pipeline".equals(p.get(1))) {
+            return new Route(Endpoint.INGEST, c -> pipeline(c, p.get(2)));
+        }
+        if ("_cluster".equals(first) && n >= 2 && "health".equals(p.get(1))) {
+            return new Route(Endpoint.CLUSTER, c -> new Reply(200, health()));
+        }
+        if ("_refresh".equals(last) && n <= 2) {
+            return new Route(Endpoint.INDEX_ADMIN, c -> {
+                ObjectNode root = mapper.createObjectNode();
+                root.set("_shards", shards());
+                return new Reply(200, root);
+            });
+        }
+        if (n == 2 && ("_update_by_query".equals(last) || "_delete_by_query".equals(last))) {
+            boolean delete = "_delete_by_query".equals(last);
+            return new Route(delete ? Endpoint.DELETE_BY_QUERY : Endpoint.UPDATE_BY_QUERY, c -> byQuery(c, first, delete));
+        }
+        if (!first.startsWith("_")) {
+            if (n == 1) {
+                return new Route(Endpoint.INDEX_ADMIN, c -> index(c, first));
+            }
+            if (n == 2 && ("_mapping".equals(last) || "_settings".equals(last) || "_alias".equals(last))) {
+                return new Route(Endpoint.INDEX_ADMIN, c -> indexMeta(c, first, last));
+            }
+            String type = p.get(1);
+            if ((n == 2 && "_doc".equals(type)) || (n == 3 && Arrays.asList("_doc", "_create", "_update").contains(type))) {
+                return new Route(Endpoint.DOC, c -> doc(c, first, type, n == 3 ? p.get(2) : null));
+            }
+        }
+        return new Route(Endpoint.INFO, c -> {
+            throw new StandInException(400, "illegal_argument_exception",
+                    "stand-in does not support [" + c.method + " " + c.path + "]");
+        });
+    }
+
+    // ---------------------------------------------------------------- 接口实现
+
+    private ObjectNode info() {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("name", nodeName);
+        root.put("cluster_name", "standin");
+        root.put("cluster_uuid", "standin");
+        ObjectNode version = root.putObject("version");
+        version.put("number", "8.7.0");
+        version.put("build_flavor", "default");
+        version.put("build_type", "standin");
+        version.put("build_hash", "standin");
+        version.put("build_date", "2023-03-27T16:01:55.452315357Z");
+        version.put("build_snapshot", false);
+        version.put("lucene_version", "9.5.0");
+        version.put("minimum_wire_compatibility_version", "7.17.0");
+        version.put("minimum_index_compatibility_version", "7.0.0");
+        root.put("tagline", "You Know, for Search");
+        return root;
+    }
+
+    private Reply index(Call call, String name) {
+        switch (call.method) {
+            case "PUT":
+                if (!store.createIndex(name)) {
+                    throw new StandInException(400, "resource_already_exists_exception", "index [" + name + "] already exists");
+                }
+                ObjectNode created = acknowledged();
+                created.put("shards_acknowledged", true);
+                created.put("index", name);
+                return new Reply(200, created);
+            case "DELETE":
+                for (StandInStore.IndexData data : store.resolve(name)) {
+                    store.deleteIndex(data.name);
+                }
+                return new Reply(200, acknowledged());
+            case "HEAD":
+                return new Reply(store.exists(name) ? 200 : 404, null);
+            default:
+                ObjectNode root = mapper.createObjectNode();
+                for (StandInStore.IndexData data : store.resolve(name)) {
+                    ObjectNode index = root.putObject(data.name);
+                    index.putObject("aliases");
+                    index.putObject("mappings");
+                    ObjectNode settings = index.putObject("settings").putObject("index");
+                    settings.put("number_of_shards", "1");
+                    settings.put("number_of_replicas", "0");
+                }
+                return new Reply(200, root);
+        }
+    }
+
+    private Reply indexMeta(Call call, String name, String kind) {
+        if ("GET".equals(call.method)) {
+            ObjectNode root = mapper.createObjectNode();
+            for (StandInStore.IndexData data : store.resolve(name)) {
+                // 替身不支持别名，每个索引只返回自己
+                root.putObject(data.name).putObject("_alias".equals(kind) ? "aliases" : kind.substring(1));
+            }
+            return new Reply(200, root);
+        }
+        store.resolve(name);
+        return new Reply(200, acknowledged());
+    }
+
+    private Reply doc(Call call, String index, String type, String id) throws IOException {
+        if ("_update".equals(type)) {
+            return written(store.writeIndex(index).update(id, call.json(), store.scriptEmulator()));
+        }
+        switch (call.method) {
+            case "GET":
+            case "HEAD": {
+                StoredDoc doc = store.resolve(index).get(0).get(id);
+                return new Reply(doc == null ? 404 : 200, getResult(index, id, doc));
+            }
+            case "DELETE":
+                return written(store.writeIndex(index).delete(id, call.longParam("if_seq_no"), call.longParam("if_primary_term")));
+            default:
+                boolean create = "_create".equals(type) || "create".equals(call.params.get("op_type"));
+                return written(store.writeIndex(index).index(id, (ObjectNode) call.json(), create,
+                        call.longParam("if_seq_no"), call.longParam("if_primary_term"),
+                        "external".equals(call.params.get("version_type")) ? call.longParam("version") : null,
+                        call.params.get("routing")));
+        }
+    }
+
+    /**
+     * 单文档写入的结果，与 bulk item 的区别是没有 status 字段，错误为顶层 error
+     */
+    private Reply written(ObjectNode result) {
+        int status = result.remove("status").asInt();
+        if (result.has("error")) {
+            ObjectNode root = mapper.createObjectNode();
+            root.set("error", result.get("error"));
+            root.put("status", status);
+            return new Reply(status, root);
+        }
+        return new Reply(status, result);
+    }
+
+    private ObjectNode getResult(String index, String id, StoredDoc doc) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("_index", index);
+        node.put("_id", id);
+        if (doc == null) {
+            node.put("found", false);
+            return node;
+        }
+        node.put("_version", doc.version);
+        node.put("_seq_no", doc.seqNo);
+        node.put("_primary_term", StandInStore.PRIMARY_TERM);
+        node.put("found", true);
+        if (doc.routing != null) {
+            node.put("_routing", doc.routing);
+        }
+        node.set("_source", doc.source);
+        return node;
+    }
+
+    private Reply bulk(Call call, String defaultIndex) throws IOException {
+        long start = System.nanoTime();
+        List<JsonNode> lines = call.ndjson();
+        ArrayNode items = mapper.createArrayNode();
+        boolean errors = false;
+        for (int i = 0; i < lines.size(); i++) {
+            Map.Entry<String, JsonNode> action = lines.get(i).fields().next();
+            String op = action.getKey();
+            JsonNode meta = action.getValue();
+            JsonNode body = "delete".equals(op) ? null : lines.get(++i);
+            String index = meta.path("_index").asText(defaultIndex);
+            String id = meta.hasNonNull("_id") ? meta.get("_id").asText() : null;
+            ObjectNode result;
+            if (faults.rejectBulkItem()) {
+                result = mapper.createObjectNode();
+                result.put("_index", index);
+                result.put("_id", id);
+                result.put("status", 429);
+                ObjectNode error = result.putObject("error");
+                error.put("type", "es_rejected_execution_exception");
+                error.put("reason", "rejected execution of primary operation [stand-in]");
+            } else {
+                StandInStore.IndexData data = store.writeIndex(index);
+                Long ifSeqNo = meta.hasNonNull("if_seq_no") ? meta.get("if_seq_no").asLong() : null;
+                Long ifPrimaryTerm = meta.hasNonNull("if_primary_term") ? meta.get("if_primary_term").asLong() : null;
+                switch (op) {
+                    case "index":
+                    case "create":
+                        result = data.index(id, (ObjectNode) body, "create".equals(op), ifSeqNo, ifPrimaryTerm,
+                                "external".equals(meta.path("version_type").asText()) ? meta.get("version").asLong() : null,
+                                meta.hasNonNull("routing") ? meta.get("routing").asText() : call.params.get("routing"));
+                        break;
+                    case "update":
+                        result = data.update(id, body, store.scriptEmulator());
+                        break;
+                    case "delete":
+                        result = data.delete(id, ifSeqNo, ifPrimaryTerm);
+                        break;
+                    default:
+                        throw new StandInException(400, "illegal_argument_exception", "Malformed action/metadata line [" + (i + 1) + "]");
+                }
+            }
+            errors |= result.has("error");
+            items.addObject().set(op, result);
+        }
+        ObjectNode root = mapper.createObjectNode();
+        root.put("took", (System.nanoTime() - start) / 1_000_000);
+        root.put("errors", errors);
+        root.set("items", items);
+        return new Reply(200, root);
+    }
+
+    private ObjectNode search(JsonNode body, String index, Map<String, String> params) {
+        long start = System.nanoTime();
+        JsonNode pit = body.path("pit");
+        List<StoredDoc> docs;
+        if (pit.has("id")) {
+            if (index != null) {
+                throw new StandInException(400, "action_request_validation_exception",
+                        "Validation Failed: 1: [indices] cannot be used with point in time;");
+            }
+            docs = store.pit(pit.get("id").asText());
+        } else {
+            docs = store.snapshot(index == null ? "_all" : index);
+        }
+        JsonNode slice = body.path("slice");
+        List<StoredDoc> matched = new ArrayList<>();
+        for (StoredDoc doc : docs) {
+            if (slice.has("max") && Math.floorMod(doc.id.hashCode(), slice.get("max").asInt()) != slice.path("id").asInt()) {
+                continue;
+            }
+            if (StandInQuery.matches(body.get("query"), doc)) {
+                matched.add(doc);
+            }
+        }
+        StandInQuery.Sort sort = new StandInQuery.Sort(body.path("sort"));
+        Map<StoredDoc, ArrayNode> keys = new HashMap<>();
+        if (!sort.isEmpty()) {
+            matched.forEach(doc -> keys.put(doc, sort.key(doc, mapper)));
+            matched.sort((a, b) -> sort.compare(keys.get(a), keys.get(b)));
+        }
+        JsonNode searchAfter = body.path("search_after");
+        List<StoredDoc> page = new ArrayList<>();
+        int from = body.path("from").asInt(0);
+        int size = body.path("size").asInt(10);
+        for (StoredDoc doc : matched) {
+            if (searchAfter.isArray() && !sort.isEmpty() && sort.compare(keys.get(doc), searchAfter) <= 0) {
+                continue;
+            }
+            if (from > 0) {
+                from--;
+                continue;
+            }
+            if (page.size() >= size) {
+                break;
+            }
+            page.add(doc);
+        }
+
+        ObjectNode root = mapper.createObjectNode();
+        if (pit.has("id")) {
+            root.put("pit_id", pit.get("id").asText());
+        }
+        root.put("took", (System.nanoTime() - start) / 1_000_000);
+        root.put("timed_out", false);
+        root.set("_shards", shards());
+        ObjectNode hits = root.putObject("hits");
+        JsonNode trackTotal = body.path("track_total_hits");
+        if (!trackTotal.isBoolean() || trackTotal.asBoolean()) {
+            long limit = trackTotal.isNumber() ? trackTotal.asLong() : trackTotal.isBoolean() ? Long.MAX_VALUE : 10_000;
+            ObjectNode total = hits.putObject("total");
+            total.put("value", Math.min(limit, matched.size()));
+            total.put("relation", matched.size() > limit ? "gte" : "eq");
+        }
+        if (sort.isEmpty() && !page.isEmpty()) {
+            hits.put("max_score", 1.0);
+        } else {
+            hits.putNull("max_score");
+        }
+        ArrayNode hitArray = hits.putArray("hits");
+        SourceFilter sourceFilter = new SourceFilter(body.path("_source"));
+        List<String> fields = new ArrayList<>();
+        for (String key : Arrays.asList("fields", "docvalue_fields")) {
+            for (JsonNode field : body.path(key)) {
+                fields.add(field.isTextual() ? field.asText() : field.path("field").asText());
+            }
+        }
+        for (StoredDoc doc : page) {
+            ObjectNode hit = hitArray.addObject();
+            hit.put("_index", doc.index);
+            hit.put("_id", doc.id);
+            if (doc.routing != null) {
+                hit.put("_routing", doc.routing);
+            }
+            if (sort.isEmpty()) {
+                hit.put("_score", 1.0);
+            } else {
+                hit.putNull("_score");
+            }
+            if (body.path("seq_no_primary_term").asBoolean(false)) {
+                hit.put("_seq_no", doc.seqNo);
+                hit.put("_primary_term", StandInStore.PRIMARY_TERM);
+            }
+            if (body.path("version").asBoolean(false)) {
+                hit.put("_version", doc.version);
+            }
+            ObjectNode source = sourceFilter.apply(doc.source);
+            if (source != null) {
+                hit.set("_source", source);
+            }
+            if (!fields.isEmpty()) {
+                ObjectNode values = hit.putObject("fields");
+                for (String field : fields) {
+                    List<JsonNode> list = StandInQuery.values(doc, field);
+                    if (!list.isEmpty()) {
+                        values.putArray(field).addAll(list);
+                    }
+                }
+            }
+            if (!sort.isEmpty()) {
+                hit.set("sort", keys.get(doc));
+            }
+        }
+        JsonNode aggs = body.has("aggs") ? body.get("aggs") : body.get("aggregations");
+        if (aggs != null) {
+            root.set("aggregations", StandInQuery.aggregate(aggs, matched,
+                    "true".equals(params.get("typed_keys")), mapper));
+        }
+        return root;
+    }
+
+    private Reply msearch(Call call, String defaultIndex) throws IOException {
+        long start = System.nanoTime();
+        List<JsonNode> lines = call.ndjson();
+        ArrayNode responses = mapper.createArrayNode();
+        for (int i = 0; i + 1 < lines.size(); i += 2) {
+            JsonNode header = lines.get(i);
+            JsonNode index = header.path("index");
+            String expression = index.isArray()
+                    ? String.join(",", mapper.convertValue(index, String[].class))
+                    : index.asText(defaultIndex);
+            try {
+                ObjectNode response = search(lines.get(i + 1), expression, call.params);
+                response.put("status", 200);
+                responses.add(response);
+            } catch (StandInException e) {
+                responses.add(errorBody(e.status(), e.type(), e.getMessage()));
+            }
+        }
+        ObjectNode root = mapper.createObjectNode();
+        root.put("took", (System.nanoTime() - start) / 1_000_000);
+        root.set("responses", responses);
+        return new Reply(200, root);
+    }
+
+    private Reply mget(Call call, String defaultIndex) throws IOException {
+        JsonNode body = call.json();
+        List<String[]> keys = new ArrayList<>();
+        for (JsonNode doc : body.path("docs")) {
+            keys.add(new String[]{doc.path("_index").asText(defaultIndex), doc.path("_id").asText()});
+        }
+        for (JsonNode id : body.path("ids")) {
+            keys.add(new String[]{defaultIndex, id.asText()});
+        }
+        ArrayNode docs = mapper.createArrayNode();
+        for (String[] key : keys) {
+            try {
+                docs.add(getResult(key[0], key[1], store.resolve(key[0]).get(0).get(key[1])));
+            } catch (StandInException e) {
+                ObjectNode missing = docs.addObject();
+                missing.put("_index", key[0]);
+                missing.put("_id", key[1]);
+                ObjectNode error = missing.putObject("error");
+                error.put("type", e.type());
+                error.put("reason", e.getMessage());
+            }
+        }
+        ObjectNode root = mapper.createObjectNode();
+        root.set("docs", docs);
+        return new Reply(200, root);
+    }
+
+    private Reply count(Call call, String index) throws IOException {
+        JsonNode query = call.json().get("query");
+        long count = store.snapshot(index).stream().filter(doc -> StandInQuery.matches(query, doc)).count();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("count", count);
+        root.set("_shards", shards());
+        return new Reply(200, root);
+    }
+
+    private Reply byQuery(Call call, String index, boolean delete) throws IOException {
+        JsonNode body = call.json();
+        JsonNode query = body.get("query");
+        List<StoredDoc> matched = store.snapshot(index).stream()
+                .filter(doc -> StandInQuery.matches(query, doc))
+                .limit(body.has("max_docs") ? body.get("max_docs").asLong() : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+        String rps = call.params.get("requests_per_second");
+        StandInTask task = store.byQuery(delete ? "indices:data/write/delete/byquery" : "indices:data/write/update/byquery",
+                matched, body.get("script"), delete, faults.taskDurationMillis(), rps == null ? -1 : Float.parseFloat(rps));
+        if ("false".equals(call.params.get("wait_for_completion"))) {
+            ObjectNode root = mapper.createObjectNode();
+            root.put("task", task.taskId());
+            return new Reply(200, root);
+        }
+        return new Reply(200, task.toResponse(mapper));
+    }
+
+    private Reply pit(Call call, String index) throws IOException {
+        ObjectNode root = mapper.createObjectNode();
+        if ("DELETE".equals(call.method)) {
+            boolean freed = store.closePit(call.json().path("id").asText());
+            root.put("succeeded", true);
+            root.put("num_freed", freed ? 1 : 0);
+            return new Reply(freed ? 200 : 404, root);
+        }
+        if (index == null || !call.params.containsKey("keep_alive")) {
+            throw new StandInException(400, "action_request_validation_exception",
+                    "Validation Failed: 1: [index] and [keep_alive] are required for point in time;");
+        }
+        root.put("id", store.openPit(index));
+        return new Reply(200, root);
+    }
+
+    private Reply tasks(Call call) {
+        List<String> p = call.segments;
+        if (p.size() < 2) {
+            throw new StandInException(400, "illegal_argument_exception", "stand-in only supports _tasks/{task_id}");
+        }
+        StandInTask task = store.task(p.get(1));
+        if (p.size() == 3 && "_cancel".equals(p.get(2))) {
+            task.cancel();
+            return new Reply(200, taskList(task));
+        }
+        return new Reply(200, task.toJson(mapper));
+    }
+
+    private Reply rethrottle(Call call, String taskId) {
+        StandInTask task = store.task(taskId);
+        String rps = call.params.get("requests_per_second");
+        task.rethrottle(rps == null ? -1 : Float.parseFloat(rps));
+        return new Reply(200, taskList(task));
+    }
+
+    private ObjectNode taskList(StandInTask task) {
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode node = root.putObject("nodes").putObject(StandInTask.NODE);
+        node.put("name", nodeName);
+        JsonNode info = task.toJson(mapper).get("task");
+        node.putObject("tasks").set(task.taskId(), info);
+        return root;
+    }
+
+    private Reply scripts(Call call, String id) throws IOException {
+        switch (call.method) {
+            case "GET": {
+                JsonNode script = store.scripts().get(id);
+                ObjectNode root = mapper.createObjectNode();
+                root.put("_id", id);
+                root.put("found", script != null);
+                if (script != null) {
+                    root.set("script", script);
+                }
+                return new Reply(script == null ? 404 : 200, root);
+            }
+            case "DELETE":
+                if (store.scripts().remove(id) == null) {
+                    throw new StandInException(404, "resource_not_found_exception", "stored script [" + id + "] does not exist");
+                }
+                return new Reply(200, acknowledged());
+            default:
+                store.scripts().put(id, call.json().path("script"));
+                return new Reply(200, acknowledged());
+        }
+    }
+
+    private Reply pipeline(Call call, String id) throws IOException {
+        switch (call.method) {
+            case "GET": {
+                JsonNode pipeline = store.pipelines().get(id);
+                ObjectNode root = mapper.createObjectNode();
+                if (pipeline != null) {
+                    root.set(id, pipeline);
+                }
+                return new Reply(pipeline == null ? 404 : 200, root);
+            }
+            case "DELETE":
+                if (store.pipelines().remove(id) == null) {
+                    throw new StandInException(404, "resource_not_found_exception", "pipeline [" + id + "] is missing");
+                }
+                return new Reply(200, acknowledged());
+            default: {
+                JsonNode body = call.json();
+                JsonNode version = body.get("version");
+                // 与 ES 一致，version 按 int 解析
+                if (version != null && !version.canConvertToInt()) {
+                    throw new StandInException(400, "x_content_parse_exception",
+                            "[pipeline] failed to parse field [version]: Numeric value (" + version.asText() + ") out of range of int");
+                }
+                store.pipelines().put(id, body);
+                return new Reply(200, acknowledged());
+            }
+        }
+    }
+
+    private ObjectNode health() {
+        int shards = store.snapshot("_all").isEmpty() ? 0 : 1;
+        ObjectNode root = mapper.createObjectNode();
+        root.put("cluster_name", "standin");
+        root.put("status", "green");
+        root.put("timed_out", false);
+        root.put("number_of_nodes", 1);
+        root.put("number_of_data_nodes", 1);
+        root.put("active_primary_shards", shards);
+        root.put("active_shards", shards);
+        root.put("relocating_shards", 0);
+        root.put("initializing_shards", 0);
+        root.put("unassigned_shards", 0);
+        root.put("delayed_unassigned_shards", 0);
+        root.put("number_of_pending_tasks", 0);
+        root.put("number_of_in_flight_fetch", 0);
+        root.put("task_max_waiting_in_queue_millis", 0);
+        root.put("active_shards_percent_as_number", 100.0);
+        return root;
+    }
+
+    private ObjectNode shards() {
+        ObjectNode shards = mapper.createObjectNode();
+        shards.put("total", 1);
+        shards.put("successful", 1);
+        shards.put("skipped", 0);
+        shards.put("failed", 0);
+        return shards;
+    }
+
+    private ObjectNode acknowledged() {
+        ObjectNode root = mapper.createObjectNode();
+        root.put("acknowledged", true);
+        return root;
+    }
+
+    private Reply injected(int status) {
+        if (status == 429) {
+            return error(429, "es_rejected_execution_exception",
+                    "rejected execution of coordinating operation [stand-in injected]");
+        }
+        if (status == 503) {
+            return error(503, "unavailable_shards_exception", "primary shard is not active [stand-in injected]");
+        }
+        return error(status, "stand_in_injected_exception", "injected status " + status);
+    }
+
+    private Reply error(int status, String type, String reason) {
+        return new Reply(status, errorBody(status, type, reason));
+    }
+
+    private ObjectNode errorBody(int status, String type, String reason) {
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode error = root.putObject("error");
+        ObjectNode cause = error.putArray("root_cause").addObject();
+        cause.put("type", type);
+        cause.put("reason", reason);
+        error.put("type", type);
+        error.put("reason", reason);
+        root.put("status", status);
+        return root;
+    }
+
+    // ---------------------------------------------------------------- 请求与响应
+
+    @FunctionalInterface
+    private interface Handler {
+
+        Reply handle(Call call) throws IOException;
+    }
+
+    private static final class Route {
+
+        final Endpoint endpoint;
+
+        final Handler handler;
+
+        Route(Endpoint endpoint, Handler handler) {
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Reply {
+
+        final int status;
+
+        /**
+         * null 表示没有响应体
+         */
+        final JsonNode body;
+
+        Reply(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 一次请求，path 和参数已解码
+     */
+    private final class Call {
+
+        final String method;
+
+        final String path;
+
+        final List<String> segments = new ArrayList<>();
+
+        final Map<String, String> params = new HashMap<>();
+
+        final byte[] body;
+
+        Call(HttpExchange exchange) throws IOException {
+            this.method = exchange.getRequestMethod();
+            this.path = exchange.getRequestURI().getPath();
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(decode(segment));
+                }
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    int eq = pair.indexOf('=');
+                    params.put(decode(eq < 0 ? pair : pair.substring(0, eq)), eq < 0 ? "true" : decode(pair.substring(eq + 1)));
+                }
+            }
+            try (InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+                this.body = out.toByteArray();
+            }
+        }
+
+        JsonNode json() throws IOException {
+            return body.length == 0 ? MissingNode.getInstance() : mapper.readTree(body);
+        }
+
+        List<JsonNode> ndjson() throws IOException {
+            List<JsonNode> lines = new ArrayList<>();
+            for (String line : new String(body, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(mapper.readTree(line));
+                }
+            }
+            return lines;
+        }
+
+        Long longParam(String name) {
+            String value = params.get(name);
+            return value == null ? null : Long.parseLong(value);
+        }
+
+        private String decode(String value) throws UnsupportedEncodingException {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+    }
+
+    /**
+     * _source 过滤，支持 false、字段数组、includes/excludes 以及通配符
+     */
+    private static final class SourceFilter {
+
+        private final boolean fetch;
+
+        private final List<Pattern> includes = new ArrayList<>();
+
+        private final List<Pattern> excludes = new ArrayList<>();
+
+        SourceFilter(JsonNode spec) {
+            this.fetch = !spec.isBoolean() || spec.asBoolean();
+            if (spec.isTextual() || spec.isArray()) {
+                patterns(spec, includes);
+            } else if (spec.isObject()) {
+                patterns(spec.path("includes"), includes);
+                patterns(spec.path("excludes"), excludes);
+            }
+        }
+
+        ObjectNode apply(ObjectNode source) {
+            if (!fetch) {
+                return null;
+            }
+            if (includes.isEmpty() && excludes.isEmpty()) {
+                return source;
+            }
+            return filter(source, "");
+        }
+
+        private ObjectNode filter(ObjectNode node, String prefix) {
+            ObjectNode result = node.objectNode();
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                String path = prefix + field.getKey();
+                if (excludes.stream().anyMatch(p -> p.matcher(path).matches())) {
+                    continue;
+                }
+                boolean included = includes.isEmpty() || includes.stream().anyMatch(p -> p.matcher(path).matches());
+                if (included) {
+                    result.set(field.getKey(), field.getValue());
+                } else if (field.getValue().isObject()) {
+                    ObjectNode child = filter((ObjectNode) field.getValue(), path + ".");
+                    if (child.size() > 0) {
+                        result.set(field.getKey(), child);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static void patterns(JsonNode spec, List<Pattern> out) {
+            List<JsonNode> values = new ArrayList<>();
+            if (spec.isArray()) {
+                spec.forEach(values::add);
+            } else if (spec.isTextual()) {
+                values.add(spec);
+            }
+            for (JsonNode value : values) {
+                StringBuilder regex = new StringBuilder();
+                for (char c : value.asText().toCharArray()) {
+                    regex.append(c == '*' ? ".*" : Pattern.quote(String.valueOf(c)));
+                }
+                // a.b 同时匹配 a.b 下的所有子字段
+                out.add(Pattern.compile(regex + "(\\..*)?"));
+            }
+        }
+    }
+}
@@ -0,0 +1,996 @@
+package com.example.elasticsearch.standin;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.CountResponse;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.indices.RefreshResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.example.elasticsearch.admission.AdmissionController;
+import com.example.elasticsearch.admission.OperationClass;
+import com.example.elasticsearch.cluster.ClusterRegistry;
+import com.example.elasticsearch.config.AdmissionProperties;
+import com.example.elasticsearch.config.ClusterProperties;
+import com.example.elasticsearch.config.DerivedFieldConfig;
+import com.example.elasticsearch.config.DictionaryProperties;
+import com.example.elasticsearch.config.EsClientFactory;
+import com.example.elasticsearch.config.ExecutorConfig;
+import com.example.elasticsearch.dictionary.Dictionary;
+import com.example.elasticsearch.dictionary.DictionaryTranslator;
+import com.example.elasticsearch.exception.AdmissionRejectedException;
+import com.example.elasticsearch.exception.RoutingException;
+import com.example.elasticsearch.loadtest.CorpusGenerator;
+import com.example.elasticsearch.loadtest.LoadReport;
+import com.example.elasticsearch.loadtest.WorkloadRecorder;
+import com.example.elasticsearch.loadtest.WorkloadReplayer;
+import com.example.elasticsearch.model.BulkLoadMarker;
+import com.example.elasticsearch.model.DerivedField;
+import com.example.elasticsearch.model.RangeBand;
+import com.example.elasticsearch.model.RecordedRequest;
+import com.example.elasticsearch.model.ReplayPlan;
+import com.example.elasticsearch.model.TaskProgress;
+import com.example.elasticsearch.model.TranslatedHit;
+import com.example.elasticsearch.model.User;
+import com.example.elasticsearch.service.AggregationBatcher;
+import com.example.elasticsearch.service.BulkLoadService;
+import com.example.elasticsearch.service.ByQueryTask;
+import com.example.elasticsearch.service.ByQueryTaskManager;
+import com.example.elasticsearch.service.DerivedFieldService;
+import com.example.elasticsearch.service.FanOutSearch;
+import com.example.elasticsearch.service.IdBloomFilterService;
+import com.example.elasticsearch.service.IndexScanner;
+import com.example.elasticsearch.service.OptimisticUpdateService;
+import com.example.elasticsearch.service.ScriptRegistry;
+import com.example.elasticsearch.service.UpdateCoalescer;
+import com.example.elasticsearch.service.WarmupRunner;
+import com.example.elasticsearch.service.WriteSpool;
+import com.example.elasticsearch.transport.AdmissionTransport;
+import com.example.elasticsearch.transport.AsyncBridgeTransport;
+import com.example.elasticsearch.transport.DocumentWriteListener;
+import com.example.elasticsearch.transport.RecordingTransport;
+import com.example.elasticsearch.transport.RoutingPolicy;
+import com.example.elasticsearch.transport.RoutingTransport;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * es 替身服务测试，不依赖集群，直接用项目的客户端和服务类访问替身服务
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@Slf4j
+public class EsStandInServerTest {
+
+    private static final String INDEX = "users";
+
+    private EsStandInServer server;
+
+    private RestClient restClient;
+
+    private ElasticsearchClient elasticsearchClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = EsStandInServer.start();
+        restClient = RestClient.builder(server.httpHost()).build();
+        elasticsearchClient = new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        restClient.close();
+        server.close();
+    }
+
+    /**
+     * 写入、读取、查询、聚合
+     */
+    @Test
+    void documentsAndSearch() throws IOException {
+        BulkResponse bulk = bulkUsers(elasticsearchClient, 20);
+        assertFalse(bulk.errors());
+
+        GetResponse<User> get = elasticsearchClient.get(g -> g.index(INDEX).id("3"), User.class);
+        assertTrue(get.found());
+        assertEquals("user-3", get.source().getName());
+        assertFalse(elasticsearchClient.get(g -> g.index(INDEX).id("missing"), User.class).found());
+
+        MgetResponse<User> mget = elasticsearchClient.mget(m -> m.index(INDEX).ids("1", "2", "missing"), User.class);
+        assertTrue(mget.docs().get(1).result().found());
+        assertFalse(mget.docs().get(2).result().found());
+
+        SearchResponse<User> search = elasticsearchClient.search(s -> s
+                .index(INDEX)
+                .query(q -> q.bool(b -> b
+                        .filter(f -> f.term(t -> t.field("sex").value("女")))
+                        .filter(f -> f.range(r -> r.field("age").gte(JsonData.of(25))))))
+                .sort(o -> o.field(f -> f.field("age").order(SortOrder.Desc)))
+                .aggregations("ages", a -> a.terms(t -> t.field("sex")))
+                .size(3), User.class);
+        log.info("命中:{}，第一条:{}", search.hits().total().value(), search.hits().hits().get(0).source());
+        assertEquals(3, search.hits().hits().size());
+        assertEquals(39, search.hits().hits().get(0).source().getAge());
+        List<StringTermsBucket> buckets = search.aggregations().get("ages").sterms().buckets().array();
+        assertEquals(1, buckets.size());
+        assertEquals(search.hits().total().value(), buckets.get(0).docCount());
+
+        assertEquals(10, elasticsearchClient.count(c -> c.index(INDEX).query(q -> q.term(t -> t.field("sex").value("男")))).count());
+
+        MsearchResponse<User> msearch = elasticsearchClient.msearch(m -> m
+                .searches(s -> s.header(h -> h.index(INDEX)).body(b -> b.query(q -> q.ids(i -> i.values("1", "2")))))
+                .searches(s -> s.header(h -> h.index("missing")).body(b -> b.size(1))), User.class);
+        assertEquals(2, msearch.responses().get(0).result().hits().hits().size());
+        assertTrue(msearch.responses().get(1).isFailure());
+    }
+
+    /**
+     * 合并聚合：一个聚合写错时只有它失败，线程池拒绝时调用方立即失败
+     */
+    @Test
+    void batchAggregations() throws Exception {
+        bulkUsers(elasticsearchClient, 20);
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        try {
+            AggregationBatcher batcher = new AggregationBatcher(elasticsearchClient, Runnable::run, scheduler);
+            ReflectionTestUtils.setField(batcher, "mergeWindowMs", 50L);
+            ReflectionTestUtils.setField(batcher, "maxPerSearch", 50);
+            CompletableFuture<Aggregate> sex = batcher.submit(INDEX, null, "sex",
+                    Aggregation.of(a -> a.terms(t -> t.field("sex"))));
+            CompletableFuture<Aggregate> bad = batcher.submit(INDEX, null, "bad",
+                    Aggregation.of(a -> a.histogram(h -> h.field("age").interval(10.0))));
+            assertEquals(2, sex.get(5, TimeUnit.SECONDS).sterms().buckets().array().size());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertEquals(400, ((ElasticsearchException) failure.getCause()).status());
+
+            AggregationBatcher rejecting = new AggregationBatcher(elasticsearchClient, task -> {
+                throw new RejectedExecutionException("full");
+            }, scheduler);
+            ReflectionTestUtils.setField(rejecting, "mergeWindowMs", 0L);
+            CompletableFuture<Aggregate> rejected = rejecting.submit(INDEX, null, "sex",
+                    Aggregation.of(a -> a.terms(t -> t.field("sex"))));
+            assertTrue(rejected.isCompletedExceptionally());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 基于 point in time 的分片并行扫描
+     */
+    @Test
+    void scanWithPointInTime() throws IOException {
+        bulkUsers(elasticsearchClient, 250);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            IndexScanner scanner = new IndexScanner(elasticsearchClient, executor);
+            ReflectionTestUtils.setField(scanner, "pageSize", 40);
+            ReflectionTestUtils.setField(scanner, "keepAlive", "1m");
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            long scanned = scanner.scan(INDEX, null, new ArrayList<>(), 3, hit -> ids.add(hit.id()));
+            assertEquals(250, scanned);
+            assertEquals(250, ids.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 异步 update_by_query，任务运行期间轮询进度
+     */
+    @Test
+    void trackUpdateByQueryTask() throws Exception {
+        bulkUsers(elasticsearchClient, 30);
+        server.faults().taskDuration(300);
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            ByQueryTaskManager manager = new ByQueryTaskManager(elasticsearchClient, restClient,
+                    meterRegistry, scheduler, executor);
+            ReflectionTestUtils.setField(manager, "pollInitialMs", 50L);
+            ReflectionTestUtils.setField(manager, "pollMaxMs", 100L);
+            ReflectionTestUtils.setField(manager, "pollMultiplier", 1.5);
+            ReflectionTestUtils.setField(manager, "maxPollFailures", 3);
+            ByQueryTask task = manager.submitUpdateByQuery(u -> u
+                    .index(INDEX)
+                    .query(q -> q.term(t -> t.field("sex").value("男"))), null);
+            TaskProgress progress = task.future().get(5, TimeUnit.SECONDS);
+            log.info("任务 {} 完成:{}", task.taskId(), progress);
+            assertEquals(15, progress.getTotal());
+            assertEquals(15, progress.getUpdated());
+            assertTrue(server.requests(Endpoint.TASKS) > 1);
+
+            // 取消只唤醒已有的轮询链，任务只结束一次
+            server.faults().taskDuration(2000);
+            ByQueryTask canceled = manager.submitUpdateByQuery(u -> u.index(INDEX), null);
+            Thread.sleep(120);
+            canceled.cancel();
+            canceled.cancel();
+            assertThrows(ExecutionException.class, () -> canceled.future().get(5, TimeUnit.SECONDS));
+            Thread.sleep(300);
+            assertEquals(1.0, meterRegistry.counter("es.task.finished", "type", "UPDATE_BY_QUERY", "outcome", "failure").count());
+            assertTrue(manager.running().isEmpty());
+        } finally {
+            scheduler.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 派生字段 pipeline：version 需在 int 范围内，声明不变时不重复同步
+     */
+    @Test
+    void syncDerivedFieldPipeline() throws IOException {
+        bulkUsers(elasticsearchClient, 5);
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByQueryTaskManager manager = new ByQueryTaskManager(elasticsearchClient, restClient,
+                    new SimpleMeterRegistry(), scheduler, executor);
+            DerivedField field = DerivedField.rangeBands(INDEX, "age_format", "age",
+                    Arrays.asList(RangeBand.below(20, "青年"), RangeBand.otherwise("**")), "--");
+            DerivedFieldService service = new DerivedFieldService(elasticsearchClient, manager, Collections.singletonList(field));
+            assertNotNull(service.sync(INDEX));
+            String pipelineId = DerivedFieldService.pipelineId(INDEX);
+            Long version = elasticsearchClient.ingest().getPipeline(g -> g.id(pipelineId)).get(pipelineId).version();
+            assertTrue(version >= 0 && version <= Integer.MAX_VALUE);
+            assertNull(service.sync(INDEX));
+
+            ElasticsearchException e = assertThrows(ElasticsearchException.class, () -> elasticsearchClient.ingest()
+                    .putPipeline(p -> p.id("overflow").version(1L << 40)));
+            assertEquals(400, e.status());
+        } finally {
+            scheduler.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 注入 429、bulk item 拒绝和延迟
+     */
+    @Test
+    void injectFaults() throws IOException {
+        server.faults().failNext(Endpoint.BULK, 2, 429);
+        for (int i = 0; i < 2; i++) {
+            // 客户端只把 400、401、403、404、405 解析为 ElasticsearchException，429 以 ResponseException 抛出
+            ResponseException e = assertThrows(ResponseException.class, () -> bulkUsers(elasticsearchClient, 5));
+            assertEquals(429, e.getResponse().getStatusLine().getStatusCode());
+        }
+        assertFalse(bulkUsers(elasticsearchClient, 5).errors());
+        assertEquals(3, server.requests(Endpoint.BULK));
+
+        server.faults().rejectBulkItems(0.5);
+        BulkResponse partial = bulkUsers(elasticsearchClient, 100);
+        long rejected = partial.items().stream().filter(item -> item.status() == 429).count();
+        log.info("bulk item 被拒绝:{}", rejected);
+        assertTrue(partial.errors());
+        assertTrue(rejected > 20 && rejected < 80);
+
+        server.faults().clear().latency(Endpoint.SEARCH, Latency.fixed(150));
+        long start = System.nanoTime();
+        elasticsearchClient.search(s -> s.index(INDEX).query(Query.of(q -> q.matchAll(m -> m))), User.class);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    }
+
+    /**
+     * 两个节点共用数据，一个节点宕机后 RestClient 转到另一个节点
+     */
+    @Test
+    void failOverToHealthyNode() throws IOException {
+        try (EsStandInServer second = EsStandInServer.start(server.store(), 7L);
+             RestClient client = RestClient.builder(new HttpHost[]{server.httpHost(), second.httpHost()}).build()) {
+            ElasticsearchClient failover = new ElasticsearchClient(new RestClientTransport(client, new JacksonJsonpMapper()));
+            bulkUsers(failover, 10);
+            server.faults().down(true);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(10, failover.count(c -> c.index(INDEX)).count());
+            }
+            log.info("节点1 请求:{}，节点2 请求:{}", server.requests(Endpoint.ANY), second.requests(Endpoint.ANY));
+            assertTrue(second.requests(Endpoint.COUNT) >= 5);
+        }
+    }
+
+    /**
+     * 并发读-改-写，版本冲突后重试，不丢失更新
+     */
+    @Test
+    void retryOptimisticConflicts() throws Exception {
+        bulkUsers(elasticsearchClient, 1);
+        OptimisticUpdateService service = new OptimisticUpdateService(elasticsearchClient);
+        ReflectionTestUtils.setField(service, "maxAttempts", 100);
+        ReflectionTestUtils.setField(service, "backoffInitialMs", 1L);
+        ReflectionTestUtils.setField(service, "backoffMaxMs", 10L);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(executor.submit(() -> service.modify(INDEX, "0", User.class, user -> {
+                    user.setAge(user.getAge() + 1);
+                    return user;
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(60, server.store().source(INDEX, "0").get("age").asInt());
+    }
+
+    /**
+     * 合并更新被线程池拒绝时，批次中的调用方立即失败，触发 flush 的调用方不受影响
+     */
+    @Test
+    void failRejectedCoalescedUpdates() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        try {
+            UpdateCoalescer coalescer = new UpdateCoalescer(elasticsearchClient, new ScriptRegistry(elasticsearchClient),
+                    task -> {
+                        throw new RejectedExecutionException("full");
+                    }, scheduler, new RoutingPolicy(new SimpleMeterRegistry()));
+            ReflectionTestUtils.setField(coalescer, "windowMs", 1000L);
+            ReflectionTestUtils.setField(coalescer, "maxPending", 2);
+            ReflectionTestUtils.setField(coalescer, "maxBulkActions", 500);
+            CompletableFuture<BulkResponseItem> first = coalescer.update(INDEX, "0", Collections.singletonMap("age", 1));
+            CompletableFuture<BulkResponseItem> second = coalescer.update(INDEX, "1", Collections.singletonMap("age", 2));
+            assertTrue(first.isCompletedExceptionally());
+            assertTrue(second.isCompletedExceptionally());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * 定期恢复心跳超时的批量导入标记，进程在心跳超时前重启时索引也会恢复原设置
+     */
+    @Test
+    void recoverStaleBulkLoads() throws Exception {
+        bulkUsers(elasticsearchClient, 1);
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BulkLoadService service = new BulkLoadService(elasticsearchClient, restClient, scheduler, executor);
+            ReflectionTestUtils.setField(service, "heartbeatMs", 20L);
+            ReflectionTestUtils.setField(service, "recoverIntervalMs", 50L);
+            ReflectionTestUtils.setField(service, "greenTimeout", "1s");
+            service.run(null);
+
+            // 启动之后才超时的标记
+            BulkLoadMarker marker = new BulkLoadMarker();
+            marker.setIndex(INDEX);
+            marker.setOwner("1@crashed");
+            marker.setStartedAt(System.currentTimeMillis());
+            marker.setHeartbeatAt(marker.getStartedAt());
+            marker.setSettings(Collections.singletonMap("index.refresh_interval", "1s"));
+            elasticsearchClient.index(i -> i.index("bulk_load_markers").id(INDEX).document(marker).refresh(Refresh.True));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.store().count("bulk_load_markers") > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, server.store().count("bulk_load_markers"));
+        } finally {
+            scheduler.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 写入缓冲在集群 429 期间按退避间隔重发，不随新的追加立即重发
+     */
+    @Test
+    void backOffSpoolRetries(@TempDir Path dir) throws Exception {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setEnabled(false);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        WriteSpool spool = new WriteSpool(elasticsearchClient, restClient, meters,
+                new StaticListableBeanFactory().getBeanProvider(DocumentWriteListener.class),
+                new AdmissionController(properties, meters));
+        ReflectionTestUtils.setField(spool, "directory", dir.resolve("spool").toString());
+        ReflectionTestUtils.setField(spool, "segmentSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(spool, "durability", WriteSpool.Durability.NONE);
+        ReflectionTestUtils.setField(spool, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(spool, "retryMaxMs", 1000L);
+        spool.recover();
+        try {
+            server.faults().reject(Endpoint.BULK, 1.0);
+            appendUsers(spool, 0, 100);
+            assertTrue(server.requests(Endpoint.BULK) <= 5, "bulk 请求数:" + server.requests(Endpoint.BULK));
+            server.faults().clear();
+            assertTrue(spool.awaitDrained(Duration.ofSeconds(5)));
+            assertEquals(100, server.store().count(INDEX));
+
+            // 条目级 429 同样退避
+            server.faults().rejectBulkItems(1.0);
+            server.resetCounters();
+            appendUsers(spool, 100, 100);
+            assertTrue(server.requests(Endpoint.BULK) <= 5, "bulk 请求数:" + server.requests(Endpoint.BULK));
+            server.faults().clear();
+            assertTrue(spool.awaitDrained(Duration.ofSeconds(5)));
+            assertEquals(200, server.store().count(INDEX));
+        } finally {
+            spool.close();
+        }
+    }
+
+    /**
+     * 布隆过滤器：启动重建在查询线程池中执行，手动重建等待其完成，重建期间的写入不会丢
+     */
+    @Test
+    void serializeBloomFilterRebuilds() throws Exception {
+        bulkUsers(elasticsearchClient, 50);
+        server.faults().latency(Endpoint.SEARCH, Latency.fixed(100));
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(2);
+        try {
+            IndexScanner scanner = new IndexScanner(elasticsearchClient, scanExecutor);
+            ReflectionTestUtils.setField(scanner, "pageSize", 20);
+            ReflectionTestUtils.setField(scanner, "keepAlive", "1m");
+            IdBloomFilterService service = new IdBloomFilterService(elasticsearchClient, scanner, new SimpleMeterRegistry(),
+                    scheduler, executor, new String[]{INDEX});
+            ReflectionTestUtils.setField(service, "fpp", 0.01);
+            ReflectionTestUtils.setField(service, "maxBytes", DataSize.ofMegabytes(1));
+            ReflectionTestUtils.setField(service, "rebuildInterval", Duration.ofHours(1));
+            ReflectionTestUtils.setField(service, "aliasCheckInterval", Duration.ofHours(1));
+            ReflectionTestUtils.setField(service, "scanSlices", 1);
+            service.run(null);
+            Thread.sleep(50);
+
+            User late = new User("late", "user-late", 30, "男");
+            elasticsearchClient.index(i -> i.index(INDEX).id(late.getId()).document(late).refresh(Refresh.True));
+            service.onIndexed(INDEX, late.getId());
+            service.rebuild(INDEX);
+            for (int i = 0; i < 50; i++) {
+                assertTrue(service.mightExist(INDEX, String.valueOf(i)));
+            }
+            assertTrue(service.mightExist(INDEX, late.getId()));
+        } finally {
+            scheduler.shutdown();
+            executor.shutdown();
+            scanExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 录制请求，生成合成数据和查询，按固定速率开环回放
+     */
+    @Test
+    void recordAndReplayWorkload(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("workload.ndjson");
+        try (WorkloadRecorder recorder = new WorkloadRecorder(file, Collections.singleton("es/search"), 1, new ObjectMapper())) {
+            ElasticsearchClient recording = new ElasticsearchClient(
+                    new RecordingTransport(elasticsearchClient._transport(), recorder));
+            bulkUsers(recording, 10);
+            recording.search(s -> s.index(INDEX).query(q -> q.term(t -> t.field("name").value("user-1"))), User.class);
+        }
+        List<RecordedRequest> recorded = WorkloadRecorder.load(file, new ObjectMapper());
+        assertEquals(1, recorded.size());
+        assertEquals("/users/_search", recorded.get(0).getPath());
+        assertTrue(recorded.get(0).getBody().contains("user-1"));
+
+        CorpusGenerator generator = new CorpusGenerator(elasticsearchClient);
+        ReflectionTestUtils.setField(generator, "batchSize", 200);
+        assertEquals(0, generator.generateUsers(INDEX, 1000, 1.1, 42));
+        List<RecordedRequest> workload = generator.syntheticUserSearches(INDEX, 500, 1000, 1.1, 42);
+
+        server.faults().latency(Endpoint.SEARCH, Latency.fixed(10)).slow(Endpoint.SEARCH, 0.05, 200);
+        ReplayPlan plan = new ReplayPlan();
+        plan.setArrival(ReplayPlan.Arrival.FIXED);
+        plan.setRatePerSecond(200);
+        plan.setDuration(Duration.ofSeconds(1));
+        LoadReport report = new WorkloadReplayer(restClient).replay(workload, plan);
+        log.info("回放结果\n{}", report.summary());
+        assertEquals(200, report.count("es/search"));
+        assertEquals(0, report.errors(LoadReport.ALL));
+        assertTrue(report.responseTime(LoadReport.ALL).getValueAtPercentile(50) >= 10_000);
+        assertTrue(report.responseTime(LoadReport.ALL).getValueAtPercentile(99) >= 200_000);
+
+        // 未完成上限为 1 时多数请求被丢弃，丢弃的请求按错误计入延迟分布
+        plan.setMaxOutstanding(1);
+        plan.setDuration(Duration.ofMillis(250));
+        LoadReport shed = new WorkloadReplayer(restClient).replay(workload, plan);
+        assertEquals(50, shed.count("es/search"));
+        assertTrue(shed.shed(LoadReport.ALL) > 0);
+        assertEquals(shed.shed(LoadReport.ALL), shed.errors(LoadReport.ALL));
+    }
+
+    /**
+     * 按用户组路由：写入自动带上 routing，按用户组过滤的查询推断 routing，缺少或不一致的 routing 被拒绝
+     */
+    @Test
+    void routeByGroup() throws IOException {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        RoutingPolicy policy = new RoutingPolicy(meters);
+        ReflectionTestUtils.setField(policy, "indices", new String[]{INDEX + ":groupId"});
+        policy.init();
+        ElasticsearchClient routed = new ElasticsearchClient(new RoutingTransport(elasticsearchClient._transport(), policy));
+
+        List<BulkOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            User user = new User(String.valueOf(i), "user-" + i, 20 + i, "男");
+            user.setGroupId("g" + i % 2);
+            operations.add(BulkOperation.of(b -> b.index(o -> o.index(INDEX).id(user.getId()).document(user))));
+        }
+        assertFalse(routed.bulk(b -> b.operations(operations)).errors());
+        GetResponse<User> get = routed.get(g -> g.index(INDEX).id("3").routing("g1"), User.class);
+        assertEquals("g1", get.routing());
+
+        User user = new User("6", "user-6", 26, "女");
+        assertThrows(RoutingException.class, () -> routed.index(i -> i.index(INDEX).id("6").document(user)));
+        user.setGroupId("g0");
+        assertThrows(RoutingException.class, () -> routed.index(i -> i.index(INDEX).id("6").routing("g1").document(user)));
+        routed.index(i -> i.index(INDEX).id("6").document(user));
+        assertEquals("g0", routed.get(g -> g.index(INDEX).id("6").routing("g0"), User.class).routing());
+        assertThrows(RoutingException.class, () -> routed.get(g -> g.index(INDEX).id("6"), User.class));
+        assertThrows(RoutingException.class, () -> routed.delete(d -> d.index(INDEX).id("6")));
+        assertThrows(RoutingException.class, () -> routed.mget(m -> m.index(INDEX).ids("1", "2"), User.class));
+
+        // 读-改-写按文档传 routing，mget 条目和写回都带上
+        OptimisticUpdateService occ = new OptimisticUpdateService(routed);
+        ReflectionTestUtils.setField(occ, "maxAttempts", 3);
+        Map<String, User> aged = occ.modifyAll(INDEX, Arrays.asList("1", "2"), id -> "g" + Integer.parseInt(id) % 2, User.class, u -> {
+            u.setAge(u.getAge() + 1);
+            return u;
+        });
+        assertEquals(2, aged.size());
+        assertEquals(24, occ.modify(INDEX, "2", "g0", User.class, u -> {
+            u.setAge(u.getAge() + 1);
+            return u;
+        }).getAge());
+
+        // 绕过路由写入一个用户组为 g0、routing 为 g1 的文档，按 g0 查询时被识别为路由错误
+        User misrouted = new User("7", "user-7", 27, "女");
+        misrouted.setGroupId("g0");
+        elasticsearchClient.index(i -> i.index(INDEX).id("7").routing("g1").document(misrouted));
+        SearchResponse<User> search = routed.search(s -> s
+                .index(INDEX)
+                .query(q -> q.bool(b -> b.filter(f -> f.term(t -> t.field("groupId").value("g0"))))), User.class);
+        assertEquals(5, search.hits().hits().size());
+        assertEquals(1, meters.counter("es.routing.misrouted", "index", INDEX).count());
+    }
+
+    /**
+     * 多集群：写入主集群，优先读本地副本集群，副本集群故障时切回主集群，探测恢复后再切回副本
+     */
+    @Test
+    void failOverReadsAcrossClusters() throws IOException {
+        try (EsStandInServer replica = EsStandInServer.start()) {
+            ClusterProperties properties = new ClusterProperties();
+            properties.setPrimary("main");
+            properties.setReadPreference(Arrays.asList("local", "main"));
+            properties.getMembers().put("main", member(server));
+            properties.getMembers().put("local", member(replica));
+            properties.setCooldown(Duration.ofMillis(100));
+            SimpleMeterRegistry meters = new SimpleMeterRegistry();
+            EsClientFactory factory = new EsClientFactory(new RoutingPolicy(meters),
+                    new AdmissionController(new AdmissionProperties(), meters),
+                    new StaticListableBeanFactory().getBeanProvider(DocumentWriteListener.class),
+                    new StaticListableBeanFactory().getBeanProvider(WorkloadRecorder.class));
+            ClusterRegistry registry = new ClusterRegistry(properties, elasticsearchClient, restClient, factory, meters, null);
+            try {
+                bulkUsers(registry.writer(INDEX), 10);
+                // 模拟跨集群复制，副本集群只同步了一部分
+                bulkUsers(registry.client("local"), 5);
+                // 成员集群与默认集群一样经过准入控制，各自使用独立的准入控制
+                assertEquals(1, meters.timer("es.admission.wait", "cluster", "main", "class", OperationClass.INGEST.name()).count());
+                assertEquals(1, meters.timer("es.admission.wait", "cluster", "local", "class", OperationClass.INGEST.name()).count());
+                assertEquals(Arrays.asList("local", "main"), registry.readOrder(INDEX));
+                assertEquals(5, registry.read(INDEX, c -> c.count(r -> r.index(INDEX))).count());
+
+                // 副本集群故障，本次读切换到主集群，错误率超出预算后副本集群排到后面
+                replica.faults().fail(Endpoint.COUNT, 1.0);
+                assertEquals(10, registry.read(INDEX, c -> c.count(r -> r.index(INDEX))).count());
+                assertEquals(Arrays.asList("main", "local"), registry.readOrder(INDEX));
+                assertEquals(10, registry.read(INDEX, c -> c.count(r -> r.index(INDEX))).count());
+                assertEquals(2, replica.requests(Endpoint.COUNT));
+
+                replica.faults().clear();
+                while (!registry.health("local").withinBudget(properties.getLatencyBudget().toMillis(), properties.getErrorBudget())) {
+                    registry.probe();
+                }
+                assertEquals(Arrays.asList("local", "main"), registry.readOrder(INDEX));
+                // 请求本身的错误不切换集群
+                assertThrows(ElasticsearchException.class,
+                        () -> registry.read("missing", c -> c.search(r -> r.index("missing"), User.class)));
+                assertEquals(1, replica.requests(Endpoint.SEARCH));
+                assertEquals(0, server.requests(Endpoint.SEARCH));
+
+                // 副本集群的错误只打开它自己的熔断，熔断中的副本集群被跳过，读主集群不受影响
+                replica.faults().fail(Endpoint.COUNT, 1.0);
+                for (int i = 0; i < 20; i++) {
+                    assertThrows(Exception.class, () -> registry.client("local").count(r -> r.index(INDEX)));
+                }
+                replica.faults().clear();
+                while (!registry.health("local").withinBudget(properties.getLatencyBudget().toMillis(), properties.getErrorBudget())) {
+                    registry.probe();
+                }
+                assertEquals(Arrays.asList("local", "main"), registry.readOrder(INDEX));
+                replica.resetCounters();
+                assertEquals(10, registry.read(INDEX, c -> c.count(r -> r.index(INDEX))).count());
+                assertEquals(0, replica.requests(Endpoint.COUNT));
+                assertEquals(10, registry.client("main").count(r -> r.index(INDEX)).count());
+            } finally {
+                registry.destroy();
+            }
+        }
+    }
+
+    /**
+     * 准入控制：写入占满自己的舱壁和非保留名额时，查询仍然可以使用保留名额；维护任务限流；查询持续失败时熔断
+     */
+    @Test
+    void admissionControlIsolatesClasses() throws Exception {
+        bulkUsers(elasticsearchClient, 10);
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxInFlight(2);
+        properties.setReserved(1);
+        properties.getIngest().setMaxConcurrent(1);
+        properties.getIngest().setMaxWait(Duration.ZERO);
+        properties.getAnalytics().setMaxWait(Duration.ZERO);
+        properties.getMaintenance().setRate(1);
+        properties.getMaintenance().setMaxWait(Duration.ZERO);
+        properties.getInteractive().setBreakerWindow(4);
+        properties.getInteractive().setBreakerFailureRate(1.0);
+        properties.getInteractive().setBreakerOpen(Duration.ofMillis(100));
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        AdmissionController admission = new AdmissionController(properties, meters);
+        ElasticsearchClient client = new ElasticsearchClient(new AdmissionTransport(
+                new RestClientTransport(restClient, new JacksonJsonpMapper()), admission));
+
+        server.faults().latency(Endpoint.BULK, Latency.fixed(500));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<BulkResponse> slowBulk = executor.submit(() -> bulkUsers(client, 1));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (admission.inFlight() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, () -> bulkUsers(client, 1));
+            assertEquals(OperationClass.INGEST, rejected.getOperationClass());
+            assertEquals(AdmissionRejectedException.Reason.BULKHEAD_FULL, rejected.getReason());
+            // 非保留名额已被写入占用，聚合查询被拒绝，用户查询使用保留名额
+            rejected = assertThrows(AdmissionRejectedException.class, () -> client.search(s -> s
+                    .index(INDEX).size(0).aggregations("sex", a -> a.terms(t -> t.field("sex"))), User.class));
+            assertEquals(OperationClass.ANALYTICS, rejected.getOperationClass());
+            assertEquals(10, client.count(c -> c.index(INDEX)).count());
+            assertFalse(slowBulk.get(5, TimeUnit.SECONDS).errors());
+        } finally {
+            executor.shutdownNow();
+        }
+        server.faults().clear();
+
+        client.indices().refresh(r -> r.index(INDEX));
+        AdmissionRejectedException limited = assertThrows(AdmissionRejectedException.class, () -> client.indices().refresh(r -> r.index(INDEX)));
+        assertEquals(AdmissionRejectedException.Reason.RATE_LIMITED, limited.getReason());
+        try (AdmissionController.Scope ignored = admission.scope(OperationClass.INTERACTIVE)) {
+            client.indices().refresh(r -> r.index(INDEX));
+        }
+
+        server.faults().fail(Endpoint.COUNT, 1.0);
+        for (int i = 0; i < properties.getInteractive().getBreakerWindow(); i++) {
+            assertThrows(ResponseException.class, () -> client.count(c -> c.index(INDEX)));
+        }
+        assertTrue(admission.isOpen(OperationClass.INTERACTIVE));
+        long sent = server.requests(Endpoint.COUNT);
+        AdmissionRejectedException open = assertThrows(AdmissionRejectedException.class, () -> client.count(c -> c.index(INDEX)));
+        assertEquals(AdmissionRejectedException.Reason.CIRCUIT_OPEN, open.getReason());
+        assertEquals(sent, server.requests(Endpoint.COUNT));
+
+        server.faults().clear();
+        Thread.sleep(150);
+        assertEquals(10, client.count(c -> c.index(INDEX)).count());
+        assertFalse(admission.isOpen(OperationClass.INTERACTIVE));
+        assertEquals(0, admission.inFlight());
+        assertEquals(1, meters.counter("es.admission.rejected", "cluster", ClusterRegistry.DEFAULT, "class", "MAINTENANCE",
+                "reason", "RATE_LIMITED").count());
+
+        // 透传的原始查询按查询体分类
+        assertEquals(OperationClass.ANALYTICS, OperationClass.ofSearchBody(
+                "{\"size\":0,\"aggs\":{\"sex\":{\"terms\":{\"field\":\"sex\"}}}}".getBytes(StandardCharsets.UTF_8), null));
+        assertEquals(OperationClass.INTERACTIVE, OperationClass.ofSearchBody(
+                "{\"query\":{\"term\":{\"aggs\":\"x\"}}}".getBytes(StandardCharsets.UTF_8), null));
+        assertEquals(OperationClass.ANALYTICS, OperationClass.ofSearchBody(null, Collections.singletonMap("scroll", "1m")));
+
+        // 异步请求等待令牌时不阻塞调用线程
+        AdmissionProperties throttled = new AdmissionProperties();
+        throttled.getMaintenance().setRate(2);
+        throttled.getMaintenance().setBurst(1);
+        throttled.getMaintenance().setMaxWait(Duration.ofSeconds(2));
+        AdmissionController queued = new AdmissionController(throttled, new SimpleMeterRegistry());
+        try {
+            ElasticsearchAsyncClient async = new ElasticsearchAsyncClient(new AdmissionTransport(
+                    new RestClientTransport(restClient, new JacksonJsonpMapper()), queued));
+            async.indices().refresh(r -> r.index(INDEX)).get(5, TimeUnit.SECONDS);
+            long start = System.nanoTime();
+            CompletableFuture<RefreshResponse> waiting = async.indices().refresh(r -> r.index(INDEX));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+            assertFalse(waiting.isDone());
+            waiting.get(5, TimeUnit.SECONDS);
+        } finally {
+            queued.close();
+        }
+    }
+
+    /**
+     * 扇出查询：结果与请求顺序一致，任一查询失败时整体失败；同步请求经由异步接口发送时异常与直接调用一致
+     */
+    @Test
+    void fanOutSearches() throws IOException {
+        bulkUsers(elasticsearchClient, 10);
+        Set<String> decodingThreads = ConcurrentHashMap.newKeySet();
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new SimpleModule().setDeserializerModifier(
+                new BeanDeserializerModifier() {
+                    @Override
+                    public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription description,
+                                                                  JsonDeserializer<?> deserializer) {
+                        if (description.getBeanClass() != User.class) {
+                            return deserializer;
+                        }
+                        return new DelegatingDeserializer(deserializer) {
+                            @Override
+                            protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> delegate) {
+                                return this;
+                            }
+
+                            @Override
+                            public Object deserialize(com.fasterxml.jackson.core.JsonParser parser, DeserializationContext context)
+                                    throws IOException {
+                                decodingThreads.add(Thread.currentThread().getName());
+                                return super.deserialize(parser, context);
+                            }
+                        };
+                    }
+                }));
+        ElasticsearchClient client = new ElasticsearchClient(new AsyncBridgeTransport(
+                new RestClientTransport(restClient, new JacksonJsonpMapper(objectMapper))));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            FanOutSearch fanOut = new FanOutSearch(client, executor);
+            server.faults().latency(Endpoint.SEARCH, Latency.fixed(20));
+            List<SearchRequest> requests = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String id = String.valueOf(i);
+                requests.add(SearchRequest.of(s -> s.index(INDEX).query(q -> q.ids(ids -> ids.values(id)))));
+            }
+            List<SearchResponse<User>> responses = fanOut.search(requests, User.class);
+            for (int i = 0; i < responses.size(); i++) {
+                assertEquals(String.valueOf(i), responses.get(i).hits().hits().get(0).id());
+            }
+            // 响应在调用方线程上解析，不占用 IO reactor 线程
+            assertFalse(decodingThreads.isEmpty());
+            assertTrue(decodingThreads.stream().noneMatch(name -> name.startsWith("I/O dispatcher")), decodingThreads.toString());
+
+            server.faults().failNext(Endpoint.SEARCH, 1, 503);
+            assertThrows(ResponseException.class, () -> fanOut.search(requests, User.class));
+            assertThrows(ElasticsearchException.class, () -> client.search(s -> s.index("missing"), User.class));
+            server.faults().latency(Endpoint.COUNT, Latency.fixed(500));
+            List<FanOutSearch.Call<CountResponse>> counts = Collections.singletonList(c -> c.count(r -> r.index(INDEX)));
+            assertThrows(IOException.class, () -> fanOut.invokeAll(counts, Duration.ofMillis(100)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 预热：连接、编解码、存储脚本、探针请求，替身不可用时返回 false 但不抛出异常
+     */
+    @Test
+    void warmUp() throws IOException {
+        bulkUsers(elasticsearchClient, 3);
+        ScriptRegistry scriptRegistry = new ScriptRegistry(elasticsearchClient);
+        ReflectionTestUtils.setField(scriptRegistry, "location", "classpath*:es/scripts/*.*");
+        scriptRegistry.load();
+        WarmupRunner runner = new WarmupRunner(restClient, elasticsearchClient, scriptRegistry,
+                new StaticListableBeanFactory().getBeanProvider(ClusterRegistry.class), event -> { });
+        ReflectionTestUtils.setField(runner, "budgetMs", 10000L);
+        ReflectionTestUtils.setField(runner, "connectionsPerHost", 4);
+        ReflectionTestUtils.setField(runner, "codecIterations", 200);
+        ReflectionTestUtils.setField(runner, "indices", new String[]{INDEX, "missing"});
+        ReflectionTestUtils.setField(runner, "hosts", server.hosts());
+        assertTrue(runner.warmUp());
+        assertTrue(server.requests(Endpoint.INFO) >= 5);
+        assertEquals(1, server.requests(Endpoint.COUNT));
+        assertEquals(1, server.requests(Endpoint.SEARCH));
+        for (String name : scriptRegistry.definitions().keySet()) {
+            assertTrue(elasticsearchClient.getScript(g -> g.id(scriptRegistry.definitions().get(name).getId())).found());
+        }
+
+        server.faults().fail(Endpoint.ANY, 1.0);
+        assertFalse(runner.warmUp());
+    }
+
+    /**
+     * 字典翻译：文件字典的年龄段区间 + 字典索引中的编码，刷新失败时保留上一份字典
+     */
+    @Test
+    void translateDictionaries() throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        int[] ages = {19, 20, 45};
+        for (int i = 0; i < ages.length; i++) {
+            User user = new User(String.valueOf(i), "user-" + i, ages[i], i % 2 == 0 ? "男" : "女");
+            operations.add(BulkOperation.of(b -> b.index(o -> o.index(INDEX).id(user.getId()).document(user))));
+        }
+        User unknown = new User("3", "user-3", null, "x");
+        operations.add(BulkOperation.of(b -> b.index(o -> o.index(INDEX).id("3").document(unknown))));
+        String[][] entries = {{"sex", "男", "M"}, {"sex", "女", "F"}, {"age-band", "99", "九十九"}};
+        for (String[] entry : entries) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("dictionary", entry[0]);
+            doc.put("code", entry[1]);
+            doc.put("label", entry[2]);
+            operations.add(BulkOperation.of(b -> b.index(o -> o.index("dictionaries").document(doc))));
+        }
+        elasticsearchClient.bulk(b -> b.operations(operations).refresh(Refresh.True));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        try {
+            IndexScanner scanner = new IndexScanner(elasticsearchClient, executor);
+            ReflectionTestUtils.setField(scanner, "pageSize", 100);
+            ReflectionTestUtils.setField(scanner, "keepAlive", "1m");
+            DictionaryProperties properties = new DictionaryProperties();
+            properties.setIndex("dictionaries");
+            Map<String, String> fields = new LinkedHashMap<>();
+            fields.put("age", "age-band");
+            fields.put("sex", "sex");
+            properties.getBindings().put(INDEX, fields);
+            DictionaryTranslator translator = new DictionaryTranslator(properties, scanner, scheduler);
+            translator.load();
+            assertEquals("青年", translator.dictionary("age-band").translate(19.5));
+            assertNull(translator.dictionary("sex"));
+            assertTrue(new DerivedFieldConfig(translator).userAgeFormat().getScript().contains("n < 40.0"));
+            Dictionary merged = Dictionary.builder("age-band")
+                    .bands(translator.dictionary("age-band").bands())
+                    .merge(Dictionary.builder("age-band").band(RangeBand.below(20, "少年")).band(RangeBand.otherwise("成年")))
+                    .build();
+            assertEquals("少年", merged.translate(19));
+            assertEquals("成年", merged.translate(30));
+            translator.refresh();
+
+            SearchResponse<User> response = elasticsearchClient.search(s -> s.index(INDEX).size(10), User.class);
+            Map<String, TranslatedHit<User>> hits = new HashMap<>();
+            translator.translate(INDEX, response).forEach(hit -> hits.put(hit.getId(), hit));
+            assertEquals("青年", hits.get("0").label("age"));
+            assertEquals("中年", hits.get("1").label("age"));
+            assertEquals("**", hits.get("2").label("age"));
+            assertEquals("--", hits.get("3").label("age"));
+            assertEquals("M", hits.get("0").label("sex"));
+            assertEquals("F", hits.get("1").label("sex"));
+            assertFalse(hits.get("3").getLabels().containsKey("sex"));
+            assertEquals("九十九", translator.dictionary("age-band").translate(99));
+
+            server.faults().fail(Endpoint.ANY, 1.0);
+            assertThrows(Exception.class, translator::refresh);
+            assertEquals("M", translator.labels(INDEX, hits.get("0").getSource()).get("sex"));
+        } finally {
+            scheduler.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 开启虚拟线程但构建中没有 java21 的类时启动直接失败
+     */
+    @Test
+    void virtualThreadsRequireJava21Build() {
+        assumeFalse(ClassUtils.isPresent("com.example.elasticsearch.config.VirtualThreadExecutorConfig", null));
+        new ApplicationContextRunner()
+                .withUserConfiguration(ExecutorConfig.class)
+                .withPropertyValues("elasticsearch.executor.virtual-threads=true")
+                .run(context -> {
+                    assertNotNull(context.getStartupFailure());
+                    assertTrue(NestedExceptionUtils.getMostSpecificCause(context.getStartupFailure()).getMessage().contains("-Pjava21"));
+                });
+        new ApplicationContextRunner()
+                .withUserConfiguration(ExecutorConfig.class)
+                .run(context -> assertNotNull(context.getBean("esQueryExecutor")));
+    }
+
+    private static ClusterProperties.Member member(EsStandInServer server) {
+        ClusterProperties.Member member = new ClusterProperties.Member();
+        member.setHosts(server.hosts());
+        return member;
+    }
+
+    /**
+     * 每 5ms 追加一个文档
+     */
+    private static void appendUsers(WriteSpool spool, int from, int count) throws IOException, InterruptedException {
+        for (int i = from; i < from + count; i++) {
+            User user = new User(String.valueOf(i), "user-" + i, 20 + i % 30, "男");
+            spool.append(Collections.singletonList(BulkOperation.of(b -> b.index(o -> o.index(INDEX).id(user.getId()).document(user)))));
+            Thread.sleep(5);
+        }
+    }
+
+    private static BulkResponse bulkUsers(ElasticsearchClient client, int count) throws IOException {
+        List<BulkOperation> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User(String.valueOf(i), "user-" + i, 20 + i, i % 2 == 0 ? "男" : "女");
+            operations.add(BulkOperation.of(b -> b.index(o -> o.index(INDEX).id(user.getId()).document(user))));
+        }
+        BulkResponse response = client.bulk(b -> b.operations(operations));
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null && item.status() != 429) {
+                log.error("bulk 失败:{}", item.error().reason());
+            }
+        }
+        return response;
+    }
+}
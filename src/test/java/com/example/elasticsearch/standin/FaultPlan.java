@@ -0,0 +1,206 @@
+package com.example.elasticsearch.standin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 替身服务的故障注入计划
+ * 所有随机决策共用一个按种子创建的 {@link Random}，单线程发起的请求序列每次运行得到相同的故障序列；
+ * 按接口配置的规则优先，未配置时使用 {@link Endpoint#ANY} 的规则
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class FaultPlan {
+
+    /**
+     * 不返回响应，直接断开连接
+     */
+    public static final int DISCONNECT = -1;
+
+    private final Random random;
+
+    private final Map<Endpoint, Latency> latency = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, Double> rejectRate = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, Double> failRate = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, Double> disconnectRate = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, double[]> slow = new EnumMap<>(Endpoint.class);
+
+    private final Map<Endpoint, Deque<Integer>> scripted = new EnumMap<>(Endpoint.class);
+
+    private double bulkItemRejectRate;
+
+    private long taskDurationMillis;
+
+    private volatile boolean down;
+
+    public FaultPlan(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 响应延迟
+     */
+    public synchronized FaultPlan latency(Endpoint endpoint, Latency value) {
+        latency.put(endpoint, value);
+        return this;
+    }
+
+    /**
+     * 按概率返回 429 es_rejected_execution_exception，模拟写入/搜索线程池队列满
+     */
+    public synchronized FaultPlan reject(Endpoint endpoint, double probability) {
+        rejectRate.put(endpoint, probability);
+        return this;
+    }
+
+    /**
+     * 按概率返回 503，模拟分片不可用
+     */
+    public synchronized FaultPlan fail(Endpoint endpoint, double probability) {
+        failRate.put(endpoint, probability);
+        return this;
+    }
+
+    /**
+     * 按概率直接断开连接，模拟节点进程崩溃或网络中断
+     */
+    public synchronized FaultPlan disconnect(Endpoint endpoint, double probability) {
+        disconnectRate.put(endpoint, probability);
+        return this;
+    }
+
+    /**
+     * 按概率在正常延迟之外再额外等待 millis，用于制造长尾
+     */
+    public synchronized FaultPlan slow(Endpoint endpoint, double probability, long millis) {
+        slow.put(endpoint, new double[]{probability, millis});
+        return this;
+    }
+
+    /**
+     * 接下来 times 次请求依次返回 status，{@link #DISCONNECT} 表示断开连接，用于确定性地验证重试逻辑
+     */
+    public synchronized FaultPlan failNext(Endpoint endpoint, int times, int status) {
+        Deque<Integer> queue = scripted.computeIfAbsent(endpoint, e -> new ArrayDeque<>());
+        for (int i = 0; i < times; i++) {
+            queue.add(status);
+        }
+        return this;
+    }
+
+    /**
+     * bulk 中每个 item 按概率单独返回 429，请求整体仍为 200 且 errors=true
+     */
+    public synchronized FaultPlan rejectBulkItems(double probability) {
+        this.bulkItemRejectRate = probability;
+        return this;
+    }
+
+    /**
+     * wait_for_completion=false 提交的任务的运行时长，运行期间 _tasks 返回按时间推进的进度
+     */
+    public synchronized FaultPlan taskDuration(long millis) {
+        this.taskDurationMillis = millis;
+        return this;
+    }
+
+    /**
+     * 节点宕机，所有请求都直接断开连接
+     */
+    public FaultPlan down(boolean value) {
+        this.down = value;
+        return this;
+    }
+
+    /**
+     * 清除所有故障
+     */
+    public synchronized FaultPlan clear() {
+        latency.clear();
+        rejectRate.clear();
+        failRate.clear();
+        disconnectRate.clear();
+        slow.clear();
+        scripted.clear();
+        bulkItemRejectRate = 0;
+        taskDurationMillis = 0;
+        down = false;
+        return this;
+    }
+
+    /**
+     * 决定本次请求的处理方式
+     *
+     * @param endpoint 接口
+     * @return {@link Fault}
+     */
+    synchronized Fault decide(Endpoint endpoint) {
+        if (down) {
+            return new Fault(0, DISCONNECT);
+        }
+        long delay = lookup(latency, endpoint, Latency.none()).nextMillis(random);
+        double[] tail = lookup(slow, endpoint, null);
+        if (tail != null && random.nextDouble() < tail[0]) {
+            delay += (long) tail[1];
+        }
+        Deque<Integer> queue = scripted.get(endpoint);
+        if (queue == null || queue.isEmpty()) {
+            queue = scripted.get(Endpoint.ANY);
+        }
+        if (queue != null && !queue.isEmpty()) {
+            return new Fault(delay, queue.poll());
+        }
+        if (random.nextDouble() < lookup(disconnectRate, endpoint, 0d)) {
+            return new Fault(delay, DISCONNECT);
+        }
+        if (random.nextDouble() < lookup(rejectRate, endpoint, 0d)) {
+            return new Fault(delay, 429);
+        }
+        if (random.nextDouble() < lookup(failRate, endpoint, 0d)) {
+            return new Fault(delay, 503);
+        }
+        return new Fault(delay, 0);
+    }
+
+    synchronized boolean rejectBulkItem() {
+        return bulkItemRejectRate > 0 && random.nextDouble() < bulkItemRejectRate;
+    }
+
+    synchronized long taskDurationMillis() {
+        return taskDurationMillis;
+    }
+
+    private static <V> V lookup(Map<Endpoint, V> rules, Endpoint endpoint, V defaultValue) {
+        V value = rules.get(endpoint);
+        if (value == null) {
+            value = rules.get(Endpoint.ANY);
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * 单次请求的故障决策
+     */
+    static final class Fault {
+
+        final long delayMillis;
+
+        /**
+         * 0 表示正常处理，{@link #DISCONNECT} 表示断开连接，其余为直接返回的 http 状态码
+         */
+        final int status;
+
+        Fault(long delayMillis, int status) {
+            this.delayMillis = delayMillis;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.elasticsearch.standin;
+
+import java.util.Random;
+
+/**
+ * 注入的响应延迟分布
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+@FunctionalInterface
+public interface Latency {
+
+    /**
+     * 下一次请求的延迟
+     *
+     * @param random 随机数，由 {@link FaultPlan} 按种子创建，保证可复现
+     * @return 毫秒
+     */
+    long nextMillis(Random random);
+
+    static Latency none() {
+        return random -> 0;
+    }
+
+    static Latency fixed(long millis) {
+        return random -> millis;
+    }
+
+    /**
+     * [minMillis, maxMillis] 均匀分布
+     */
+    static Latency uniform(long minMillis, long maxMillis) {
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis + 1));
+    }
+
+    /**
+     * 指数分布，近似排队造成的等待
+     */
+    static Latency exponential(double meanMillis) {
+        return random -> Math.round(-meanMillis * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * 对数正态分布，接近真实集群的长尾延迟，sigma 越大尾部越长，sigma=1 时 p99 约为中位数的 10 倍
+     *
+     * @param medianMillis 中位数
+     * @param sigma        ln 延迟的标准差
+     */
+    static Latency logNormal(double medianMillis, double sigma) {
+        return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.elasticsearch.standin;
+
+/**
+ * 替身服务内部的业务错误，由 {@link EsStandInServer} 转为 es 格式的错误响应
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+class StandInException extends RuntimeException {
+
+    private final int status;
+
+    private final String type;
+
+    StandInException(int status, String type, String reason) {
+        super(reason);
+        this.status = status;
+        this.type = type;
+    }
+
+    int status() {
+        return status;
+    }
+
+    String type() {
+        return type;
+    }
+}
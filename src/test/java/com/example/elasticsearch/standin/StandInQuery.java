@@ -0,0 +1,623 @@
+package com.example.elasticsearch.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 替身服务的查询、排序和聚合，直接在 _source 上求值
+ * 支持项目中用到的查询子集：match_all、match_none、ids、term、terms、range、exists、prefix、wildcard、
+ * match、match_phrase、multi_match、bool、constant_score；
+ * 聚合支持 terms、composite、filter 和 sum/avg/min/max/value_count/cardinality，以及 terms/filter 的子聚合。
+ * text 与 keyword 不做区分，字段名的 .keyword 后缀会被忽略
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+final class StandInQuery {
+
+    private StandInQuery() {
+    }
+
+    static boolean matches(JsonNode query, StoredDoc doc) {
+        if (query == null || query.isNull() || query.isMissingNode()) {
+            return true;
+        }
+        Map.Entry<String, JsonNode> clause = single(query);
+        JsonNode body = clause.getValue();
+        switch (clause.getKey()) {
+            case "match_all":
+                return true;
+            case "match_none":
+                return false;
+            case "ids":
+                for (JsonNode id : body.path("values")) {
+                    if (id.asText().equals(doc.id)) {
+                        return true;
+                    }
+                }
+                return false;
+            case "term": {
+                Map.Entry<String, JsonNode> field = single(body);
+                JsonNode expected = field.getValue().isObject() ? field.getValue().path("value") : field.getValue();
+                return values(doc, field.getKey()).stream().anyMatch(v -> equal(v, expected));
+            }
+            case "terms": {
+                Map.Entry<String, JsonNode> field = fieldEntry(body);
+                List<JsonNode> actual = values(doc, field.getKey());
+                for (JsonNode expected : field.getValue()) {
+                    if (actual.stream().anyMatch(v -> equal(v, expected))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case "range": {
+                Map.Entry<String, JsonNode> field = single(body);
+                return values(doc, field.getKey()).stream().anyMatch(v -> inRange(v, field.getValue()));
+            }
+            case "exists":
+                return !values(doc, body.path("field").asText()).isEmpty();
+            case "prefix": {
+                Map.Entry<String, JsonNode> field = single(body);
+                String prefix = (field.getValue().isObject() ? field.getValue().path("value") : field.getValue()).asText();
+                return values(doc, field.getKey()).stream().anyMatch(v -> v.asText().startsWith(prefix));
+            }
+            case "wildcard": {
+                Map.Entry<String, JsonNode> field = single(body);
+                JsonNode value = field.getValue().isObject()
+                        ? field.getValue().has("value") ? field.getValue().get("value") : field.getValue().path("wildcard")
+                        : field.getValue();
+                Pattern pattern = glob(value.asText());
+                return values(doc, field.getKey()).stream().anyMatch(v -> pattern.matcher(v.asText()).matches());
+            }
+            case "match": {
+                Map.Entry<String, JsonNode> field = single(body);
+                JsonNode options = field.getValue();
+                String text = (options.isObject() ? options.path("query") : options).asText();
+                boolean and = options.isObject() && "and".equalsIgnoreCase(options.path("operator").asText());
+                return textMatch(values(doc, field.getKey()), text, and);
+            }
+            case "match_phrase": {
+                Map.Entry<String, JsonNode> field = single(body);
+                String phrase = (field.getValue().isObject() ? field.getValue().path("query") : field.getValue())
+                        .asText().toLowerCase(Locale.ROOT);
+                return values(doc, field.getKey()).stream()
+                        .anyMatch(v -> v.asText().toLowerCase(Locale.ROOT).contains(phrase));
+            }
+            case "multi_match": {
+                boolean and = "and".equalsIgnoreCase(body.path("operator").asText());
+                for (JsonNode field : body.path("fields")) {
+                    String name = field.asText().split("\\^")[0];
+                    if (textMatch(values(doc, name), body.path("query").asText(), and)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            case "constant_score":
+                return matches(body.path("filter"), doc);
+            case "bool":
+                return bool(body, doc);
+            default:
+                throw new StandInException(400, "parsing_exception", "stand-in does not support query [" + clause.getKey() + "]");
+        }
+    }
+
+    private static boolean bool(JsonNode body, StoredDoc doc) {
+        for (String occur : Arrays.asList("must", "filter")) {
+            for (JsonNode clause : clauses(body.path(occur))) {
+                if (!matches(clause, doc)) {
+                    return false;
+                }
+            }
+        }
+        for (JsonNode clause : clauses(body.path("must_not"))) {
+            if (matches(clause, doc)) {
+                return false;
+            }
+        }
+        List<JsonNode> should = clauses(body.path("should"));
+        if (should.isEmpty()) {
+            return true;
+        }
+        int minimum;
+        if (body.has("minimum_should_match")) {
+            minimum = body.get("minimum_should_match").asInt();
+        } else {
+            minimum = clauses(body.path("must")).isEmpty() && clauses(body.path("filter")).isEmpty() ? 1 : 0;
+        }
+        int matched = 0;
+        for (JsonNode clause : should) {
+            if (matches(clause, doc)) {
+                matched++;
+            }
+        }
+        return matched >= minimum;
+    }
+
+    /**
+     * 字段值，数组展开，对象按点号路径逐级查找，_id 取文档 id
+     */
+    static List<JsonNode> values(StoredDoc doc, String field) {
+        if ("_id".equals(field)) {
+            return Collections.singletonList(TextNode.valueOf(doc.id));
+        }
+        if (field.endsWith(".keyword")) {
+            field = field.substring(0, field.length() - ".keyword".length());
+        }
+        List<JsonNode> current = Collections.singletonList(doc.source);
+        for (String part : field.split("\\.")) {
+            List<JsonNode> next = new ArrayList<>();
+            for (JsonNode node : current) {
+                flatten(node.path(part), next);
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static void flatten(JsonNode node, List<JsonNode> out) {
+        if (node.isArray()) {
+            node.forEach(element -> flatten(element, out));
+        } else if (!node.isMissingNode() && !node.isNull()) {
+            out.add(node);
+        }
+    }
+
+    private static boolean textMatch(List<JsonNode> actual, String text, boolean and) {
+        Set<String> tokens = new HashSet<>();
+        for (JsonNode value : actual) {
+            tokens.addAll(tokens(value.asText()));
+        }
+        List<String> wanted = tokens(text);
+        return and ? tokens.containsAll(wanted) : wanted.stream().anyMatch(tokens::contains);
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[\\s\\p{Punct}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean equal(JsonNode actual, JsonNode expected) {
+        if (actual.isNumber() || expected.isNumber()) {
+            Double a = number(actual);
+            Double b = number(expected);
+            return a != null && a.equals(b);
+        }
+        return actual.asText().equals(expected.asText());
+    }
+
+    private static boolean inRange(JsonNode value, JsonNode range) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = range.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> bound = it.next();
+            if (bound.getValue().isNull()) {
+                continue;
+            }
+            int cmp = compare(value, bound.getValue());
+            switch (bound.getKey()) {
+                case "gt":
+                    if (cmp <= 0) {
+                        return false;
+                    }
+                    break;
+                case "gte":
+                    if (cmp < 0) {
+                        return false;
+                    }
+                    break;
+                case "lt":
+                    if (cmp >= 0) {
+                        return false;
+                    }
+                    break;
+                case "lte":
+                    if (cmp > 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    // format、time_zone 等参数忽略
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 数值按数值比较，其余按字符串比较（ISO 日期的字符串顺序与时间顺序一致）
+     */
+    static int compare(JsonNode a, JsonNode b) {
+        Double x = number(a);
+        Double y = number(b);
+        if (x != null && y != null) {
+            return Double.compare(x, y);
+        }
+        return a.asText().compareTo(b.asText());
+    }
+
+    private static Double number(JsonNode node) {
+        if (node.isNumber()) {
+            return node.asDouble();
+        }
+        if (node.isTextual()) {
+            try {
+                return Double.parseDouble(node.asText());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排序，返回与 sort 条件一一对应的排序值，缺失值排在最后
+     */
+    static final class Sort {
+
+        private final List<String> fields = new ArrayList<>();
+
+        private final List<Boolean> descending = new ArrayList<>();
+
+        Sort(JsonNode spec) {
+            for (JsonNode entry : clauses(spec)) {
+                if (entry.isTextual()) {
+                    fields.add(entry.asText());
+                    descending.add("_score".equals(entry.asText()));
+                } else {
+                    Map.Entry<String, JsonNode> field = single(entry);
+                    JsonNode order = field.getValue().isObject() ? field.getValue().path("order") : field.getValue();
+                    fields.add(field.getKey());
+                    descending.add("desc".equalsIgnoreCase(order.asText()));
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return fields.isEmpty();
+        }
+
+        ArrayNode key(StoredDoc doc, ObjectMapper mapper) {
+            ArrayNode key = mapper.createArrayNode();
+            for (String field : fields) {
+                if ("_doc".equals(field) || "_shard_doc".equals(field)) {
+                    key.add(LongNode.valueOf(doc.order));
+                } else if ("_score".equals(field)) {
+                    key.add(DoubleNode.valueOf(1.0));
+                } else {
+                    List<JsonNode> values = values(doc, field);
+                    key.add(values.isEmpty() ? NullNode.getInstance() : values.get(0));
+                }
+            }
+            return key;
+        }
+
+        int compare(JsonNode a, JsonNode b) {
+            for (int i = 0; i < fields.size(); i++) {
+                JsonNode x = a.get(i);
+                JsonNode y = b.get(i);
+                int cmp;
+                if (x.isNull() || y.isNull()) {
+                    cmp = x.isNull() == y.isNull() ? 0 : x.isNull() ? 1 : -1;
+                } else {
+                    cmp = StandInQuery.compare(x, y);
+                    if (descending.get(i)) {
+                        cmp = -cmp;
+                    }
+                }
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 计算聚合
+     *
+     * @param spec       aggregations 定义
+     * @param docs       命中的文档
+     * @param typedKeys  是否带类型前缀
+     * @param mapper     mapper
+     * @return 聚合结果
+     */
+    static ObjectNode aggregate(JsonNode spec, List<StoredDoc> docs, boolean typedKeys, ObjectMapper mapper) {
+        ObjectNode result = mapper.createObjectNode();
+        for (Iterator<Map.Entry<String, JsonNode>> it = spec.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> agg = it.next();
+            JsonNode definition = agg.getValue();
+            JsonNode subAggs = definition.has("aggs") ? definition.get("aggs") : definition.get("aggregations");
+            String type = null;
+            JsonNode body = null;
+            for (Iterator<String> names = definition.fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                if (!"aggs".equals(name) && !"aggregations".equals(name) && !"meta".equals(name)) {
+                    type = name;
+                    body = definition.get(name);
+                }
+            }
+            if (type == null) {
+                throw new StandInException(400, "parsing_exception", "aggregation [" + agg.getKey() + "] has no type");
+            }
+            ObjectNode value = mapper.createObjectNode();
+            String typedName;
+            switch (type) {
+                case "terms":
+                    typedName = terms(body, subAggs, docs, typedKeys, mapper, value);
+                    break;
+                case "composite":
+                    typedName = "composite";
+                    composite(body, subAggs, docs, typedKeys, mapper, value);
+                    break;
+                case "filter": {
+                    typedName = "filter";
+                    List<StoredDoc> matched = new ArrayList<>();
+                    for (StoredDoc doc : docs) {
+                        if (matches(body, doc)) {
+                            matched.add(doc);
+                        }
+                    }
+                    value.put("doc_count", matched.size());
+                    if (subAggs != null) {
+                        value.setAll(aggregate(subAggs, matched, typedKeys, mapper));
+                    }
+                    break;
+                }
+                case "sum":
+                case "avg":
+                case "min":
+                case "max":
+                case "value_count":
+                case "cardinality":
+                    typedName = type;
+                    metric(type, body.path("field").asText(), docs, value);
+                    break;
+                default:
+                    throw new StandInException(400, "parsing_exception", "stand-in does not support aggregation [" + type + "]");
+            }
+            result.set(typedKeys ? typedName + "#" + agg.getKey() : agg.getKey(), value);
+        }
+        return result;
+    }
+
+    private static String terms(JsonNode body, JsonNode subAggs, List<StoredDoc> docs, boolean typedKeys,
+                                ObjectMapper mapper, ObjectNode value) {
+        String field = body.path("field").asText();
+        int size = body.path("size").asInt(10);
+        Map<String, JsonNode> keys = new LinkedHashMap<>();
+        Map<String, List<StoredDoc>> groups = new LinkedHashMap<>();
+        for (StoredDoc doc : docs) {
+            Set<String> seen = new HashSet<>();
+            for (JsonNode key : values(doc, field)) {
+                String text = key.asText();
+                if (seen.add(text)) {
+                    keys.putIfAbsent(text, key);
+                    groups.computeIfAbsent(text, k -> new ArrayList<>()).add(doc);
+                }
+            }
+        }
+        List<String> ordered = new ArrayList<>(groups.keySet());
+        ordered.sort(Comparator.<String>comparingInt(k -> groups.get(k).size()).reversed()
+                .thenComparing((a, b) -> compare(keys.get(a), keys.get(b))));
+        boolean numeric = !keys.isEmpty() && keys.values().stream().allMatch(JsonNode::isNumber);
+        boolean integral = numeric && keys.values().stream().allMatch(JsonNode::isIntegralNumber);
+        long other = 0;
+        ArrayNode buckets = mapper.createArrayNode();
+        for (int i = 0; i < ordered.size(); i++) {
+            List<StoredDoc> group = groups.get(ordered.get(i));
+            if (i >= size) {
+                other += group.size();
+                continue;
+            }
+            ObjectNode bucket = buckets.addObject();
+            JsonNode key = keys.get(ordered.get(i));
+            if (integral) {
+                bucket.put("key", key.asLong());
+            } else if (numeric) {
+                bucket.put("key", key.asDouble());
+            } else {
+                bucket.put("key", key.asText());
+            }
+            bucket.put("doc_count", group.size());
+            if (subAggs != null) {
+                bucket.setAll(aggregate(subAggs, group, typedKeys, mapper));
+            }
+        }
+        value.put("doc_count_error_upper_bound", 0);
+        value.put("sum_other_doc_count", other);
+        value.set("buckets", buckets);
+        return integral ? "lterms" : numeric ? "dterms" : "sterms";
+    }
+
+    private static void composite(JsonNode body, JsonNode subAggs, List<StoredDoc> docs, boolean typedKeys,
+                                  ObjectMapper mapper, ObjectNode value) {
+        List<String> names = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        for (JsonNode source : body.path("sources")) {
+            Map.Entry<String, JsonNode> entry = single(source);
+            names.add(entry.getKey());
+            fields.add(single(entry.getValue()).getValue().path("field").asText());
+        }
+        int size = body.path("size").asInt(10);
+        Map<String, ArrayNode> keys = new LinkedHashMap<>();
+        Map<String, List<StoredDoc>> groups = new LinkedHashMap<>();
+        for (StoredDoc doc : docs) {
+            ArrayNode key = mapper.createArrayNode();
+            for (String field : fields) {
+                List<JsonNode> values = values(doc, field);
+                if (values.isEmpty()) {
+                    key = null;
+                    break;
+                }
+                key.add(values.get(0));
+            }
+            if (key != null) {
+                keys.putIfAbsent(key.toString(), key);
+                groups.computeIfAbsent(key.toString(), k -> new ArrayList<>()).add(doc);
+            }
+        }
+        Comparator<ArrayNode> order = (a, b) -> {
+            for (int i = 0; i < a.size(); i++) {
+                int cmp = compare(a.get(i), b.get(i));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+        ArrayNode after = null;
+        if (body.has("after")) {
+            after = mapper.createArrayNode();
+            for (String name : names) {
+                after.add(body.get("after").path(name));
+            }
+        }
+        List<ArrayNode> ordered = new ArrayList<>(keys.values());
+        ordered.sort(order);
+        ArrayNode buckets = value.putArray("buckets");
+        ObjectNode lastKey = null;
+        for (ArrayNode key : ordered) {
+            if (buckets.size() >= size) {
+                break;
+            }
+            if (after != null && order.compare(key, after) <= 0) {
+                continue;
+            }
+            ObjectNode bucket = buckets.addObject();
+            lastKey = bucket.putObject("key");
+            for (int i = 0; i < names.size(); i++) {
+                lastKey.set(names.get(i), key.get(i));
+            }
+            List<StoredDoc> group = groups.get(key.toString());
+            bucket.put("doc_count", group.size());
+            if (subAggs != null) {
+                bucket.setAll(aggregate(subAggs, group, typedKeys, mapper));
+            }
+        }
+        if (lastKey != null) {
+            value.set("after_key", lastKey.deepCopy());
+        }
+    }
+
+    private static void metric(String type, String field, List<StoredDoc> docs, ObjectNode value) {
+        List<JsonNode> all = new ArrayList<>();
+        for (StoredDoc doc : docs) {
+            all.addAll(values(doc, field));
+        }
+        if ("value_count".equals(type)) {
+            value.put("value", all.size());
+            return;
+        }
+        if ("cardinality".equals(type)) {
+            Set<String> distinct = new HashSet<>();
+            all.forEach(v -> distinct.add(v.asText()));
+            value.put("value", distinct.size());
+            return;
+        }
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int count = 0;
+        for (JsonNode node : all) {
+            Double number = number(node);
+            if (number != null) {
+                sum += number;
+                min = Math.min(min, number);
+                max = Math.max(max, number);
+                count++;
+            }
+        }
+        switch (type) {
+            case "sum":
+                value.put("value", sum);
+                break;
+            case "avg":
+                putOrNull(value, count == 0 ? null : sum / count);
+                break;
+            case "min":
+                putOrNull(value, count == 0 ? null : min);
+                break;
+            default:
+                putOrNull(value, count == 0 ? null : max);
+        }
+    }
+
+    private static void putOrNull(ObjectNode value, Double number) {
+        if (number == null) {
+            value.putNull("value");
+        } else {
+            value.put("value", number);
+        }
+    }
+
+    /**
+     * 单个或数组形式的子句统一为列表
+     */
+    private static List<JsonNode> clauses(JsonNode node) {
+        List<JsonNode> result = new ArrayList<>();
+        if (node.isArray()) {
+            node.forEach(result::add);
+        } else if (!node.isMissingNode() && !node.isNull()) {
+            result.add(node);
+        }
+        return result;
+    }
+
+    private static Map.Entry<String, JsonNode> single(JsonNode node) {
+        Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+        if (!it.hasNext()) {
+            throw new StandInException(400, "parsing_exception", "expected a single key object but got " + node);
+        }
+        return it.next();
+    }
+
+    /**
+     * terms 查询中除字段外还可能有 boost 等参数
+     */
+    private static Map.Entry<String, JsonNode> fieldEntry(JsonNode body) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = body.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (entry.getValue().isArray()) {
+                return entry;
+            }
+        }
+        throw new StandInException(400, "parsing_exception", "stand-in only supports terms with an array of values");
+    }
+
+    private static Pattern glob(String wildcard) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : wildcard.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.elasticsearch.standin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 替身服务的内存数据，多个 {@link EsStandInServer} 共用同一个实例即组成一个多节点集群
+ * 写入立即可见，refresh 为空操作；primary term 固定为 1
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+public class StandInStore {
+
+    static final long PRIMARY_TERM = 1;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, IndexData> indices = new ConcurrentHashMap<>();
+
+    private final Map<String, List<StoredDoc>> pits = new ConcurrentHashMap<>();
+
+    private final Map<String, JsonNode> scripts = new ConcurrentHashMap<>();
+
+    private final Map<String, JsonNode> pipelines = new ConcurrentHashMap<>();
+
+    private final Map<Long, StandInTask> tasks = new ConcurrentHashMap<>();
+
+    private final AtomicLong taskIds = new AtomicLong();
+
+    private volatile ScriptEmulator scriptEmulator = (script, source) -> false;
+
+    /**
+     * 替身服务不执行 painless，带 script 的 update / update_by_query 交给该实现模拟，默认不修改文档（noop）
+     *
+     * @param emulator 脚本模拟
+     */
+    public void scriptEmulator(ScriptEmulator emulator) {
+        this.scriptEmulator = emulator;
+    }
+
+    ScriptEmulator scriptEmulator() {
+        return scriptEmulator;
+    }
+
+    /**
+     * 已保存的 stored script
+     */
+    public Map<String, JsonNode> scripts() {
+        return scripts;
+    }
+
+    /**
+     * 已保存的 ingest pipeline，只保存定义，写入时不执行
+     */
+    public Map<String, JsonNode> pipelines() {
+        return pipelines;
+    }
+
+    /**
+     * 文档数，索引不存在时为 0
+     */
+    public int count(String index) {
+        IndexData data = indices.get(index);
+        return data == null ? 0 : data.snapshot().size();
+    }
+
+    /**
+     * 文档的 _source，不存在时为 null
+     */
+    public ObjectNode source(String index, String id) {
+        IndexData data = indices.get(index);
+        StoredDoc doc = data == null ? null : data.get(id);
+        return doc == null ? null : doc.source.deepCopy();
+    }
+
+    /**
+     * 清空所有数据
+     */
+    public void clear() {
+        indices.clear();
+        pits.clear();
+        scripts.clear();
+        pipelines.clear();
+        tasks.clear();
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    boolean createIndex(String name) {
+        return indices.putIfAbsent(name, new IndexData(name)) == null;
+    }
+
+    boolean deleteIndex(String name) {
+        return indices.remove(name) != null;
+    }
+
+    boolean exists(String name) {
+        return indices.containsKey(name);
+    }
+
+    /**
+     * 写入时自动创建索引
+     */
+    IndexData writeIndex(String name) {
+        return indices.computeIfAbsent(name, IndexData::new);
+    }
+
+    /**
+     * 读取时解析索引表达式，支持逗号分隔、通配符和 _all
+     *
+     * @param expression 索引表达式
+     * @return 匹配的索引
+     */
+    List<IndexData> resolve(String expression) {
+        List<IndexData> result = new ArrayList<>();
+        for (String part : expression.split(",")) {
+            if ("_all".equals(part) || part.contains("*")) {
+                Pattern pattern = Pattern.compile(("_all".equals(part) ? "*" : part).replace(".", "\\.").replace("*", ".*"));
+                indices.values().stream()
+                        .filter(data -> pattern.matcher(data.name).matches())
+                        .forEach(result::add);
+            } else {
+                IndexData data = indices.get(part);
+                if (data == null) {
+                    throw new StandInException(404, "index_not_found_exception", "no such index [" + part + "]");
+                }
+                result.add(data);
+            }
+        }
+        return result;
+    }
+
+    List<StoredDoc> snapshot(String expression) {
+        List<StoredDoc> docs = new ArrayList<>();
+        for (IndexData data : resolve(expression)) {
+            docs.addAll(data.snapshot());
+        }
+        return docs;
+    }
+
+    String openPit(String expression) {
+        String id = UUID.randomUUID().toString();
+        pits.put(id, Collections.unmodifiableList(snapshot(expression)));
+        return id;
+    }
+
+    List<StoredDoc> pit(String id) {
+        List<StoredDoc> docs = pits.get(id);
+        if (docs == null) {
+            throw new StandInException(404, "search_context_missing_exception", "No search context found for id [" + id + "]");
+        }
+        return docs;
+    }
+
+    boolean closePit(String id) {
+        return pits.remove(id) != null;
+    }
+
+    /**
+     * update_by_query / delete_by_query 立即生效，任务只按 taskDuration 模拟进度
+     *
+     * @param action   任务 action
+     * @param docs     匹配的文档
+     * @param script   update_by_query 的脚本，可为 null
+     * @param delete   是否删除
+     * @param duration 任务运行时长
+     * @param rps      requests_per_second
+     * @return 任务
+     */
+    StandInTask byQuery(String action, List<StoredDoc> docs, JsonNode script, boolean delete, long duration, float rps) {
+        long updated = 0;
+        long deleted = 0;
+        long noops = 0;
+        for (StoredDoc doc : docs) {
+            IndexData data = writeIndex(doc.index);
+            if (delete) {
+                if (data.delete(doc.id, null, null).path("status").asInt() == 200) {
+                    deleted++;
+                }
+            } else if (data.touch(doc.id, script, scriptEmulator)) {
+                updated++;
+            } else {
+                noops++;
+            }
+        }
+        StandInTask task = new StandInTask(taskIds.incrementAndGet(), action, docs.size(), updated, deleted, noops,
+                System.currentTimeMillis(), duration, rps);
+        tasks.put(task.id, task);
+        return task;
+    }
+
+    StandInTask task(String taskId) {
+        String[] parts = taskId.split(":");
+        StandInTask task = null;
+        try {
+            task = tasks.get(Long.parseLong(parts[parts.length - 1]));
+        } catch (NumberFormatException ignored) {
+            // 按不存在处理
+        }
+        if (task == null) {
+            throw new StandInException(404, "resource_not_found_exception", "task [" + taskId + "] isn't running and hasn't stored its results");
+        }
+        return task;
+    }
+
+    /**
+     * 一个索引，所有修改在索引级别串行
+     */
+    final class IndexData {
+
+        final String name;
+
+        private final Map<String, StoredDoc> docs = new LinkedHashMap<>();
+
+        private long seqNo;
+
+        private long order;
+
+        IndexData(String name) {
+            this.name = name;
+        }
+
+        synchronized StoredDoc get(String id) {
+            return docs.get(id);
+        }
+
+        synchronized List<StoredDoc> snapshot() {
+            return new ArrayList<>(docs.values());
+        }
+
+        /**
+         * index / create
+         *
+         * @param id              文档 id，null 时自动生成
+         * @param source          文档
+         * @param create          op_type=create
+         * @param ifSeqNo         if_seq_no
+         * @param ifPrimaryTerm   if_primary_term
+         * @param externalVersion version_type=external 时的版本号
+         * @param routing         routing，替身只有一个分片，只记录不参与路由
+         * @return 与 bulk item 相同结构的结果，包含 status
+         */
+        synchronized ObjectNode index(String id, ObjectNode source, boolean create,
+                                      Long ifSeqNo, Long ifPrimaryTerm, Long externalVersion, String routing) {
+            if (id == null) {
+                id = UUID.randomUUID().toString().replace("-", "").substring(0, 20);
+            }
+            StoredDoc current = docs.get(id);
+            if (create && current != null) {
+                return conflict(id, "document already exists (current version [" + current.version + "])");
+            }
+            if (ifSeqNo != null && (current == null || current.seqNo != ifSeqNo
+                    || (ifPrimaryTerm != null && ifPrimaryTerm != PRIMARY_TERM))) {
+                return conflict(id, "required seqNo [" + ifSeqNo + "], primary term [" + ifPrimaryTerm + "]. "
+                        + (current == null ? "but no document was found" : "current document has seqNo [" + current.seqNo + "]"));
+            }
+            long version;
+            if (externalVersion != null) {
+                if (current != null && current.version >= externalVersion) {
+                    return conflict(id, "version conflict, current version [" + current.version
+                            + "] is higher or equal to the one provided [" + externalVersion + "]");
+                }
+                version = externalVersion;
+            } else {
+                version = current == null ? 1 : current.version + 1;
+            }
+            StoredDoc doc = new StoredDoc(name, id, source, version, ++seqNo, current == null ? ++order : current.order, routing);
+            docs.put(id, doc);
+            return written(doc, current == null ? "created" : "updated", current == null ? 201 : 200);
+        }
+
+        /**
+         * update，支持 doc、doc_as_upsert、upsert 和模拟执行的 script
+         */
+        synchronized ObjectNode update(String id, JsonNode body, ScriptEmulator emulator) {
+            StoredDoc current = docs.get(id);
+            if (current == null) {
+                ObjectNode upsert = null;
+                if (body.path("doc_as_upsert").asBoolean(false) && body.has("doc")) {
+                    upsert = ((ObjectNode) body.get("doc")).deepCopy();
+                } else if (body.has("upsert")) {
+                    upsert = ((ObjectNode) body.get("upsert")).deepCopy();
+                    if (body.path("scripted_upsert").asBoolean(false) && body.has("script")) {
+                        emulator.apply(body.get("script"), upsert);
+                    }
+                }
+                if (upsert == null) {
+                    return error(id, 404, "document_missing_exception", "[" + id + "]: document missing");
+                }
+                return written(put(id, upsert, 1, null), "created", 201);
+            }
+            ObjectNode source = current.source.deepCopy();
+            boolean changed;
+            if (body.has("script")) {
+                changed = emulator.apply(body.get("script"), source);
+            } else {
+                source.setAll((ObjectNode) body.path("doc"));
+                changed = !source.equals(current.source);
+            }
+            if (!changed && (body.has("script") || body.path("detect_noop").asBoolean(true))) {
+                return written(current, "noop", 200);
+            }
+            return written(put(id, source, current.version + 1, current), "updated", 200);
+        }
+
+        synchronized ObjectNode delete(String id, Long ifSeqNo, Long ifPrimaryTerm) {
+            StoredDoc current = docs.get(id);
+            if (ifSeqNo != null && (current == null || current.seqNo != ifSeqNo
+                    || (ifPrimaryTerm != null && ifPrimaryTerm != PRIMARY_TERM))) {
+                return conflict(id, "required seqNo [" + ifSeqNo + "], primary term [" + ifPrimaryTerm + "]");
+            }
+            if (current == null) {
+                return result(id, 1, seqNo, "not_found", 404);
+            }
+            docs.remove(id);
+            return result(id, current.version + 1, ++seqNo, "deleted", 200);
+        }
+
+        /**
+         * update_by_query 对单个文档的修改，没有脚本时只增加版本号
+         *
+         * @return 是否修改
+         */
+        synchronized boolean touch(String id, JsonNode script, ScriptEmulator emulator) {
+            StoredDoc current = docs.get(id);
+            if (current == null) {
+                return false;
+            }
+            ObjectNode source = current.source.deepCopy();
+            if (script != null && !emulator.apply(script, source)) {
+                return false;
+            }
+            put(id, source, current.version + 1, current);
+            return true;
+        }
+
+        private StoredDoc put(String id, ObjectNode source, long version, StoredDoc current) {
+            StoredDoc doc = new StoredDoc(name, id, source, version, ++seqNo, current == null ? ++order : current.order,
+                    current == null ? null : current.routing);
+            docs.put(id, doc);
+            return doc;
+        }
+
+        private ObjectNode written(StoredDoc doc, String result, int status) {
+            return result(doc.id, doc.version, doc.seqNo, result, status);
+        }
+
+        private ObjectNode result(String id, long version, long seq, String result, int status) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("_index", name);
+            node.put("_id", id);
+            node.put("_version", version);
+            node.put("result", result);
+            ObjectNode shards = node.putObject("_shards");
+            shards.put("total", 1);
+            shards.put("successful", 1);
+            shards.put("failed", 0);
+            node.put("_seq_no", seq);
+            node.put("_primary_term", PRIMARY_TERM);
+            node.put("status", status);
+            return node;
+        }
+
+        private ObjectNode conflict(String id, String reason) {
+            return error(id, 409, "version_conflict_engine_exception", "[" + id + "]: version conflict, " + reason);
+        }
+
+        private ObjectNode error(String id, int status, String type, String reason) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("_index", name);
+            node.put("_id", id);
+            node.put("status", status);
+            ObjectNode error = node.putObject("error");
+            error.put("type", type);
+            error.put("reason", reason);
+            error.put("index", name);
+            return node;
+        }
+    }
+
+    /**
+     * 模拟执行脚本
+     */
+    @FunctionalInterface
+    public interface ScriptEmulator {
+
+        /**
+         * 在 source 上执行脚本
+         *
+         * @param script 请求中的 script，可能是 inline（source）或 stored（id）
+         * @param source 文档，原地修改
+         * @return 文档是否被修改，false 对应 ctx.op = 'noop'
+         */
+        boolean apply(JsonNode script, ObjectNode source);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.elasticsearch.standin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * wait_for_completion=false 提交的 by query 任务，结果在提交时已经确定，进度按运行时长线性推进
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+final class StandInTask {
+
+    static final String NODE = "standin";
+
+    final long id;
+
+    final String action;
+
+    private final long total;
+
+    private final long updated;
+
+    private final long deleted;
+
+    private final long noops;
+
+    private final long startMillis;
+
+    private final long durationMillis;
+
+    private volatile float requestsPerSecond;
+
+    private volatile boolean cancelled;
+
+    StandInTask(long id, String action, long total, long updated, long deleted, long noops,
+                long startMillis, long durationMillis, float requestsPerSecond) {
+        this.id = id;
+        this.action = action;
+        this.total = total;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.noops = noops;
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    String taskId() {
+        return NODE + ":" + id;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    void rethrottle(float value) {
+        this.requestsPerSecond = value;
+    }
+
+    boolean completed() {
+        return cancelled || System.currentTimeMillis() - startMillis >= durationMillis;
+    }
+
+    /**
+     * GET _tasks/{id} 的响应
+     */
+    ObjectNode toJson(ObjectMapper mapper) {
+        boolean completed = completed();
+        ObjectNode root = mapper.createObjectNode();
+        root.put("completed", completed);
+        ObjectNode task = root.putObject("task");
+        task.put("node", NODE);
+        task.put("id", id);
+        task.put("type", "transport");
+        task.put("action", action);
+        task.set("status", status(mapper, completed ? 1 : fraction()));
+        task.put("description", action);
+        task.put("start_time_in_millis", startMillis);
+        task.put("running_time_in_nanos", (System.currentTimeMillis() - startMillis) * 1_000_000L);
+        task.put("cancellable", true);
+        task.put("cancelled", cancelled);
+        task.putObject("headers");
+        if (completed) {
+            ObjectNode response = status(mapper, cancelled ? fraction() : 1);
+            response.put("took", System.currentTimeMillis() - startMillis);
+            response.put("timed_out", false);
+            response.putArray("failures");
+            root.set("response", response);
+        }
+        return root;
+    }
+
+    /**
+     * wait_for_completion=true 时的同步响应
+     */
+    ObjectNode toResponse(ObjectMapper mapper) {
+        ObjectNode response = status(mapper, 1);
+        response.put("took", 0);
+        response.put("timed_out", false);
+        response.putArray("failures");
+        return response;
+    }
+
+    private double fraction() {
+        return durationMillis <= 0 ? 1 : Math.min(1, (System.currentTimeMillis() - startMillis) / (double) durationMillis);
+    }
+
+    private ObjectNode status(ObjectMapper mapper, double fraction) {
+        ObjectNode status = mapper.createObjectNode();
+        status.put("total", total);
+        status.put("updated", Math.round(updated * fraction));
+        status.put("created", 0);
+        status.put("deleted", Math.round(deleted * fraction));
+        status.put("batches", Math.max(1, Math.round(Math.ceil(total / 1000.0) * fraction)));
+        status.put("version_conflicts", 0);
+        status.put("noops", Math.round(noops * fraction));
+        ObjectNode retries = status.putObject("retries");
+        retries.put("bulk", 0);
+        retries.put("search", 0);
+        status.put("throttled_millis", 0);
+        status.put("requests_per_second", requestsPerSecond);
+        status.put("throttled_until_millis", 0);
+        if (cancelled) {
+            status.put("canceled", "by user request");
+        }
+        return status;
+    }
+}
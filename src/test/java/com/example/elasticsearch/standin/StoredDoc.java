@@ -0,0 +1,42 @@
+package com.example.elasticsearch.standin;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * 替身服务中的一个文档版本，不可变，更新时整体替换，因此 point in time 快照可以直接持有引用
+ *
+ * @author LiJY
+ * @date 2026/10/19
+ */
+final class StoredDoc {
+
+    final String index;
+
+    final String id;
+
+    final ObjectNode source;
+
+    final long version;
+
+    final long seqNo;
+
+    /**
+     * 首次写入的顺序，作为 _doc / _shard_doc 排序值，更新不改变
+     */
+    final long order;
+
+    /**
+     * 写入时的 routing，没有时为 null
+     */
+    final String routing;
+
+    StoredDoc(String index, String id, ObjectNode source, long version, long seqNo, long order, String routing) {
+        this.index = index;
+        this.id = id;
+        this.source = source;
+        this.version = version;
+        this.seqNo = seqNo;
+        this.order = order;
+        this.routing = routing;
+    }
+}